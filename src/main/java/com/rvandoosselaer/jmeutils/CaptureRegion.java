@@ -0,0 +1,86 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.simsilica.lemur.Panel;
+import lombok.Getter;
+
+/**
+ * A rectangle of the framebuffer that is captured by the {@link ScreenshotState}. Only the pixels of the region are
+ * read back from the GPU. The coordinates are in pixels, with the origin in the lower left corner of the screen.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+public class CaptureRegion {
+
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    public CaptureRegion(int x, int y, int width, int height) {
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid capture region size " + width + "x" + height + " specified!");
+        }
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Creates a region that covers the bounds of a panel that is attached to the gui node. The location of a panel is
+     * its upper left corner.
+     *
+     * @param panel the panel
+     * @return the region covering the panel
+     */
+    public static CaptureRegion fromPanel(Panel panel) {
+        Vector3f location = panel.getWorldTranslation();
+        Vector3f scale = panel.getWorldScale();
+        Vector3f size = panel.getSize();
+
+        int left = (int) Math.floor(location.x);
+        int top = (int) Math.ceil(location.y);
+        int right = (int) Math.ceil(location.x + size.x * scale.x);
+        int bottom = (int) Math.floor(location.y - size.y * scale.y);
+        return new CaptureRegion(left, bottom, Math.max(right - left, 1), Math.max(top - bottom, 1));
+    }
+
+    /**
+     * Creates a region that covers the view port of the camera, e.g. the camera of a {@link ViewPortState}.
+     *
+     * @param camera the camera
+     * @return the region covering the view port of the camera
+     */
+    public static CaptureRegion fromCamera(Camera camera) {
+        int left = Math.round(camera.getViewPortLeft() * camera.getWidth());
+        int right = Math.round(camera.getViewPortRight() * camera.getWidth());
+        int bottom = Math.round(camera.getViewPortBottom() * camera.getHeight());
+        int top = Math.round(camera.getViewPortTop() * camera.getHeight());
+        return new CaptureRegion(left, bottom, Math.max(right - left, 1), Math.max(top - bottom, 1));
+    }
+
+    /**
+     * Returns the part of this region that is inside a framebuffer of the given size.
+     *
+     * @param frameWidth  the width of the framebuffer
+     * @param frameHeight the height of the framebuffer
+     * @return the clipped region, or null when the region is completely outside the framebuffer
+     */
+    public CaptureRegion clip(int frameWidth, int frameHeight) {
+        int left = Math.max(x, 0);
+        int bottom = Math.max(y, 0);
+        int right = Math.min(x + width, frameWidth);
+        int top = Math.min(y + height, frameHeight);
+        if (right <= left || top <= bottom) {
+            return null;
+        }
+        if (left == x && bottom == y && right - left == width && top - bottom == height) {
+            return this;
+        }
+        return new CaptureRegion(left, bottom, right - left, top - bottom);
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.rvandoosselaer.jmeutils;
+
+/**
+ * The stages of a capture by the {@link ScreenshotState}.
+ *
+ * @author rvandoosselaer
+ */
+public enum CaptureStage {
+
+    /**
+     * Reading the framebuffer into a capture buffer on the render thread. This includes waiting for the GPU to finish
+     * rendering the frame.
+     */
+    READBACK,
+    /**
+     * Converting the captured image to another representation before it's encoded, e.g. the image that is compressed
+     * to JPEG for a recording. The screenshot encoders convert the pixels while encoding.
+     */
+    CONVERSION,
+    /**
+     * Running the process function on the captured image.
+     */
+    PROCESS,
+    /**
+     * Encoding the image, without the time spent writing the encoded bytes. For a screenshot this is the time spent
+     * in the encoder outside the writes to the file stream.
+     */
+    ENCODE,
+    /**
+     * Writing the encoded bytes to disk. Encoders that write the file their own way, like the raw encoder, are
+     * recorded as a whole in this stage.
+     */
+    WRITE
+
+}
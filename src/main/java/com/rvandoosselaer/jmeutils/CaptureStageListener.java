@@ -0,0 +1,18 @@
+package com.rvandoosselaer.jmeutils;
+
+/**
+ * A listener that is notified of the duration of each stage of a capture. The listener is called on the thread that
+ * executed the stage: the render thread or a worker thread of the screenshot state.
+ *
+ * @author rvandoosselaer
+ */
+@FunctionalInterface
+public interface CaptureStageListener {
+
+    /**
+     * @param stage    the stage
+     * @param duration the duration of the stage in nanoseconds
+     */
+    void stageCompleted(CaptureStage stage, long duration);
+
+}
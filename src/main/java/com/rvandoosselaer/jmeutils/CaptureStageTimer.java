@@ -0,0 +1,159 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.util.RollingStatistics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps the rolling statistics of the duration of each {@link CaptureStage} and notifies the listeners. Stages can be
+ * recorded from any thread.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+class CaptureStageTimer {
+
+    static final int WINDOW_SIZE = 256;
+    /**
+     * Whether an encoder class overrides {@link ImageEncoder#write(Image, Path)}.
+     */
+    private static final ClassValue<Boolean> WRITES_FILES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("write", Image.class, Path.class).getDeclaringClass() != ImageEncoder.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private final Map<CaptureStage, RollingStatistics> statistics = new EnumMap<>(CaptureStage.class);
+    private final List<CaptureStageListener> listeners = new CopyOnWriteArrayList<>();
+
+    CaptureStageTimer() {
+        for (CaptureStage stage : CaptureStage.values()) {
+            statistics.put(stage, new RollingStatistics(WINDOW_SIZE));
+        }
+    }
+
+    void addListener(CaptureStageListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(CaptureStageListener listener) {
+        listeners.remove(listener);
+    }
+
+    RollingStatistics getStatistics(CaptureStage stage) {
+        return statistics.get(stage);
+    }
+
+    /**
+     * Records the duration of a stage that started at the given time.
+     *
+     * @param stage the stage
+     * @param start the start of the stage, as returned by {@link System#nanoTime()}
+     */
+    void stop(CaptureStage stage, long start) {
+        record(stage, System.nanoTime() - start);
+    }
+
+    void record(CaptureStage stage, long duration) {
+        statistics.get(stage).record(duration);
+        for (CaptureStageListener listener : listeners) {
+            try {
+                listener.stageCompleted(stage, duration);
+            } catch (RuntimeException e) {
+                log.error("Capture stage listener {} failed: {}", listener, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Encodes the image to the file and records the {@link CaptureStage#ENCODE} and {@link CaptureStage#WRITE}
+     * stages. The time spent in the writes to the file is the write stage, the rest is the encode stage. Encoders that
+     * override {@link ImageEncoder#write(Image, Path)} write the file their own way, e.g. the raw encoder maps the
+     * file, and the whole call is recorded as the write stage.
+     *
+     * @param image   the image
+     * @param path    the file to write to
+     * @param encoder the encoder
+     * @throws IOException when writing the file fails
+     */
+    void write(Image image, Path path, ImageEncoder encoder) throws IOException {
+        long start = System.nanoTime();
+        if (WRITES_FILES.get(encoder.getClass())) {
+            encoder.write(image, path);
+            stop(CaptureStage.WRITE, start);
+            return;
+        }
+
+        TimedOutputStream file = new TimedOutputStream(Files.newOutputStream(path));
+        try (OutputStream out = new BufferedOutputStream(file)) {
+            encoder.encode(image, out);
+        }
+        long total = System.nanoTime() - start;
+        record(CaptureStage.ENCODE, total - file.getTime());
+        record(CaptureStage.WRITE, file.getTime());
+    }
+
+    /**
+     * An output stream that measures the time spent in the writes to the underlying stream.
+     */
+    static class TimedOutputStream extends FilterOutputStream {
+
+        private long time;
+
+        TimedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            time += System.nanoTime() - start;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            time += System.nanoTime() - start;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            time += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+            long start = System.nanoTime();
+            out.close();
+            time += System.nanoTime() - start;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+    }
+
+}
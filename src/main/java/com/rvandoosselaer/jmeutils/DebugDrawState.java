@@ -0,0 +1,360 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.app.Application;
+import com.jme3.app.SimpleApplication;
+import com.jme3.app.state.BaseAppState;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.GeometryUtils;
+import lombok.Getter;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * An AppState to draw debug shapes in immediate mode: lines, arrows, boxes and coordinate axes that are drawn during
+ * a frame are shown in that frame only. Call the draw methods every frame, e.g. from the update loop of a control or
+ * another state, on the render thread.
+ * <p>
+ * All lines of a frame are collected in one line mesh and all triangles in one triangle mesh, colored with vertex
+ * colors, so the shapes of a frame take at most two draw calls. The vertices are collected in arrays that grow when
+ * needed and copied to the vertex buffers of the meshes before the frame is rendered. The buffers are reused, once
+ * they are large enough no objects are created per frame.
+ * <p>
+ * The meshes are attached to the root node of the application, or to the given node. Shapes that are drawn while the
+ * state is disabled are ignored.
+ *
+ * @author rvandoosselaer
+ */
+public class DebugDrawState extends BaseAppState {
+
+    private static final float ARROW_HEAD_LENGTH = 0.2f;
+    private static final float ARROW_HEAD_WIDTH = 0.1f;
+    /**
+     * The corners of a face of a box, in counter clockwise order seen from outside the box.
+     */
+    private static final float[] FACE_CORNERS = {-1, -1, 1, -1, 1, 1, -1, 1};
+
+    @Getter
+    private final Node node = new Node("Debug draw");
+    private final Node parent;
+    private final Batch lines = new Batch("Debug lines", Mesh.Mode.Lines);
+    private final Batch triangles = new Batch("Debug triangles", Mesh.Mode.Triangles);
+
+    private final Vector3f vector = new Vector3f();
+    private final Vector3f axisTip = new Vector3f();
+    private final Vector3f[] quadCorners = {new Vector3f(), new Vector3f(), new Vector3f(), new Vector3f()};
+    private final float[] offset = new float[3];
+
+    public DebugDrawState() {
+        this(null);
+    }
+
+    /**
+     * @param parent the node to attach the debug meshes to, or null to use the root node of the application
+     */
+    public DebugDrawState(Node parent) {
+        this.parent = parent;
+        // the bounds of the meshes aren't updated, the node would be culled when the origin isn't visible
+        node.setCullHint(Spatial.CullHint.Never);
+        node.attachChild(lines.geometry);
+        node.attachChild(triangles.geometry);
+    }
+
+    @Override
+    protected void initialize(Application app) {
+        Material material = GeometryUtils.createVertexColorMaterial();
+        lines.geometry.setMaterial(material);
+        triangles.geometry.setMaterial(material);
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        lines.destroy();
+        triangles.destroy();
+    }
+
+    @Override
+    protected void onEnable() {
+        Node target = parent;
+        if (target == null) {
+            if (!(getApplication() instanceof SimpleApplication)) {
+                throw new IllegalStateException("No parent node specified and the application has no root node.");
+            }
+            target = ((SimpleApplication) getApplication()).getRootNode();
+        }
+        target.attachChild(node);
+    }
+
+    @Override
+    protected void onDisable() {
+        node.removeFromParent();
+        lines.clear();
+        triangles.clear();
+    }
+
+    /**
+     * Copies the shapes of this frame to the meshes and starts collecting the shapes of the next frame. The meshes
+     * are updated after all states and controls are updated, and before the frame is rendered.
+     */
+    @Override
+    public void render(RenderManager rm) {
+        lines.flush();
+        triangles.flush();
+    }
+
+    public void drawLine(Vector3f from, Vector3f to, ColorRGBA color) {
+        drawLine(from.x, from.y, from.z, to.x, to.y, to.z, color);
+    }
+
+    public void drawLine(float x1, float y1, float z1, float x2, float y2, float z2, ColorRGBA color) {
+        if (!isEnabled()) {
+            return;
+        }
+        lines.add(x1, y1, z1, color);
+        lines.add(x2, y2, z2, color);
+    }
+
+    /**
+     * Draws an arrow from one point to another, with a head of lines at the end.
+     *
+     * @param from  the start of the arrow
+     * @param to    the tip of the arrow
+     * @param color the color of the arrow
+     */
+    public void drawArrow(Vector3f from, Vector3f to, ColorRGBA color) {
+        drawLine(from, to, color);
+
+        float dx = to.x - from.x;
+        float dy = to.y - from.y;
+        float dz = to.z - from.z;
+        float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0) {
+            return;
+        }
+
+        // two vectors perpendicular to the direction, crossed with the axis that is the least parallel
+        float ax = Math.abs(dx) < Math.abs(dy) && Math.abs(dx) < Math.abs(dz) ? 1 : 0;
+        float ay = ax == 0 && Math.abs(dy) < Math.abs(dz) ? 1 : 0;
+        float az = ax == 0 && ay == 0 ? 1 : 0;
+        vector.set(dy * az - dz * ay, dz * ax - dx * az, dx * ay - dy * ax).normalizeLocal().multLocal(length * ARROW_HEAD_WIDTH);
+        float px = vector.x;
+        float py = vector.y;
+        float pz = vector.z;
+        vector.set(dy * pz - dz * py, dz * px - dx * pz, dx * py - dy * px).normalizeLocal().multLocal(length * ARROW_HEAD_WIDTH);
+
+        float bx = to.x - dx * ARROW_HEAD_LENGTH;
+        float by = to.y - dy * ARROW_HEAD_LENGTH;
+        float bz = to.z - dz * ARROW_HEAD_LENGTH;
+        drawLine(to.x, to.y, to.z, bx + px, by + py, bz + pz, color);
+        drawLine(to.x, to.y, to.z, bx - px, by - py, bz - pz, color);
+        drawLine(to.x, to.y, to.z, bx + vector.x, by + vector.y, bz + vector.z, color);
+        drawLine(to.x, to.y, to.z, bx - vector.x, by - vector.y, bz - vector.z, color);
+    }
+
+    /**
+     * Draws the edges of an axis aligned box.
+     *
+     * @param center  the center of the box
+     * @param extents the half size of the box along each axis
+     * @param color   the color of the edges
+     */
+    public void drawBox(Vector3f center, Vector3f extents, ColorRGBA color) {
+        for (int i = 0; i < 4; i++) {
+            // the 4 edges along each axis, at the 4 combinations of the other two axes
+            float a = (i & 1) == 0 ? -1 : 1;
+            float b = (i & 2) == 0 ? -1 : 1;
+            drawLine(center.x - extents.x, center.y + a * extents.y, center.z + b * extents.z,
+                    center.x + extents.x, center.y + a * extents.y, center.z + b * extents.z, color);
+            drawLine(center.x + a * extents.x, center.y - extents.y, center.z + b * extents.z,
+                    center.x + a * extents.x, center.y + extents.y, center.z + b * extents.z, color);
+            drawLine(center.x + a * extents.x, center.y + b * extents.y, center.z - extents.z,
+                    center.x + a * extents.x, center.y + b * extents.y, center.z + extents.z, color);
+        }
+    }
+
+    /**
+     * Draws a solid axis aligned box.
+     *
+     * @param center  the center of the box
+     * @param extents the half size of the box along each axis
+     * @param color   the color of the box
+     */
+    public void drawSolidBox(Vector3f center, Vector3f extents, ColorRGBA color) {
+        for (int axis = 0; axis < 3; axis++) {
+            for (float side = -1; side <= 1; side += 2) {
+                for (int i = 0; i < 4; i++) {
+                    // flipping the second coordinate on the negative side keeps the winding counter clockwise
+                    setFaceCorner(center, extents, axis, side, FACE_CORNERS[i * 2], FACE_CORNERS[i * 2 + 1] * side, i);
+                }
+                drawTriangle(quadCorners[0], quadCorners[1], quadCorners[2], color);
+                drawTriangle(quadCorners[0], quadCorners[2], quadCorners[3], color);
+            }
+        }
+    }
+
+    public void drawTriangle(Vector3f a, Vector3f b, Vector3f c, ColorRGBA color) {
+        if (!isEnabled()) {
+            return;
+        }
+        triangles.add(a.x, a.y, a.z, color);
+        triangles.add(b.x, b.y, b.z, color);
+        triangles.add(c.x, c.y, c.z, color);
+    }
+
+    /**
+     * Draws 3 lines through the point, along the axes.
+     *
+     * @param point the point
+     * @param size  the length of the lines
+     * @param color the color of the lines
+     */
+    public void drawCross(Vector3f point, float size, ColorRGBA color) {
+        float half = size / 2;
+        drawLine(point.x - half, point.y, point.z, point.x + half, point.y, point.z, color);
+        drawLine(point.x, point.y - half, point.z, point.x, point.y + half, point.z, color);
+        drawLine(point.x, point.y, point.z - half, point.x, point.y, point.z + half, color);
+    }
+
+    /**
+     * Draws 3 arrows that represent the coordinate axes, like {@link GeometryUtils#createCoordinateAxes()}. The red
+     * arrow represents the X axis, the green arrow the Y axis and the blue arrow the Z axis.
+     *
+     * @param origin the origin of the axes
+     * @param size   the length of the arrows
+     */
+    public void drawAxes(Vector3f origin, float size) {
+        drawAxis(origin, size, 0, 0, ColorRGBA.Red);
+        drawAxis(origin, 0, size, 0, ColorRGBA.Green);
+        drawAxis(origin, 0, 0, size, ColorRGBA.Blue);
+    }
+
+    /**
+     * @return the number of line vertices drawn in the current frame
+     */
+    public int getLineVertexCount() {
+        return lines.vertexCount;
+    }
+
+    /**
+     * @return the number of triangle vertices drawn in the current frame
+     */
+    public int getTriangleVertexCount() {
+        return triangles.vertexCount;
+    }
+
+    private void drawAxis(Vector3f origin, float x, float y, float z, ColorRGBA color) {
+        drawArrow(origin, axisTip.set(origin.x + x, origin.y + y, origin.z + z), color);
+    }
+
+    private void setFaceCorner(Vector3f center, Vector3f extents, int axis, float side, float u, float v, int corner) {
+        offset[axis] = side;
+        offset[(axis + 1) % 3] = u;
+        offset[(axis + 2) % 3] = v;
+        quadCorners[corner].set(center.x + offset[0] * extents.x, center.y + offset[1] * extents.y, center.z + offset[2] * extents.z);
+    }
+
+    /**
+     * The vertices of one mesh. The positions and colors are collected in arrays during the frame and copied to the
+     * vertex buffers when the frame is flushed. The arrays and the buffers grow by doubling and are never shrunk.
+     */
+    static class Batch {
+
+        private final Mesh mesh = new Mesh();
+        private final Geometry geometry;
+        private float[] positions = new float[3 * 256];
+        private float[] colors = new float[4 * 256];
+        private FloatBuffer positionBuffer;
+        private FloatBuffer colorBuffer;
+        private int vertexCount;
+
+        Batch(String name, Mesh.Mode mode) {
+            mesh.setMode(mode);
+            mesh.setStreamed();
+            geometry = new Geometry(name, mesh);
+            // the bounds of the mesh aren't updated every frame
+            geometry.setCullHint(Spatial.CullHint.Always);
+            geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
+        }
+
+        void add(float x, float y, float z, ColorRGBA color) {
+            if (vertexCount * 3 == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                colors = Arrays.copyOf(colors, colors.length * 2);
+            }
+            int p = vertexCount * 3;
+            positions[p] = x;
+            positions[p + 1] = y;
+            positions[p + 2] = z;
+            int c = vertexCount * 4;
+            colors[c] = color.r;
+            colors[c + 1] = color.g;
+            colors[c + 2] = color.b;
+            colors[c + 3] = color.a;
+            vertexCount++;
+        }
+
+        /**
+         * Copies the vertices to the vertex buffers of the mesh and clears the batch.
+         */
+        void flush() {
+            if (vertexCount == 0) {
+                geometry.setCullHint(Spatial.CullHint.Always);
+                return;
+            }
+
+            boolean grown = positionBuffer == null || positionBuffer.capacity() < vertexCount * 3;
+            if (grown) {
+                destroy();
+                int capacity = positions.length / 3;
+                positionBuffer = BufferUtils.createFloatBuffer(capacity * 3);
+                colorBuffer = BufferUtils.createFloatBuffer(capacity * 4);
+            }
+            Buffers.clear(positionBuffer);
+            positionBuffer.put(positions, 0, vertexCount * 3);
+            Buffers.flip(positionBuffer);
+            Buffers.clear(colorBuffer);
+            colorBuffer.put(colors, 0, vertexCount * 4);
+            Buffers.flip(colorBuffer);
+
+            // updates the data of the existing vertex buffers, or creates them the first time
+            mesh.setBuffer(VertexBuffer.Type.Position, 3, positionBuffer);
+            mesh.setBuffer(VertexBuffer.Type.Color, 4, colorBuffer);
+            mesh.updateCounts();
+            geometry.setCullHint(Spatial.CullHint.Never);
+            vertexCount = 0;
+        }
+
+        /**
+         * Drops the vertices that are added since the last flush.
+         */
+        void clear() {
+            vertexCount = 0;
+        }
+
+        void destroy() {
+            if (positionBuffer != null) {
+                BufferUtils.destroyDirectBuffer(positionBuffer);
+                BufferUtils.destroyDirectBuffer(colorBuffer);
+                positionBuffer = null;
+                colorBuffer = null;
+            }
+        }
+
+        FloatBuffer getPositionBuffer() {
+            return positionBuffer;
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.image.MjpegAviWriter;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records a sequence of captured frames to an image sequence or to a Motion JPEG AVI file. The recorder holds a ring of
+ * preallocated capture buffers. The render thread takes a free buffer, reads the framebuffer into it and hands it to
+ * the recorder thread that encodes and writes the frame. No objects are created on the render thread per frame.
+ * When all buffers are in use, the render thread waits for a free buffer or the frame is dropped, depending on the
+ * {@link ScreenshotState.QueueFullPolicy}.
+ * <p>
+ * When the recorder thread fails, the recording is stopped: frames that are captured but not yet written are returned
+ * to the buffer pool and the render thread no longer waits for free frames.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+class FrameRecorder {
+
+    /**
+     * The time in milliseconds the render thread waits for a free frame before it checks if the recording stopped.
+     */
+    private static final long ACQUIRE_TIMEOUT = 100;
+
+    private final Path path;
+    private final ScreenshotState.RecordingFormat recordingFormat;
+    private final float framesPerSecond;
+    private final float jpegQuality;
+    private final ImageEncoder encoder;
+    private final DirectBufferPool bufferPool;
+    private final CaptureStageTimer stageTimer;
+    private final ScreenshotState.QueueFullPolicy queueFullPolicy;
+    private final BlockingQueue<Frame> freeFrames;
+    private final BlockingQueue<Frame> capturedFrames;
+    private final Frame endOfStream = new Frame(null);
+    private final CompletableFuture<Path> result = new CompletableFuture<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong writtenFrames = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean stopped;
+    private volatile boolean failed;
+    private int frameNumber;
+    private MjpegAviWriter aviWriter;
+    private ImageWriter jpegWriter;
+    private ByteArrayOutputStream jpegOutput;
+    private BufferedImage rgbImage;
+
+    FrameRecorder(Path path, ScreenshotState.RecordingFormat recordingFormat, float framesPerSecond, float jpegQuality,
+                  ImageEncoder encoder, DirectBufferPool bufferPool, int bufferCount, int bufferSize,
+                  ScreenshotState.QueueFullPolicy queueFullPolicy, CaptureStageTimer stageTimer) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid frame rate " + framesPerSecond + " specified!");
+        }
+        if (bufferCount < 1) {
+            throw new IllegalArgumentException("Invalid buffer count " + bufferCount + " specified!");
+        }
+        this.path = path;
+        this.recordingFormat = recordingFormat;
+        this.framesPerSecond = framesPerSecond;
+        this.jpegQuality = jpegQuality;
+        this.encoder = encoder;
+        this.bufferPool = bufferPool;
+        this.queueFullPolicy = queueFullPolicy;
+        this.stageTimer = stageTimer;
+        this.freeFrames = new ArrayBlockingQueue<>(bufferCount);
+        // one extra slot for the end of stream marker
+        this.capturedFrames = new ArrayBlockingQueue<>(bufferCount + 1);
+        for (int i = 0; i < bufferCount; i++) {
+            freeFrames.add(new Frame(bufferPool.acquire(bufferSize)));
+        }
+
+        this.thread = new Thread(this::run, "screenshot-recorder");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Returns a free frame with a buffer of at least the given size. When all frames are in use, this method blocks or
+     * returns null depending on the queue full policy. A dropped frame is counted.
+     *
+     * @param size the required size in bytes
+     * @return a frame or null when the frame should be dropped
+     */
+    Frame acquire(int size) {
+        if (stopped) {
+            return null;
+        }
+
+        Frame frame = freeFrames.poll();
+        if (frame == null && queueFullPolicy == ScreenshotState.QueueFullPolicy.BLOCK) {
+            frame = waitForFreeFrame();
+        }
+        if (frame == null) {
+            if (stopped) {
+                return null;
+            }
+            droppedFrames.incrementAndGet();
+            return null;
+        }
+
+        if (frame.buffer.capacity() < size) {
+            // only happens when the framebuffer is resized during the recording
+            bufferPool.release(frame.buffer);
+            frame.buffer = bufferPool.acquire(size);
+        }
+        Buffers.clear(frame.buffer);
+        Buffers.limit(frame.buffer, size);
+        return frame;
+    }
+
+    /**
+     * Hands a filled frame to the recorder thread. When the recording is stopped, the frame is not written and its
+     * buffer is returned to the buffer pool.
+     *
+     * @param frame   the frame
+     * @param format  format of the captured data
+     * @param width   width of the capture
+     * @param height  height of the capture
+     * @param repeats number of frame intervals this frame covers, 1 when the application keeps up with the frame rate
+     * @return true when the frame is queued to be written
+     */
+    boolean submit(Frame frame, Image.Format format, int width, int height, int repeats) {
+        frame.format = format;
+        frame.width = width;
+        frame.height = height;
+        frame.repeats = repeats;
+        Buffers.rewind(frame.buffer);
+        synchronized (this) {
+            // stop() and the recorder thread set the flag under the same lock, so no frame is queued after they did
+            if (!stopped) {
+                capturedFrames.add(frame);
+                return true;
+            }
+        }
+        bufferPool.release(frame.buffer);
+        droppedFrames.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Stops the recording. The frames that are already captured are written before the file is closed.
+     *
+     * @return a future that completes with the path of the recording
+     */
+    synchronized CompletableFuture<Path> stop() {
+        if (!stopped) {
+            stopped = true;
+            capturedFrames.add(endOfStream);
+        }
+        return result;
+    }
+
+    /**
+     * @return true when the recorder thread failed and the recording is stopped
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    long getWrittenFrames() {
+        return writtenFrames.get();
+    }
+
+    float getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    private void run() {
+        try {
+            if (recordingFormat == ScreenshotState.RecordingFormat.IMAGE_SEQUENCE) {
+                Files.createDirectories(path);
+            }
+
+            Frame frame;
+            while ((frame = capturedFrames.take()) != endOfStream) {
+                try {
+                    writeFrame(frame);
+                } finally {
+                    freeFrames.add(frame);
+                }
+            }
+
+            close();
+            log.info("Recorded {} frames to {}, {} frames dropped", writtenFrames.get(), path, droppedFrames.get());
+            releaseBuffers();
+            result.complete(path);
+        } catch (Exception e) {
+            log.error("Unable to record to {}: {}", path, e.getMessage(), e);
+            failed = true;
+            closeSilently();
+            releaseBuffers();
+            result.completeExceptionally(e);
+        }
+    }
+
+    private void writeFrame(Frame frame) throws IOException {
+        Image image = new Image(frame.format, frame.width, frame.height, frame.buffer, ColorSpace.Linear);
+        if (recordingFormat == ScreenshotState.RecordingFormat.IMAGE_SEQUENCE) {
+            // skip frame numbers for frames the application didn't keep up with, so the numbering reflects the time
+            frameNumber += frame.repeats;
+            stageTimer.write(image, path.resolve(String.format(Locale.ROOT, "frame-%06d", frameNumber) + encoder.getExtension()), encoder);
+            writtenFrames.incrementAndGet();
+            return;
+        }
+
+        if (aviWriter == null) {
+            aviWriter = new MjpegAviWriter(path, frame.width, frame.height, framesPerSecond);
+        } else if (aviWriter.getWidth() != frame.width || aviWriter.getHeight() != frame.height) {
+            log.warn("Frame size changed to {}x{} during recording, dropping frame.", frame.width, frame.height);
+            droppedFrames.incrementAndGet();
+            return;
+        }
+
+        long start = System.nanoTime();
+        convertToRgb(ImageUtils.imageToBufferedImage(image));
+        stageTimer.stop(CaptureStage.CONVERSION, start);
+
+        start = System.nanoTime();
+        encodeJpeg();
+        stageTimer.stop(CaptureStage.ENCODE, start);
+
+        start = System.nanoTime();
+        try {
+            // repeat the frame when the application didn't keep up with the frame rate, to keep the video in sync
+            for (int i = 0; i < frame.repeats; i++) {
+                if (!aviWriter.writeFrame(jpegOutput.toByteArray(), 0, jpegOutput.size())) {
+                    droppedFrames.incrementAndGet();
+                    return;
+                }
+            }
+        } finally {
+            stageTimer.stop(CaptureStage.WRITE, start);
+        }
+        writtenFrames.incrementAndGet();
+    }
+
+    private void convertToRgb(BufferedImage image) {
+        if (rgbImage == null || rgbImage.getWidth() != image.getWidth() || rgbImage.getHeight() != image.getHeight()) {
+            rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        }
+
+        // the jpeg writer doesn't support an alpha channel
+        Graphics2D graphics = rgbImage.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+    }
+
+    private void encodeJpeg() throws IOException {
+        if (jpegWriter == null) {
+            jpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+            jpegOutput = new ByteArrayOutputStream();
+        }
+
+        ImageWriteParam param = jpegWriter.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        jpegOutput.reset();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(jpegOutput)) {
+            jpegWriter.setOutput(out);
+            jpegWriter.write(null, new IIOImage(rgbImage, null, null), param);
+        }
+    }
+
+    private void close() throws IOException {
+        if (jpegWriter != null) {
+            jpegWriter.dispose();
+        }
+        if (aviWriter != null) {
+            aviWriter.close();
+        }
+    }
+
+    private void closeSilently() {
+        try {
+            close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stops the recording and returns the buffers of the free frames and of the frames that are not written to the
+     * buffer pool. The frames that are in use by the render thread are released when they are submitted.
+     */
+    private synchronized void releaseBuffers() {
+        stopped = true;
+        Frame frame;
+        while ((frame = freeFrames.poll()) != null) {
+            bufferPool.release(frame.buffer);
+        }
+        while ((frame = capturedFrames.poll()) != null) {
+            if (frame != endOfStream) {
+                bufferPool.release(frame.buffer);
+            }
+        }
+    }
+
+    /**
+     * Waits for a free frame until one is available or the recording is stopped.
+     */
+    private Frame waitForFreeFrame() {
+        try {
+            Frame frame = null;
+            while (frame == null && !stopped) {
+                frame = freeFrames.poll(ACQUIRE_TIMEOUT, TimeUnit.MILLISECONDS);
+            }
+            return frame;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * A preallocated capture buffer with the properties of the captured frame.
+     */
+    static class Frame {
+
+        private ByteBuffer buffer;
+        private Image.Format format;
+        private int width;
+        private int height;
+        private int repeats;
+
+        private Frame(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        ByteBuffer getBuffer() {
+            return buffer;
+        }
+
+    }
+
+}
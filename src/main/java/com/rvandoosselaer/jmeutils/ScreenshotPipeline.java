@@ -0,0 +1,198 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A background pipeline that converts, processes, encodes and writes captured framebuffers and their thumbnails. The
+ * render thread only reads the framebuffer into one of the pooled direct buffers and hands it over to the pipeline. A
+ * bounded pool of worker threads does the rest of the work.
+ * The number of buffers in the pool is the queue depth of the pipeline: when all buffers are in use, the
+ * {@link ScreenshotState.QueueFullPolicy} decides if the render thread waits for a free buffer or if the capture is
+ * dropped.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+class ScreenshotPipeline {
+
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    private final int queueDepth;
+    private final ScreenshotState.QueueFullPolicy queueFullPolicy;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private final ExecutorService executor;
+    private final DirectBufferPool bufferPool;
+    private int allocatedBuffers;
+
+    ScreenshotPipeline(int queueDepth, int workerThreads, ScreenshotState.QueueFullPolicy queueFullPolicy,
+                       DirectBufferPool bufferPool) {
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("Invalid queue depth " + queueDepth + " specified!");
+        }
+        if (workerThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of worker threads " + workerThreads + " specified!");
+        }
+        this.queueDepth = queueDepth;
+        this.queueFullPolicy = queueFullPolicy;
+        this.freeBuffers = new ArrayBlockingQueue<>(queueDepth);
+        this.bufferPool = bufferPool;
+
+        int pool = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "screenshot-" + pool + "-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a direct buffer of at least the given size from the pipeline. When all buffers are in use, this method
+     * blocks or returns null, depending on the queue full policy.
+     *
+     * @param size the required size in bytes
+     * @return a buffer with the limit set to the requested size, or null when the capture should be dropped
+     */
+    ByteBuffer acquire(int size) {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            synchronized (this) {
+                if (allocatedBuffers < queueDepth) {
+                    allocatedBuffers++;
+                    return bufferPool.acquire(size);
+                }
+            }
+            buffer = queueFullPolicy == ScreenshotState.QueueFullPolicy.BLOCK ? take() : null;
+            if (buffer == null) {
+                return null;
+            }
+        }
+
+        if (buffer.capacity() < size) {
+            // the framebuffer was resized or the format changed since this buffer was created
+            bufferPool.release(buffer);
+            buffer = bufferPool.acquire(size);
+        }
+
+        return prepareBuffer(buffer, size);
+    }
+
+    /**
+     * Submits a filled buffer to the worker pool. The buffer is returned to the pool when the image is written.
+     *
+     * @param buffer          the buffer holding the captured framebuffer
+     * @param format          format of the captured data
+     * @param width           width of the capture
+     * @param height          height of the capture
+     * @param processFunction optional function to process the image before it's written
+     * @param encoder         the encoder
+     * @param thumbnails      the thumbnails to write next to the image
+     * @param path            the file to write to
+     * @param stageTimer      the timer that records the duration of the stages
+     * @return a future that completes with the path when the image is written, or completes exceptionally when the
+     * pipeline is shut down
+     */
+    CompletableFuture<Path> submit(ByteBuffer buffer, Image.Format format, int width, int height,
+                                   Function<Image, Image> processFunction, ImageEncoder encoder,
+                                   List<ScreenshotThumbnail> thumbnails, Path path, CaptureStageTimer stageTimer) {
+        try {
+            return supplyAsync(buffer, format, width, height, processFunction, encoder, thumbnails, path, stageTimer);
+        } catch (RejectedExecutionException e) {
+            log.warn("Screenshot pipeline is shut down, dropping screenshot {}", path);
+            release(buffer);
+            CompletableFuture<Path> result = new CompletableFuture<>();
+            result.completeExceptionally(e);
+            return result;
+        }
+    }
+
+    private CompletableFuture<Path> supplyAsync(ByteBuffer buffer, Image.Format format, int width, int height,
+                                                Function<Image, Image> processFunction, ImageEncoder encoder,
+                                                List<ScreenshotThumbnail> thumbnails, Path path,
+                                                CaptureStageTimer stageTimer) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Image image = new Image(format, width, height, buffer, ColorSpace.Linear);
+                if (processFunction != null) {
+                    long start = System.nanoTime();
+                    Image processed = processFunction.apply(image);
+                    image = processed != null ? processed : image;
+                    Buffers.rewind(buffer);
+                    stageTimer.stop(CaptureStage.PROCESS, start);
+                }
+
+                log.info("Saving screenshot to {}", path);
+                stageTimer.write(image, path, encoder);
+                ScreenshotThumbnail.writeThumbnails(image, path, encoder.getExtension(), thumbnails);
+                return path;
+            } catch (Exception e) {
+                log.error("Unable to save screenshot to {}: {}", path, e.getMessage(), e);
+                throw new IllegalStateException("Unable to save screenshot to " + path, e);
+            } finally {
+                release(buffer);
+            }
+        }, executor);
+    }
+
+    /**
+     * Stops accepting new work, waits for the pending screenshots to be written and returns the buffers to the buffer
+     * pool.
+     */
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("Timeout while waiting for pending screenshots to be written.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        ByteBuffer buffer;
+        while ((buffer = freeBuffers.poll()) != null) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private void release(ByteBuffer buffer) {
+        if (executor.isShutdown() || !freeBuffers.offer(buffer)) {
+            bufferPool.release(buffer);
+        }
+    }
+
+    private ByteBuffer take() {
+        try {
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static ByteBuffer prepareBuffer(ByteBuffer buffer, int size) {
+        Buffers.clear(buffer);
+        Buffers.limit(buffer, size);
+        return buffer;
+    }
+
+}
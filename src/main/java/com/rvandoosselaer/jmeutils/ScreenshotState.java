@@ -5,6 +5,7 @@ import com.jme3.app.state.AppState;
 import com.jme3.app.state.AppStateManager;
 import com.jme3.post.SceneProcessor;
 import com.jme3.profile.AppProfiler;
+import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
 import com.jme3.renderer.ViewPort;
@@ -12,19 +13,32 @@ import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
 import com.jme3.texture.image.ColorSpace;
-import com.jme3.util.BufferUtils;
+import com.rvandoosselaer.jmeutils.image.ChannelOrder;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.image.ImageEncoders;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.image.StreamingImageEncoder;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
 import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import com.rvandoosselaer.jmeutils.util.RollingStatistics;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import java.nio.Buffer;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 /**
@@ -32,7 +46,33 @@ import java.util.function.Function;
  * uses a SceneProcessor that is attached to the last post view port. Make sure it is attached after all the post
  * view ports are created.
  * <p>
- * An optional processImage function can be set to process the image before it's written.
+ * A capture region can be set to only read back and write a part of the framebuffer, e.g. the bounds of a panel or
+ * the view port of a camera, see {@link CaptureRegion}.
+ * <p>
+ * An optional processImage function can be set to process the image before it's written. Thumbnails of the
+ * screenshot can be added, they are created from the same captured image and written next to the screenshot.
+ * <p>
+ * By default the image is converted, encoded and written on the render thread. When the state is set to be
+ * asynchronous, the render thread only reads the framebuffer into a pooled buffer and the rest of the work is done by
+ * a pool of background worker threads. The queue depth, the number of workers and the policy when the queue is full
+ * should be set before the state is initialized.
+ * <p>
+ * The screenshots are written as PNG by default. Another encoder can be set, or looked up by the name of the output
+ * format with {@link #setOutputFormat(String)}. The "png8" format quantizes the captures to a palette of 256 colors,
+ * on the background workers when the state is asynchronous.
+ * <p>
+ * The state can also record continuously at a target frame rate to an image sequence or a Motion JPEG AVI file. The
+ * recording uses a ring of preallocated capture buffers and a dedicated recorder thread. When the recorder can't keep
+ * up, the render thread waits for a free buffer or the frame is dropped and counted, depending on the recording queue
+ * full policy.
+ * <p>
+ * Screenshots larger than the framebuffer can be taken with {@link #takeTiledScreenshot(int, int)}. The scene is
+ * rendered in a grid of tiles, one tile per frame, by narrowing the frustum of the camera of the application. The tiles
+ * are stitched and streamed to disk by an encoder thread, the whole image is never held in memory.
+ * <p>
+ * The duration of each {@link CaptureStage} is kept in rolling statistics and reported to the registered
+ * {@link CaptureStageListener}s. The stages that run on the render thread are also marked as sub steps in the
+ * {@link AppProfiler} of the application.
  *
  * @author: rvandoosselaer
  */
@@ -41,7 +81,9 @@ import java.util.function.Function;
 public class ScreenshotState implements AppState {
 
     private final Path directory;
-    private boolean capture;
+    private final AtomicReference<CompletableFuture<Path>> screenshot = new AtomicReference<>();
+    private final AtomicReference<TiledScreenshot> tiledScreenshot = new AtomicReference<>();
+    private Camera camera;
     private ViewPort screenshotProcessorViewPort;
     private ScreenshotProcessor screenshotProcessor;
     private boolean initialized;
@@ -62,7 +104,59 @@ public class ScreenshotState implements AppState {
     @Getter
     @Setter
     private String defaultFilename = "Screenshot";
-    private final String extension = ".png";
+    /**
+     * The encoder of the screenshots and image sequence recordings. The QOI and raw encoders are a lot faster than
+     * PNG, the captures can be converted to PNG afterwards with the
+     * {@link com.rvandoosselaer.jmeutils.image.CaptureConverter}. The
+     * {@link com.rvandoosselaer.jmeutils.image.PalettePngEncoder} writes smaller palette PNG files, tiled screenshots
+     * are written in true color.
+     */
+    @Getter
+    @Setter
+    private ImageEncoder encoder = new PngEncoder();
+    /**
+     * The region of the framebuffer that is captured, or null to capture the whole framebuffer. The parts of the region
+     * outside the framebuffer are ignored.
+     */
+    @Getter
+    @Setter
+    private volatile CaptureRegion captureRegion;
+    /**
+     * The thumbnails that are written next to each screenshot.
+     */
+    private final List<ScreenshotThumbnail> thumbnails = new CopyOnWriteArrayList<>();
+    @Getter
+    @Setter
+    private boolean asynchronous = false;
+    @Getter
+    @Setter
+    private int queueDepth = 2;
+    @Getter
+    @Setter
+    private int workerThreads = 1;
+    @Getter
+    @Setter
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.BLOCK;
+    private ScreenshotPipeline pipeline;
+    /**
+     * The pool of the capture buffers. Should be set before the state is initialized.
+     */
+    @Getter
+    @Setter
+    private DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+    @Getter
+    @Setter
+    private int recordingBufferCount = 4;
+    @Getter
+    @Setter
+    private float jpegQuality = 0.9f;
+    @Getter
+    @Setter
+    private QueueFullPolicy recordingQueueFullPolicy = QueueFullPolicy.DROP;
+    private volatile FrameRecorder recorder;
+    private final CaptureStageTimer stageTimer = new CaptureStageTimer();
+    private float recordingTime;
+    private int pendingRecordingFrames;
 
     @Override
     public void initialize(AppStateManager stateManager, Application app) {
@@ -72,6 +166,7 @@ public class ScreenshotState implements AppState {
             throw new IllegalStateException("No post view ports available.");
         }
         screenshotProcessorViewPort = postViewPorts.get(postViewPorts.size() - 1);
+        camera = app.getCamera();
 
         screenshotProcessor = new ScreenshotProcessor();
         screenshotProcessorViewPort.addProcessor(screenshotProcessor);
@@ -110,7 +205,18 @@ public class ScreenshotState implements AppState {
 
     @Override
     public void update(float tpf) {
+        FrameRecorder recorder = this.recorder;
+        if (recorder == null) {
+            return;
+        }
 
+        float frameInterval = 1f / recorder.getFramesPerSecond();
+        recordingTime += tpf;
+        if (recordingTime >= frameInterval) {
+            int frames = (int) (recordingTime / frameInterval);
+            recordingTime -= frames * frameInterval;
+            pendingRecordingFrames += frames;
+        }
     }
 
     @Override
@@ -126,11 +232,165 @@ public class ScreenshotState implements AppState {
     @Override
     public void cleanup() {
         screenshotProcessorViewPort.removeProcessor(screenshotProcessor);
+        stopRecording();
+        TiledScreenshot tiled = tiledScreenshot.getAndSet(null);
+        if (tiled != null) {
+            tiled.cancel("the screenshot state is cleaned up");
+        }
+        CompletableFuture<Path> pending = screenshot.getAndSet(null);
+        if (pending != null) {
+            pending.completeExceptionally(new IllegalStateException("Screenshot cancelled: the screenshot state is cleaned up"));
+        }
+        if (pipeline != null) {
+            pipeline.shutdown();
+            pipeline = null;
+        }
         initialized = false;
     }
 
-    public void takeScreenshot() {
-        this.capture = true;
+    /**
+     * Captures the framebuffer at the end of the current frame. When a screenshot is already requested for this
+     * frame, the future of the pending screenshot is returned.
+     *
+     * @return a future that completes with the path of the written image
+     */
+    public CompletableFuture<Path> takeScreenshot() {
+        return screenshot.updateAndGet(pending -> pending != null ? pending : new CompletableFuture<>());
+    }
+
+    /**
+     * Captures a screenshot at a multiple of the resolution of the framebuffer, e.g. 4x4 tiles for a 16K screenshot
+     * with a 4K framebuffer. The capture starts at the end of the current frame and takes one frame per tile. While
+     * the tiles are rendered, other screenshots and recorded frames are postponed. The screenshot is written with
+     * the encoder of the state when it can stream the image, otherwise it is written as PNG. When a tiled screenshot
+     * is already in progress, the future of that screenshot is returned.
+     * <p>
+     * Only the camera of the application is changed per tile. Effects that depend on the screen space, like some
+     * post processing filters, and the gui are rendered per tile and can show seams.
+     *
+     * @param columns the number of tiles in the width of the screenshot
+     * @param rows    the number of tiles in the height of the screenshot
+     * @return a future that completes with the path of the written image
+     */
+    public CompletableFuture<Path> takeTiledScreenshot(int columns, int rows) {
+        TiledScreenshot request = new TiledScreenshot(columns, rows);
+        return tiledScreenshot.updateAndGet(pending -> pending != null ? pending : request).getResult();
+    }
+
+    /**
+     * Starts recording frames at the given frame rate. An image sequence is written as numbered files in the given
+     * directory with the encoder of the state, an AVI recording is written to the given file. A running recording is
+     * stopped first.
+     *
+     * @param path            the directory for an image sequence or the file for an AVI recording
+     * @param recordingFormat the output format
+     * @param framesPerSecond the target frame rate
+     */
+    public void startRecording(Path path, RecordingFormat recordingFormat, float framesPerSecond) {
+        stopRecording();
+
+        log.info("Start recording {} at {} fps to {}", recordingFormat, framesPerSecond, path);
+        int bufferSize = 0;
+        if (screenshotProcessor != null && screenshotProcessor.isInitialized()) {
+            CaptureRegion region = screenshotProcessor.getClippedCaptureRegion();
+            bufferSize = screenshotProcessor.getImageBufferSize(region.getWidth(), region.getHeight(), format);
+        }
+        recordingTime = 0;
+        // capture the first frame right away
+        pendingRecordingFrames = 1;
+        recorder = new FrameRecorder(path, recordingFormat, framesPerSecond, jpegQuality, encoder,
+                bufferPool, recordingBufferCount, bufferSize, recordingQueueFullPolicy, stageTimer);
+    }
+
+    /**
+     * Stops the recording. The captured frames that are not yet written are written before the file is closed.
+     *
+     * @return a future that completes with the path of the recording, or null when not recording
+     */
+    public CompletableFuture<Path> stopRecording() {
+        FrameRecorder recorder = this.recorder;
+        if (recorder == null) {
+            return null;
+        }
+
+        this.recorder = null;
+        pendingRecordingFrames = 0;
+        return recorder.stop();
+    }
+
+    public boolean isRecording() {
+        return recorder != null;
+    }
+
+    /**
+     * @return the number of frames dropped in the current recording, because the recorder couldn't keep up
+     */
+    public long getDroppedFrames() {
+        FrameRecorder recorder = this.recorder;
+        return recorder != null ? recorder.getDroppedFrames() : 0;
+    }
+
+    /**
+     * @return the number of frames written in the current recording
+     */
+    public long getRecordedFrames() {
+        FrameRecorder recorder = this.recorder;
+        return recorder != null ? recorder.getWrittenFrames() : 0;
+    }
+
+    /**
+     * Sets the encoder for the given output format, e.g. "png", "qoi" or "raw".
+     *
+     * @param outputFormat the name of the output format
+     * @throws IllegalArgumentException when no encoder is found for the format
+     */
+    public void setOutputFormat(String outputFormat) {
+        this.encoder = ImageEncoders.forName(outputFormat);
+    }
+
+    public String getOutputFormat() {
+        return encoder.getName();
+    }
+
+    /**
+     * Adds a thumbnail that is written next to each screenshot. The thumbnail isn't written for recorded frames.
+     *
+     * @param thumbnail the thumbnail
+     */
+    public void addThumbnail(ScreenshotThumbnail thumbnail) {
+        thumbnails.add(thumbnail);
+    }
+
+    public void removeThumbnail(ScreenshotThumbnail thumbnail) {
+        thumbnails.remove(thumbnail);
+    }
+
+    public List<ScreenshotThumbnail> getThumbnails() {
+        return Collections.unmodifiableList(thumbnails);
+    }
+
+    /**
+     * Adds a listener that is notified of the duration of each stage of a capture.
+     *
+     * @param listener the listener
+     */
+    public void addStageListener(CaptureStageListener listener) {
+        stageTimer.addListener(listener);
+    }
+
+    public void removeStageListener(CaptureStageListener listener) {
+        stageTimer.removeListener(listener);
+    }
+
+    /**
+     * Returns the rolling statistics of the durations of a stage, in nanoseconds, over the last
+     * {@value CaptureStageTimer#WINDOW_SIZE} captures.
+     *
+     * @param stage the stage
+     * @return the statistics of the stage
+     */
+    public RollingStatistics getStageStatistics(CaptureStage stage) {
+        return stageTimer.getStatistics(stage);
     }
 
     public void setFormat(Image.Format format) {
@@ -140,7 +400,7 @@ public class ScreenshotState implements AppState {
         }
     }
 
-    private String createFilename() {
+    private String createFilename(String extension) {
         if (filename != null && !filename.isEmpty()) {
             return filename + extension;
         }
@@ -152,12 +412,51 @@ public class ScreenshotState implements AppState {
         return filename + extension;
     }
 
+    private ScreenshotPipeline getPipeline() {
+        if (pipeline == null) {
+            pipeline = new ScreenshotPipeline(queueDepth, workerThreads, queueFullPolicy, bufferPool);
+        }
+        return pipeline;
+    }
+
+    /**
+     * The output format of a recording.
+     */
+    public enum RecordingFormat {
+        /**
+         * Numbered image files in a directory, written with the encoder of the state
+         */
+        IMAGE_SEQUENCE,
+        /**
+         * A Motion JPEG stream in an AVI file
+         */
+        MJPEG_AVI
+    }
+
+    /**
+     * The behaviour of an asynchronous screenshot state or a recording when all capture buffers are in use.
+     */
+    public enum QueueFullPolicy {
+        /**
+         * The render thread waits until a capture buffer is available
+         */
+        BLOCK,
+        /**
+         * The screenshot is dropped and the future completes exceptionally
+         */
+        DROP
+    }
+
     private class ScreenshotProcessor implements SceneProcessor {
 
         private Renderer renderer;
         private int width;
         private int height;
         private ByteBuffer imageBuffer;
+        private CaptureRegion frameRegion;
+        private CaptureRegion clippedRegionSource;
+        private CaptureRegion clippedRegion;
+        private AppProfiler profiler;
         private boolean initialized;
 
         @Override
@@ -166,15 +465,24 @@ public class ScreenshotState implements AppState {
             width = vp.getCamera().getWidth();
             height = vp.getCamera().getHeight();
             imageBuffer = createImageBuffer(width, height, format);
+            frameRegion = new CaptureRegion(0, 0, width, height);
 
             initialized = true;
         }
 
         @Override
         public void reshape(ViewPort vp, int w, int h) {
+            TiledScreenshot tiled = tiledScreenshot.get();
+            if (tiled != null && tiled.isStarted()) {
+                tiledScreenshot.set(null);
+                tiled.cancel("the framebuffer is resized");
+            }
             width = w;
             height = h;
+            bufferPool.release(imageBuffer);
             imageBuffer = createImageBuffer(w, h, format);
+            frameRegion = new CaptureRegion(0, 0, w, h);
+            clippedRegionSource = null;
         }
 
         @Override
@@ -192,48 +500,215 @@ public class ScreenshotState implements AppState {
 
         @Override
         public void postFrame(FrameBuffer out) {
-            if (!capture) {
+            TiledScreenshot tiled = tiledScreenshot.get();
+            if (tiled != null) {
+                // the frames of a tiled screenshot are rendered with the frustum of a tile
+                captureTile(tiled, out);
+                return;
+            }
+
+            FrameRecorder recorder = ScreenshotState.this.recorder;
+            if (recorder != null && recorder.isFailed()) {
+                // the result of the recording completed exceptionally, stop capturing frames
+                stopRecording();
+                recorder = null;
+            }
+            if (recorder != null && pendingRecordingFrames > 0) {
+                record(recorder, out);
+            }
+
+            CompletableFuture<Path> result = screenshot.getAndSet(null);
+            if (result == null) {
                 return;
             }
 
-            renderer.readFrameBufferWithFormat(out, imageBuffer, format);
-            Image image = new Image(format, width, height, imageBuffer, ColorSpace.Linear);
+            Path path = directory.resolve(createFilename(encoder.getExtension()));
+            if (asynchronous) {
+                captureAsynchronous(out, path, result);
+            } else {
+                capture(out, path, result);
+            }
+        }
+
+        private void record(FrameRecorder recorder, FrameBuffer out) {
+            CaptureRegion region = getClippedCaptureRegion();
+            FrameRecorder.Frame frame = recorder.acquire(getImageBufferSize(region.getWidth(), region.getHeight(), format));
+            if (frame != null) {
+                readFrameBufferTimed(out, frame.getBuffer(), region);
+                recorder.submit(frame, format, region.getWidth(), region.getHeight(), pendingRecordingFrames);
+            }
+            pendingRecordingFrames = 0;
+        }
+
+        private void capture(FrameBuffer out, Path path, CompletableFuture<Path> result) {
+            CaptureRegion region = getClippedCaptureRegion();
+            Buffers.clear(imageBuffer);
+            Buffers.limit(imageBuffer, getImageBufferSize(region.getWidth(), region.getHeight(), format));
+            readFrameBufferTimed(out, imageBuffer, region);
+            Image image = new Image(format, region.getWidth(), region.getHeight(), imageBuffer, ColorSpace.Linear);
             if (processFunction != null) {
-                processFunction.apply(image);
-                rewindBuffer(imageBuffer);
+                profileStage(CaptureStage.PROCESS);
+                long start = System.nanoTime();
+                Image processed = processFunction.apply(image);
+                image = processed != null ? processed : image;
+                Buffers.rewind(imageBuffer);
+                stageTimer.stop(CaptureStage.PROCESS, start);
             }
 
-            String filename = createFilename();
-            Path path = directory.resolve(filename);
             log.info("Saving screenshot to {}", path);
-            ImageUtils.writeImageSilently(image, path);
+            try {
+                // the encode and write stages are measured together by the timer
+                profileStage(CaptureStage.ENCODE);
+                stageTimer.write(image, path, encoder);
+                ScreenshotThumbnail.writeThumbnails(image, path, encoder.getExtension(), thumbnails);
+                result.complete(path);
+            } catch (IOException e) {
+                log.error(e.getMessage(), e);
+                result.completeExceptionally(e);
+            }
+        }
 
-            capture = false;
+        private void captureTile(TiledScreenshot tiled, FrameBuffer out) {
+            if (!tiled.isStarted()) {
+                startTiledScreenshot(tiled);
+                return;
+            }
+            if (tiled.isDone()) {
+                // the encoder failed
+                tiledScreenshot.set(null);
+                tiled.cancel("the encoder stopped");
+                return;
+            }
+            if (tiled.isQueueFull()) {
+                // render the same tile again next frame
+                return;
+            }
+
+            ByteBuffer buffer = tiled.acquireTileBuffer(format);
+            readFrameBufferTimed(out, buffer, frameRegion);
+            Buffers.rewind(buffer);
+            if (tiled.addTile(new Image(format, width, height, buffer, ColorSpace.Linear))) {
+                tiledScreenshot.set(null);
+            }
+        }
+
+        private void startTiledScreenshot(TiledScreenshot tiled) {
+            if (!ChannelOrder.isSupported(format)) {
+                tiledScreenshot.set(null);
+                tiled.getResult().completeExceptionally(new IllegalStateException(format + " is not supported for tiled screenshots."));
+                return;
+            }
+
+            StreamingImageEncoder streamingEncoder;
+            if (encoder instanceof StreamingImageEncoder) {
+                streamingEncoder = (StreamingImageEncoder) encoder;
+            } else {
+                log.warn("Encoder {} can't stream images, writing tiled screenshot as PNG.", encoder.getName());
+                streamingEncoder = new PngEncoder();
+            }
+            Path path = directory.resolve(createFilename(streamingEncoder.getExtension()));
+            tiled.start(camera, width, height, format, bufferPool, streamingEncoder, path);
+        }
+
+        private void captureAsynchronous(FrameBuffer out, Path path, CompletableFuture<Path> result) {
+            CaptureRegion region = getClippedCaptureRegion();
+            ByteBuffer buffer = getPipeline().acquire(getImageBufferSize(region.getWidth(), region.getHeight(), format));
+            if (buffer == null) {
+                log.warn("Screenshot queue is full, dropping screenshot {}", path);
+                result.completeExceptionally(new RejectedExecutionException("Screenshot queue is full"));
+                return;
+            }
+
+            readFrameBufferTimed(out, buffer, region);
+            Buffers.rewind(buffer);
+            getPipeline().submit(buffer, format, region.getWidth(), region.getHeight(), processFunction, encoder, new ArrayList<>(thumbnails), path, stageTimer)
+                    .whenComplete((written, throwable) -> {
+                        if (throwable != null) {
+                            result.completeExceptionally(throwable);
+                        } else {
+                            result.complete(written);
+                        }
+                    });
+        }
+
+        /**
+         * Reads the region of the framebuffer into the buffer and records the {@link CaptureStage#READBACK} stage.
+         */
+        private void readFrameBufferTimed(FrameBuffer out, ByteBuffer buffer, CaptureRegion region) {
+            profileStage(CaptureStage.READBACK);
+            long start = System.nanoTime();
+            readFrameBuffer(out, buffer, region);
+            stageTimer.stop(CaptureStage.READBACK, start);
+        }
+
+        private void profileStage(CaptureStage stage) {
+            if (profiler != null) {
+                profiler.appSubStep("ScreenshotState", stage.name());
+            }
+        }
+
+        /**
+         * Reads the region of the framebuffer into the buffer. The renderer reads the pixels of its current view port,
+         * so the view port is set to the region and restored afterwards.
+         */
+        private void readFrameBuffer(FrameBuffer out, ByteBuffer buffer, CaptureRegion region) {
+            if (region == frameRegion) {
+                renderer.readFrameBufferWithFormat(out, buffer, format);
+                return;
+            }
+
+            renderer.setViewPort(region.getX(), region.getY(), region.getWidth(), region.getHeight());
+            renderer.readFrameBufferWithFormat(out, buffer, format);
+            renderer.setViewPort(0, 0, width, height);
+        }
+
+        /**
+         * Returns the capture region clipped to the framebuffer. The clipped region is cached, so no objects are
+         * created per frame. When no region is set or the region is outside the framebuffer, the whole framebuffer is
+         * captured.
+         */
+        private CaptureRegion getClippedCaptureRegion() {
+            CaptureRegion region = captureRegion;
+            if (region == null) {
+                return frameRegion;
+            }
+
+            if (region != clippedRegionSource) {
+                clippedRegionSource = region;
+                clippedRegion = region.clip(width, height);
+                if (clippedRegion == null) {
+                    log.warn("Capture region {}x{} at {}, {} is outside the framebuffer, capturing the whole framebuffer.",
+                            region.getWidth(), region.getHeight(), region.getX(), region.getY());
+                } else if (clippedRegion.getWidth() == width && clippedRegion.getHeight() == height) {
+                    clippedRegion = frameRegion;
+                }
+            }
+            return clippedRegion != null ? clippedRegion : frameRegion;
         }
 
         @Override
         public void cleanup() {
-            BufferUtils.destroyDirectBuffer(imageBuffer);
+            bufferPool.release(imageBuffer);
+            imageBuffer = null;
             initialized = false;
         }
 
         @Override
         public void setProfiler(AppProfiler profiler) {
+            this.profiler = profiler;
         }
 
         public void formatUpdated() {
+            bufferPool.release(imageBuffer);
             imageBuffer = createImageBuffer(width, height, format);
         }
 
         private ByteBuffer createImageBuffer(int width, int height, Image.Format imageFormat) {
-            return BufferUtils.createByteBuffer(width * height * (int) Math.ceil(imageFormat.getBitsPerPixel() / 8.0));
+            return bufferPool.acquire(getImageBufferSize(width, height, imageFormat));
         }
 
-        private void rewindBuffer(Buffer buffer) {
-            // Since JDK 9, ByteBuffer class overrides some methods and their return type in the Buffer class. To
-            // ensure compatibility with JDK 8, calling the 'rewindBuffer' method forces using the
-            // JDK 8 Buffer's methods signature, and avoids explicit casts.
-            buffer.rewind();
+        private int getImageBufferSize(int width, int height, Image.Format imageFormat) {
+            return ImageUtils.getImageSize(imageFormat, width, height);
         }
 
     }
@@ -0,0 +1,107 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A downscaled copy of a screenshot that is written next to the screenshot. The thumbnail is created from the
+ * captured image with a mip-style box filter: the image is halved until it fits in the maximum size of the thumbnail.
+ * The size of the thumbnail is between half the maximum size and the maximum size.
+ * <p>
+ * The thumbnail is written to a file with the name of the screenshot, followed by the suffix and the extension of the
+ * encoder of the thumbnail.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+@Getter
+public class ScreenshotThumbnail {
+
+    private final int maxWidth;
+    private final int maxHeight;
+    @Setter
+    private ImageEncoder encoder;
+    @Setter
+    private String suffix;
+
+    public ScreenshotThumbnail(int maxWidth, int maxHeight) {
+        this(maxWidth, maxHeight, new PngEncoder());
+    }
+
+    public ScreenshotThumbnail(int maxWidth, int maxHeight, ImageEncoder encoder) {
+        if (maxWidth < 1 || maxHeight < 1) {
+            throw new IllegalArgumentException("Invalid thumbnail size " + maxWidth + "x" + maxHeight + " specified!");
+        }
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.encoder = encoder;
+        this.suffix = "_" + maxWidth + "x" + maxHeight;
+    }
+
+    /**
+     * Returns the number of times an image of the given size is halved to fit in the maximum size.
+     *
+     * @param width  the width of the image
+     * @param height the height of the image
+     * @return the number of halvings
+     */
+    int getLevel(int width, int height) {
+        int level = 0;
+        while (((width >> level) > maxWidth || (height >> level) > maxHeight) && (width >> (level + 1)) > 0 && (height >> (level + 1)) > 0) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Creates and writes the thumbnails of the image. The image is halved once for every level of the mip chain that
+     * is needed, the thumbnails share the levels.
+     *
+     * @param image      the captured image
+     * @param path       the path of the screenshot
+     * @param extension  the extension of the screenshot, that is replaced by the suffix of the thumbnail
+     * @param thumbnails the thumbnails to write
+     * @throws IOException when writing a thumbnail fails
+     */
+    static void writeThumbnails(Image image, Path path, String extension, List<ScreenshotThumbnail> thumbnails) throws IOException {
+        if (thumbnails.isEmpty()) {
+            return;
+        }
+
+        String filename = path.getFileName().toString();
+        if (filename.endsWith(extension)) {
+            filename = filename.substring(0, filename.length() - extension.length());
+        }
+
+        List<Image> levels = new ArrayList<>();
+        levels.add(image);
+        try {
+            for (ScreenshotThumbnail thumbnail : thumbnails) {
+                int level = thumbnail.getLevel(image.getWidth(), image.getHeight());
+                while (levels.size() <= level) {
+                    levels.add(ImageUtils.createDownscaledImage(levels.get(levels.size() - 1), 2, DirectBufferPool.getDefault()));
+                }
+
+                Path thumbnailPath = path.resolveSibling(filename + thumbnail.suffix + thumbnail.encoder.getExtension());
+                log.debug("Saving thumbnail to {}", thumbnailPath);
+                ImageUtils.writeImage(levels.get(level), thumbnailPath, thumbnail.encoder);
+            }
+        } finally {
+            for (int i = 1; i < levels.size(); i++) {
+                ImageUtils.releaseImage(levels.get(i));
+            }
+        }
+    }
+
+}
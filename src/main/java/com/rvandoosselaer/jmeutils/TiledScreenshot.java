@@ -0,0 +1,175 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.renderer.Camera;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.image.StreamingImageEncoder;
+import com.rvandoosselaer.jmeutils.image.TileStitcher;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A screenshot at a multiple of the resolution of the framebuffer. The scene is rendered in a grid of tiles, one tile
+ * per frame, by narrowing the frustum of the camera to the part of the view of each tile. The tiles are read back on
+ * the render thread and stitched by an encoder thread that streams the rows of the image to disk. The render thread
+ * waits with the next tile when the encoder is more than one row of tiles behind, so at most two rows of tiles are
+ * kept in memory.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+class TiledScreenshot {
+
+    @Getter
+    private final int columns;
+    @Getter
+    private final int rows;
+    @Getter
+    private final CompletableFuture<Path> result = new CompletableFuture<>();
+    private Camera camera;
+    private float[] frustum;
+    private TileStitcher stitcher;
+    private DirectBufferPool bufferPool;
+    private int tileWidth;
+    private int tileHeight;
+    private int tile = -1;
+
+    TiledScreenshot(int columns, int rows) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Invalid number of tiles " + columns + "x" + rows + " specified!");
+        }
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    boolean isStarted() {
+        return tile >= 0;
+    }
+
+    /**
+     * @return true when the screenshot is written, or when the encoder failed
+     */
+    boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Starts the capture: the encoder thread is started and the frustum of the first tile is set on the camera.
+     *
+     * @param camera     the camera of the scene
+     * @param width      the width of the framebuffer
+     * @param height     the height of the framebuffer
+     * @param format     the format of the tiles
+     * @param bufferPool the pool of the tile buffers
+     * @param encoder    the encoder
+     * @param path       the file to write to
+     */
+    void start(Camera camera, int width, int height, Image.Format format, DirectBufferPool bufferPool,
+               StreamingImageEncoder encoder, Path path) {
+        this.camera = camera;
+        this.bufferPool = bufferPool;
+        this.tileWidth = width;
+        this.tileHeight = height;
+        this.frustum = new float[]{camera.getFrustumLeft(), camera.getFrustumRight(), camera.getFrustumTop(), camera.getFrustumBottom()};
+        this.stitcher = new TileStitcher(columns, rows, tileWidth, tileHeight, format, ColorSpace.Linear,
+                image -> bufferPool.release(image.getData(0)));
+
+        log.info("Saving {}x{} screenshot in {}x{} tiles to {}", columns * tileWidth, rows * tileHeight, columns, rows, path);
+        Thread thread = new Thread(() -> write(encoder, path), "screenshot-tiles");
+        thread.setDaemon(true);
+        thread.start();
+
+        tile = 0;
+        applyTileFrustum();
+    }
+
+    /**
+     * @return true when the encoder is too far behind to accept the next tile
+     */
+    boolean isQueueFull() {
+        return stitcher.getPendingTiles() >= 2 * columns;
+    }
+
+    /**
+     * @return a buffer for the tile that is rendered in the current frame
+     */
+    ByteBuffer acquireTileBuffer(Image.Format format) {
+        return bufferPool.acquire(tileWidth * tileHeight * format.getBitsPerPixel() / 8);
+    }
+
+    /**
+     * Adds the tile that is rendered in the current frame and sets the frustum of the next tile. The original frustum
+     * is restored after the last tile.
+     *
+     * @param image the tile
+     * @return true when all tiles are captured
+     */
+    boolean addTile(Image image) {
+        stitcher.addTile(tile % columns, tile / columns, image);
+        tile++;
+        if (tile == columns * rows) {
+            restoreFrustum();
+            return true;
+        }
+        applyTileFrustum();
+        return false;
+    }
+
+    /**
+     * Stops the capture, e.g. when the framebuffer is resized. The original frustum is restored.
+     *
+     * @param reason the reason
+     */
+    void cancel(String reason) {
+        log.warn("Tiled screenshot cancelled: {}", reason);
+        if (stitcher != null) {
+            stitcher.cancel();
+            restoreFrustum();
+        }
+        result.completeExceptionally(new IllegalStateException("Tiled screenshot cancelled: " + reason));
+    }
+
+    /**
+     * Returns the frustum of a tile. The frustum of the camera is divided in columns from left to right and rows from
+     * top to bottom.
+     *
+     * @param frustum the left, right, top and bottom of the frustum of the camera
+     * @return the left, right, top and bottom of the frustum of the tile
+     */
+    static float[] getTileFrustum(float[] frustum, int columns, int rows, int column, int row) {
+        float width = frustum[1] - frustum[0];
+        float height = frustum[2] - frustum[3];
+        return new float[]{
+                frustum[0] + width * column / columns,
+                frustum[0] + width * (column + 1) / columns,
+                frustum[2] - height * row / rows,
+                frustum[2] - height * (row + 1) / rows
+        };
+    }
+
+    private void applyTileFrustum() {
+        float[] tileFrustum = getTileFrustum(frustum, columns, rows, tile % columns, tile / columns);
+        camera.setFrustum(camera.getFrustumNear(), camera.getFrustumFar(), tileFrustum[0], tileFrustum[1], tileFrustum[2], tileFrustum[3]);
+    }
+
+    private void restoreFrustum() {
+        camera.setFrustum(camera.getFrustumNear(), camera.getFrustumFar(), frustum[0], frustum[1], frustum[2], frustum[3]);
+    }
+
+    private void write(StreamingImageEncoder encoder, Path path) {
+        try {
+            encoder.write(stitcher, path);
+            result.complete(path);
+        } catch (Exception e) {
+            log.error("Unable to save tiled screenshot to {}: {}", path, e.getMessage(), e);
+            stitcher.cancel();
+            result.completeExceptionally(e);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts the raw and QOI captures in a directory to PNG files. Capturing to raw or QOI keeps the frame time of a
+ * capture heavy session flat, the more expensive PNG encoding is done afterwards with this converter. The files are
+ * converted in parallel, one file per thread.
+ * <p>
+ * The converter can be run from the command line:
+ * <pre>
+ * java com.rvandoosselaer.jmeutils.image.CaptureConverter &lt;input directory&gt; [output directory] [--delete]
+ * </pre>
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+@Getter
+@Setter
+public class CaptureConverter {
+
+    /**
+     * The number of files that are converted at the same time.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Delete the raw and QOI files after they are successfully converted.
+     */
+    private boolean deleteSource = false;
+    /**
+     * The encoder settings of the PNG files.
+     */
+    private PngEncoder pngEncoder = createPngEncoder();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: CaptureConverter <input directory> [output directory] [--delete]");
+            System.exit(1);
+        }
+
+        CaptureConverter converter = new CaptureConverter();
+        Path input = Paths.get(args[0]);
+        Path output = input;
+        for (int i = 1; i < args.length; i++) {
+            if ("--delete".equals(args[i])) {
+                converter.setDeleteSource(true);
+            } else {
+                output = Paths.get(args[i]);
+            }
+        }
+
+        int converted = converter.convert(input, output);
+        System.out.println("Converted " + converted + " files.");
+    }
+
+    /**
+     * Converts all .raw and .qoi files in the input directory to PNG files in the output directory. A file that can't
+     * be converted is logged and skipped.
+     *
+     * @param input  the directory with the captures
+     * @param output the directory to write the PNG files to
+     * @return the number of converted files
+     * @throws IOException when the directories can't be read or created
+     */
+    public int convert(Path input, Path output) throws IOException {
+        Files.createDirectories(output);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(input, "*.{raw,qoi}")) {
+            stream.forEach(files::add);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(executor.submit(() -> convertFile(file, output)));
+            }
+
+            int converted = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    converted++;
+                }
+            }
+            return converted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while converting " + input, e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads a raw, QOI or PNG capture into a buffer of the default buffer pool.
+     *
+     * @param file the file to read
+     * @return the image
+     * @throws IOException when the file can't be read or isn't a supported capture
+     */
+    public static Image read(Path file) throws IOException {
+        return ImageDecoders.read(file, null);
+    }
+
+    private boolean convertFile(Path file, Path output) {
+        String name = file.getFileName().toString();
+        Path target = output.resolve(name.substring(0, name.lastIndexOf('.')) + pngEncoder.getExtension());
+        try {
+            Image image = read(file);
+            try {
+                pngEncoder.write(image, target);
+            } finally {
+                ImageUtils.releaseImage(image);
+            }
+            if (deleteSource) {
+                Files.delete(file);
+            }
+            log.debug("Converted {} to {}", file, target);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("Unable to convert {}: {}", file, e.getMessage(), e);
+            return false;
+        }
+    }
+
+    private static PngEncoder createPngEncoder() {
+        PngEncoder encoder = new PngEncoder();
+        // the files are already converted in parallel
+        encoder.setExecutor(null);
+        return encoder;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+
+/**
+ * Helper class with the layout of the channels in a pixel of the supported 8 bit image formats.
+ *
+ * @author rvandoosselaer
+ */
+public final class ChannelOrder {
+
+    private ChannelOrder() {
+    }
+
+    /**
+     * Returns the offset of the red, green, blue and optionally alpha channel in a pixel of the given format.
+     *
+     * @param format the image format
+     * @return the offsets of the channels, with a length of 3 or 4 when the format has an alpha channel
+     * @throws IllegalArgumentException when the format isn't supported
+     */
+    public static int[] of(Image.Format format) {
+        switch (format) {
+            case RGBA8:
+                return new int[]{0, 1, 2, 3};
+            case ABGR8:
+                return new int[]{3, 2, 1, 0};
+            case ARGB8:
+                return new int[]{1, 2, 3, 0};
+            case BGRA8:
+                return new int[]{2, 1, 0, 3};
+            case RGB8:
+                return new int[]{0, 1, 2};
+            case BGR8:
+                return new int[]{2, 1, 0};
+            default:
+                throw new IllegalArgumentException(format + " not yet supported.");
+        }
+    }
+
+    /**
+     * @param format the image format
+     * @return true when the channel layout of the format is known
+     */
+    public static boolean isSupported(Image.Format format) {
+        switch (format) {
+            case RGBA8:
+            case ABGR8:
+            case ARGB8:
+            case BGRA8:
+            case RGB8:
+            case BGR8:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A decoder that reads an image file into a jME {@link Image}. The rows are stored bottom-up in the buffer of the
+ * image, as expected by jME. The decoders are looked up by the header of the file with
+ * {@link ImageDecoders#forHeader(byte[], Image.Format)}.
+ *
+ * @author rvandoosselaer
+ */
+public interface ImageDecoder {
+
+    /**
+     * Decodes the stream into an image. The stream is not closed.
+     *
+     * @param in the input stream
+     * @return the decoded image
+     * @throws IOException when reading from the stream fails or when the stream isn't a valid image
+     */
+    Image decode(InputStream in) throws IOException;
+
+    /**
+     * Decodes the file into an image.
+     *
+     * @param path the file to read
+     * @return the decoded image
+     * @throws IOException when reading the file fails or when the file isn't a valid image
+     */
+    default Image read(Path path) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return decode(in);
+        }
+    }
+
+}
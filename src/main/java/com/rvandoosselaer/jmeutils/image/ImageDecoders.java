@@ -0,0 +1,95 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Looks up the {@link ImageDecoder} of an image by the first bytes of the file. PNG, QOI and raw images are supported.
+ *
+ * @author rvandoosselaer
+ */
+public class ImageDecoders {
+
+    /**
+     * The number of bytes needed to detect the format of an image.
+     */
+    public static final int HEADER_SIZE = 8;
+
+    private ImageDecoders() {
+    }
+
+    /**
+     * Returns a new decoder for the image that starts with the given bytes.
+     *
+     * @param header the first {@value #HEADER_SIZE} bytes of the image
+     * @param format the format of the decoded image, or null to use the format of the decoder
+     * @return a new decoder
+     * @throws IOException when the format of the image isn't supported
+     */
+    public static ImageDecoder forHeader(byte[] header, Image.Format format) throws IOException {
+        if (startsWith(header, PngEncoder.SIGNATURE)) {
+            PngDecoder decoder = new PngDecoder();
+            decoder.setFormat(format);
+            return decoder;
+        }
+        if (startsWith(header, QoiEncoder.MAGIC)) {
+            QoiDecoder decoder = new QoiDecoder();
+            decoder.setFormat(format);
+            return decoder;
+        }
+        if (startsWith(header, RawImageEncoder.MAGIC)) {
+            RawImageDecoder decoder = new RawImageDecoder();
+            decoder.setFormat(format);
+            return decoder;
+        }
+        throw new IOException("Unknown image format");
+    }
+
+    /**
+     * Decodes the stream with the decoder for the format of the image. The stream is not closed.
+     *
+     * @param in     the input stream, that supports mark and reset
+     * @param format the format of the decoded image, or null to use the format of the decoder
+     * @return the decoded image
+     * @throws IOException when reading from the stream fails or when the format of the image isn't supported
+     */
+    public static Image decode(InputStream in, Image.Format format) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        in.mark(HEADER_SIZE);
+        int length = 0;
+        int read;
+        while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+            length += read;
+        }
+        in.reset();
+
+        return forHeader(Arrays.copyOf(header, length), format).decode(in);
+    }
+
+    /**
+     * Decodes the file with the decoder for the format of the image.
+     *
+     * @param path   the file to read
+     * @param format the format of the decoded image, or null to use the format of the decoder
+     * @return the decoded image
+     * @throws IOException when reading the file fails or when the format of the image isn't supported
+     */
+    public static Image read(Path path, Image.Format format) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            return decode(in, format);
+        } catch (IOException e) {
+            throw new IOException("Unable to read " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean startsWith(byte[] header, byte[] magic) {
+        return header.length >= magic.length && Arrays.equals(Arrays.copyOf(header, magic.length), magic);
+    }
+
+}
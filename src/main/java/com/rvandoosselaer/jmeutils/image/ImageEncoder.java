@@ -0,0 +1,53 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An encoder that writes a jME {@link Image} to a file format. Implementations are looked up by name with
+ * {@link ImageEncoders#forName(String)}. Additional encoders can be registered as a service provider in
+ * {@code META-INF/services/com.rvandoosselaer.jmeutils.image.ImageEncoder}.
+ *
+ * @author rvandoosselaer
+ */
+public interface ImageEncoder {
+
+    /**
+     * @return the name of the format, e.g. "png"
+     */
+    String getName();
+
+    /**
+     * @return the file extension including the dot, e.g. ".png"
+     */
+    String getExtension();
+
+    /**
+     * Encodes the image and writes it to the output stream. The stream is not closed.
+     *
+     * @param image the image to encode
+     * @param out   the output stream
+     * @throws IOException when writing to the stream fails
+     */
+    void encode(Image image, OutputStream out) throws IOException;
+
+    /**
+     * Encodes the image and writes it to the file. Encoders can override this method to write to the file more
+     * efficiently.
+     *
+     * @param image the image to encode
+     * @param path  the file to write to
+     * @throws IOException when writing the file fails
+     */
+    default void write(Image image, Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            encode(image, out);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Looks up the available {@link ImageEncoder} implementations. The built-in PNG, palette PNG, QOI and raw
+ * encoders and any additional encoders are registered as service providers.
+ *
+ * @author rvandoosselaer
+ */
+public class ImageEncoders {
+
+    private ImageEncoders() {
+    }
+
+    /**
+     * Returns a new instance of the encoder for the given format name.
+     *
+     * @param name the name of the format, case insensitive
+     * @return a new encoder instance
+     * @throws IllegalArgumentException when no encoder is found for the format
+     */
+    public static ImageEncoder forName(String name) {
+        for (ImageEncoder encoder : ServiceLoader.load(ImageEncoder.class, ImageEncoders.class.getClassLoader())) {
+            if (encoder.getName().equalsIgnoreCase(name)) {
+                return encoder;
+            }
+        }
+        throw new IllegalArgumentException("No image encoder found for format '" + name + "'");
+    }
+
+    /**
+     * @return the names of all available formats
+     */
+    public static List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        for (ImageEncoder encoder : ServiceLoader.load(ImageEncoder.class, ImageEncoders.class.getClassLoader())) {
+            names.add(encoder.getName());
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A row source that reads the rows of a jME {@link Image} and swizzles them to RGB or RGBA. Rows of RGBA8 and RGB8
+ * images are copied without swizzling. Each instance reuses one row of scratch space, so it shouldn't be shared
+ * between threads.
+ *
+ * @author rvandoosselaer
+ */
+class ImageRowSource implements RowSource {
+
+    private final Image image;
+    private final SwizzlePlan plan;
+    private final int sourceChannels;
+    private final ByteBuffer source;
+    private final byte[] sourceRow;
+
+    ImageRowSource(Image image) {
+        this.image = image;
+        this.sourceChannels = ChannelOrder.of(image.getFormat()).length;
+        this.plan = SwizzlePlan.of(image.getFormat(), sourceChannels == 4 ? Image.Format.RGBA8 : Image.Format.RGB8);
+        this.source = image.getData(0).duplicate();
+        Buffers.clear(source);
+        this.sourceRow = plan.isIdentity() ? null : new byte[image.getWidth() * sourceChannels];
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public int getChannels() {
+        return sourceChannels;
+    }
+
+    @Override
+    public ColorSpace getColorSpace() {
+        return image.getColorSpace();
+    }
+
+    @Override
+    public void readRow(int y, byte[] row) {
+        readRow(y, row, 0);
+    }
+
+    /**
+     * Reads a row into the given array, starting at the offset.
+     */
+    void readRow(int y, byte[] row, int offset) {
+        int rowLength = image.getWidth() * sourceChannels;
+        // jME images are stored bottom-up
+        Buffers.position(source, (image.getHeight() - 1 - y) * rowLength);
+        if (plan.isIdentity()) {
+            source.get(row, offset, rowLength);
+            return;
+        }
+
+        source.get(sourceRow, 0, rowLength);
+        plan.convertRow(sourceRow, 0, row, offset, image.getWidth());
+    }
+
+}
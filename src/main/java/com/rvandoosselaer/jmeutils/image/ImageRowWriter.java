@@ -0,0 +1,73 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes 8 bit RGB or RGBA rows into a pooled buffer in one of the formats supported by {@link ChannelOrder}. This is
+ * the counterpart of the {@link ImageRowSource}: rows are numbered top-down and stored bottom-up. A missing alpha
+ * channel is written as opaque, an alpha channel that isn't supported by the format is dropped.
+ *
+ * @author rvandoosselaer
+ */
+class ImageRowWriter {
+
+    private final int width;
+    private final int height;
+    private final Image.Format format;
+    private final SwizzlePlan plan;
+    private final int targetChannels;
+    private final ByteBuffer buffer;
+    private final byte[] targetRow;
+
+    /**
+     * @param width    the width of the image
+     * @param height   the height of the image
+     * @param channels the number of channels of the rows, 3 or 4
+     * @param format   the format of the image
+     * @param pool     the pool of the buffer of the image
+     */
+    ImageRowWriter(int width, int height, int channels, Image.Format format, DirectBufferPool pool) {
+        this.width = width;
+        this.height = height;
+        this.format = format;
+        this.plan = SwizzlePlan.of(channels == 4 ? Image.Format.RGBA8 : Image.Format.RGB8, format);
+        this.targetChannels = plan.getTargetChannels();
+        this.buffer = pool.acquire(width * height * targetChannels);
+        this.targetRow = plan.isIdentity() ? null : new byte[width * targetChannels];
+    }
+
+    /**
+     * @param y   the row, 0 is the top row
+     * @param row the row in RGB or RGBA order
+     */
+    void writeRow(int y, byte[] row) {
+        int rowLength = width * targetChannels;
+        // jME images are stored bottom-up
+        Buffers.position(buffer, (height - 1 - y) * rowLength);
+        if (plan.isIdentity()) {
+            buffer.put(row, 0, rowLength);
+            return;
+        }
+
+        plan.convertRow(row, 0, targetRow, 0, width);
+        buffer.put(targetRow, 0, rowLength);
+    }
+
+    Image getImage(ColorSpace colorSpace) {
+        Buffers.rewind(buffer);
+        return new Image(format, width, height, buffer, colorSpace);
+    }
+
+    /**
+     * Returns the buffer to the pool, when decoding fails.
+     */
+    void release(DirectBufferPool pool) {
+        pool.release(buffer);
+    }
+
+}
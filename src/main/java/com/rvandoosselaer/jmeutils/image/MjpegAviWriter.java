@@ -0,0 +1,195 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a sequence of JPEG encoded frames as a Motion JPEG stream in an AVI (RIFF) container. The headers are
+ * written when the file is opened and updated with the final frame count when the writer is closed. The index is kept
+ * in memory and appended to the file on close.
+ * <p>
+ * The AVI 1.0 format is limited to files of 2GB, frames are no longer written when this limit is reached.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+public class MjpegAviWriter implements Closeable {
+
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+    private static final int HEADER_SIZE = 224;
+    private static final int MOVI_OFFSET = 220;
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIIF_KEYFRAME = 0x10;
+    private static final byte[] FRAME_CHUNK_ID = fourCC("00dc");
+
+    private final FileChannel channel;
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    @Getter
+    private final float framesPerSecond;
+    private final ByteBuffer chunkHeader = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer padding = ByteBuffer.allocate(1);
+    // offset and size of each frame, relative to the movi list
+    private int[] index = new int[256];
+    @Getter
+    private int frames;
+    private int maxFrameSize;
+    private long position = HEADER_SIZE;
+
+    public MjpegAviWriter(Path path, int width, int height, float framesPerSecond) throws IOException {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height + " specified!");
+        }
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid frame rate " + framesPerSecond + " specified!");
+        }
+        this.width = width;
+        this.height = height;
+        this.framesPerSecond = framesPerSecond;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        writeFully(createHeader(false), 0);
+    }
+
+    /**
+     * Appends a JPEG encoded frame to the stream.
+     *
+     * @param jpeg   the buffer holding the encoded frame
+     * @param offset offset of the frame in the buffer
+     * @param length length of the encoded frame
+     * @return true when the frame is written, false when the file size limit is reached
+     * @throws IOException when writing fails
+     */
+    public boolean writeFrame(byte[] jpeg, int offset, int length) throws IOException {
+        int paddedLength = length + (length & 1);
+        if (position + 8 + paddedLength + (frames + 1) * 16L + 8 > MAX_FILE_SIZE) {
+            log.warn("AVI file size limit reached, frame {} is not written.", frames);
+            return false;
+        }
+
+        if (frames * 2 == index.length) {
+            index = Arrays.copyOf(index, index.length * 2);
+        }
+        index[frames * 2] = (int) (position - MOVI_OFFSET);
+        index[frames * 2 + 1] = length;
+
+        Buffers.clear(chunkHeader);
+        chunkHeader.put(FRAME_CHUNK_ID).putInt(length);
+        Buffers.flip(chunkHeader);
+        writeFully(chunkHeader, position);
+        writeFully(ByteBuffer.wrap(jpeg, offset, length), position + 8);
+        if (paddedLength != length) {
+            Buffers.clear(padding);
+            writeFully(padding, position + 8 + length);
+        }
+
+        position += 8 + paddedLength;
+        maxFrameSize = Math.max(maxFrameSize, length);
+        frames++;
+        return true;
+    }
+
+    /**
+     * Writes the index and updates the headers with the final frame count and sizes.
+     *
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            ByteBuffer idx = ByteBuffer.allocate(8 + frames * 16).order(ByteOrder.LITTLE_ENDIAN);
+            idx.put(fourCC("idx1")).putInt(frames * 16);
+            for (int i = 0; i < frames; i++) {
+                idx.put(FRAME_CHUNK_ID).putInt(AVIIF_KEYFRAME).putInt(index[i * 2]).putInt(index[i * 2 + 1]);
+            }
+            Buffers.flip(idx);
+            writeFully(idx, position);
+
+            writeFully(createHeader(true), 0);
+            channel.truncate(position + idx.limit());
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer createHeader(boolean indexed) {
+        int microSecondsPerFrame = Math.round(1_000_000 / framesPerSecond);
+        int moviSize = (int) (position - MOVI_OFFSET);
+        int fileSize = (int) (position + (indexed ? 8 + frames * 16 : 0) - 8);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(fourCC("RIFF")).putInt(fileSize).put(fourCC("AVI "));
+        header.put(fourCC("LIST")).putInt(192).put(fourCC("hdrl"));
+
+        // main header
+        header.put(fourCC("avih")).putInt(56);
+        header.putInt(microSecondsPerFrame);
+        header.putInt(Math.round(maxFrameSize * framesPerSecond));
+        header.putInt(0); // padding granularity
+        header.putInt(AVIF_HASINDEX);
+        header.putInt(frames);
+        header.putInt(0); // initial frames
+        header.putInt(1); // streams
+        header.putInt(maxFrameSize);
+        header.putInt(width);
+        header.putInt(height);
+        header.putInt(0).putInt(0).putInt(0).putInt(0); // reserved
+
+        header.put(fourCC("LIST")).putInt(116).put(fourCC("strl"));
+
+        // stream header
+        header.put(fourCC("strh")).putInt(56);
+        header.put(fourCC("vids")).put(fourCC("MJPG"));
+        header.putInt(0); // flags
+        header.putShort((short) 0).putShort((short) 0); // priority, language
+        header.putInt(0); // initial frames
+        header.putInt(1000); // scale
+        header.putInt(Math.round(framesPerSecond * 1000)); // rate
+        header.putInt(0); // start
+        header.putInt(frames); // length
+        header.putInt(maxFrameSize);
+        header.putInt(-1); // quality
+        header.putInt(0); // sample size
+        header.putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+
+        // stream format
+        header.put(fourCC("strf")).putInt(40);
+        header.putInt(40);
+        header.putInt(width);
+        header.putInt(height);
+        header.putShort((short) 1); // planes
+        header.putShort((short) 24); // bit count
+        header.put(fourCC("MJPG"));
+        header.putInt(width * height * 3);
+        header.putInt(0).putInt(0).putInt(0).putInt(0);
+
+        header.put(fourCC("LIST")).putInt(moviSize).put(fourCC("movi"));
+        Buffers.flip(header);
+        return header;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private static byte[] fourCC(String code) {
+        return code.getBytes(StandardCharsets.US_ASCII);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.image.ColorSpace;
+import lombok.Getter;
+
+/**
+ * An image with at most 256 colors, stored as a palette and one palette index per pixel. The
+ * {@link PngEncoder} writes a palette image as an indexed PNG, other encoders read the rows as RGB or RGBA colors.
+ * Rows are numbered top-down, like a {@link RowSource}. Reading rows doesn't change the image, so it can be shared
+ * between threads.
+ *
+ * @author rvandoosselaer
+ */
+public class PaletteImage implements RowSource {
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+    private final int[] palette;
+    private final byte[] indices;
+    /**
+     * 3 when the colors are read as RGB rows, 4 for RGBA rows.
+     */
+    @Getter
+    private final int channels;
+    @Getter
+    private final ColorSpace colorSpace;
+    /**
+     * True when the palette holds every color of the original image, so no colors were lost.
+     */
+    @Getter
+    private final boolean exact;
+
+    /**
+     * Creates a palette image. The arrays are used as is and shouldn't be modified afterwards.
+     *
+     * @param width      the width of the image
+     * @param height     the height of the image
+     * @param palette    the colors of the palette, packed as 0xRRGGBBAA
+     * @param indices    the palette index of each pixel, row by row from the top
+     * @param channels   3 to read the colors as RGB rows, 4 for RGBA rows
+     * @param colorSpace the color space of the colors
+     * @param exact      true when the palette holds every color of the original image
+     */
+    public PaletteImage(int width, int height, int[] palette, byte[] indices, int channels, ColorSpace colorSpace, boolean exact) {
+        if (palette.length < 1 || palette.length > 256) {
+            throw new IllegalArgumentException("Invalid palette size " + palette.length + " specified!");
+        }
+        if (indices.length != width * height) {
+            throw new IllegalArgumentException("Invalid number of indices " + indices.length + " for a " + width + "x" + height + " image!");
+        }
+        if (channels != 3 && channels != 4) {
+            throw new IllegalArgumentException("Invalid number of channels " + channels + " specified!");
+        }
+        this.width = width;
+        this.height = height;
+        this.palette = palette;
+        this.indices = indices;
+        this.channels = channels;
+        this.colorSpace = colorSpace;
+        this.exact = exact;
+    }
+
+    /**
+     * @return a copy of the colors of the palette, packed as 0xRRGGBBAA
+     */
+    public int[] getPalette() {
+        return palette.clone();
+    }
+
+    /**
+     * Returns a copy of the palette index of each pixel, row by row from the top. Use
+     * {@link #readIndexRow(int, byte[])} to read the indices without copying the whole image.
+     *
+     * @return a copy of the indices
+     */
+    public byte[] getIndices() {
+        return indices.clone();
+    }
+
+    public int getColorCount() {
+        return palette.length;
+    }
+
+    /**
+     * @return true when one of the colors of the palette isn't opaque
+     */
+    public boolean isTranslucent() {
+        for (int color : palette) {
+            if ((color & 0xFF) != 0xFF) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the palette indices of a row into the given array.
+     *
+     * @param y   the row, 0 is the top row
+     * @param row the destination, with a length of at least width
+     */
+    public void readIndexRow(int y, byte[] row) {
+        System.arraycopy(indices, y * width, row, 0, width);
+    }
+
+    @Override
+    public void readRow(int y, byte[] row) {
+        for (int x = 0, i = y * width, offset = 0; x < width; x++, i++, offset += channels) {
+            int color = palette[indices[i] & 0xFF];
+            row[offset] = (byte) (color >>> 24);
+            row[offset + 1] = (byte) (color >>> 16);
+            row[offset + 2] = (byte) (color >>> 8);
+            if (channels == 4) {
+                row[offset + 3] = (byte) color;
+            }
+        }
+    }
+
+}
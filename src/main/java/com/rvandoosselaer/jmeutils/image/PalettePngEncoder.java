@@ -0,0 +1,23 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.rvandoosselaer.jmeutils.util.ColorQuantizer;
+
+/**
+ * A {@link PngEncoder} that quantizes images to a palette of at most 256 colors and writes them as indexed PNG
+ * files. Captures of user interfaces and flat shaded scenes are usually written without losing a color, in a
+ * fraction of the size of a true color PNG. The encoder is registered as the "png8" format.
+ *
+ * @author rvandoosselaer
+ */
+public class PalettePngEncoder extends PngEncoder {
+
+    public PalettePngEncoder() {
+        setQuantizer(new ColorQuantizer());
+    }
+
+    @Override
+    public String getName() {
+        return "png8";
+    }
+
+}
@@ -0,0 +1,440 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A PNG decoder that decodes the rows straight into a pooled direct buffer, without creating an AWT image. The rows are
+ * stored bottom-up in the buffer of the image, as expected by jME.
+ * <p>
+ * All color types and bit depths of non-interlaced images are supported. 16 bit samples are reduced to 8 bit, gray
+ * and palette images are expanded to RGB. Images with an alpha channel or a transparent color are decoded as RGBA8,
+ * other images as RGB8, unless a format is set. The CRCs of the chunks are not verified.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class PngDecoder implements ImageDecoder {
+
+    private static final int COLOR_TYPE_GRAY = 0;
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_GRAY_ALPHA = 4;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The format of the decoded images, one of the formats supported by {@link ChannelOrder}, or null to decode to
+     * RGBA8 or RGB8 depending on the image.
+     */
+    private Image.Format format;
+    /**
+     * The pool of the buffers of the decoded images.
+     */
+    private DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+
+    /**
+     * Decodes the PNG stream into an image. The stream is read up to the end of the image data and is not closed.
+     *
+     * @param in the input stream
+     * @return the decoded image, in the sRGB color space
+     * @throws IOException when reading from the stream fails or when the stream isn't a supported PNG image
+     */
+    @Override
+    public Image decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] signature = new byte[8];
+        data.readFully(signature);
+        if (!Arrays.equals(signature, PngEncoder.SIGNATURE)) {
+            throw new IOException("Not a PNG image");
+        }
+
+        int length = data.readInt();
+        if (!"IHDR".equals(readType(data)) || length != 13) {
+            throw new IOException("Invalid PNG header");
+        }
+        Header header = new Header(data.readInt(), data.readInt(), data.readUnsignedByte(), data.readUnsignedByte());
+        int compression = data.readUnsignedByte();
+        int filter = data.readUnsignedByte();
+        int interlace = data.readUnsignedByte();
+        skipFully(data, 4);
+        if (compression != 0 || filter != 0) {
+            throw new IOException("Unsupported PNG compression " + compression + " or filter method " + filter);
+        }
+        if (interlace != 0) {
+            throw new IOException("Interlaced PNG images are not supported");
+        }
+        header.validate();
+
+        // the chunks before the image data
+        String type;
+        while (!"IDAT".equals(type = readType(data, length = data.readInt()))) {
+            if ("PLTE".equals(type)) {
+                header.palette = readChunk(data, length);
+            } else if ("tRNS".equals(type)) {
+                header.transparency = readChunk(data, length);
+            } else if ("IEND".equals(type)) {
+                throw new IOException("PNG image without image data");
+            } else {
+                skipFully(data, length + 4);
+            }
+        }
+        if (header.colorType == COLOR_TYPE_PALETTE && header.palette == null) {
+            throw new IOException("PNG palette image without palette");
+        }
+
+        int channels = header.hasAlpha() ? 4 : 3;
+        Image.Format imageFormat = format != null ? format : channels == 4 ? Image.Format.RGBA8 : Image.Format.RGB8;
+        ImageRowWriter writer = new ImageRowWriter(header.width, header.height, channels, imageFormat, bufferPool);
+        Inflater inflater = new Inflater();
+        try {
+            InputStream pixels = new InflaterInputStream(new ImageDataInputStream(data, length), inflater, BUFFER_SIZE);
+            decodeRows(pixels, header, channels, writer);
+        } catch (IOException | RuntimeException e) {
+            writer.release(bufferPool);
+            throw e;
+        } finally {
+            inflater.end();
+        }
+        return writer.getImage(ColorSpace.sRGB);
+    }
+
+    private static void decodeRows(InputStream pixels, Header header, int channels, ImageRowWriter writer) throws IOException {
+        int bitsPerPixel = header.getSamplesPerPixel() * header.bitDepth;
+        int stride = (header.width * bitsPerPixel + 7) / 8;
+        // the distance to the corresponding byte of the previous pixel
+        int bpp = Math.max(1, bitsPerPixel / 8);
+
+        byte[] scanline = new byte[stride + 1];
+        byte[] previous = new byte[stride + 1];
+        byte[] row = new byte[header.width * channels];
+        for (int y = 0; y < header.height; y++) {
+            readFully(pixels, scanline);
+            unfilter(scanline, previous, bpp);
+            header.expand(scanline, row);
+            writer.writeRow(y, row);
+
+            byte[] swap = previous;
+            previous = scanline;
+            scanline = swap;
+        }
+    }
+
+    /**
+     * Reverses the filter of a scanline in place. The first byte of the scanline is the filter type.
+     */
+    private static void unfilter(byte[] line, byte[] previous, int bpp) throws IOException {
+        int length = line.length;
+        switch (line[0]) {
+            case 0:
+                break;
+            case 1:
+                for (int i = 1 + bpp; i < length; i++) {
+                    line[i] += line[i - bpp];
+                }
+                break;
+            case 2:
+                for (int i = 1; i < length; i++) {
+                    line[i] += previous[i];
+                }
+                break;
+            case 3:
+                for (int i = 1; i < 1 + bpp && i < length; i++) {
+                    line[i] += (previous[i] & 0xFF) >>> 1;
+                }
+                for (int i = 1 + bpp; i < length; i++) {
+                    line[i] += ((line[i - bpp] & 0xFF) + (previous[i] & 0xFF)) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 1; i < 1 + bpp && i < length; i++) {
+                    line[i] += previous[i];
+                }
+                for (int i = 1 + bpp; i < length; i++) {
+                    line[i] += paeth(line[i - bpp] & 0xFF, previous[i] & 0xFF, previous[i - bpp] & 0xFF);
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + line[0]);
+        }
+    }
+
+    private static int paeth(int left, int up, int upLeft) {
+        int p = left + up - upLeft;
+        int pLeft = Math.abs(p - left);
+        int pUp = Math.abs(p - up);
+        int pUpLeft = Math.abs(p - upLeft);
+        if (pLeft <= pUp && pLeft <= pUpLeft) {
+            return left;
+        }
+        return pUp <= pUpLeft ? up : upLeft;
+    }
+
+    private static String readType(DataInputStream data) throws IOException {
+        byte[] type = new byte[4];
+        data.readFully(type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private static String readType(DataInputStream data, int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid PNG chunk length " + length);
+        }
+        return readType(data);
+    }
+
+    private static byte[] readChunk(DataInputStream data, int length) throws IOException {
+        byte[] chunk = new byte[length];
+        data.readFully(chunk);
+        skipFully(data, 4);
+        return chunk;
+    }
+
+    private static void skipFully(DataInputStream data, int length) throws IOException {
+        if (data.skipBytes(length) != length) {
+            throw new EOFException("Unexpected end of PNG stream");
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG image data");
+            }
+            total += read;
+        }
+    }
+
+    /**
+     * The properties of the image and the conversion of a scanline to 8 bit RGB or RGBA.
+     */
+    private static class Header {
+
+        private final int width;
+        private final int height;
+        private final int bitDepth;
+        private final int colorType;
+        private byte[] palette;
+        private byte[] transparency;
+
+        Header(int width, int height, int bitDepth, int colorType) {
+            this.width = width;
+            this.height = height;
+            this.bitDepth = bitDepth;
+            this.colorType = colorType;
+        }
+
+        void validate() throws IOException {
+            boolean valid;
+            switch (colorType) {
+                case COLOR_TYPE_GRAY:
+                    valid = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8 || bitDepth == 16;
+                    break;
+                case COLOR_TYPE_PALETTE:
+                    valid = bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+                    break;
+                case COLOR_TYPE_RGB:
+                case COLOR_TYPE_GRAY_ALPHA:
+                case COLOR_TYPE_RGBA:
+                    valid = bitDepth == 8 || bitDepth == 16;
+                    break;
+                default:
+                    valid = false;
+            }
+            if (!valid || width <= 0 || height <= 0 || (long) width * height * 4 > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported PNG image " + width + "x" + height + ", color type " + colorType + ", bit depth " + bitDepth);
+            }
+        }
+
+        int getSamplesPerPixel() {
+            switch (colorType) {
+                case COLOR_TYPE_RGB:
+                    return 3;
+                case COLOR_TYPE_GRAY_ALPHA:
+                    return 2;
+                case COLOR_TYPE_RGBA:
+                    return 4;
+                default:
+                    return 1;
+            }
+        }
+
+        boolean hasAlpha() {
+            return colorType == COLOR_TYPE_GRAY_ALPHA || colorType == COLOR_TYPE_RGBA || transparency != null;
+        }
+
+        /**
+         * Converts an unfiltered scanline, starting at index 1, to 8 bit RGB or RGBA.
+         */
+        void expand(byte[] line, byte[] row) {
+            int channels = hasAlpha() ? 4 : 3;
+            if (bitDepth == 8 && transparency == null && (colorType == COLOR_TYPE_RGBA || colorType == COLOR_TYPE_RGB)) {
+                System.arraycopy(line, 1, row, 0, row.length);
+                return;
+            }
+
+            int samples = getSamplesPerPixel();
+            for (int x = 0, i = 0; x < width; x++, i += channels) {
+                switch (colorType) {
+                    case COLOR_TYPE_PALETTE: {
+                        int index = getSample(line, x);
+                        int p = index * 3;
+                        if (p + 2 < palette.length) {
+                            row[i] = palette[p];
+                            row[i + 1] = palette[p + 1];
+                            row[i + 2] = palette[p + 2];
+                        } else {
+                            row[i] = row[i + 1] = row[i + 2] = 0;
+                        }
+                        if (channels == 4) {
+                            row[i + 3] = index < transparency.length ? transparency[index] : (byte) 0xFF;
+                        }
+                        break;
+                    }
+                    case COLOR_TYPE_GRAY: {
+                        int sample = getSample(line, x);
+                        byte gray = (byte) scale(sample);
+                        row[i] = row[i + 1] = row[i + 2] = gray;
+                        if (channels == 4) {
+                            row[i + 3] = (byte) (sample == getTransparentSample(0) ? 0 : 0xFF);
+                        }
+                        break;
+                    }
+                    case COLOR_TYPE_RGB: {
+                        int r = getSample(line, x * samples);
+                        int g = getSample(line, x * samples + 1);
+                        int b = getSample(line, x * samples + 2);
+                        row[i] = (byte) scale(r);
+                        row[i + 1] = (byte) scale(g);
+                        row[i + 2] = (byte) scale(b);
+                        if (channels == 4) {
+                            boolean transparent = r == getTransparentSample(0) && g == getTransparentSample(1) && b == getTransparentSample(2);
+                            row[i + 3] = (byte) (transparent ? 0 : 0xFF);
+                        }
+                        break;
+                    }
+                    case COLOR_TYPE_GRAY_ALPHA: {
+                        byte gray = (byte) scale(getSample(line, x * 2));
+                        row[i] = row[i + 1] = row[i + 2] = gray;
+                        row[i + 3] = (byte) scale(getSample(line, x * 2 + 1));
+                        break;
+                    }
+                    default: {
+                        for (int c = 0; c < 4; c++) {
+                            row[i + c] = (byte) scale(getSample(line, x * 4 + c));
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the sample at the given index of the scanline, starting at index 1
+         */
+        private int getSample(byte[] line, int index) {
+            switch (bitDepth) {
+                case 8:
+                    return line[1 + index] & 0xFF;
+                case 16:
+                    return (line[1 + index * 2] & 0xFF) << 8 | line[2 + index * 2] & 0xFF;
+                default:
+                    int bit = index * bitDepth;
+                    int shift = 8 - bitDepth - (bit & 7);
+                    return (line[1 + (bit >>> 3)] >>> shift) & ((1 << bitDepth) - 1);
+            }
+        }
+
+        /**
+         * Scales a sample to 8 bit.
+         */
+        private int scale(int sample) {
+            switch (bitDepth) {
+                case 1:
+                    return sample * 255;
+                case 2:
+                    return sample * 85;
+                case 4:
+                    return sample * 17;
+                case 16:
+                    return sample >>> 8;
+                default:
+                    return sample;
+            }
+        }
+
+        /**
+         * @return the transparent value of the sample from the tRNS chunk of a gray or RGB image, or -1
+         */
+        private int getTransparentSample(int index) {
+            if (transparency == null || transparency.length < index * 2 + 2) {
+                return -1;
+            }
+            return (transparency[index * 2] & 0xFF) << 8 | transparency[index * 2 + 1] & 0xFF;
+        }
+
+    }
+
+    /**
+     * Reads the data of consecutive IDAT chunks as one stream. The stream ends at the first chunk after the image
+     * data.
+     */
+    private static class ImageDataInputStream extends InputStream {
+
+        private final DataInputStream data;
+        private int remaining;
+        private boolean ended;
+
+        ImageDataInputStream(DataInputStream data, int length) {
+            this.data = data;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            while (remaining == 0) {
+                if (ended) {
+                    return -1;
+                }
+                // the crc of the current chunk and the header of the next chunk
+                skipFully(data, 4);
+                int length = data.readInt();
+                if (!"IDAT".equals(readType(data, length))) {
+                    ended = true;
+                    return -1;
+                }
+                remaining = length;
+            }
+
+            int read = data.read(b, off, Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG stream");
+            }
+            remaining -= read;
+            return read;
+        }
+
+    }
+
+}
@@ -0,0 +1,538 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.util.ColorQuantizer;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A PNG encoder that reads the pixels straight from the buffer of a jME {@link Image}. The rows are read bottom-up,
+ * so the image is written in the orientation it's displayed.
+ * <p>
+ * The deflate level and the row filter can be tuned to trade file size for encoding speed. Large images are split
+ * in chunks of rows that are filtered and compressed in parallel on the executor. Each chunk is compressed to a raw
+ * deflate block that ends on a byte boundary, so the chunks can be stitched together into one valid zlib stream.
+ * <p>
+ * Without an executor, and for images that fit in one chunk, the image is streamed: each row is filtered and fed to a
+ * single deflater, and the compressed data is written in IDAT chunks as soon as a chunk is full. Only a few rows are
+ * kept in memory, independent of the size of the image. A {@link RowSource} is always encoded this way, except a
+ * {@link PaletteImage} that is already in memory.
+ * <p>
+ * RGBA8, ABGR8, ARGB8 and BGRA8 images are written as 8 bit RGBA, RGB8 and BGR8 images as 8 bit RGB. A
+ * {@link PaletteImage} is written as an indexed PNG with a palette. When a {@link ColorQuantizer} is set, images are
+ * quantized to a palette first, which makes flat shaded scenes and user interfaces a lot smaller.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class PngEncoder implements StreamingImageEncoder {
+
+    static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_TYPE_RGB = 2;
+    private static final int COLOR_TYPE_PALETTE = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+    private static final int IDAT_SIZE = 64 * 1024;
+
+    /**
+     * The deflate level, from {@link Deflater#NO_COMPRESSION} (store) over {@link Deflater#BEST_SPEED} to
+     * {@link Deflater#BEST_COMPRESSION}.
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * The filter that is applied to each row before it's compressed.
+     */
+    private Filter filter = Filter.ADAPTIVE;
+    /**
+     * The number of uncompressed bytes in one chunk that is compressed in parallel.
+     */
+    private int chunkSize = 256 * 1024;
+    /**
+     * The executor used to compress the chunks, or null to encode the image on the calling thread.
+     */
+    private Executor executor = ForkJoinPool.commonPool();
+    /**
+     * The quantizer that reduces the colors of an image to a palette before it's encoded, or null to write the image
+     * in true color. Row sources are always written in true color.
+     */
+    private ColorQuantizer quantizer;
+
+    @Override
+    public String getName() {
+        return "png";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".png";
+    }
+
+    /**
+     * Encodes the image as PNG and writes it to the output stream. The stream is not closed.
+     *
+     * @param image the image to encode
+     * @param out   the output stream
+     * @throws IOException              when writing to the stream fails
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    @Override
+    public void encode(Image image, OutputStream out) throws IOException {
+        if (quantizer != null) {
+            encode(quantizer.quantize(image, executor), out);
+            return;
+        }
+
+        RowSource source = RowSource.of(image);
+        // each chunk reads the rows with its own source
+        encode(source, source.getChannels(), () -> RowSource.of(image)::readRow, out);
+    }
+
+    /**
+     * Encodes the palette image as an indexed PNG and writes it to the output stream. The stream is not closed.
+     *
+     * @param image the palette image
+     * @param out   the output stream
+     * @throws IOException when writing to the stream fails
+     */
+    public void encode(PaletteImage image, OutputStream out) throws IOException {
+        encode(image, 1, () -> image::readIndexRow, out);
+    }
+
+    /**
+     * Compresses the rows in parallel chunks, or streams them when the image fits in one chunk.
+     */
+    private void encode(RowSource source, int bytesPerPixel, Supplier<RowReader> readers, OutputStream out) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int rowStride = width * bytesPerPixel;
+
+        int rowsPerChunk = Math.max(1, chunkSize / (rowStride + 1));
+        int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+        if (executor == null || chunks == 1) {
+            stream(source, bytesPerPixel, readers.get(), out);
+            return;
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+        writeHeader(data, source);
+
+        List<CompletableFuture<CompressedChunk>> futures = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            int startRow = i * rowsPerChunk;
+            int endRow = Math.min(height, startRow + rowsPerChunk);
+            boolean last = endRow == height;
+            futures.add(CompletableFuture.supplyAsync(() -> compress(readers.get(), rowStride, bytesPerPixel, startRow, endRow, last), executor));
+        }
+
+        // zlib header: deflate with a 32K window, the level is only informative
+        writeChunk(data, "IDAT", new byte[]{0x78, getLevelFlag()}, 2);
+        long adler = 1;
+        for (CompletableFuture<CompressedChunk> future : futures) {
+            CompressedChunk chunk = join(future);
+            writeChunk(data, "IDAT", chunk.data.getBuffer(), chunk.data.size());
+            adler = combineAdler32(adler, chunk.adler, chunk.length);
+        }
+        writeChunk(data, "IDAT", new byte[]{(byte) (adler >>> 24), (byte) (adler >>> 16), (byte) (adler >>> 8), (byte) adler}, 4);
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    /**
+     * Encodes the rows of the source as PNG and writes them to the output stream. The rows are compressed on the
+     * calling thread and the compressed data is written as soon as an IDAT chunk is full. The stream is not closed.
+     *
+     * @param source the rows to encode
+     * @param out    the output stream
+     * @throws IOException when writing to the stream fails
+     */
+    @Override
+    public void encode(RowSource source, OutputStream out) throws IOException {
+        if (source instanceof PaletteImage) {
+            encode((PaletteImage) source, out);
+            return;
+        }
+        stream(source, source.getChannels(), source::readRow, out);
+    }
+
+    /**
+     * Streams the rows to a single deflater on the calling thread.
+     */
+    private void stream(RowSource source, int bytesPerPixel, RowReader reader, OutputStream out) throws IOException {
+        int height = source.getHeight();
+        int rowStride = source.getWidth() * bytesPerPixel;
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+        writeHeader(data, source);
+
+        byte[] row = new byte[rowStride];
+        byte[] previousRow = new byte[rowStride];
+        RowFilter rowFilter = new RowFilter(filter, rowStride, bytesPerPixel);
+        Deflater deflater = new Deflater(compressionLevel);
+        byte[] idat = new byte[IDAT_SIZE];
+        int length = 0;
+
+        try {
+            for (int y = 0; y < height; y++) {
+                reader.readRow(y, row);
+                byte[] filtered = rowFilter.apply(row, previousRow);
+
+                deflater.setInput(filtered, 0, rowStride + 1);
+                while (!deflater.needsInput()) {
+                    length = deflate(deflater, data, idat, length);
+                }
+
+                byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+            }
+
+            deflater.finish();
+            while (!deflater.finished()) {
+                length = deflate(deflater, data, idat, length);
+            }
+            if (length > 0) {
+                writeChunk(data, "IDAT", idat, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        writeChunk(data, "IEND", new byte[0], 0);
+        data.flush();
+    }
+
+    /**
+     * Deflates into the IDAT buffer and writes the buffer as an IDAT chunk when it's full.
+     *
+     * @return the number of bytes in the IDAT buffer
+     */
+    private static int deflate(Deflater deflater, DataOutputStream out, byte[] idat, int length) throws IOException {
+        length += deflater.deflate(idat, length, idat.length - length);
+        if (length == idat.length) {
+            writeChunk(out, "IDAT", idat, length);
+            return 0;
+        }
+        return length;
+    }
+
+    private CompressedChunk compress(RowReader source, int rowStride, int bytesPerPixel, int startRow, int endRow, boolean last) {
+        byte[] row = new byte[rowStride];
+        byte[] previousRow = new byte[rowStride];
+        RowFilter rowFilter = new RowFilter(filter, rowStride, bytesPerPixel);
+        Deflater deflater = new Deflater(compressionLevel, true);
+        Adler32 adler = new Adler32();
+        ExposedByteArrayOutputStream output = new ExposedByteArrayOutputStream(Math.max(64, (endRow - startRow) * rowStride / 4));
+        byte[] deflateBuffer = new byte[16 * 1024];
+
+        try {
+            if (startRow > 0) {
+                source.readRow(startRow - 1, previousRow);
+            }
+            for (int y = startRow; y < endRow; y++) {
+                source.readRow(y, row);
+                byte[] filtered = rowFilter.apply(row, previousRow);
+
+                adler.update(filtered, 0, rowStride + 1);
+                deflater.setInput(filtered, 0, rowStride + 1);
+                while (!deflater.needsInput()) {
+                    int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.NO_FLUSH);
+                    output.write(deflateBuffer, 0, length);
+                }
+
+                byte[] swap = previousRow;
+                previousRow = row;
+                row = swap;
+            }
+
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.NO_FLUSH);
+                    output.write(deflateBuffer, 0, length);
+                }
+            } else {
+                // a sync flush ends the output on a byte boundary, so the next chunk can be appended
+                int length;
+                do {
+                    length = deflater.deflate(deflateBuffer, 0, deflateBuffer.length, Deflater.SYNC_FLUSH);
+                    output.write(deflateBuffer, 0, length);
+                } while (length == deflateBuffer.length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return new CompressedChunk(output, adler.getValue(), (long) (endRow - startRow) * (rowStride + 1));
+    }
+
+    private byte getLevelFlag() {
+        // FLEVEL bits with a valid FCHECK, so the header is a multiple of 31
+        if (compressionLevel == Deflater.NO_COMPRESSION || compressionLevel == Deflater.BEST_SPEED) {
+            return 0x01;
+        }
+        if (compressionLevel == Deflater.DEFAULT_COMPRESSION || compressionLevel == 6) {
+            return (byte) 0x9C;
+        }
+        return compressionLevel < 6 ? (byte) 0x5E : (byte) 0xDA;
+    }
+
+    /**
+     * Writes the IHDR chunk, and the PLTE and tRNS chunks of a palette image.
+     */
+    private static void writeHeader(DataOutputStream out, RowSource source) throws IOException {
+        int colorType = source instanceof PaletteImage ? COLOR_TYPE_PALETTE :
+                source.getChannels() == 4 ? COLOR_TYPE_RGBA : COLOR_TYPE_RGB;
+        ByteBuffer header = ByteBuffer.allocate(13);
+        header.putInt(source.getWidth()).putInt(source.getHeight());
+        header.put((byte) 8); // bit depth
+        header.put((byte) colorType);
+        header.put((byte) 0); // compression method
+        header.put((byte) 0); // filter method
+        header.put((byte) 0); // interlace method
+        writeChunk(out, "IHDR", header.array(), 13);
+        if (colorType != COLOR_TYPE_PALETTE) {
+            return;
+        }
+
+        int[] palette = ((PaletteImage) source).getPalette();
+        byte[] colors = new byte[palette.length * 3];
+        byte[] alpha = new byte[palette.length];
+        int alphaLength = 0;
+        for (int i = 0; i < palette.length; i++) {
+            colors[i * 3] = (byte) (palette[i] >>> 24);
+            colors[i * 3 + 1] = (byte) (palette[i] >>> 16);
+            colors[i * 3 + 2] = (byte) (palette[i] >>> 8);
+            alpha[i] = (byte) palette[i];
+            if ((palette[i] & 0xFF) != 0xFF) {
+                alphaLength = i + 1;
+            }
+        }
+        writeChunk(out, "PLTE", colors, colors.length);
+        // the entries after the last translucent color are opaque
+        if (alphaLength > 0 && source.getChannels() == 4) {
+            writeChunk(out, "tRNS", alpha, alphaLength);
+        }
+    }
+
+    static void writeChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Combines the adler32 checksums of two consecutive blocks of data.
+     *
+     * @param adler1  checksum of the first block
+     * @param adler2  checksum of the second block
+     * @param length2 length of the second block
+     * @return the checksum of the concatenated blocks
+     */
+    static long combineAdler32(long adler1, long adler2, long length2) {
+        final long base = 65521;
+        long remainder = length2 % base;
+        long sum1 = adler1 & 0xFFFF;
+        long sum2 = (remainder * sum1) % base;
+        sum1 += (adler2 & 0xFFFF) + base - 1;
+        sum2 += ((adler1 >>> 16) & 0xFFFF) + ((adler2 >>> 16) & 0xFFFF) + base - remainder;
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum1 >= base) {
+            sum1 -= base;
+        }
+        if (sum2 >= (base << 1)) {
+            sum2 -= (base << 1);
+        }
+        if (sum2 >= base) {
+            sum2 -= base;
+        }
+        return sum1 | (sum2 << 16);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Reads a row of an image into an array.
+     */
+    @FunctionalInterface
+    private interface RowReader {
+
+        void readRow(int y, byte[] row);
+
+    }
+
+    /**
+     * The PNG row filters. The adaptive filter tries all filters on each row and picks the one with the smallest sum
+     * of absolute differences, which usually compresses best.
+     */
+    public enum Filter {
+        NONE,
+        SUB,
+        UP,
+        AVERAGE,
+        PAETH,
+        ADAPTIVE
+    }
+
+    /**
+     * Applies a filter to a row. The filtered rows, prefixed with the filter type, are reused between rows.
+     */
+    private static class RowFilter {
+
+        private final Filter filter;
+        private final int channels;
+        private final byte[][] candidates;
+
+        RowFilter(Filter filter, int rowStride, int channels) {
+            this.filter = filter;
+            this.channels = channels;
+            this.candidates = new byte[filter == Filter.ADAPTIVE ? 5 : 1][rowStride + 1];
+        }
+
+        byte[] apply(byte[] row, byte[] previousRow) {
+            if (filter != Filter.ADAPTIVE) {
+                apply(filter, row, previousRow, candidates[0]);
+                return candidates[0];
+            }
+
+            byte[] best = null;
+            long bestSum = Long.MAX_VALUE;
+            for (int i = 0; i < candidates.length; i++) {
+                apply(Filter.values()[i], row, previousRow, candidates[i]);
+                long sum = sumOfAbsolutes(candidates[i]);
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    best = candidates[i];
+                }
+            }
+            return best;
+        }
+
+        private void apply(Filter filter, byte[] row, byte[] up, byte[] out) {
+            int bpp = channels;
+            out[0] = (byte) filter.ordinal();
+            switch (filter) {
+                case NONE:
+                    System.arraycopy(row, 0, out, 1, row.length);
+                    break;
+                case SUB:
+                    System.arraycopy(row, 0, out, 1, bpp);
+                    for (int i = bpp; i < row.length; i++) {
+                        out[i + 1] = (byte) (row[i] - row[i - bpp]);
+                    }
+                    break;
+                case UP:
+                    for (int i = 0; i < row.length; i++) {
+                        out[i + 1] = (byte) (row[i] - up[i]);
+                    }
+                    break;
+                case AVERAGE:
+                    for (int i = 0; i < bpp; i++) {
+                        out[i + 1] = (byte) (row[i] - ((up[i] & 0xFF) >>> 1));
+                    }
+                    for (int i = bpp; i < row.length; i++) {
+                        out[i + 1] = (byte) (row[i] - (((row[i - bpp] & 0xFF) + (up[i] & 0xFF)) >>> 1));
+                    }
+                    break;
+                case PAETH:
+                    for (int i = 0; i < bpp; i++) {
+                        out[i + 1] = (byte) (row[i] - up[i]);
+                    }
+                    for (int i = bpp; i < row.length; i++) {
+                        out[i + 1] = (byte) (row[i] - paeth(row[i - bpp] & 0xFF, up[i] & 0xFF, up[i - bpp] & 0xFF));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException(filter + " is not a row filter.");
+            }
+        }
+
+        private static int paeth(int left, int up, int upLeft) {
+            int p = left + up - upLeft;
+            int pLeft = Math.abs(p - left);
+            int pUp = Math.abs(p - up);
+            int pUpLeft = Math.abs(p - upLeft);
+            if (pLeft <= pUp && pLeft <= pUpLeft) {
+                return left;
+            }
+            return pUp <= pUpLeft ? up : upLeft;
+        }
+
+        private static long sumOfAbsolutes(byte[] filtered) {
+            long sum = 0;
+            for (int i = 1; i < filtered.length; i++) {
+                sum += Math.abs((int) filtered[i]);
+            }
+            return sum;
+        }
+
+    }
+
+    /**
+     * The compressed data of a chunk of rows, with the checksum and length of the uncompressed data.
+     */
+    private static class CompressedChunk {
+
+        private final ExposedByteArrayOutputStream data;
+        private final long adler;
+        private final long length;
+
+        CompressedChunk(ExposedByteArrayOutputStream data, long adler, long length) {
+            this.data = data;
+            this.adler = adler;
+            this.length = length;
+        }
+
+    }
+
+    /**
+     * A ByteArrayOutputStream that gives access to its buffer, to avoid copying the compressed data.
+     */
+    static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A decoder for images written by the {@link QoiEncoder}, or any other Quite OK Image file. Images with 4 channels are
+ * decoded as RGBA8, images with 3 channels as RGB8, unless a format is set. The rows are stored bottom-up in a pooled
+ * buffer, as expected by jME.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class QoiDecoder implements ImageDecoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The format of the decoded images, one of the formats supported by {@link ChannelOrder}, or null to decode to
+     * RGBA8 or RGB8 depending on the number of channels of the image.
+     */
+    private Image.Format format;
+    /**
+     * The pool of the buffers of the decoded images.
+     */
+    private DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+
+    /**
+     * Decodes the QOI stream into an image. The stream is not closed.
+     *
+     * @param in the input stream
+     * @return the decoded image
+     * @throws IOException when reading from the stream fails or when the stream isn't a valid QOI image
+     */
+    @Override
+    public Image decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[4];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, QoiEncoder.MAGIC)) {
+            throw new IOException("Not a QOI image");
+        }
+        int width = data.readInt();
+        int height = data.readInt();
+        int channels = data.readUnsignedByte();
+        int colorSpace = data.readUnsignedByte();
+        if (width <= 0 || height <= 0 || (channels != 3 && channels != 4)) {
+            throw new IOException("Invalid QOI header: " + width + "x" + height + ", " + channels + " channels");
+        }
+        if ((long) width * height * channels > Integer.MAX_VALUE) {
+            throw new IOException("QOI image of " + width + "x" + height + " is too large");
+        }
+
+        Image.Format imageFormat = format != null ? format : channels == 4 ? Image.Format.RGBA8 : Image.Format.RGB8;
+        ImageRowWriter writer = new ImageRowWriter(width, height, channels, imageFormat, bufferPool);
+        try {
+            decodePixels(in, writer, width, height, channels);
+        } catch (IOException | RuntimeException e) {
+            writer.release(bufferPool);
+            throw e;
+        }
+
+        return writer.getImage(colorSpace == 0 ? ColorSpace.sRGB : ColorSpace.Linear);
+    }
+
+    private static void decodePixels(InputStream in, ImageRowWriter writer, int width, int height, int channels)
+            throws IOException {
+        byte[] row = new byte[width * channels];
+
+        byte[] input = new byte[BUFFER_SIZE];
+        int available = 0;
+        int p = 0;
+
+        int[] index = new int[64];
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        int a = 0xFF;
+        int run = 0;
+        for (int y = 0; y < height; y++) {
+            for (int i = 0; i < row.length; i += channels) {
+                if (run > 0) {
+                    run--;
+                } else {
+                    // a chunk is at most 5 bytes, refill the input buffer when it might not hold a complete chunk
+                    if (available - p < 5) {
+                        System.arraycopy(input, p, input, 0, available - p);
+                        available -= p;
+                        p = 0;
+                        available += readAtMost(in, input, available, input.length - available);
+                        if (available == 0) {
+                            throw new IOException("Unexpected end of QOI stream");
+                        }
+                    }
+
+                    int op = input[p++] & 0xFF;
+                    // the last chunk can only be incomplete at the end of the stream
+                    if (available - p < getPayloadLength(op)) {
+                        throw new IOException("Unexpected end of QOI stream");
+                    }
+                    if (op == QoiEncoder.OP_RGB) {
+                        r = input[p++] & 0xFF;
+                        g = input[p++] & 0xFF;
+                        b = input[p++] & 0xFF;
+                    } else if (op == QoiEncoder.OP_RGBA) {
+                        r = input[p++] & 0xFF;
+                        g = input[p++] & 0xFF;
+                        b = input[p++] & 0xFF;
+                        a = input[p++] & 0xFF;
+                    } else if ((op & QoiEncoder.MASK) == QoiEncoder.OP_INDEX) {
+                        int pixel = index[op];
+                        r = pixel >>> 24;
+                        g = pixel >>> 16 & 0xFF;
+                        b = pixel >>> 8 & 0xFF;
+                        a = pixel & 0xFF;
+                    } else if ((op & QoiEncoder.MASK) == QoiEncoder.OP_DIFF) {
+                        r = (r + (op >> 4 & 0x03) - 2) & 0xFF;
+                        g = (g + (op >> 2 & 0x03) - 2) & 0xFF;
+                        b = (b + (op & 0x03) - 2) & 0xFF;
+                    } else if ((op & QoiEncoder.MASK) == QoiEncoder.OP_LUMA) {
+                        int next = input[p++] & 0xFF;
+                        int vg = (op & 0x3F) - 32;
+                        r = (r + vg - 8 + (next >> 4 & 0x0F)) & 0xFF;
+                        g = (g + vg) & 0xFF;
+                        b = (b + vg - 8 + (next & 0x0F)) & 0xFF;
+                    } else {
+                        run = op & 0x3F;
+                    }
+                    index[QoiEncoder.hash(r, g, b, a)] = r << 24 | g << 16 | b << 8 | a;
+                }
+
+                row[i] = (byte) r;
+                row[i + 1] = (byte) g;
+                row[i + 2] = (byte) b;
+                if (channels == 4) {
+                    row[i + 3] = (byte) a;
+                }
+            }
+            writer.writeRow(y, row);
+        }
+    }
+
+    /**
+     * @return the number of bytes that follow the tag of the chunk
+     */
+    private static int getPayloadLength(int op) {
+        if (op == QoiEncoder.OP_RGB) {
+            return 3;
+        }
+        if (op == QoiEncoder.OP_RGBA) {
+            return 4;
+        }
+        return (op & QoiEncoder.MASK) == QoiEncoder.OP_LUMA ? 1 : 0;
+    }
+
+    private static int readAtMost(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+        int total = 0;
+        int read;
+        while (total < length && (read = in.read(buffer, offset + total, length - total)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+}
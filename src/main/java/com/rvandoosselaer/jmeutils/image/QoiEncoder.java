@@ -0,0 +1,152 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An encoder for the Quite OK Image format (https://qoiformat.org). QOI encodes an order of magnitude faster than PNG,
+ * at a file size that is usually somewhat larger. The rows are read bottom-up from the buffer of the image, so the
+ * image is written in the orientation it's displayed. The image is encoded one row at a time, only the current row
+ * and a small output buffer are kept in memory.
+ * <p>
+ * RGBA8, ABGR8, ARGB8 and BGRA8 images are written with 4 channels, RGB8 and BGR8 images with 3 channels.
+ *
+ * @author rvandoosselaer
+ */
+public class QoiEncoder implements StreamingImageEncoder {
+
+    static final int OP_INDEX = 0x00;
+    static final int OP_DIFF = 0x40;
+    static final int OP_LUMA = 0x80;
+    static final int OP_RUN = 0xC0;
+    static final int OP_RGB = 0xFE;
+    static final int OP_RGBA = 0xFF;
+    static final int MASK = 0xC0;
+    static final byte[] MAGIC = {'q', 'o', 'i', 'f'};
+    static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public String getName() {
+        return "qoi";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".qoi";
+    }
+
+    @Override
+    public void encode(Image image, OutputStream out) throws IOException {
+        encode(RowSource.of(image), out);
+    }
+
+    @Override
+    public void encode(RowSource source, OutputStream out) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int channels = source.getChannels();
+        boolean alpha = channels == 4;
+
+        // the output buffer is flushed when there is no room for the largest possible chunk
+        byte[] output = new byte[BUFFER_SIZE];
+        int p = 0;
+        System.arraycopy(MAGIC, 0, output, 0, 4);
+        p = writeInt(output, 4, width);
+        p = writeInt(output, p, height);
+        output[p++] = (byte) channels;
+        output[p++] = (byte) (source.getColorSpace() == ColorSpace.sRGB ? 0 : 1);
+
+        byte[] row = new byte[width * channels];
+
+        int[] index = new int[64];
+        int previous = 0xFF; // r = 0, g = 0, b = 0, a = 255, packed as RGBA
+        int run = 0;
+        for (int y = 0; y < height; y++) {
+            source.readRow(y, row);
+
+            for (int i = 0; i < row.length; i += channels) {
+                int r = row[i] & 0xFF;
+                int g = row[i + 1] & 0xFF;
+                int b = row[i + 2] & 0xFF;
+                int a = alpha ? row[i + 3] & 0xFF : 0xFF;
+                int pixel = r << 24 | g << 16 | b << 8 | a;
+
+                if (p > BUFFER_SIZE - 8) {
+                    out.write(output, 0, p);
+                    p = 0;
+                }
+
+                if (pixel == previous) {
+                    run++;
+                    if (run == 62) {
+                        output[p++] = (byte) (OP_RUN | (run - 1));
+                        run = 0;
+                    }
+                    continue;
+                }
+
+                if (run > 0) {
+                    output[p++] = (byte) (OP_RUN | (run - 1));
+                    run = 0;
+                }
+
+                int hash = hash(r, g, b, a);
+                if (index[hash] == pixel) {
+                    output[p++] = (byte) (OP_INDEX | hash);
+                } else {
+                    index[hash] = pixel;
+                    if (a == (previous & 0xFF)) {
+                        int vr = (byte) (r - (previous >>> 24));
+                        int vg = (byte) (g - (previous >>> 16 & 0xFF));
+                        int vb = (byte) (b - (previous >>> 8 & 0xFF));
+                        int vgr = vr - vg;
+                        int vgb = vb - vg;
+
+                        if (vr > -3 && vr < 2 && vg > -3 && vg < 2 && vb > -3 && vb < 2) {
+                            output[p++] = (byte) (OP_DIFF | (vr + 2) << 4 | (vg + 2) << 2 | (vb + 2));
+                        } else if (vgr > -9 && vgr < 8 && vg > -33 && vg < 32 && vgb > -9 && vgb < 8) {
+                            output[p++] = (byte) (OP_LUMA | (vg + 32));
+                            output[p++] = (byte) ((vgr + 8) << 4 | (vgb + 8));
+                        } else {
+                            output[p++] = (byte) OP_RGB;
+                            output[p++] = (byte) r;
+                            output[p++] = (byte) g;
+                            output[p++] = (byte) b;
+                        }
+                    } else {
+                        output[p++] = (byte) OP_RGBA;
+                        output[p++] = (byte) r;
+                        output[p++] = (byte) g;
+                        output[p++] = (byte) b;
+                        output[p++] = (byte) a;
+                    }
+                }
+                previous = pixel;
+            }
+        }
+
+        if (run > 0) {
+            output[p++] = (byte) (OP_RUN | (run - 1));
+        }
+        out.write(output, 0, p);
+        out.write(END_MARKER);
+    }
+
+    static int hash(int r, int g, int b, int a) {
+        return (r * 3 + g * 5 + b * 7 + a * 11) & 63;
+    }
+
+    private static int writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+
+}
@@ -0,0 +1,115 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A decoder for the dumps written by the {@link RawImageEncoder}. The image is restored in the format, color space and
+ * row order it was captured in, in a pooled buffer. When a format is set, dumps in another format are converted.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class RawImageDecoder implements ImageDecoder {
+
+    /**
+     * The format of the decoded images, or null to keep the captured format. Converting requires both formats to be
+     * supported by {@link ChannelOrder}.
+     */
+    private Image.Format format;
+    /**
+     * The pool of the buffers of the decoded images.
+     */
+    private DirectBufferPool bufferPool = DirectBufferPool.getDefault();
+
+    /**
+     * Reads the raw dump from the stream into an image. The stream is not closed.
+     *
+     * @param in the input stream
+     * @return the decoded image
+     * @throws IOException when reading from the stream fails or when the stream isn't a valid raw dump
+     */
+    @Override
+    public Image decode(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[4];
+        data.readFully(magic);
+        if (!Arrays.equals(magic, RawImageEncoder.MAGIC)) {
+            throw new IOException("Not a raw image dump");
+        }
+        int version = data.readUnsignedByte();
+        if (version != RawImageEncoder.VERSION) {
+            throw new IOException("Unsupported raw image version " + version);
+        }
+        int colorSpace = data.readUnsignedByte();
+        int width = data.readInt();
+        int height = data.readInt();
+        if (width <= 0 || height <= 0) {
+            throw new IOException("Invalid raw image size " + width + "x" + height);
+        }
+        byte[] formatName = new byte[data.readUnsignedShort()];
+        data.readFully(formatName);
+
+        Image.Format capturedFormat;
+        try {
+            capturedFormat = Image.Format.valueOf(new String(formatName, StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown image format " + new String(formatName, StandardCharsets.US_ASCII), e);
+        }
+
+        long size = (long) width * height * capturedFormat.getBitsPerPixel() / 8;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Raw image of " + width + "x" + height + " " + capturedFormat + " is too large");
+        }
+
+        ByteBuffer buffer = bufferPool.acquire((int) size);
+        ReadableByteChannel channel = Channels.newChannel(in);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                bufferPool.release(buffer);
+                throw new IOException("Unexpected end of raw image data");
+            }
+        }
+        Buffers.rewind(buffer);
+
+        Image image = new Image(capturedFormat, width, height, buffer, colorSpace == 0 ? ColorSpace.sRGB : ColorSpace.Linear);
+        if (format == null || format == capturedFormat) {
+            return image;
+        }
+        return convert(image, format);
+    }
+
+    private Image convert(Image image, Image.Format targetFormat) throws IOException {
+        try {
+            if (!RowSource.isSupported(image.getFormat()) || !ChannelOrder.isSupported(targetFormat)) {
+                throw new IOException("Unable to convert raw image from " + image.getFormat() + " to " + targetFormat);
+            }
+
+            RowSource source = RowSource.of(image);
+            ImageRowWriter writer = new ImageRowWriter(image.getWidth(), image.getHeight(), source.getChannels(), targetFormat, bufferPool);
+            byte[] row = new byte[image.getWidth() * source.getChannels()];
+            for (int y = 0; y < image.getHeight(); y++) {
+                source.readRow(y, row);
+                writer.writeRow(y, row);
+            }
+            return writer.getImage(image.getColorSpace());
+        } finally {
+            bufferPool.release(image.getData(0));
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An encoder that dumps the buffer of an image without any conversion, prefixed with a small header. This is the
+ * fastest way to get a capture on disk, the dumps can be converted to PNG afterwards with the {@link CaptureConverter}.
+ * <p>
+ * The header is written in big endian byte order:
+ * <pre>
+ * magic       4 bytes  "JRAW"
+ * version     1 byte   1
+ * color space 1 byte   0 = sRGB, 1 = linear
+ * width       4 bytes
+ * height      4 bytes
+ * format      2 bytes length + the name of the {@link Image.Format} in US-ASCII
+ * data        the bytes of the image buffer, rows are stored bottom-up
+ * </pre>
+ *
+ * @author rvandoosselaer
+ */
+public class RawImageEncoder implements ImageEncoder {
+
+    static final byte[] MAGIC = {'J', 'R', 'A', 'W'};
+    static final int VERSION = 1;
+
+    /**
+     * Write the file through a memory mapped buffer instead of a file channel. The file is unmapped when it's written.
+     */
+    @Getter
+    @Setter
+    private boolean memoryMapped = false;
+
+    @Override
+    public String getName() {
+        return "raw";
+    }
+
+    @Override
+    public String getExtension() {
+        return ".raw";
+    }
+
+    @Override
+    public void encode(Image image, OutputStream out) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(out);
+        writeFully(channel, createHeader(image));
+        writeFully(channel, getData(image));
+    }
+
+    @Override
+    public void write(Image image, Path path) throws IOException {
+        ByteBuffer header = createHeader(image);
+        ByteBuffer data = getData(image);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (memoryMapped) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, header.remaining() + data.remaining());
+                try {
+                    mapped.put(header);
+                    mapped.put(data);
+                    mapped.force();
+                } finally {
+                    // unmap the file right away instead of when the buffer is garbage collected, a mapped file can't
+                    // be deleted or overwritten on Windows
+                    BufferUtils.destroyDirectBuffer(mapped);
+                }
+            } else {
+                writeFully(channel, header);
+                writeFully(channel, data);
+            }
+        }
+    }
+
+    private static ByteBuffer createHeader(Image image) {
+        byte[] format = image.getFormat().name().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer header = ByteBuffer.allocate(16 + format.length);
+        header.put(MAGIC);
+        header.put((byte) VERSION);
+        header.put((byte) (image.getColorSpace() == ColorSpace.sRGB ? 0 : 1));
+        header.putInt(image.getWidth());
+        header.putInt(image.getHeight());
+        header.putShort((short) format.length);
+        header.put(format);
+        Buffers.flip(header);
+        return header;
+    }
+
+    private static ByteBuffer getData(Image image) {
+        ByteBuffer data = image.getData(0).duplicate();
+        Buffers.clear(data);
+        Buffers.limit(data, image.getWidth() * image.getHeight() * image.getFormat().getBitsPerPixel() / 8);
+        return data;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
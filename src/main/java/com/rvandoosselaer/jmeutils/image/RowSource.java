@@ -0,0 +1,76 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+
+/**
+ * A source of 8 bit RGB or RGBA rows that can be encoded by a {@link StreamingImageEncoder} without holding the whole
+ * image in memory. Rows are numbered top-down, in the orientation the image is displayed. The encoders read each row
+ * once, from top to bottom, so a source can create the rows on the fly.
+ *
+ * @author rvandoosselaer
+ */
+public interface RowSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * @return 3 for RGB rows, 4 for RGBA rows
+     */
+    int getChannels();
+
+    ColorSpace getColorSpace();
+
+    /**
+     * Reads a row into the given array, in RGB or RGBA order.
+     *
+     * @param y   the row, 0 is the top row
+     * @param row the destination, with a length of at least width * channels
+     */
+    void readRow(int y, byte[] row);
+
+    /**
+     * Returns a source that reads the rows straight from the buffer of the image. jME images are stored bottom-up,
+     * the rows are read in reverse order. Floating point, luminance and depth images are converted with the
+     * {@link ToneMapping#getDefault() default tone mapping}.
+     *
+     * @param image an image in one of the formats supported by {@link #isSupported(Image.Format)}
+     * @return a row source
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    static RowSource of(Image image) {
+        return of(image, ToneMapping.getDefault());
+    }
+
+    /**
+     * Returns a source that reads the rows straight from the buffer of the image, see {@link #of(Image)}. Floating
+     * point, luminance and depth images are converted with the given tone mapping, it's ignored for 8 bit color
+     * images.
+     *
+     * @param image       an image in one of the formats supported by {@link #isSupported(Image.Format)}
+     * @param toneMapping the tone mapping
+     * @return a row source
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    static RowSource of(Image image, ToneMapping toneMapping) {
+        if (ChannelOrder.isSupported(image.getFormat())) {
+            return new ImageRowSource(image);
+        }
+        return new ToneMappedRowSource(image, toneMapping);
+    }
+
+    /**
+     * Returns true when images of the format can be read as rows. These are the 8 bit color formats of
+     * {@link ChannelOrder}, the RGB(A)16F, RGB(A)32F and RGB111110F floating point formats, the luminance formats and
+     * the Depth16, Depth32, Depth32F and Depth24Stencil8 depth formats.
+     *
+     * @param format the image format
+     * @return true when the format is supported
+     */
+    static boolean isSupported(Image.Format format) {
+        return ChannelOrder.isSupported(format) || ToneMappedRowSource.isSupported(format);
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * An encoder that can encode an image one row at a time from a {@link RowSource}. Only a few rows are kept in memory,
+ * so very large images, e.g. tiled captures, can be written without creating the whole image.
+ *
+ * @author rvandoosselaer
+ */
+public interface StreamingImageEncoder extends ImageEncoder {
+
+    /**
+     * Encodes the rows of the source and writes them to the output stream. The stream is not closed.
+     *
+     * @param source the rows to encode
+     * @param out    the output stream
+     * @throws IOException when writing to the stream fails
+     */
+    void encode(RowSource source, OutputStream out) throws IOException;
+
+    /**
+     * Encodes the rows of the source and writes them to the file.
+     *
+     * @param source the rows to encode
+     * @param path   the file to write to
+     * @throws IOException when writing the file fails
+     */
+    default void write(RowSource source, Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            encode(source, out);
+        }
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+
+/**
+ * A precomputed conversion of pixels between two of the 8 bit formats supported by {@link ChannelOrder}. The offsets
+ * of the red, green, blue and alpha channel in the source and target pixel are resolved once, and the kernel is picked
+ * from the alpha channels of the formats: the alpha channel is copied, set to opaque or dropped. Converting a row is a
+ * single loop without branches per pixel. Pixels of the same format are copied as is. Conversions between two formats
+ * with an alpha channel can also move the channels of pixels that are packed in ints.
+ * <p>
+ * Plans are immutable and cached per pair of formats, so they can be shared between threads.
+ *
+ * @author rvandoosselaer
+ */
+public final class SwizzlePlan {
+
+    private static final int FORMAT_COUNT = Image.Format.values().length;
+    private static final SwizzlePlan[] PLANS = new SwizzlePlan[FORMAT_COUNT * FORMAT_COUNT];
+
+    private final Image.Format source;
+    private final Image.Format target;
+    private final int sourceChannels;
+    private final int targetChannels;
+    private final Kernel kernel;
+    private final int sourceR;
+    private final int sourceG;
+    private final int sourceB;
+    private final int sourceA;
+    private final int targetR;
+    private final int targetG;
+    private final int targetB;
+    private final int targetA;
+
+    private SwizzlePlan(Image.Format source, Image.Format target) {
+        int[] sourceOrder = ChannelOrder.of(source);
+        int[] targetOrder = ChannelOrder.of(target);
+        this.source = source;
+        this.target = target;
+        this.sourceChannels = sourceOrder.length;
+        this.targetChannels = targetOrder.length;
+        if (source == target) {
+            kernel = Kernel.COPY;
+        } else if (targetChannels == 3) {
+            kernel = Kernel.DROP_ALPHA;
+        } else {
+            kernel = sourceChannels == 4 ? Kernel.COPY_ALPHA : Kernel.OPAQUE_ALPHA;
+        }
+        this.sourceR = sourceOrder[0];
+        this.sourceG = sourceOrder[1];
+        this.sourceB = sourceOrder[2];
+        this.sourceA = sourceChannels == 4 ? sourceOrder[3] : -1;
+        this.targetR = targetOrder[0];
+        this.targetG = targetOrder[1];
+        this.targetB = targetOrder[2];
+        this.targetA = targetChannels == 4 ? targetOrder[3] : -1;
+    }
+
+    /**
+     * Returns the plan to convert pixels from the source to the target format. The plan is created on first use and
+     * cached.
+     *
+     * @param source the format of the source pixels
+     * @param target the format of the target pixels
+     * @return the plan
+     * @throws IllegalArgumentException when one of the formats isn't supported by {@link ChannelOrder}
+     */
+    public static SwizzlePlan of(Image.Format source, Image.Format target) {
+        int index = source.ordinal() * FORMAT_COUNT + target.ordinal();
+        SwizzlePlan plan = PLANS[index];
+        if (plan == null) {
+            // a plan only has final fields, racing threads create equal plans
+            plan = new SwizzlePlan(source, target);
+            PLANS[index] = plan;
+        }
+        return plan;
+    }
+
+    public Image.Format getSource() {
+        return source;
+    }
+
+    public Image.Format getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the number of bytes of a source pixel
+     */
+    public int getSourceChannels() {
+        return sourceChannels;
+    }
+
+    /**
+     * @return the number of bytes of a target pixel
+     */
+    public int getTargetChannels() {
+        return targetChannels;
+    }
+
+    /**
+     * @return true when the pixels are copied without conversion
+     */
+    public boolean isIdentity() {
+        return kernel == Kernel.COPY;
+    }
+
+    /**
+     * Converts a row of pixels. The source and target array can't be the same array, unless the plan is the
+     * identity.
+     *
+     * @param source       the source pixels
+     * @param sourceOffset the index of the first source pixel
+     * @param target       the destination of the converted pixels
+     * @param targetOffset the index of the first target pixel
+     * @param width        the number of pixels to convert
+     */
+    public void convertRow(byte[] source, int sourceOffset, byte[] target, int targetOffset, int width) {
+        int end = sourceOffset + width * sourceChannels;
+        switch (kernel) {
+            case COPY:
+                System.arraycopy(source, sourceOffset, target, targetOffset, width * sourceChannels);
+                break;
+            case COPY_ALPHA:
+                for (int s = sourceOffset, t = targetOffset; s < end; s += 4, t += 4) {
+                    target[t + targetR] = source[s + sourceR];
+                    target[t + targetG] = source[s + sourceG];
+                    target[t + targetB] = source[s + sourceB];
+                    target[t + targetA] = source[s + sourceA];
+                }
+                break;
+            case OPAQUE_ALPHA:
+                for (int s = sourceOffset, t = targetOffset; s < end; s += 3, t += 4) {
+                    target[t + targetR] = source[s + sourceR];
+                    target[t + targetG] = source[s + sourceG];
+                    target[t + targetB] = source[s + sourceB];
+                    target[t + targetA] = (byte) 0xFF;
+                }
+                break;
+            default:
+                for (int s = sourceOffset, t = targetOffset; s < end; s += sourceChannels, t += 3) {
+                    target[t + targetR] = source[s + sourceR];
+                    target[t + targetG] = source[s + sourceG];
+                    target[t + targetB] = source[s + sourceB];
+                }
+                break;
+        }
+    }
+
+    /**
+     * Converts a row of pixels that are packed in ints, with the first byte of a pixel in the lowest 8 bits. Moving
+     * the channels with shifts in an int is faster than moving the bytes one by one. Only plans between two formats
+     * with an alpha channel can convert packed pixels.
+     *
+     * @param source       the source pixels
+     * @param sourceOffset the index of the first source pixel
+     * @param target       the destination of the converted pixels
+     * @param targetOffset the index of the first target pixel
+     * @param width        the number of pixels to convert
+     * @throws IllegalStateException when one of the formats doesn't have an alpha channel
+     */
+    public void convertRow(int[] source, int sourceOffset, int[] target, int targetOffset, int width) {
+        if (kernel == Kernel.COPY && sourceChannels == 4) {
+            System.arraycopy(source, sourceOffset, target, targetOffset, width);
+            return;
+        }
+        if (kernel != Kernel.COPY_ALPHA) {
+            throw new IllegalStateException("Unable to convert packed pixels from " + this.source + " to " + this.target);
+        }
+
+        int shiftR = sourceR << 3;
+        int shiftG = sourceG << 3;
+        int shiftB = sourceB << 3;
+        int shiftA = sourceA << 3;
+        int targetShiftR = targetR << 3;
+        int targetShiftG = targetG << 3;
+        int targetShiftB = targetB << 3;
+        int targetShiftA = targetA << 3;
+        for (int s = sourceOffset, t = targetOffset, end = sourceOffset + width; s < end; s++, t++) {
+            int pixel = source[s];
+            target[t] = ((pixel >>> shiftR) & 0xFF) << targetShiftR |
+                    ((pixel >>> shiftG) & 0xFF) << targetShiftG |
+                    ((pixel >>> shiftB) & 0xFF) << targetShiftB |
+                    ((pixel >>> shiftA) & 0xFF) << targetShiftA;
+        }
+    }
+
+    /**
+     * @return true when the plan can convert pixels that are packed in ints
+     */
+    public boolean isPacked() {
+        return sourceChannels == 4 && targetChannels == 4;
+    }
+
+    @Override
+    public String toString() {
+        return source + " -> " + target + " (" + kernel + ")";
+    }
+
+    private enum Kernel {
+        COPY,
+        COPY_ALPHA,
+        OPAQUE_ALPHA,
+        DROP_ALPHA
+    }
+
+}
@@ -0,0 +1,230 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * A row source that stitches a grid of equally sized tiles into one large image. The tiles are added by one thread,
+ * e.g. the render thread, while an encoder on another thread reads the rows of the stitched image. Reading a row
+ * waits until all tiles of that row of tiles are added. When the last row of a tile is read, the tile is handed to
+ * the tile consumer, so its buffer can be reused. Only the tiles that are added but not yet read are kept in memory.
+ * <p>
+ * Tiles are jME images, stored bottom-up. Column 0 is the left column and row 0 is the top row of tiles.
+ *
+ * @author rvandoosselaer
+ */
+public class TileStitcher implements RowSource {
+
+    private final int columns;
+    private final int rows;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final Image.Format format;
+    private final ColorSpace colorSpace;
+    private final int channels;
+    private final Consumer<Image> tileConsumer;
+    private final Image[][] tiles;
+    private int pendingTiles;
+    private boolean cancelled;
+    // the thread that reads the rows and the row of tiles it reads, these tiles are only released by the reader
+    private Thread reader;
+    private int tileRow = -1;
+    // only accessed by the reading thread
+    private final ImageRowSource[] tileRowSources;
+
+    /**
+     * @param columns      the number of columns of tiles
+     * @param rows         the number of rows of tiles
+     * @param tileWidth    the width of a tile
+     * @param tileHeight   the height of a tile
+     * @param format       the format of the tiles, one of the formats supported by {@link ChannelOrder}
+     * @param colorSpace   the color space of the stitched image
+     * @param tileConsumer called with each tile that is no longer needed, may be null
+     */
+    public TileStitcher(int columns, int rows, int tileWidth, int tileHeight, Image.Format format, ColorSpace colorSpace,
+                        Consumer<Image> tileConsumer) {
+        if (columns < 1 || rows < 1) {
+            throw new IllegalArgumentException("Invalid number of tiles " + columns + "x" + rows + " specified!");
+        }
+        if (tileWidth < 1 || tileHeight < 1) {
+            throw new IllegalArgumentException("Invalid tile size " + tileWidth + "x" + tileHeight + " specified!");
+        }
+        if ((long) columns * tileWidth * 4 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stitched image is too wide: " + columns * (long) tileWidth + " pixels");
+        }
+        this.columns = columns;
+        this.rows = rows;
+        this.tileWidth = tileWidth;
+        this.tileHeight = tileHeight;
+        this.format = format;
+        this.colorSpace = colorSpace;
+        this.channels = ChannelOrder.of(format).length;
+        this.tileConsumer = tileConsumer;
+        this.tiles = new Image[rows][columns];
+        this.tileRowSources = new ImageRowSource[columns];
+    }
+
+    /**
+     * Adds a tile. When the stitcher is cancelled, the tile is handed to the tile consumer right away.
+     *
+     * @param column the column of the tile, 0 is the left column
+     * @param row    the row of the tile, 0 is the top row
+     * @param tile   the tile
+     */
+    public void addTile(int column, int row, Image tile) {
+        if (tile.getWidth() != tileWidth || tile.getHeight() != tileHeight || tile.getFormat() != format) {
+            throw new IllegalArgumentException("Invalid tile " + tile.getWidth() + "x" + tile.getHeight() + " " +
+                    tile.getFormat() + ", expected " + tileWidth + "x" + tileHeight + " " + format);
+        }
+        synchronized (this) {
+            if (!cancelled) {
+                if (tiles[row][column] != null) {
+                    throw new IllegalStateException("Tile " + column + ", " + row + " is already added.");
+                }
+                tiles[row][column] = tile;
+                pendingTiles++;
+                notifyAll();
+                return;
+            }
+        }
+        consume(tile);
+    }
+
+    /**
+     * @return the number of tiles that are added but not yet read
+     */
+    public synchronized int getPendingTiles() {
+        return pendingTiles;
+    }
+
+    /**
+     * Stops the stitching. The pending tiles are handed to the tile consumer and a thread that waits for a tile while
+     * reading a row gets a {@link CancellationException}. The tiles of the row of tiles that is being read are still in
+     * use by the reading thread, they are handed to the tile consumer when it reads the next row.
+     */
+    public void cancel() {
+        int readingRow;
+        synchronized (this) {
+            cancelled = true;
+            notifyAll();
+            readingRow = reader == Thread.currentThread() ? -1 : tileRow;
+        }
+        for (int row = 0; row < rows; row++) {
+            if (row != readingRow) {
+                releaseTileRow(row);
+            }
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return columns * tileWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return rows * tileHeight;
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public ColorSpace getColorSpace() {
+        return colorSpace;
+    }
+
+    /**
+     * Reads a row of the stitched image. Waits until all tiles of the row are added.
+     *
+     * @param y   the row, 0 is the top row
+     * @param row the destination, with a length of at least width * channels
+     * @throws CancellationException when the stitcher is cancelled
+     */
+    @Override
+    public void readRow(int y, byte[] row) {
+        if (isCancelled()) {
+            if (tileRow >= 0) {
+                releaseTileRow(tileRow);
+            }
+            throw new CancellationException("Tile stitching is cancelled.");
+        }
+
+        int currentTileRow = y / tileHeight;
+        if (currentTileRow != tileRow) {
+            awaitTileRow(currentTileRow);
+        }
+
+        int line = y % tileHeight;
+        for (int column = 0; column < columns; column++) {
+            tileRowSources[column].readRow(line, row, column * tileWidth * channels);
+        }
+
+        if (line == tileHeight - 1) {
+            releaseTileRow(currentTileRow);
+        }
+    }
+
+    private void awaitTileRow(int row) {
+        synchronized (this) {
+            try {
+                while (!cancelled && !isTileRowComplete(row)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while waiting for tile row " + row);
+            }
+            if (cancelled) {
+                throw new CancellationException("Tile stitching is cancelled.");
+            }
+            reader = Thread.currentThread();
+            tileRow = row;
+        }
+
+        for (int column = 0; column < columns; column++) {
+            tileRowSources[column] = new ImageRowSource(tiles[row][column]);
+        }
+    }
+
+    private synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    private boolean isTileRowComplete(int row) {
+        for (Image tile : tiles[row]) {
+            if (tile == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void releaseTileRow(int row) {
+        for (int column = 0; column < columns; column++) {
+            Image tile;
+            synchronized (this) {
+                tile = tiles[row][column];
+                tiles[row][column] = null;
+                if (tile != null) {
+                    pendingTiles--;
+                }
+            }
+            if (tile != null) {
+                consume(tile);
+            }
+        }
+    }
+
+    private void consume(Image tile) {
+        if (tileConsumer != null) {
+            tileConsumer.accept(tile);
+        }
+    }
+
+}
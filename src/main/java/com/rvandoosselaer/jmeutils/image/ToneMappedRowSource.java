@@ -0,0 +1,299 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.Buffers;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A row source that converts the rows of floating point, luminance and depth images to 8 bit RGB or RGBA rows. The
+ * values are mapped with the tables of a {@link ToneMapping}: half floats and 16 bit depth values are looked up
+ * directly, 32 bit floats are looked up by their upper 17 bits. Single channel images are written as gray RGB rows.
+ * The values are read in the byte order of the buffer of the image. Each instance reuses one row of scratch space, so
+ * it shouldn't be shared between threads.
+ *
+ * @author rvandoosselaer
+ */
+class ToneMappedRowSource implements RowSource {
+
+    private final Image image;
+    private final Image.Format format;
+    private final int channels;
+    private final int rowValues;
+    private final ByteBuffer bytes;
+    private final ShortBuffer shorts;
+    private final IntBuffer ints;
+    private final byte[] byteRow;
+    private final short[] shortRow;
+    private final int[] intRow;
+    private final byte[] colorTable;
+    private final byte[] alphaTable;
+
+    ToneMappedRowSource(Image image, ToneMapping toneMapping) {
+        this.image = image;
+        this.format = image.getFormat();
+        this.channels = getChannels(format);
+        ByteBuffer data = image.getData(0).duplicate().order(image.getData(0).order());
+        Buffers.clear(data);
+        switch (format) {
+            case Luminance8:
+            case Luminance8Alpha8:
+                rowValues = image.getWidth() * (format == Image.Format.Luminance8 ? 1 : 2);
+                bytes = data;
+                shorts = null;
+                ints = null;
+                byteRow = new byte[rowValues];
+                shortRow = null;
+                intRow = null;
+                colorTable = null;
+                alphaTable = null;
+                return;
+            case RGBA16F:
+            case RGB16F:
+            case Luminance16FAlpha16F:
+            case Luminance16F:
+            case R16F:
+            case Depth16:
+                rowValues = image.getWidth() * (format.getBitsPerPixel() / 16);
+                bytes = null;
+                shorts = data.asShortBuffer();
+                ints = null;
+                byteRow = null;
+                shortRow = new short[rowValues];
+                intRow = null;
+                colorTable = format == Image.Format.Depth16 ? toneMapping.getDepthTable() : toneMapping.getHalfColorTable();
+                alphaTable = channels == 4 ? toneMapping.getHalfAlphaTable() : null;
+                return;
+            case RGBA32F:
+            case RGB32F:
+            case Luminance32F:
+            case R32F:
+            case RGB111110F:
+            case Depth32:
+            case Depth32F:
+            case Depth24Stencil8:
+                rowValues = image.getWidth() * (format.getBitsPerPixel() / 32);
+                bytes = null;
+                shorts = null;
+                ints = data.asIntBuffer();
+                byteRow = null;
+                shortRow = null;
+                intRow = new int[rowValues];
+                if (format == Image.Format.RGB111110F) {
+                    colorTable = toneMapping.getHalfColorTable();
+                } else if (format.isDepthFormat()) {
+                    colorTable = toneMapping.getDepthTable();
+                } else {
+                    colorTable = toneMapping.getFloatColorTable();
+                }
+                alphaTable = channels == 4 ? toneMapping.getFloatAlphaTable() : null;
+                return;
+            default:
+                throw new IllegalArgumentException(format + " not yet supported.");
+        }
+    }
+
+    /**
+     * @param format the image format
+     * @return true when the format is converted by this row source
+     */
+    static boolean isSupported(Image.Format format) {
+        switch (format) {
+            case Luminance8:
+            case Luminance8Alpha8:
+            case RGBA16F:
+            case RGB16F:
+            case Luminance16FAlpha16F:
+            case Luminance16F:
+            case R16F:
+            case Depth16:
+            case RGBA32F:
+            case RGB32F:
+            case Luminance32F:
+            case R32F:
+            case RGB111110F:
+            case Depth32:
+            case Depth32F:
+            case Depth24Stencil8:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return 4 when the format has an alpha channel, 3 otherwise
+     */
+    static int getChannels(Image.Format format) {
+        switch (format) {
+            case Luminance8Alpha8:
+            case RGBA16F:
+            case Luminance16FAlpha16F:
+            case RGBA32F:
+                return 4;
+            default:
+                return 3;
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public int getChannels() {
+        return channels;
+    }
+
+    @Override
+    public ColorSpace getColorSpace() {
+        return image.getColorSpace();
+    }
+
+    @Override
+    public void readRow(int y, byte[] row) {
+        // jME images are stored bottom-up
+        int position = (image.getHeight() - 1 - y) * rowValues;
+        int width = image.getWidth();
+        switch (format) {
+            case Luminance8:
+                Buffers.position(bytes, position);
+                bytes.get(byteRow);
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    byte gray = byteRow[x];
+                    row[i] = gray;
+                    row[i + 1] = gray;
+                    row[i + 2] = gray;
+                }
+                break;
+            case Luminance8Alpha8:
+                Buffers.position(bytes, position);
+                bytes.get(byteRow);
+                for (int s = 0, i = 0; s < rowValues; s += 2, i += 4) {
+                    byte gray = byteRow[s];
+                    row[i] = gray;
+                    row[i + 1] = gray;
+                    row[i + 2] = gray;
+                    row[i + 3] = byteRow[s + 1];
+                }
+                break;
+            case RGBA16F:
+                readShorts(position);
+                for (int i = 0; i < rowValues; i += 4) {
+                    row[i] = colorTable[shortRow[i] & 0xFFFF];
+                    row[i + 1] = colorTable[shortRow[i + 1] & 0xFFFF];
+                    row[i + 2] = colorTable[shortRow[i + 2] & 0xFFFF];
+                    row[i + 3] = alphaTable[shortRow[i + 3] & 0xFFFF];
+                }
+                break;
+            case RGB16F:
+                readShorts(position);
+                for (int i = 0; i < rowValues; i++) {
+                    row[i] = colorTable[shortRow[i] & 0xFFFF];
+                }
+                break;
+            case Luminance16FAlpha16F:
+                readShorts(position);
+                for (int s = 0, i = 0; s < rowValues; s += 2, i += 4) {
+                    byte gray = colorTable[shortRow[s] & 0xFFFF];
+                    row[i] = gray;
+                    row[i + 1] = gray;
+                    row[i + 2] = gray;
+                    row[i + 3] = alphaTable[shortRow[s + 1] & 0xFFFF];
+                }
+                break;
+            case Luminance16F:
+            case R16F:
+            case Depth16:
+                readShorts(position);
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    byte gray = colorTable[shortRow[x] & 0xFFFF];
+                    row[i] = gray;
+                    row[i + 1] = gray;
+                    row[i + 2] = gray;
+                }
+                break;
+            case RGBA32F:
+                readInts(position);
+                for (int i = 0; i < rowValues; i += 4) {
+                    row[i] = colorTable[intRow[i] >>> 15];
+                    row[i + 1] = colorTable[intRow[i + 1] >>> 15];
+                    row[i + 2] = colorTable[intRow[i + 2] >>> 15];
+                    row[i + 3] = alphaTable[intRow[i + 3] >>> 15];
+                }
+                break;
+            case RGB32F:
+                readInts(position);
+                for (int i = 0; i < rowValues; i++) {
+                    row[i] = colorTable[intRow[i] >>> 15];
+                }
+                break;
+            case Luminance32F:
+            case R32F:
+                readInts(position);
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    byte gray = colorTable[intRow[x] >>> 15];
+                    row[i] = gray;
+                    row[i + 1] = gray;
+                    row[i + 2] = gray;
+                }
+                break;
+            case RGB111110F:
+                readInts(position);
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    // the 11 and 10 bit floats are half floats without the sign and the lower bits of the mantissa
+                    int packed = intRow[x];
+                    row[i] = colorTable[(packed & 0x7FF) << 4];
+                    row[i + 1] = colorTable[((packed >>> 11) & 0x7FF) << 4];
+                    row[i + 2] = colorTable[(packed >>> 22) << 5];
+                }
+                break;
+            default:
+                readDepthRow(position, row);
+                break;
+        }
+    }
+
+    /**
+     * Converts a row of 32 bit depth values: the depth is reduced to 16 bits and looked up in the depth table.
+     */
+    private void readDepthRow(int position, byte[] row) {
+        readInts(position);
+        int width = image.getWidth();
+        for (int x = 0, i = 0; x < width; x++, i += 3) {
+            int value = intRow[x];
+            int depth;
+            if (format == Image.Format.Depth32F) {
+                float d = Float.intBitsToFloat(value);
+                depth = d > 0 ? d < 1 ? (int) (d * 65535 + 0.5f) : 65535 : 0;
+            } else {
+                // the depth of Depth24Stencil8 is stored in the upper 24 bits, above the stencil value
+                depth = value >>> 16;
+            }
+            byte gray = colorTable[depth];
+            row[i] = gray;
+            row[i + 1] = gray;
+            row[i + 2] = gray;
+        }
+    }
+
+    private void readShorts(int position) {
+        Buffers.position(shorts, position);
+        shorts.get(shortRow);
+    }
+
+    private void readInts(int position) {
+        Buffers.position(ints, position);
+        ints.get(intRow);
+    }
+
+}
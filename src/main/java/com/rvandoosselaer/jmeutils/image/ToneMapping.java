@@ -0,0 +1,295 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.rvandoosselaer.jmeutils.util.HalfFloats;
+import lombok.Getter;
+
+/**
+ * Maps the values of floating point and depth images to 8 bit channels. A color value is multiplied with the exposure,
+ * compressed by the tone mapping operator, clamped to [0, 1] and optionally encoded with the sRGB transfer function.
+ * Alpha values are only clamped. Depth values are mapped linearly from the depth range to [0, 1], so the interesting
+ * part of a non-linear depth buffer can be stretched over the full range.
+ * <p>
+ * The mapping isn't evaluated per pixel. The mapped value of every half float and every 16 bit depth value is stored
+ * in a table when it's first needed, the tables are rebuilt when a setting changes. 32 bit floats are looked up in a
+ * table indexed by the upper 17 bits of the float, which is within one step of the exact mapping. The tables take up
+ * to 448 KB per instance, share an instance where possible.
+ *
+ * @author rvandoosselaer
+ */
+public class ToneMapping {
+
+    private static final ToneMapping DEFAULT = new ToneMapping();
+
+    /**
+     * The tone mapping operator applied to the color channels.
+     */
+    @Getter
+    private Operator operator = Operator.CLAMP;
+    /**
+     * The factor the color channels are multiplied with before the operator is applied.
+     */
+    @Getter
+    private float exposure = 1;
+    /**
+     * Encode the mapped color channels with the sRGB transfer function. Enable this for render targets that contain
+     * linear values, eg. when gamma correction is enabled.
+     */
+    @Getter
+    private boolean srgbEncoding = false;
+    /**
+     * The depth value that is mapped to black.
+     */
+    @Getter
+    private float minDepth = 0;
+    /**
+     * The depth value that is mapped to white.
+     */
+    @Getter
+    private float maxDepth = 1;
+    private volatile Tables tables;
+
+    /**
+     * Returns the tone mapping that is used when no tone mapping is specified. Changing the settings of the default
+     * tone mapping changes the conversion of all images that don't specify a tone mapping.
+     *
+     * @return the default tone mapping
+     */
+    public static ToneMapping getDefault() {
+        return DEFAULT;
+    }
+
+    public void setOperator(Operator operator) {
+        if (operator == null) {
+            throw new IllegalArgumentException("Invalid operator " + operator + " specified!");
+        }
+        this.operator = operator;
+        tables = null;
+    }
+
+    public void setExposure(float exposure) {
+        if (!(exposure > 0) || Float.isInfinite(exposure)) {
+            throw new IllegalArgumentException("Invalid exposure " + exposure + " specified!");
+        }
+        this.exposure = exposure;
+        tables = null;
+    }
+
+    public void setSrgbEncoding(boolean srgbEncoding) {
+        this.srgbEncoding = srgbEncoding;
+        tables = null;
+    }
+
+    public void setDepthRange(float minDepth, float maxDepth) {
+        if (!(minDepth < maxDepth)) {
+            throw new IllegalArgumentException("Invalid depth range " + minDepth + " - " + maxDepth + " specified!");
+        }
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        tables = null;
+    }
+
+    /**
+     * Maps a color value, without using the tables.
+     *
+     * @param value the color value
+     * @return the mapped value, between 0 and 255
+     */
+    public int mapColor(float value) {
+        return mapColor(value, operator, exposure, srgbEncoding);
+    }
+
+    /**
+     * Maps a depth value, without using the tables.
+     *
+     * @param depth the depth value
+     * @return the mapped value, between 0 and 255
+     */
+    public int mapDepth(float depth) {
+        return toByte((depth - minDepth) / (maxDepth - minDepth));
+    }
+
+    /**
+     * @return the mapped color value of each half float
+     */
+    byte[] getHalfColorTable() {
+        Tables current = getTables();
+        byte[] table = current.halfColor;
+        if (table == null) {
+            table = new byte[65536];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) mapColor(HalfFloats.toFloat(i), current.operator, current.exposure, current.srgbEncoding);
+            }
+            current.halfColor = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the mapped alpha value of each half float
+     */
+    byte[] getHalfAlphaTable() {
+        Tables current = getTables();
+        byte[] table = current.halfAlpha;
+        if (table == null) {
+            table = new byte[65536];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) toByte(HalfFloats.toFloat(i));
+            }
+            current.halfAlpha = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the mapped color value of 32 bit floats, indexed by the bits of the float shifted right by 15
+     */
+    byte[] getFloatColorTable() {
+        Tables current = getTables();
+        byte[] table = current.floatColor;
+        if (table == null) {
+            table = new byte[1 << 17];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) mapColor(getFloat(i), current.operator, current.exposure, current.srgbEncoding);
+            }
+            current.floatColor = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the mapped alpha value of 32 bit floats, indexed by the bits of the float shifted right by 15
+     */
+    byte[] getFloatAlphaTable() {
+        Tables current = getTables();
+        byte[] table = current.floatAlpha;
+        if (table == null) {
+            table = new byte[1 << 17];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) toByte(getFloat(i));
+            }
+            current.floatAlpha = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the mapped value of each 16 bit depth value
+     */
+    byte[] getDepthTable() {
+        Tables current = getTables();
+        byte[] table = current.depth;
+        if (table == null) {
+            table = new byte[65536];
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) toByte((i / 65535f - current.minDepth) / (current.maxDepth - current.minDepth));
+            }
+            current.depth = table;
+        }
+        return table;
+    }
+
+    private Tables getTables() {
+        Tables current = tables;
+        if (current == null) {
+            current = new Tables(operator, exposure, srgbEncoding, minDepth, maxDepth);
+            tables = current;
+        }
+        return current;
+    }
+
+    private static int mapColor(float value, Operator operator, float exposure, boolean srgbEncoding) {
+        float scaled = value * exposure;
+        if (!(scaled > 0)) {
+            // negative values and NaN
+            return 0;
+        }
+        if (scaled == Float.POSITIVE_INFINITY) {
+            return 255;
+        }
+        float mapped = operator.apply(scaled);
+        if (srgbEncoding && mapped < 1) {
+            mapped = mapped <= 0.0031308f ? mapped * 12.92f : (float) (1.055 * Math.pow(mapped, 1 / 2.4) - 0.055);
+        }
+        return toByte(mapped);
+    }
+
+    private static int toByte(float value) {
+        if (!(value > 0)) {
+            return 0;
+        }
+        return value >= 1 ? 255 : (int) (value * 255 + 0.5f);
+    }
+
+    /**
+     * Returns the float in the middle of the range of floats with the given upper 17 bits, so the table is at most
+     * half a step off in both directions. Infinity and NaN are returned as is.
+     */
+    private static float getFloat(int index) {
+        int bits = index << 15;
+        return Float.intBitsToFloat((bits & 0x7F800000) == 0x7F800000 ? bits : bits | 0x4000);
+    }
+
+    /**
+     * The tone mapping operators.
+     */
+    public enum Operator {
+
+        /**
+         * Values above 1 are clipped.
+         */
+        CLAMP {
+            @Override
+            float apply(float value) {
+                return value;
+            }
+        },
+        /**
+         * The Reinhard operator: x / (1 + x).
+         */
+        REINHARD {
+            @Override
+            float apply(float value) {
+                return value / (1 + value);
+            }
+        },
+        /**
+         * The curve fit of the ACES filmic tone mapping curve by Krzysztof Narkowicz.
+         */
+        ACES {
+            @Override
+            float apply(float value) {
+                return (value * (2.51f * value + 0.03f)) / (value * (2.43f * value + 0.59f) + 0.14f);
+            }
+        };
+
+        abstract float apply(float value);
+
+    }
+
+    /**
+     * The tables of the settings at the time the tables were requested. Each table is created when it's first used.
+     */
+    private static class Tables {
+
+        private final Operator operator;
+        private final float exposure;
+        private final boolean srgbEncoding;
+        private final float minDepth;
+        private final float maxDepth;
+        private volatile byte[] halfColor;
+        private volatile byte[] halfAlpha;
+        private volatile byte[] floatColor;
+        private volatile byte[] floatAlpha;
+        private volatile byte[] depth;
+
+        private Tables(Operator operator, float exposure, boolean srgbEncoding, float minDepth, float maxDepth) {
+            this.operator = operator;
+            this.exposure = exposure;
+            this.srgbEncoding = srgbEncoding;
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache that can be used from multiple threads. When the cache is full, new values are still created but
+ * not cached, so the values that are used first stay cached.
+ *
+ * @author rvandoosselaer
+ */
+class BoundedCache<K, V> {
+
+    private final Map<K, V> values = new ConcurrentHashMap<>();
+    /**
+     * The maximum number of cached values.
+     */
+    @Getter
+    private final int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    BoundedCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Invalid cache size " + maxSize + " specified!");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the cached value of the key, or creates the value with the factory and caches it when the cache isn't
+     * full.
+     *
+     * @param key     the key
+     * @param factory creates the value when it isn't cached
+     * @return the cached value, or the created value
+     */
+    V get(K key, Supplier<V> factory) {
+        V value = values.get(key);
+        if (value != null) {
+            hits.incrementAndGet();
+            return value;
+        }
+
+        misses.incrementAndGet();
+        value = factory.get();
+        if (values.size() < maxSize) {
+            // the size can be exceeded by a few values when threads add values at the same time
+            V cached = values.putIfAbsent(key, value);
+            return cached != null ? cached : value;
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value of the key from the cache.
+     *
+     * @param key the key
+     * @return true when a value was removed
+     */
+    boolean invalidate(K key) {
+        return values.remove(key) != null;
+    }
+
+    /**
+     * @return the number of cached values
+     */
+    int getSize() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of requests that were served with a cached value
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of requests that created a value
+     */
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Removes all values from the cache.
+     */
+    void clear() {
+        values.clear();
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import java.nio.Buffer;
+
+/**
+ * Utility class for the position and limit operations on NIO buffers.
+ * <p>
+ * Since JDK 9, ByteBuffer class overrides some methods and their return type in the Buffer class. To ensure
+ * compatibility with JDK 8, calling the methods through this class forces using the JDK 8 Buffer's methods
+ * signature, and avoids explicit casts.
+ *
+ * @author rvandoosselaer
+ */
+public class Buffers {
+
+    private Buffers() {
+    }
+
+    public static void clear(Buffer buffer) {
+        buffer.clear();
+    }
+
+    public static void flip(Buffer buffer) {
+        buffer.flip();
+    }
+
+    public static void rewind(Buffer buffer) {
+        buffer.rewind();
+    }
+
+    public static void position(Buffer buffer, int position) {
+        buffer.position(position);
+    }
+
+    public static void limit(Buffer buffer, int limit) {
+        buffer.limit(limit);
+    }
+
+}
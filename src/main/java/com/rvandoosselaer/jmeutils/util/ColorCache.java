@@ -0,0 +1,89 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A bounded cache of colors, keyed by the packed RGBA value and the color space. Files with many colors often repeat
+ * the same few colors, the cache parses and converts each color once. The cache can be used from multiple threads.
+ * <p>
+ * Each call returns a copy of the cached color, so callers can modify the color they get without changing the color
+ * of other callers. A copy is cheap compared to parsing the color and converting it to linear space. When the cache is full, new colors are still created but not cached, so the colors that are used first stay cached.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+public class ColorCache {
+
+    private final BoundedCache<Long, ColorRGBA> colors;
+
+    public ColorCache(int maxSize) {
+        this.colors = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * Returns the color of the hex string, see {@link ColorUtils#fromHex(String, boolean)}.
+     *
+     * @param hex         the hex string
+     * @param linearSpace if the color is in linear space
+     * @return a copy of the cached color, or null when the hex string isn't valid
+     */
+    public ColorRGBA fromHex(CharSequence hex, boolean linearSpace) {
+        int rgba;
+        try {
+            rgba = ColorUtils.parseHexToInt(hex);
+        } catch (IllegalArgumentException e) {
+            log.error(e.getMessage());
+            return null;
+        }
+        return fromIntRGBA(rgba, linearSpace);
+    }
+
+    /**
+     * Returns the color of the packed RGBA value, see {@link ColorUtils#fromIntRGBA(int, boolean)}.
+     *
+     * @param rgba        the color packed as 0xRRGGBBAA
+     * @param linearSpace if the color is in linear space
+     * @return a copy of the cached color
+     */
+    public ColorRGBA fromIntRGBA(int rgba, boolean linearSpace) {
+        Long key = (rgba & 0xFFFFFFFFL) | (linearSpace ? 1L << 32 : 0);
+        return colors.get(key, () -> ColorUtils.fromIntRGBA(rgba, linearSpace)).clone();
+    }
+
+    /**
+     * @return the maximum number of cached colors
+     */
+    public int getMaxSize() {
+        return colors.getMaxSize();
+    }
+
+    /**
+     * @return the number of cached colors
+     */
+    public int getSize() {
+        return colors.getSize();
+    }
+
+    /**
+     * @return the number of requests that were served with a cached color
+     */
+    public long getHits() {
+        return colors.getHits();
+    }
+
+    /**
+     * @return the number of requests that created a color
+     */
+    public long getMisses() {
+        return colors.getMisses();
+    }
+
+    /**
+     * Removes all colors from the cache.
+     */
+    public void clear() {
+        colors.clear();
+    }
+
+}
@@ -0,0 +1,249 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * A map of colors to their replacement colors, used to recolor an image in a single pass with
+ * {@link ImageUtils#replaceColors(com.jme3.texture.Image, ColorMap)}.
+ * <p>
+ * The colors are stored as packed RGBA integers in an open addressed hash table, so looking up a pixel doesn't create
+ * any objects. When a tolerance is set, a pixel is replaced when each of its channels differs at most the tolerance
+ * from a color in the map. When multiple colors match, the closest color is used. The colors are bucketed on their red
+ * and green channel in cells of the size of the tolerance, so a color that isn't in the map is only compared with the
+ * colors of the neighbouring cells.
+ *
+ * @author rvandoosselaer
+ */
+public class ColorMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The maximum difference per channel, in the range 0 - 255, for a pixel to match a color of the map.
+     */
+    @Getter
+    private int tolerance;
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    /**
+     * The buckets of the tolerance lookup, created on the first lookup after the map or the tolerance changed.
+     */
+    private volatile Buckets buckets;
+
+    public ColorMap() {
+        this(0);
+    }
+
+    /**
+     * @param tolerance the maximum difference per channel, in the range 0 - 255
+     */
+    public ColorMap(int tolerance) {
+        setTolerance(tolerance);
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    public void setTolerance(int tolerance) {
+        if (tolerance < 0 || tolerance > 255) {
+            throw new IllegalArgumentException("Invalid tolerance " + tolerance + " specified!");
+        }
+        this.tolerance = tolerance;
+        buckets = null;
+    }
+
+    /**
+     * Adds the replacement of a color to the map.
+     *
+     * @param oldColor the color to replace
+     * @param newColor the replacement color
+     * @return this map
+     */
+    public ColorMap put(ColorRGBA oldColor, ColorRGBA newColor) {
+        return put(toRGBA(oldColor), toRGBA(newColor));
+    }
+
+    /**
+     * Adds the replacement of a color to the map.
+     *
+     * @param oldColor the color to replace, packed as RGBA
+     * @param newColor the replacement color, packed as RGBA
+     * @return this map
+     */
+    public ColorMap put(int oldColor, int newColor) {
+        if (size * 2 >= keys.length) {
+            rehash();
+        }
+        int slot = findSlot(oldColor);
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = oldColor;
+            size++;
+        }
+        values[slot] = newColor;
+        buckets = null;
+        return this;
+    }
+
+    /**
+     * Returns the replacement of the color, or the color itself when it isn't in the map.
+     *
+     * @param color the color packed as RGBA
+     * @return the replacement color packed as RGBA
+     */
+    public int map(int color) {
+        int slot = findSlot(color);
+        if (used[slot]) {
+            return values[slot];
+        }
+        if (tolerance == 0) {
+            return color;
+        }
+
+        Buckets buckets = this.buckets;
+        if (buckets == null) {
+            buckets = createBuckets();
+        }
+        int cellSize = tolerance + 1;
+        int red = (color >>> 24) / cellSize;
+        int green = (color >>> 16 & 0xFF) / cellSize;
+
+        int closestSlot = -1;
+        int closest = tolerance + 1;
+        for (int r = Math.max(0, red - 1); r <= Math.min(buckets.cells - 1, red + 1); r++) {
+            for (int g = Math.max(0, green - 1); g <= Math.min(buckets.cells - 1, green + 1); g++) {
+                int bucket = r * buckets.cells + g;
+                for (int i = buckets.start[bucket]; i < buckets.start[bucket + 1]; i++) {
+                    int candidate = buckets.slots[i];
+                    int distance = distance(color, keys[candidate]);
+                    // the lowest slot wins a tie, like a scan over the table
+                    if (distance < closest || (distance == closest && candidate < closestSlot)) {
+                        closest = distance;
+                        closestSlot = candidate;
+                    }
+                }
+            }
+        }
+        return closestSlot >= 0 ? values[closestSlot] : color;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Packs the color as an RGBA integer, rounding each channel to the nearest 8 bit value.
+     *
+     * @param color the color
+     * @return the packed color
+     */
+    public static int toRGBA(ColorRGBA color) {
+        return toByte(color.r) << 24 | toByte(color.g) << 16 | toByte(color.b) << 8 | toByte(color.a);
+    }
+
+    private int findSlot(int color) {
+        int mask = keys.length - 1;
+        // spread the bits of the color, similar colors differ only in the low bits of a channel
+        int slot = (color * 0x9E3779B9 >>> 16) & mask;
+        while (used[slot] && keys[slot] != color) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Sorts the slots of the table in buckets of their red and green cell, with a counting sort.
+     */
+    private synchronized Buckets createBuckets() {
+        if (buckets != null) {
+            return buckets;
+        }
+
+        int cellSize = tolerance + 1;
+        int cells = 255 / cellSize + 1;
+        int[] start = new int[cells * cells + 1];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                start[getBucket(keys[slot], cellSize, cells) + 1]++;
+            }
+        }
+        for (int i = 1; i < start.length; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] slots = new int[size];
+        int[] next = Arrays.copyOf(start, start.length - 1);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                slots[next[getBucket(keys[slot], cellSize, cells)]++] = slot;
+            }
+        }
+
+        buckets = new Buckets(cells, start, slots);
+        return buckets;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(keys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    /**
+     * Returns the largest difference of the channels of both colors.
+     */
+    private static int distance(int first, int second) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            distance = Math.max(distance, Math.abs((first >>> shift & 0xFF) - (second >>> shift & 0xFF)));
+        }
+        return distance;
+    }
+
+    private static int toByte(float value) {
+        return Math.round(FastMath.clamp(value, 0, 1) * 255);
+    }
+
+    private static int getBucket(int color, int cellSize, int cells) {
+        return (color >>> 24) / cellSize * cells + (color >>> 16 & 0xFF) / cellSize;
+    }
+
+    /**
+     * The slots of the table sorted by bucket. The slots of a bucket are stored from its start to the start of the next
+     * bucket.
+     */
+    private static final class Buckets {
+
+        private final int cells;
+        private final int[] start;
+        private final int[] slots;
+
+        private Buckets(int cells, int[] start, int[] slots) {
+            this.cells = cells;
+            this.start = start;
+            this.slots = slots;
+        }
+
+    }
+
+}
@@ -0,0 +1,524 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.PaletteImage;
+import com.rvandoosselaer.jmeutils.image.RowSource;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reduces the colors of an image to a palette of at most 256 colors, see {@link PaletteImage}. Images with no more
+ * colors than the palette, like most user interfaces and flat shaded scenes, are converted without losing a color.
+ * Other images are quantized with the median cut algorithm: the colors are counted in a histogram with 5 bits of red,
+ * 6 bits of green and 5 bits of blue, and the box of colors with the most pixels and the widest range is split at
+ * the median until the palette is full. The colors of the palette are the averages of the pixels in a box. Colors
+ * that only differ in alpha share a palette entry, the alpha of an entry is the average alpha of its pixels.
+ * <p>
+ * Optionally the pixels are dithered with Floyd-Steinberg error diffusion, which hides the banding of gradients.
+ * <p>
+ * The histogram and the palette indices are computed in bands of rows on the executor. Each thread counts its bands
+ * in its own histogram, which is reused for the next images, and merges it into the histogram of the image. When
+ * dithering, the error isn't diffused across the boundary of a band.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class ColorQuantizer {
+
+    private static final int BUCKETS = 1 << 16;
+    /**
+     * The histogram of each thread. It's reused because the counts and sums take 2.3 MB.
+     */
+    private static final ThreadLocal<Histogram> HISTOGRAMS = ThreadLocal.withInitial(() -> new Histogram(256));
+
+    /**
+     * The maximum number of colors of the palette, between 2 and 256.
+     */
+    private int maxColors = 256;
+    /**
+     * Whether the pixels are dithered when the palette doesn't hold all colors of the image.
+     */
+    private boolean dithering = false;
+
+    public void setMaxColors(int maxColors) {
+        if (maxColors < 2 || maxColors > 256) {
+            throw new IllegalArgumentException("Invalid number of colors " + maxColors + " specified!");
+        }
+        this.maxColors = maxColors;
+    }
+
+    /**
+     * Quantizes the image, in parallel on the common pool for large images.
+     *
+     * @param image an image in one of the formats supported by {@link RowSource#isSupported(Image.Format)}
+     * @return the palette image
+     */
+    public PaletteImage quantize(Image image) {
+        return quantize(image, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Quantizes the image. Floating point, luminance and depth images are quantized after the default tone mapping.
+     *
+     * @param image    an image in one of the formats supported by {@link RowSource#isSupported(Image.Format)}
+     * @param executor the executor to use, or null to quantize the image on the calling thread
+     * @return the palette image
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    public PaletteImage quantize(Image image, Executor executor) {
+        RowSource source = RowSource.of(image);
+        int width = source.getWidth();
+        int height = source.getHeight();
+        long pixels = (long) width * height;
+
+        // a band is a range of rows
+        int bandCount = executor == null || pixels < ImageUtils.getParallelThreshold() ?
+                1 : Math.min(height, Runtime.getRuntime().availableProcessors());
+        Histogram histogram;
+        if (bandCount == 1) {
+            // the counts and sums are only used on this thread until the palette and the mapping are created
+            histogram = HISTOGRAMS.get();
+            histogram.reset(maxColors);
+            histogram.add(source, 0, height);
+        } else {
+            Histogram merged = new Histogram(maxColors);
+            RowBands.forEachBand(bandCount, pixels, executor, (startBand, endBand) -> {
+                Histogram bandHistogram = HISTOGRAMS.get();
+                bandHistogram.reset(maxColors);
+                bandHistogram.add(RowSource.of(image), height * startBand / bandCount, height * endBand / bandCount);
+                synchronized (merged) {
+                    merged.merge(bandHistogram);
+                }
+            });
+            histogram = merged;
+        }
+
+        byte[] indices = new byte[width * height];
+        PaletteImage paletteImage;
+        if (histogram.colors.isFull()) {
+            int[] palette = createPalette(histogram);
+            Mapping mapping = new Mapping(palette, histogram);
+            RowBands.forEachBand(height, pixels, executor, (startRow, endRow) -> {
+                if (dithering) {
+                    mapping.mapDithered(RowSource.of(image), startRow, endRow, indices);
+                } else {
+                    mapping.map(RowSource.of(image), startRow, endRow, indices);
+                }
+            });
+            paletteImage = new PaletteImage(width, height, palette, indices, source.getChannels(), source.getColorSpace(), false);
+        } else {
+            // every color has an entry, ordered by color so the palette doesn't depend on the bands
+            ColorSet colors = histogram.colors;
+            int[] palette = colors.toSortedArray();
+            for (int i = 0; i < palette.length; i++) {
+                colors.setIndex(palette[i], i);
+            }
+            RowBands.forEachBand(height, pixels, executor, (startRow, endRow) -> mapExact(RowSource.of(image), startRow, endRow, colors, indices));
+            paletteImage = new PaletteImage(width, height, palette, indices, source.getChannels(), source.getColorSpace(), true);
+        }
+        return paletteImage;
+    }
+
+    private int[] createPalette(Histogram histogram) {
+        int[] buckets = new int[BUCKETS];
+        int size = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (histogram.counts[i] > 0) {
+                buckets[size++] = i;
+            }
+        }
+
+        // split the box with the most pixels times the widest range, until the palette is full
+        PriorityQueue<Box> queue = new PriorityQueue<>((a, b) -> Long.compare(b.score, a.score));
+        List<Box> boxes = new ArrayList<>();
+        queue.add(new Box(buckets, 0, size, histogram.counts));
+        while (!queue.isEmpty() && queue.size() + boxes.size() < maxColors) {
+            Box box = queue.poll();
+            if (box.end - box.start < 2) {
+                boxes.add(box);
+                continue;
+            }
+            int median = box.split(buckets, histogram.counts);
+            queue.add(new Box(buckets, box.start, median, histogram.counts));
+            queue.add(new Box(buckets, median, box.end, histogram.counts));
+        }
+        boxes.addAll(queue);
+
+        int[] palette = new int[boxes.size()];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = boxes.get(i).getAverageColor(buckets, histogram);
+        }
+        Arrays.sort(palette);
+        return palette;
+    }
+
+    private static void mapExact(RowSource source, int startRow, int endRow, ColorSet colors, byte[] indices) {
+        int width = source.getWidth();
+        int channels = source.getChannels();
+        byte[] row = new byte[width * channels];
+        int lastColor = 0;
+        int lastIndex = -1;
+        for (int y = startRow; y < endRow; y++) {
+            source.readRow(y, row);
+            for (int x = 0, offset = 0, i = y * width; x < width; x++, offset += channels, i++) {
+                int color = pack(row, offset, channels);
+                if (color != lastColor || lastIndex < 0) {
+                    lastColor = color;
+                    lastIndex = colors.getIndex(color);
+                }
+                indices[i] = (byte) lastIndex;
+            }
+        }
+    }
+
+    private static int pack(byte[] row, int offset, int channels) {
+        return (row[offset] & 0xFF) << 24 | (row[offset + 1] & 0xFF) << 16 | (row[offset + 2] & 0xFF) << 8 |
+                (channels == 4 ? row[offset + 3] & 0xFF : 0xFF);
+    }
+
+    private static int getBucket(int red, int green, int blue) {
+        return (red >>> 3) << 11 | (green >>> 2) << 5 | blue >>> 3;
+    }
+
+    private static int getRed(int bucket) {
+        return (bucket >>> 11) << 3 | 4;
+    }
+
+    private static int getGreen(int bucket) {
+        return ((bucket >>> 5) & 0x3F) << 2 | 2;
+    }
+
+    private static int getBlue(int bucket) {
+        return (bucket & 0x1F) << 3 | 4;
+    }
+
+    /**
+     * The number of pixels and the sum of the channels in each bucket of colors, and the distinct colors as long as
+     * they fit in the palette.
+     */
+    private static class Histogram {
+
+        private final int[] counts = new int[BUCKETS];
+        private final long[] sums = new long[BUCKETS * 4];
+        private ColorSet colors;
+
+        Histogram(int maxColors) {
+            this.colors = new ColorSet(maxColors);
+        }
+
+        /**
+         * Clears the histogram. The colors are replaced by a new set, so a previous set can still be used.
+         */
+        void reset(int maxColors) {
+            Arrays.fill(counts, 0);
+            Arrays.fill(sums, 0);
+            colors = new ColorSet(maxColors);
+        }
+
+        void add(RowSource source, int startRow, int endRow) {
+            int width = source.getWidth();
+            int channels = source.getChannels();
+            byte[] row = new byte[width * channels];
+            int lastColor = 0;
+            boolean first = true;
+            for (int y = startRow; y < endRow; y++) {
+                source.readRow(y, row);
+                for (int offset = 0; offset < row.length; offset += channels) {
+                    int color = pack(row, offset, channels);
+                    int red = color >>> 24;
+                    int green = (color >>> 16) & 0xFF;
+                    int blue = (color >>> 8) & 0xFF;
+                    int bucket = getBucket(red, green, blue);
+                    counts[bucket]++;
+                    int sum = bucket << 2;
+                    sums[sum] += red;
+                    sums[sum + 1] += green;
+                    sums[sum + 2] += blue;
+                    sums[sum + 3] += color & 0xFF;
+                    // neighbouring pixels often have the same color
+                    if ((color != lastColor || first) && !colors.isFull()) {
+                        lastColor = color;
+                        first = false;
+                        colors.add(color);
+                    }
+                }
+            }
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += other.counts[i];
+            }
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += other.sums[i];
+            }
+            colors.addAll(other.colors);
+        }
+
+    }
+
+    /**
+     * An open addressing hash set of colors with a palette index per color. The set is full when it holds more colors
+     * than the palette, then colors are no longer added.
+     */
+    private static class ColorSet {
+
+        private final int maxColors;
+        private final int[] keys;
+        private final int[] values;
+        private final boolean[] used;
+        private int size;
+
+        ColorSet(int maxColors) {
+            this.maxColors = maxColors;
+            this.keys = new int[1024];
+            this.values = new int[keys.length];
+            this.used = new boolean[keys.length];
+        }
+
+        boolean isFull() {
+            return size > maxColors;
+        }
+
+        void add(int color) {
+            int slot = find(color);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = color;
+                size++;
+            }
+        }
+
+        void addAll(ColorSet other) {
+            if (other.isFull()) {
+                size = maxColors + 1;
+                return;
+            }
+            for (int i = 0; i < other.keys.length && !isFull(); i++) {
+                if (other.used[i]) {
+                    add(other.keys[i]);
+                }
+            }
+        }
+
+        int getIndex(int color) {
+            return values[find(color)];
+        }
+
+        void setIndex(int color, int index) {
+            values[find(color)] = index;
+        }
+
+        int[] toSortedArray() {
+            int[] colors = new int[size];
+            for (int i = 0, j = 0; i < keys.length; i++) {
+                if (used[i]) {
+                    colors[j++] = keys[i];
+                }
+            }
+            Arrays.sort(colors);
+            return colors;
+        }
+
+        private int find(int color) {
+            int mask = keys.length - 1;
+            int slot = (color * 0x9E3779B9) >>> 22 & mask;
+            while (used[slot] && keys[slot] != color) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+    }
+
+    /**
+     * A range of buckets in the bucket array, with the number of pixels and the range of the colors.
+     */
+    private static class Box {
+
+        private final int start;
+        private final int end;
+        private final int channel;
+        private final long score;
+
+        Box(int[] buckets, int start, int end, int[] counts) {
+            this.start = start;
+            this.end = end;
+            int[] min = {255, 255, 255};
+            int[] max = {0, 0, 0};
+            long pixels = 0;
+            for (int i = start; i < end; i++) {
+                int bucket = buckets[i];
+                int[] color = {getRed(bucket), getGreen(bucket), getBlue(bucket)};
+                for (int c = 0; c < 3; c++) {
+                    min[c] = Math.min(min[c], color[c]);
+                    max[c] = Math.max(max[c], color[c]);
+                }
+                pixels += counts[bucket];
+            }
+            int widest = 0;
+            for (int c = 1; c < 3; c++) {
+                if (max[c] - min[c] > max[widest] - min[widest]) {
+                    widest = c;
+                }
+            }
+            this.channel = widest;
+            this.score = pixels * (max[widest] - min[widest]);
+        }
+
+        /**
+         * Sorts the buckets of the box along the widest channel and returns the index of the median pixel.
+         */
+        int split(int[] buckets, int[] counts) {
+            int shift = channel == 0 ? 11 : channel == 1 ? 5 : 0;
+            int mask = channel == 1 ? 0x3F : 0x1F;
+            long[] keys = new long[end - start];
+            long pixels = 0;
+            for (int i = start; i < end; i++) {
+                keys[i - start] = (long) ((buckets[i] >>> shift) & mask) << 32 | buckets[i];
+                pixels += counts[buckets[i]];
+            }
+            Arrays.sort(keys);
+
+            long half = pixels / 2;
+            long sum = 0;
+            int median = start + 1;
+            for (int i = 0; i < keys.length; i++) {
+                buckets[start + i] = (int) keys[i];
+                sum += counts[buckets[start + i]];
+                if (sum <= half) {
+                    median = start + i + 1;
+                }
+            }
+            // both halves hold at least one bucket
+            return Math.max(start + 1, Math.min(end - 1, median));
+        }
+
+        int getAverageColor(int[] buckets, Histogram histogram) {
+            long pixels = 0;
+            long[] sums = new long[4];
+            for (int i = start; i < end; i++) {
+                int bucket = buckets[i];
+                pixels += histogram.counts[bucket];
+                for (int c = 0; c < 4; c++) {
+                    sums[c] += histogram.sums[(bucket << 2) + c];
+                }
+            }
+            int color = 0;
+            for (int c = 0; c < 4; c++) {
+                color = color << 8 | (int) ((sums[c] + pixels / 2) / pixels);
+            }
+            return color;
+        }
+
+    }
+
+    /**
+     * Maps colors to the nearest color of the palette. The nearest color of each bucket is looked up once, buckets
+     * that are only reached by dithering are looked up on first use. Threads that look up the same bucket at the same
+     * time find the same color, so the lookup table can be shared.
+     */
+    private static class Mapping {
+
+        private final int[] palette;
+        private final int[] bucketIndices = new int[BUCKETS];
+
+        Mapping(int[] palette, Histogram histogram) {
+            this.palette = palette;
+            for (int i = 0; i < BUCKETS; i++) {
+                bucketIndices[i] = histogram.counts[i] > 0 ? findNearest(getRed(i), getGreen(i), getBlue(i)) : -1;
+            }
+        }
+
+        void map(RowSource source, int startRow, int endRow, byte[] indices) {
+            int width = source.getWidth();
+            int channels = source.getChannels();
+            byte[] row = new byte[width * channels];
+            for (int y = startRow; y < endRow; y++) {
+                source.readRow(y, row);
+                for (int x = 0, offset = 0, i = y * width; x < width; x++, offset += channels, i++) {
+                    indices[i] = (byte) getIndex(row[offset] & 0xFF, row[offset + 1] & 0xFF, row[offset + 2] & 0xFF);
+                }
+            }
+        }
+
+        /**
+         * Maps the rows with Floyd-Steinberg dithering. The errors of the current and next row are kept in 1/16 units.
+         */
+        void mapDithered(RowSource source, int startRow, int endRow, byte[] indices) {
+            int width = source.getWidth();
+            int channels = source.getChannels();
+            byte[] row = new byte[width * channels];
+            int[] errors = new int[(width + 2) * 3];
+            int[] nextErrors = new int[(width + 2) * 3];
+            for (int y = startRow; y < endRow; y++) {
+                source.readRow(y, row);
+                for (int x = 0, offset = 0, i = y * width; x < width; x++, offset += channels, i++) {
+                    int e = (x + 1) * 3;
+                    int red = clamp((row[offset] & 0xFF) + (errors[e] >> 4));
+                    int green = clamp((row[offset + 1] & 0xFF) + (errors[e + 1] >> 4));
+                    int blue = clamp((row[offset + 2] & 0xFF) + (errors[e + 2] >> 4));
+                    int index = getIndex(red, green, blue);
+                    indices[i] = (byte) index;
+
+                    int color = palette[index];
+                    diffuse(red - (color >>> 24), e, errors, nextErrors);
+                    diffuse(green - ((color >>> 16) & 0xFF), e + 1, errors, nextErrors);
+                    diffuse(blue - ((color >>> 8) & 0xFF), e + 2, errors, nextErrors);
+                }
+                int[] swap = errors;
+                errors = nextErrors;
+                nextErrors = swap;
+                Arrays.fill(nextErrors, 0);
+            }
+        }
+
+        private static void diffuse(int error, int e, int[] errors, int[] nextErrors) {
+            errors[e + 3] += error * 7;
+            nextErrors[e - 3] += error * 3;
+            nextErrors[e] += error * 5;
+            nextErrors[e + 3] += error;
+        }
+
+        private static int clamp(int value) {
+            return value < 0 ? 0 : Math.min(value, 255);
+        }
+
+        private int getIndex(int red, int green, int blue) {
+            int bucket = getBucket(red, green, blue);
+            int index = bucketIndices[bucket];
+            if (index < 0) {
+                index = findNearest(getRed(bucket), getGreen(bucket), getBlue(bucket));
+                bucketIndices[bucket] = index;
+            }
+            return index;
+        }
+
+        private int findNearest(int red, int green, int blue) {
+            int nearest = 0;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < palette.length; i++) {
+                int color = palette[i];
+                int dr = red - (color >>> 24);
+                int dg = green - ((color >>> 16) & 0xFF);
+                int db = blue - ((color >>> 8) & 0xFF);
+                int distance = dr * dr + dg * dg + db * db;
+                if (distance < nearestDistance) {
+                    nearestDistance = distance;
+                    nearest = i;
+                }
+            }
+            return nearest;
+        }
+
+    }
+
+}
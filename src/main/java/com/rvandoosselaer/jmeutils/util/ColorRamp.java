@@ -0,0 +1,283 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import lombok.Getter;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A lookup table of a gradient between color stops, created with
+ * {@link ColorUtils#createColorRamp(int, Interpolation, float[], String...)}. The colors are baked once, mapping a
+ * value to a color is a single lookup of the nearest entry. Use a ramp to color heat maps or terrain overlays: map a
+ * buffer of scalar values to the color buffer of a mesh, or sample the ramp in a shader as a texture.
+ * <p>
+ * The colors of the table are in linear space, like the colors created by {@link ColorUtils#fromHex(String)}.
+ *
+ * @author rvandoosselaer
+ */
+public class ColorRamp {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * The number of entries of the table.
+     */
+    @Getter
+    private final int size;
+    @Getter
+    private final Interpolation interpolation;
+    private final float[] colors;
+    private final byte[] bytes;
+
+    ColorRamp(int size, Interpolation interpolation, float[] positions, int[] stops) {
+        this.size = size;
+        this.interpolation = interpolation;
+        this.colors = new float[size * 4];
+        int stop = 0;
+        for (int i = 0; i < size; i++) {
+            float t = size == 1 ? 0 : i / (float) (size - 1);
+            while (stop < stops.length - 2 && t > positions[stop + 1]) {
+                stop++;
+            }
+            float start = positions[stop];
+            float end = positions[stop + 1];
+            float f = end > start ? Math.min(1, Math.max(0, (t - start) / (end - start))) : t < start ? 0 : 1;
+            for (int c = 0; c < 4; c++) {
+                int shift = 24 - c * 8;
+                float from = ((stops[stop] >>> shift) & 0xFF) / 255f;
+                float to = ((stops[stop + 1] >>> shift) & 0xFF) / 255f;
+                if (c == 3) {
+                    // alpha is always interpolated linearly
+                    colors[i * 4 + c] = from + (to - from) * f;
+                } else if (interpolation == Interpolation.SRGB) {
+                    colors[i * 4 + c] = ColorUtils.srgbToLinear(from + (to - from) * f);
+                } else {
+                    float linearFrom = ColorUtils.srgbToLinear(from);
+                    float linearTo = ColorUtils.srgbToLinear(to);
+                    colors[i * 4 + c] = linearFrom + (linearTo - linearFrom) * f;
+                }
+            }
+        }
+        this.bytes = new byte[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            bytes[i] = toByte(colors[i]);
+        }
+    }
+
+    /**
+     * Returns the color of the entry nearest to the value, with 0 the first and 1 the last entry.
+     *
+     * @param value the value between 0 and 1, values outside are clamped
+     * @param store the color to store the result in, or null to create a new color
+     * @return the color
+     */
+    public ColorRGBA getColor(float value, ColorRGBA store) {
+        int index = getIndex(value, 0, 1);
+        ColorRGBA color = store != null ? store : new ColorRGBA();
+        return color.set(colors[index], colors[index + 1], colors[index + 2], colors[index + 3]);
+    }
+
+    /**
+     * @return a copy of the RGBA values of the entries in linear space
+     */
+    public float[] getColors() {
+        return colors.clone();
+    }
+
+    /**
+     * @return a copy of the RGBA8 values of the entries in linear space
+     */
+    public byte[] getBytes() {
+        return bytes.clone();
+    }
+
+    /**
+     * Returns the entries of the table as a direct buffer of RGBA8 values in linear space, e.g. for a color vertex
+     * buffer with normalized unsigned bytes.
+     *
+     * @return the buffer, with the position at 0 and the limit at the end of the table
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(bytes.length);
+        buffer.put(bytes);
+        Buffers.flip(buffer);
+        return buffer;
+    }
+
+    /**
+     * Creates an RGBA8 image of the table that is 1 pixel high. The image is in sRGB space, so the GPU converts the
+     * colors back to linear space when the texture is sampled.
+     *
+     * @return the image
+     */
+    public Image createImage() {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, size, 1);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < colors.length; i++) {
+            data.put(i, i % 4 == 3 ? toByte(colors[i]) : toByte(ColorUtils.linearToSrgb(colors[i])));
+        }
+        image.setColorSpace(ColorSpace.sRGB);
+        return image;
+    }
+
+    /**
+     * Creates a texture of the table, see {@link #createImage()}. The texture is bilinear filtered and clamped at the
+     * edges, sample it with a texture coordinate of (value, 0.5).
+     *
+     * @return the texture
+     */
+    public Texture2D createTexture() {
+        Texture2D texture = new Texture2D(createImage());
+        texture.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+        texture.setMagFilter(Texture.MagFilter.Bilinear);
+        texture.setWrap(Texture.WrapMode.EdgeClamp);
+        return texture;
+    }
+
+    /**
+     * Maps the values between the position and the limit of the buffer to RGBA colors. The colors are written to
+     * the color buffer starting at its position. The positions of the buffers aren't changed.
+     *
+     * @param values the values
+     * @param min    the value that is mapped to the first entry
+     * @param max    the value that is mapped to the last entry
+     * @param colors the destination, with room for 4 floats per value
+     * @throws IllegalArgumentException when the color buffer is too small
+     */
+    public void map(FloatBuffer values, float min, float max, FloatBuffer colors) {
+        int count = values.remaining();
+        if (colors.remaining() < count * 4) {
+            throw new IllegalArgumentException("Color buffer with " + colors.remaining() + " floats remaining is too small for " + count + " values!");
+        }
+
+        FloatBuffer source = values.duplicate();
+        FloatBuffer target = colors.duplicate();
+        float[] chunk = new float[Math.min(count, CHUNK_SIZE)];
+        float[] colorChunk = new float[chunk.length * 4];
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, count - start);
+            source.get(chunk, 0, length);
+            for (int i = 0, offset = 0; i < length; i++, offset += 4) {
+                int index = getIndex(chunk[i], min, max);
+                colorChunk[offset] = this.colors[index];
+                colorChunk[offset + 1] = this.colors[index + 1];
+                colorChunk[offset + 2] = this.colors[index + 2];
+                colorChunk[offset + 3] = this.colors[index + 3];
+            }
+            target.put(colorChunk, 0, length * 4);
+        }
+    }
+
+    /**
+     * Maps the values between the position and the limit of the buffer to RGBA8 colors in linear space, for a color
+     * vertex buffer with normalized unsigned bytes. The positions of the buffers aren't changed.
+     *
+     * @param values the values
+     * @param min    the value that is mapped to the first entry
+     * @param max    the value that is mapped to the last entry
+     * @param colors the destination, with room for 4 bytes per value
+     * @throws IllegalArgumentException when the color buffer is too small
+     */
+    public void map(FloatBuffer values, float min, float max, ByteBuffer colors) {
+        int count = values.remaining();
+        if (colors.remaining() < count * 4) {
+            throw new IllegalArgumentException("Color buffer with " + colors.remaining() + " bytes remaining is too small for " + count + " values!");
+        }
+
+        FloatBuffer source = values.duplicate();
+        ByteBuffer target = colors.duplicate();
+        float[] chunk = new float[Math.min(count, CHUNK_SIZE)];
+        byte[] colorChunk = new byte[chunk.length * 4];
+        for (int start = 0; start < count; start += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, count - start);
+            source.get(chunk, 0, length);
+            for (int i = 0, offset = 0; i < length; i++, offset += 4) {
+                int index = getIndex(chunk[i], min, max);
+                colorChunk[offset] = bytes[index];
+                colorChunk[offset + 1] = bytes[index + 1];
+                colorChunk[offset + 2] = bytes[index + 2];
+                colorChunk[offset + 3] = bytes[index + 3];
+            }
+            target.put(colorChunk, 0, length * 4);
+        }
+    }
+
+    /**
+     * Maps the values to the color buffer of the mesh, one value per vertex. The color buffer of the mesh is reused
+     * when it's an RGBA float or normalized unsigned byte buffer that is large enough, otherwise it's replaced by a new
+     * float color buffer.
+     *
+     * @param values the values, from the position to the limit
+     * @param min    the value that is mapped to the first entry
+     * @param max    the value that is mapped to the last entry
+     * @param mesh   the mesh
+     */
+    public void map(FloatBuffer values, float min, float max, Mesh mesh) {
+        int floats = values.remaining() * 4;
+        VertexBuffer vertexBuffer = mesh.getBuffer(VertexBuffer.Type.Color);
+        Buffer data = vertexBuffer != null ? vertexBuffer.getData() : null;
+        boolean rgba = vertexBuffer != null && vertexBuffer.getNumComponents() == 4;
+        if (rgba && data instanceof FloatBuffer && data.capacity() >= floats) {
+            FloatBuffer colors = (FloatBuffer) data;
+            Buffers.clear(colors);
+            Buffers.limit(colors, floats);
+            map(values, min, max, colors);
+            vertexBuffer.updateData(colors);
+            return;
+        }
+        if (rgba && data instanceof ByteBuffer && vertexBuffer.getFormat() == VertexBuffer.Format.UnsignedByte
+                && vertexBuffer.isNormalized() && data.capacity() >= floats) {
+            ByteBuffer colors = (ByteBuffer) data;
+            Buffers.clear(colors);
+            Buffers.limit(colors, floats);
+            map(values, min, max, colors);
+            vertexBuffer.updateData(colors);
+            return;
+        }
+
+        FloatBuffer colors = BufferUtils.createFloatBuffer(floats);
+        map(values, min, max, colors);
+        if (vertexBuffer != null) {
+            // the mesh doesn't allow changing the format of an existing buffer
+            mesh.clearBuffer(VertexBuffer.Type.Color);
+        }
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, colors);
+    }
+
+    /**
+     * Returns the offset in the color array of the entry nearest to the value. NaN is mapped to the first entry.
+     */
+    private int getIndex(float value, float min, float max) {
+        float scaled = (value - min) / (max - min) * (size - 1);
+        int index = scaled > 0 ? (int) (scaled + 0.5f) : 0;
+        return Math.min(index, size - 1) << 2;
+    }
+
+    private static byte toByte(float value) {
+        return (byte) Math.round(Math.min(1, Math.max(0, value)) * 255);
+    }
+
+    /**
+     * How the colors between two stops are interpolated.
+     */
+    public enum Interpolation {
+        /**
+         * Interpolates the sRGB values of the stops, the gradient looks even to the eye
+         */
+        SRGB,
+        /**
+         * Interpolates the linear values of the stops, like blending the colors of the stops
+         */
+        LINEAR
+    }
+
+}
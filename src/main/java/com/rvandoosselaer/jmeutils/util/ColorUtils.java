@@ -3,14 +3,51 @@ package com.rvandoosselaer.jmeutils.util;
 import com.jme3.math.ColorRGBA;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.FloatBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * A helper class with utility methods for color related operations.
+ * <p>
+ * Colors are converted between sRGB and linear space with a gamma of 2.2, like
+ * {@link ColorRGBA#setAsSrgb(float, float, float, float)}. The bulk conversions of arrays and buffers convert 8 bit
+ * values with a table of 256 entries, and floats with a {@link PowTable} that is within 1e-5 of
+ * {@link Math#pow(double, double)} for values between 0 and 1. Large arrays and buffers are converted in bands on an
+ * executor, by default the common {@link ForkJoinPool}, see {@link ImageUtils#getParallelThreshold()}.
  *
  * @author rvandoosselaer
  */
 @Slf4j
 public class ColorUtils {
 
+    private static final double GAMMA = 2.2;
+    /**
+     * The value of each hexadecimal digit, -1 for other characters.
+     */
+    private static final byte[] HEX_DIGITS = createHexDigitTable();
+    /**
+     * The two upper case hex digits of each byte value.
+     */
+    private static final char[] HEX_PAIRS = createHexPairTable();
+    private static final int HEX_LENGTH = 9;
+    /**
+     * The linear value of each 8 bit sRGB value, as converted by {@link ColorRGBA#setAsSrgb(float, float, float, float)}.
+     */
+    private static final float[] SRGB_TO_LINEAR = createSrgbToLinearTable();
+    private static final byte[] SRGB_TO_LINEAR_BYTES = createByteTable(GAMMA);
+    private static final byte[] LINEAR_TO_SRGB_BYTES = createByteTable(1 / GAMMA);
+    private static final PowTable SRGB_TO_LINEAR_FLOATS = new PowTable(GAMMA);
+    private static final PowTable LINEAR_TO_SRGB_FLOATS = new PowTable(1 / GAMMA);
+    /**
+     * The number of colors of a buffer that are converted in one bulk copy.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
     public static ColorRGBA fromHex(String hex) {
         return fromHex(hex, false);
     }
@@ -33,15 +70,176 @@ public class ColorUtils {
      * @return hexadecimal string
      */
     public static String toHex(ColorRGBA color, boolean includeAlphaChannel) {
-        return includeAlphaChannel ?
-                "#" + leftPad(Integer.toHexString((int) (color.r * 255))).toUpperCase()
-                        + leftPad(Integer.toHexString((int) (color.g * 255))).toUpperCase()
-                        + leftPad(Integer.toHexString((int) (color.b * 255))).toUpperCase()
-                        + leftPad(Integer.toHexString((int) (color.a * 255))).toUpperCase()
-                :
-                "#" + leftPad(Integer.toHexString((int) (color.r * 255))).toUpperCase()
-                        + leftPad(Integer.toHexString((int) (color.g * 255))).toUpperCase()
-                        + leftPad(Integer.toHexString((int) (color.b * 255))).toUpperCase();
+        return toHex(toIntRGBA(color), includeAlphaChannel);
+    }
+
+    /**
+     * Returns the hexadecimal representation of the supplied color. When the hex string is not in linear space, the
+     * values are converted to sRGB space, the inverse of {@link #fromHex(String, boolean)}.
+     *
+     * @param color               the color
+     * @param includeAlphaChannel whether or not the alpha channel should be returned
+     * @param linearSpace         if the hex string is in linear space
+     * @return hexadecimal string
+     */
+    public static String toHex(ColorRGBA color, boolean includeAlphaChannel, boolean linearSpace) {
+        return toHex(toIntRGBA(color, linearSpace), includeAlphaChannel);
+    }
+
+    /**
+     * Returns the hexadecimal representation of the packed RGBA value, eg. #FF8000FF.
+     *
+     * @param rgba                the color packed as 0xRRGGBBAA
+     * @param includeAlphaChannel whether or not the alpha channel should be returned
+     * @return hexadecimal string
+     */
+    public static String toHex(int rgba, boolean includeAlphaChannel) {
+        char[] chars = new char[HEX_LENGTH];
+        return new String(chars, 0, encodeHex(rgba, includeAlphaChannel, chars, 0));
+    }
+
+    /**
+     * Appends the hexadecimal representation of the color to the string builder, without creating intermediate
+     * strings. See {@link #toHex(ColorRGBA, boolean)}.
+     *
+     * @param builder             the string builder
+     * @param color               the color
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @return the string builder
+     */
+    public static StringBuilder appendHex(StringBuilder builder, ColorRGBA color, boolean includeAlphaChannel) {
+        return appendHex(builder, toIntRGBA(color), includeAlphaChannel);
+    }
+
+    /**
+     * Appends the hexadecimal representation of the color to the string builder, without creating intermediate
+     * strings. See {@link #toHex(ColorRGBA, boolean, boolean)}.
+     *
+     * @param builder             the string builder
+     * @param color               the color
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @param linearSpace         if the hex string is in linear space
+     * @return the string builder
+     */
+    public static StringBuilder appendHex(StringBuilder builder, ColorRGBA color, boolean includeAlphaChannel,
+                                          boolean linearSpace) {
+        return appendHex(builder, toIntRGBA(color, linearSpace), includeAlphaChannel);
+    }
+
+    /**
+     * Appends the hexadecimal representation of the packed RGBA value to the string builder, without creating
+     * intermediate strings.
+     *
+     * @param builder             the string builder
+     * @param rgba                the color packed as 0xRRGGBBAA
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @return the string builder
+     */
+    public static StringBuilder appendHex(StringBuilder builder, int rgba, boolean includeAlphaChannel) {
+        builder.append('#');
+        int bytes = includeAlphaChannel ? 4 : 3;
+        for (int i = 0; i < bytes; i++) {
+            int index = ((rgba >>> (24 - i * 8)) & 0xFF) << 1;
+            builder.append(HEX_PAIRS[index]).append(HEX_PAIRS[index + 1]);
+        }
+        return builder;
+    }
+
+    /**
+     * Appends the hexadecimal representation of the packed RGBA value, eg. to a {@link java.io.Writer}.
+     *
+     * @param out                 the output
+     * @param rgba                the color packed as 0xRRGGBBAA
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @return the output
+     * @throws IOException when the output can't be written
+     */
+    public static Appendable appendHex(Appendable out, int rgba, boolean includeAlphaChannel) throws IOException {
+        char[] chars = new char[HEX_LENGTH];
+        write(out, chars, encodeHex(rgba, includeAlphaChannel, chars, 0));
+        return out;
+    }
+
+    /**
+     * Appends the hexadecimal representation of the colors, separated by the separator, eg. to a
+     * {@link java.io.Writer}. The colors are encoded in chunks, each chunk is written to the output at once.
+     *
+     * @param out                 the output
+     * @param colors              the colors
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @param separator           the characters between two colors
+     * @return the output
+     * @throws IOException when the output can't be written
+     */
+    public static Appendable appendHex(Appendable out, ColorRGBA[] colors, boolean includeAlphaChannel,
+                                       CharSequence separator) throws IOException {
+        int[] rgba = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            rgba[i] = toIntRGBA(colors[i]);
+        }
+        return appendHex(out, rgba, 0, rgba.length, includeAlphaChannel, separator);
+    }
+
+    /**
+     * Appends the hexadecimal representation of the packed RGBA values, separated by the separator, eg. to a
+     * {@link java.io.Writer}. The colors are encoded in chunks, each chunk is written to the output at once.
+     *
+     * @param out                 the output
+     * @param colors              the colors packed as 0xRRGGBBAA
+     * @param offset              the index of the first color
+     * @param length              the number of colors
+     * @param includeAlphaChannel whether or not the alpha channel should be appended
+     * @param separator           the characters between two colors
+     * @return the output
+     * @throws IOException when the output can't be written
+     */
+    public static Appendable appendHex(Appendable out, int[] colors, int offset, int length,
+                                       boolean includeAlphaChannel, CharSequence separator) throws IOException {
+        int separatorLength = separator.length();
+        char[] chars = new char[Math.min(length, CHUNK_SIZE) * (HEX_LENGTH + separatorLength)];
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            if (i > 0) {
+                for (int c = 0; c < separatorLength; c++) {
+                    chars[position++] = separator.charAt(c);
+                }
+            }
+            position = encodeHex(colors[offset + i], includeAlphaChannel, chars, position);
+            if (position > chars.length - HEX_LENGTH - separatorLength) {
+                write(out, chars, position);
+                position = 0;
+            }
+        }
+        write(out, chars, position);
+        return out;
+    }
+
+    /**
+     * Returns the color packed as 0xRRGGBBAA. The values of the color are clamped between 0 and 1 and rounded to the
+     * nearest 8 bit value, so colors that are created from a hex string or packed value in linear space are packed
+     * to the same value.
+     *
+     * @param color the color
+     * @return the packed RGBA value
+     */
+    public static int toIntRGBA(ColorRGBA color) {
+        return (toByte(color.r) << 24) | (toByte(color.g) << 16) | (toByte(color.b) << 8) | toByte(color.a);
+    }
+
+    /**
+     * Returns the color packed as 0xRRGGBBAA. When the packed value is not in linear space, the color values are
+     * converted from linear to sRGB space with a gamma of 2.2, the inverse of {@link #fromIntRGBA(int, boolean)}: a
+     * color that is created from a packed value is packed to the same value.
+     *
+     * @param color       the color
+     * @param linearSpace if the packed value is in linear space
+     * @return the packed RGBA value
+     */
+    public static int toIntRGBA(ColorRGBA color, boolean linearSpace) {
+        if (linearSpace) {
+            return toIntRGBA(color);
+        }
+        return (toSrgbByte(color.r) << 24) | (toSrgbByte(color.g) << 16) | (toSrgbByte(color.b) << 8) | toByte(color.a);
     }
 
     /**
@@ -54,21 +252,47 @@ public class ColorUtils {
      * @return the color derived from the hex, or null when the parsing did not succeed
      */
     public static ColorRGBA fromHex(String hex, boolean linearSpace) {
-        String cleaned = clean(hex);
-        if (cleaned.length() == 6) {
-            cleaned += "FF"; // add alpha
-        }
-        if (cleaned.length() != 8) {
+        long rgba = parseHex(hex);
+        if (rgba < 0) {
             log.error("Invalid hex code: '{}' specified!", hex);
             return null;
         }
-        try {
-            return linearSpace ? new ColorRGBA(Integer.valueOf(cleaned.substring(0, 2), 16) / 255.0f, Integer.valueOf(cleaned.substring(2, 4), 16) / 255.0f, Integer.valueOf(cleaned.substring(4, 6), 16) / 255.0f, Integer.valueOf(cleaned.substring(6), 16) / 255.0f) :
-                    new ColorRGBA().setAsSrgb(Integer.valueOf(cleaned.substring(0, 2), 16) / 255.0f, Integer.valueOf(cleaned.substring(2, 4), 16) / 255.0f, Integer.valueOf(cleaned.substring(4, 6), 16) / 255.0f, Integer.valueOf(cleaned.substring(6), 16) / 255.0f);
-        } catch (Exception e) {
-            log.error("Invalid hex code: '{}' specified!", hex);
-            return null;
+        return fromIntRGBA((int) rgba, linearSpace);
+    }
+
+    /**
+     * Parses a hex string in the RRGGBB or RRGGBBAA format, with an optional leading '#', to a packed RGBA value. When
+     * the alpha channel is omitted, the color is opaque. Leading and trailing whitespace is ignored. The string is
+     * parsed character by character, nothing is allocated.
+     *
+     * @param hex the hex string
+     * @return the color packed as 0xRRGGBBAA
+     * @throws IllegalArgumentException when the hex string isn't valid
+     */
+    public static int parseHexToInt(CharSequence hex) {
+        long rgba = parseHex(hex);
+        if (rgba < 0) {
+            throw new IllegalArgumentException("Invalid hex code: '" + hex + "' specified!");
         }
+        return (int) rgba;
+    }
+
+    /**
+     * Returns a ColorRGBA object from the packed RGBA value. When the color is not in linear space, the values will be
+     * gamma corrected to be stored in linear space. The gamma corrected values are looked up in a table, the result is
+     * the same as {@link ColorRGBA#setAsSrgb(float, float, float, float)}.
+     *
+     * @param rgba        the color packed as 0xRRGGBBAA
+     * @param linearSpace if the color is in linear space
+     * @return the color
+     */
+    public static ColorRGBA fromIntRGBA(int rgba, boolean linearSpace) {
+        int red = rgba >>> 24;
+        int green = (rgba >>> 16) & 0xFF;
+        int blue = (rgba >>> 8) & 0xFF;
+        float alpha = (rgba & 0xFF) / 255f;
+        return linearSpace ? new ColorRGBA(red / 255f, green / 255f, blue / 255f, alpha) :
+                new ColorRGBA(SRGB_TO_LINEAR[red], SRGB_TO_LINEAR[green], SRGB_TO_LINEAR[blue], alpha);
     }
 
     /**
@@ -113,23 +337,373 @@ public class ColorUtils {
             log.error("Invalid alpha value: '{}' specified!", alpha);
             return null;
         }
-        try {
-            return linearSpace ? new ColorRGBA(red / 255f, green / 255f, blue / 255f, alpha / 255f) :
-                    new ColorRGBA().setAsSrgb(red / 255f, green / 255f, blue / 255f, alpha / 255f);
-        } catch (Exception e) {
-            log.error("Invalid RGBA value: '{}, {}, {}, {}' specified!", red, green, blue, alpha);
-            return null;
+        return fromIntRGBA((red << 24) | (green << 16) | (blue << 8) | alpha, linearSpace);
+    }
+
+    /**
+     * Creates a color ramp with evenly spaced stops, see {@link #createColorRamp(int, ColorRamp.Interpolation, float[], String...)}.
+     *
+     * @param size          the number of entries of the lookup table
+     * @param interpolation how the colors between two stops are interpolated
+     * @param hexStops      the colors of the stops, at least 2
+     * @return the color ramp
+     */
+    public static ColorRamp createColorRamp(int size, ColorRamp.Interpolation interpolation, String... hexStops) {
+        float[] positions = new float[hexStops.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = positions.length > 1 ? i / (float) (positions.length - 1) : 0;
+        }
+        return createColorRamp(size, interpolation, positions, hexStops);
+    }
+
+    /**
+     * Creates a lookup table of a gradient between the stops. The hex strings of the stops are sRGB colors, like the
+     * colors of {@link #fromHex(String)}, with an optional alpha channel. Values before the first and after the last
+     * stop have the color of that stop.
+     *
+     * @param size          the number of entries of the lookup table, e.g. 256
+     * @param interpolation how the colors between two stops are interpolated
+     * @param positions     the positions of the stops between 0 and 1, in ascending order
+     * @param hexStops      the colors of the stops, at least 2
+     * @return the color ramp
+     * @throws IllegalArgumentException when the stops, the positions or the size aren't valid
+     */
+    public static ColorRamp createColorRamp(int size, ColorRamp.Interpolation interpolation, float[] positions, String... hexStops) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid size " + size + " specified!");
+        }
+        if (hexStops.length < 2 || positions.length != hexStops.length) {
+            throw new IllegalArgumentException("Invalid number of stops " + hexStops.length + " with " + positions.length + " positions specified!");
+        }
+        int[] stops = new int[hexStops.length];
+        for (int i = 0; i < stops.length; i++) {
+            if (positions[i] < 0 || positions[i] > 1 || (i > 0 && positions[i] < positions[i - 1])) {
+                throw new IllegalArgumentException("Invalid position " + positions[i] + " of stop " + i + " specified!");
+            }
+            stops[i] = parseHexToInt(hexStops[i]);
+        }
+        return new ColorRamp(size, interpolation, positions, stops);
+    }
+
+    /**
+     * Converts the colors in the array from sRGB to linear space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param values     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     */
+    public static void srgbToLinear(float[] values, int components) {
+        srgbToLinear(values, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the colors in the array from sRGB to linear space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param values     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void srgbToLinear(float[] values, int components, Executor executor) {
+        convert(values, components, SRGB_TO_LINEAR_FLOATS, executor);
+    }
+
+    /**
+     * Converts the colors in the array from linear to sRGB space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param values     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     */
+    public static void linearToSrgb(float[] values, int components) {
+        linearToSrgb(values, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the colors in the array from linear to sRGB space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param values     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void linearToSrgb(float[] values, int components, Executor executor) {
+        convert(values, components, LINEAR_TO_SRGB_FLOATS, executor);
+    }
+
+    /**
+     * Converts the colors between the position and the limit of the buffer from sRGB to linear space, in place. The
+     * position and limit of the buffer aren't changed. When a color has 4 components, the fourth component is alpha
+     * and is left as is. Values between 0 and 1 are approximated within 1e-5, values above 1 are calculated exactly
+     * and negative values are converted to 0.
+     *
+     * @param buffer     the color components, eg. the color buffer of a mesh
+     * @param components the number of components of a color: 1, 3 or 4
+     * @throws IllegalArgumentException when the buffer doesn't hold a whole number of colors
+     */
+    public static void srgbToLinear(FloatBuffer buffer, int components) {
+        srgbToLinear(buffer, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the colors of the buffer from sRGB to linear space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void srgbToLinear(FloatBuffer buffer, int components, Executor executor) {
+        convert(buffer, components, SRGB_TO_LINEAR_FLOATS, executor);
+    }
+
+    /**
+     * Converts the colors of the buffer from linear to sRGB space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     */
+    public static void linearToSrgb(FloatBuffer buffer, int components) {
+        linearToSrgb(buffer, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the colors of the buffer from linear to sRGB space, in place. See {@link #srgbToLinear(FloatBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void linearToSrgb(FloatBuffer buffer, int components, Executor executor) {
+        convert(buffer, components, LINEAR_TO_SRGB_FLOATS, executor);
+    }
+
+    /**
+     * Converts the 8 bit colors between the position and the limit of the buffer from sRGB to linear space, in place,
+     * eg. the pixels of a RGBA8 palette texture. The position and limit of the buffer aren't changed. When a color has
+     * 4 components, the fourth component is alpha and is left as is. The values are looked up in a table, each value
+     * is the rounded result of {@link Math#pow(double, double)}. Note that 8 bits lose precision in the dark colors
+     * of linear space.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @throws IllegalArgumentException when the buffer doesn't hold a whole number of colors
+     */
+    public static void srgbToLinear(ByteBuffer buffer, int components) {
+        srgbToLinear(buffer, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the 8 bit colors of the buffer from sRGB to linear space, in place. See
+     * {@link #srgbToLinear(ByteBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void srgbToLinear(ByteBuffer buffer, int components, Executor executor) {
+        convert(buffer, components, SRGB_TO_LINEAR_BYTES, executor);
+    }
+
+    /**
+     * Converts the 8 bit colors of the buffer from linear to sRGB space, in place. See
+     * {@link #srgbToLinear(ByteBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     */
+    public static void linearToSrgb(ByteBuffer buffer, int components) {
+        linearToSrgb(buffer, components, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the 8 bit colors of the buffer from linear to sRGB space, in place. See
+     * {@link #srgbToLinear(ByteBuffer, int)}.
+     *
+     * @param buffer     the color components
+     * @param components the number of components of a color: 1, 3 or 4
+     * @param executor   the executor to use, or null to convert the colors on the calling thread
+     */
+    public static void linearToSrgb(ByteBuffer buffer, int components, Executor executor) {
+        convert(buffer, components, LINEAR_TO_SRGB_BYTES, executor);
+    }
+
+    private static void convert(float[] values, int components, PowTable table, Executor executor) {
+        int colors = getColorCount(values.length, components);
+        RowBands.forEachBand(colors, colors, executor, (start, end) ->
+                table.apply(values, start * components, end * components, components));
+    }
+
+    private static void convert(FloatBuffer buffer, int components, PowTable table, Executor executor) {
+        int offset = buffer.position();
+        int colors = getColorCount(buffer.remaining(), components);
+        RowBands.forEachBand(colors, colors, executor, (start, end) -> {
+            // each band has its own view on the buffer, and copies chunks of colors to a scratch array
+            FloatBuffer view = buffer.duplicate();
+            float[] chunk = new float[Math.min(CHUNK_SIZE, end - start) * components];
+            for (int color = start; color < end; color += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, end - color) * components;
+                int position = offset + color * components;
+                Buffers.position(view, position);
+                view.get(chunk, 0, length);
+                table.apply(chunk, 0, length, components);
+                Buffers.position(view, position);
+                view.put(chunk, 0, length);
+            }
+        });
+    }
+
+    private static void convert(ByteBuffer buffer, int components, byte[] table, Executor executor) {
+        int offset = buffer.position();
+        int colors = getColorCount(buffer.remaining(), components);
+        int channels = Math.min(components, 3);
+        RowBands.forEachBand(colors, colors, executor, (start, end) -> {
+            ByteBuffer view = buffer.duplicate();
+            byte[] chunk = new byte[Math.min(CHUNK_SIZE, end - start) * components];
+            for (int color = start; color < end; color += CHUNK_SIZE) {
+                int length = Math.min(CHUNK_SIZE, end - color) * components;
+                int position = offset + color * components;
+                Buffers.position(view, position);
+                view.get(chunk, 0, length);
+                for (int i = 0; i < length; i += components) {
+                    for (int c = 0; c < channels; c++) {
+                        chunk[i + c] = table[chunk[i + c] & 0xFF];
+                    }
+                }
+                Buffers.position(view, position);
+                view.put(chunk, 0, length);
+            }
+        });
+    }
+
+    private static int getColorCount(int length, int components) {
+        if (components != 1 && components != 3 && components != 4) {
+            throw new IllegalArgumentException("Invalid number of components " + components + " specified!");
+        }
+        if (length % components != 0) {
+            throw new IllegalArgumentException("Invalid length " + length + " for colors with " + components + " components!");
         }
+        return length / components;
     }
 
-    private static String clean(String s) {
-        String string = s.trim();
-        string = string.startsWith("#") ? string.substring(1) : string;
-        return string;
+    /**
+     * Parses the hex string like {@link String#trim()} and {@link Integer#parseInt(String, int)} would, without
+     * creating substrings.
+     *
+     * @return the packed RGBA value, or -1 when the hex string isn't valid
+     */
+    private static long parseHex(CharSequence hex) {
+        if (hex == null) {
+            return -1;
+        }
+        int start = 0;
+        int end = hex.length();
+        while (start < end && hex.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && hex.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start < end && hex.charAt(start) == '#') {
+            start++;
+        }
+        int length = end - start;
+        if (length != 6 && length != 8) {
+            return -1;
+        }
+
+        int rgba = 0;
+        for (int i = start; i < end; i++) {
+            char c = hex.charAt(i);
+            int digit = c < HEX_DIGITS.length ? HEX_DIGITS[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            rgba = (rgba << 4) | digit;
+        }
+        if (length == 6) {
+            // add alpha
+            rgba = (rgba << 8) | 0xFF;
+        }
+        return rgba & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Encodes the packed RGBA value in the array at the position, and returns the position after the last character.
+     */
+    private static int encodeHex(int rgba, boolean includeAlphaChannel, char[] chars, int position) {
+        chars[position++] = '#';
+        int bytes = includeAlphaChannel ? 4 : 3;
+        for (int i = 0; i < bytes; i++) {
+            int index = ((rgba >>> (24 - i * 8)) & 0xFF) << 1;
+            chars[position++] = HEX_PAIRS[index];
+            chars[position++] = HEX_PAIRS[index + 1];
+        }
+        return position;
     }
 
-    private static String leftPad(String s) {
-        return s.length() == 1 ? "0" + s : s;
+    private static void write(Appendable out, char[] chars, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (out instanceof Writer) {
+            ((Writer) out).write(chars, 0, length);
+        } else if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(chars, 0, length);
+        } else {
+            out.append(CharBuffer.wrap(chars, 0, length));
+        }
+    }
+
+    /**
+     * Converts a color channel from sRGB to linear space, within 1e-5 of {@link Math#pow(double, double)}.
+     */
+    static float srgbToLinear(float value) {
+        return SRGB_TO_LINEAR_FLOATS.apply(value);
+    }
+
+    /**
+     * Converts a color channel from linear to sRGB space, within 1e-5 of {@link Math#pow(double, double)}.
+     */
+    static float linearToSrgb(float value) {
+        return LINEAR_TO_SRGB_FLOATS.apply(value);
+    }
+
+    private static int toByte(float value) {
+        return value >= 1 ? 255 : value > 0 ? Math.round(value * 255) : 0;
+    }
+
+    private static int toSrgbByte(float value) {
+        return value >= 1 ? 255 : value > 0 ? Math.round(LINEAR_TO_SRGB_FLOATS.apply(value) * 255) : 0;
+    }
+
+    private static char[] createHexPairTable() {
+        char[] table = new char[512];
+        for (int i = 0; i < 256; i++) {
+            table[i << 1] = Character.toUpperCase(Character.forDigit(i >>> 4, 16));
+            table[(i << 1) + 1] = Character.toUpperCase(Character.forDigit(i & 0xF, 16));
+        }
+        return table;
+    }
+
+    private static byte[] createHexDigitTable() {
+        byte[] table = new byte['f' + 1];
+        for (int c = 0; c < table.length; c++) {
+            table[c] = (byte) Character.digit((char) c, 16);
+        }
+        return table;
+    }
+
+    private static byte[] createByteTable(double exponent) {
+        byte[] table = new byte[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (byte) Math.round(Math.pow(i / 255.0, exponent) * 255);
+        }
+        return table;
+    }
+
+    private static float[] createSrgbToLinearTable() {
+        float[] table = new float[256];
+        ColorRGBA color = new ColorRGBA();
+        for (int i = 0; i < table.length; i++) {
+            table[i] = color.setAsSrgb(i / 255f, i / 255f, i / 255f, 1).r;
+        }
+        return table;
     }
 
 }
@@ -0,0 +1,327 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.util.BufferUtils;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * A pool of direct byte buffers. Allocating direct memory is expensive, and the memory of a direct buffer that isn't
+ * destroyed explicitly is only freed when the garbage collector finds the buffer. The pool hands out buffers and takes
+ * them back for reuse.
+ * <p>
+ * The buffers are grouped in size classes: each power of two is divided in 4 classes, so a buffer is at most 25%
+ * larger than requested. A buffer is returned with its limit set to the requested size.
+ * <p>
+ * The pool keeps the released buffers up to the maximum pooled size. When a released buffer doesn't fit, the buffers
+ * that were released the longest time ago are destroyed.
+ * <p>
+ * The pool only takes back the buffers it handed out. A buffer that is never released is weakly referenced by the
+ * pool, it's freed by the garbage collector and no longer counted as reserved.
+ *
+ * @author rvandoosselaer
+ */
+@Slf4j
+public class DirectBufferPool {
+
+    private static final int MIN_SIZE = 4096;
+    private static final int CLASSES_PER_POWER_OF_TWO = 4;
+    private static final DirectBufferPool DEFAULT = new DirectBufferPool(128 * 1024 * 1024);
+    private static final byte[] ZEROS = new byte[8192];
+
+    private final Map<Integer, ArrayDeque<Entry>> freeBuffers = new HashMap<>();
+    private final LinkedHashSet<Entry> releaseOrder = new LinkedHashSet<>();
+    private final Map<BufferReference, BufferReference> acquiredBuffers = new HashMap<>();
+    private final ReferenceQueue<ByteBuffer> collectedBuffers = new ReferenceQueue<>();
+    /**
+     * The maximum number of bytes of the released buffers that are kept in the pool.
+     */
+    @Getter
+    private volatile long maxPooledBytes;
+    /**
+     * The number of bytes of the buffers that are allocated by the pool and not yet destroyed, both the buffers in use
+     * and the released buffers.
+     */
+    @Getter
+    private volatile long reservedBytes;
+    /**
+     * The number of bytes of the released buffers that are kept in the pool.
+     */
+    @Getter
+    private volatile long pooledBytes;
+    /**
+     * The number of requests that were served with a released buffer.
+     */
+    @Getter
+    private volatile long hits;
+    /**
+     * The number of requests that needed a new buffer.
+     */
+    @Getter
+    private volatile long misses;
+    /**
+     * The number of released buffers that were destroyed to stay below the maximum pooled size.
+     */
+    @Getter
+    private volatile long evictions;
+
+    public DirectBufferPool(long maxPooledBytes) {
+        setMaxPooledBytes(maxPooledBytes);
+    }
+
+    /**
+     * @return the pool that is shared by the screenshot state, the image decoders and {@link ImageUtils}
+     */
+    public static DirectBufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a direct buffer with a capacity of at least the given size. The position of the buffer is 0 and the
+     * limit is the requested size. The content of the buffer is undefined.
+     *
+     * @param size the size in bytes
+     * @return a direct buffer
+     */
+    public ByteBuffer acquire(int size) {
+        return acquire(size, false);
+    }
+
+    /**
+     * Returns a direct buffer with a capacity of at least the given size, filled with zeros up to the requested size
+     * like a newly allocated buffer. See {@link #acquire(int)}.
+     *
+     * @param size the size in bytes
+     * @return a direct buffer filled with zeros
+     */
+    public ByteBuffer acquireZeroed(int size) {
+        return acquire(size, true);
+    }
+
+    /**
+     * Returns a buffer to the pool. A buffer shouldn't be used after it's released. Buffers that aren't acquired from
+     * this pool, or are already released, are ignored.
+     *
+     * @param buffer the buffer, can be null
+     */
+    public synchronized void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        expungeCollectedBuffers();
+        int sizeClass = buffer.capacity();
+        BufferReference reference = acquiredBuffers.remove(new BufferReference(buffer, null));
+        if (reference == null) {
+            log.warn("Released buffer with capacity {} isn't acquired from the pool.", sizeClass);
+            return;
+        }
+        reference.clear();
+
+        if (sizeClass > maxPooledBytes) {
+            destroy(buffer);
+            evictions++;
+            return;
+        }
+
+        Entry entry = new Entry(buffer);
+        freeBuffers.computeIfAbsent(sizeClass, key -> new ArrayDeque<>()).addLast(entry);
+        releaseOrder.add(entry);
+        pooledBytes += sizeClass;
+        evict();
+    }
+
+    /**
+     * Returns true when the buffer is acquired from this pool and not yet released.
+     *
+     * @param buffer the buffer
+     * @return true when the buffer can be released to this pool
+     */
+    public synchronized boolean isAcquired(ByteBuffer buffer) {
+        return buffer != null && acquiredBuffers.containsKey(new BufferReference(buffer, null));
+    }
+
+    /**
+     * Sets the maximum number of bytes of the released buffers that are kept in the pool. Released buffers are
+     * destroyed when the pool holds more.
+     *
+     * @param maxPooledBytes the maximum number of bytes
+     */
+    public synchronized void setMaxPooledBytes(long maxPooledBytes) {
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("Invalid maximum pooled size " + maxPooledBytes + " specified!");
+        }
+        this.maxPooledBytes = maxPooledBytes;
+        evict();
+    }
+
+    /**
+     * Destroys all released buffers in the pool.
+     */
+    public synchronized void clear() {
+        for (Entry entry : releaseOrder) {
+            destroy(entry.buffer);
+        }
+        releaseOrder.clear();
+        freeBuffers.clear();
+        pooledBytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("DirectBufferPool[reserved=%d, pooled=%d, max=%d, hits=%d, misses=%d, evictions=%d]",
+                reservedBytes, pooledBytes, maxPooledBytes, hits, misses, evictions);
+    }
+
+    private ByteBuffer acquire(int size, boolean zeroed) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid buffer size " + size + " specified!");
+        }
+
+        int sizeClass = getSizeClass(size);
+        ByteBuffer buffer = poll(sizeClass);
+        if (buffer == null) {
+            // a new buffer is filled with zeros
+            buffer = BufferUtils.createByteBuffer(sizeClass);
+            Buffers.limit(buffer, size);
+        } else {
+            Buffers.clear(buffer);
+            Buffers.limit(buffer, size);
+            if (zeroed) {
+                while (buffer.hasRemaining()) {
+                    buffer.put(ZEROS, 0, Math.min(ZEROS.length, buffer.remaining()));
+                }
+                Buffers.flip(buffer);
+            }
+        }
+        track(buffer);
+        return buffer;
+    }
+
+    private synchronized void track(ByteBuffer buffer) {
+        expungeCollectedBuffers();
+        BufferReference reference = new BufferReference(buffer, collectedBuffers);
+        acquiredBuffers.put(reference, reference);
+    }
+
+    /**
+     * Stops counting the memory of acquired buffers that were garbage collected without being released.
+     */
+    private void expungeCollectedBuffers() {
+        Reference<? extends ByteBuffer> reference;
+        while ((reference = collectedBuffers.poll()) != null) {
+            BufferReference collected = (BufferReference) reference;
+            if (acquiredBuffers.remove(collected) != null) {
+                reservedBytes -= collected.capacity;
+            }
+        }
+    }
+
+    /**
+     * Takes a released buffer of the size class from the pool, or reserves the memory for a new buffer.
+     */
+    private synchronized ByteBuffer poll(int sizeClass) {
+        ArrayDeque<Entry> buffers = freeBuffers.get(sizeClass);
+        Entry entry = buffers != null ? buffers.pollLast() : null;
+        if (entry == null) {
+            misses++;
+            reservedBytes += sizeClass;
+            return null;
+        }
+
+        releaseOrder.remove(entry);
+        pooledBytes -= sizeClass;
+        hits++;
+        return entry.buffer;
+    }
+
+    /**
+     * Returns the capacity of the buffers that are used for a request of the given size.
+     *
+     * @param size the requested size in bytes
+     * @return the capacity of the size class
+     */
+    static int getSizeClass(int size) {
+        if (size <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        int step = Integer.highestOneBit(size - 1) / CLASSES_PER_POWER_OF_TWO;
+        long sizeClass = ((size - 1L) / step + 1) * step;
+        return (int) Math.min(sizeClass, Integer.MAX_VALUE);
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = releaseOrder.iterator();
+        while (pooledBytes > maxPooledBytes && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            int sizeClass = entry.buffer.capacity();
+            freeBuffers.get(sizeClass).remove(entry);
+            pooledBytes -= sizeClass;
+            evictions++;
+            destroy(entry.buffer);
+        }
+    }
+
+    private void destroy(ByteBuffer buffer) {
+        reservedBytes -= buffer.capacity();
+        BufferUtils.destroyDirectBuffer(buffer);
+    }
+
+    /**
+     * A weak reference to an acquired buffer that is compared by the identity of the buffer. A cleared reference is
+     * only equal to itself.
+     */
+    private static class BufferReference extends WeakReference<ByteBuffer> {
+
+        private final int hash;
+        private final int capacity;
+
+        private BufferReference(ByteBuffer buffer, ReferenceQueue<ByteBuffer> queue) {
+            super(buffer, queue);
+            this.hash = System.identityHashCode(buffer);
+            this.capacity = buffer.capacity();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BufferReference)) {
+                return false;
+            }
+            ByteBuffer buffer = get();
+            return buffer != null && buffer == ((BufferReference) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+    /**
+     * Holds a released buffer. The buffers are compared by identity, the equals method of a buffer compares the
+     * content.
+     */
+    private static class Entry {
+
+        private final ByteBuffer buffer;
+
+        private Entry(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+    }
+
+}
@@ -11,16 +11,30 @@ import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.debug.Arrow;
 import com.rvandoosselaer.jmeutils.ApplicationGlobals;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Utility class for geometry objects.
+ * <p>
+ * Geometries of the same color share a material from the {@link MaterialCache}, so thousands of debug geometries
+ * don't create thousands of materials. Set the material cache to null to create a material for every geometry.
  *
  * @author rvandoosselaer
  */
 public class GeometryUtils {
 
     /**
-     * Creates a {@link Geometry} of the given color.
+     * The cache of the shared materials, or null to disable sharing.
+     */
+    @Getter
+    @Setter
+    private static MaterialCache materialCache = new MaterialCache(1024);
+
+    /**
+     * Creates a {@link Geometry} of the given color. The material is shared with the other geometries of the same
+     * color, don't modify it. Use {@link #createGeometry(Mesh, ColorRGBA, boolean, boolean)} to create a geometry
+     * with a material of its own.
      *
      * @param mesh of the geometry
      * @param color of the material
@@ -28,16 +42,48 @@ public class GeometryUtils {
      * @return the geometry
      */
     public static Geometry createGeometry(Mesh mesh, ColorRGBA color, boolean lit) {
+        return createGeometry(mesh, color, lit, true);
+    }
+
+    /**
+     * Creates a {@link Geometry} of the given color.
+     *
+     * @param mesh of the geometry
+     * @param color of the material
+     * @param lit if this geometry requires a light source
+     * @param sharedMaterial if the material is shared with the other geometries of the same color, set it to false
+     *                       when the material of the geometry is modified
+     * @return the geometry
+     */
+    public static Geometry createGeometry(Mesh mesh, ColorRGBA color, boolean lit, boolean sharedMaterial) {
         Geometry geometry = new Geometry(mesh.toString(), mesh);
-        geometry.setMaterial(createMaterial(color, lit));
-        if (color.a != 1) {
-            geometry.getMaterial().getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        RenderState.BlendMode blendMode = color.a != 1 ? RenderState.BlendMode.Alpha : RenderState.BlendMode.Off;
+        geometry.setMaterial(sharedMaterial ? getMaterial(color, lit, blendMode) : createMaterial(color, lit, blendMode));
+        if (blendMode != RenderState.BlendMode.Off) {
             geometry.setQueueBucket(RenderQueue.Bucket.Transparent);
         }
 
         return geometry;
     }
 
+    /**
+     * Returns the shared material of the given color from the material cache. When the cache is disabled, a new
+     * material is created.
+     *
+     * @param color of the material
+     * @param lit if the material requires a light source
+     * @param blendMode of the material
+     * @return the material, don't modify it
+     */
+    public static Material getMaterial(ColorRGBA color, boolean lit, RenderState.BlendMode blendMode) {
+        MaterialCache cache = materialCache;
+        if (cache == null) {
+            return createMaterial(color, lit, blendMode);
+        }
+        // the material keeps a reference to the color, a shared material gets a copy
+        return cache.get(color, lit, blendMode, () -> createMaterial(color.clone(), lit, blendMode));
+    }
+
     /**
      * Creates a node with 3 arrows that represent the coordinate axes. Where the red arrow represents the X axis,
      * the green arrow represents the Y axis and the blue arrow represents the Z axis.
@@ -48,9 +94,9 @@ public class GeometryUtils {
         Geometry xAxis = createGeometry(new Arrow(Vector3f.UNIT_X), ColorRGBA.Red, false);
         xAxis.setName("X-axis");
         Geometry yAxis = createGeometry(new Arrow(Vector3f.UNIT_Y), ColorRGBA.Green, false);
-        xAxis.setName("Y-axis");
+        yAxis.setName("Y-axis");
         Geometry zAxis = createGeometry(new Arrow(Vector3f.UNIT_Z), ColorRGBA.Blue, false);
-        xAxis.setName("Z-axis");
+        zAxis.setName("Z-axis");
 
         Node node = new Node("Coordinate axes");
         node.attachChild(xAxis);
@@ -60,7 +106,20 @@ public class GeometryUtils {
         return node;
     }
 
-    private static Material createMaterial(ColorRGBA color, boolean lit) {
+    /**
+     * Creates an unshaded material that uses the vertex colors of the mesh, with alpha blending. One material can be
+     * used for meshes of many colors.
+     *
+     * @return the material
+     */
+    public static Material createVertexColorMaterial() {
+        Material material = new Material(getAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("VertexColor", true);
+        material.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        return material;
+    }
+
+    private static Material createMaterial(ColorRGBA color, boolean lit, RenderState.BlendMode blendMode) {
         Material material;
         if (lit) {
             // create a material based on the Lighting definition
@@ -72,6 +131,9 @@ public class GeometryUtils {
             material = new Material(getAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
             material.setColor("Color", color);
         }
+        if (blendMode != RenderState.BlendMode.Off) {
+            material.getAdditionalRenderState().setBlendMode(blendMode);
+        }
 
         return material;
     }
@@ -0,0 +1,99 @@
+package com.rvandoosselaer.jmeutils.util;
+
+/**
+ * Helper class to convert 16 bit half precision floats, and the 11 and 10 bit floats of a packed RGB111110F pixel, to
+ * 32 bit floats. The values are looked up in a precomputed table of all 65536 half floats. The 11 and 10 bit floats
+ * have the same exponent as a half float, without the sign bit and with a shorter mantissa, so they are looked up in
+ * the same table.
+ *
+ * @author rvandoosselaer
+ */
+public final class HalfFloats {
+
+    private static final float[] TABLE = createTable();
+
+    private HalfFloats() {
+    }
+
+    /**
+     * @param half the bits of the half float, in the lower 16 bits
+     * @return the value of the half float
+     */
+    public static float toFloat(int half) {
+        return TABLE[half & 0xFFFF];
+    }
+
+    /**
+     * @param value the bits of an unsigned 11 bit float, 5 bits exponent and 6 bits mantissa, in the lower 11 bits
+     * @return the value of the 11 bit float
+     */
+    public static float float11ToFloat(int value) {
+        return TABLE[(value & 0x7FF) << 4];
+    }
+
+    /**
+     * @param value the bits of an unsigned 10 bit float, 5 bits exponent and 5 bits mantissa, in the lower 10 bits
+     * @return the value of the 10 bit float
+     */
+    public static float float10ToFloat(int value) {
+        return TABLE[(value & 0x3FF) << 5];
+    }
+
+    /**
+     * Unpacks a RGB111110F pixel. Red is stored in the lowest 11 bits, followed by 11 bits green and 10 bits blue.
+     *
+     * @param packed the packed pixel
+     * @param rgb    the destination of the red, green and blue value
+     * @param offset the index of the red value in the destination
+     */
+    public static void unpackRGB111110F(int packed, float[] rgb, int offset) {
+        rgb[offset] = float11ToFloat(packed);
+        rgb[offset + 1] = float11ToFloat(packed >>> 11);
+        rgb[offset + 2] = float10ToFloat(packed >>> 22);
+    }
+
+    /**
+     * Converts a float to a half float, rounding to the nearest half float. Values that are too large for a half
+     * float are converted to infinity.
+     *
+     * @param value the value to convert
+     * @return the bits of the half float, in the lower 16 bits
+     */
+    public static int toHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7FFFFFFF;
+        if (abs > 0x7F800000) {
+            return sign | 0x7E00;
+        }
+        if (abs >= 0x477FF000) {
+            // 65520 and larger rounds to infinity
+            return sign | 0x7C00;
+        }
+        if (abs < 0x38800000) {
+            // a subnormal half float, the multiplication with a power of two is exact
+            return sign | (int) Math.rint(Float.intBitsToFloat(abs) * 0x1p24);
+        }
+        // rebias the exponent and round the mantissa to the nearest even value
+        return sign | ((abs - 0x38000000 + 0xFFF + ((abs >>> 13) & 1)) >>> 13);
+    }
+
+    private static float[] createTable() {
+        float[] table = new float[65536];
+        for (int half = 0; half < table.length; half++) {
+            int exponent = (half >>> 10) & 0x1F;
+            int mantissa = half & 0x3FF;
+            float value;
+            if (exponent == 0) {
+                value = mantissa * 0x1p-24f;
+            } else if (exponent == 31) {
+                value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+            } else {
+                value = Float.intBitsToFloat(((exponent + 112) << 23) | (mantissa << 13));
+            }
+            table[half] = (half & 0x8000) != 0 ? -value : value;
+        }
+        return table;
+    }
+
+}
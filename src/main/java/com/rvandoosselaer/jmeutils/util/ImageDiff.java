@@ -0,0 +1,376 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.RowSource;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares two images pixel by pixel, e.g. a screenshot with a reference image in a rendering regression test. Two
+ * pixels are different when one of the channels differs more than the tolerance. The images match when the number of
+ * different pixels doesn't exceed the maximum.
+ * <p>
+ * The images are compared one row at a time as packed ARGB integers, in bands of rows on the executor. The comparison
+ * stops as soon as more pixels differ than allowed. A heat map of the differences can be created from the result.
+ *
+ * @author rvandoosselaer
+ */
+@Getter
+@Setter
+public class ImageDiff {
+
+    /**
+     * The maximum difference of a channel, from 0 to 255, for which two pixels are considered equal.
+     */
+    private int tolerance = 0;
+    /**
+     * The maximum number of different pixels for which the images match.
+     */
+    private long maxDifferentPixels = 0;
+    /**
+     * The executor used to compare the bands of rows, or null to compare the images on the calling thread.
+     */
+    private Executor executor = ForkJoinPool.commonPool();
+
+    public void setTolerance(int tolerance) {
+        if (tolerance < 0 || tolerance > 255) {
+            throw new IllegalArgumentException("Invalid tolerance " + tolerance + " specified!");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Compares two jME images. The rows are read from the buffers of the images, in one of the formats supported by
+     * {@link com.rvandoosselaer.jmeutils.image.ChannelOrder}.
+     *
+     * @param expected the reference image
+     * @param actual   the image to compare
+     * @return the result
+     */
+    public Result compare(Image expected, Image actual) {
+        return compare(new ImagePixels(expected), new ImagePixels(actual));
+    }
+
+    public Result compare(BufferedImage expected, BufferedImage actual) {
+        return compare(new BufferedImagePixels(expected), new BufferedImagePixels(actual));
+    }
+
+    /**
+     * Compares two image files, e.g. PNG files.
+     *
+     * @param expected the reference image
+     * @param actual   the image to compare
+     * @return the result
+     * @throws IOException when an image can't be read
+     */
+    public Result compare(Path expected, Path actual) throws IOException {
+        return compare(read(expected), read(actual));
+    }
+
+    private Result compare(Pixels expected, Pixels actual) {
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        if (width != actual.getWidth() || height != actual.getHeight()) {
+            return new Result(this, expected, actual, false, (long) Math.max(width, actual.getWidth()) * Math.max(height, actual.getHeight()), 255, true);
+        }
+
+        AtomicLong differentPixels = new AtomicLong();
+        AtomicInteger maxDifference = new AtomicInteger();
+        RowBands.forEachBand(height, (long) width * height, executor, (startRow, endRow) -> {
+            RowReader expectedRows = expected.createReader();
+            RowReader actualRows = actual.createReader();
+            int[] expectedRow = new int[width];
+            int[] actualRow = new int[width];
+            int bandMaxDifference = 0;
+
+            for (int y = startRow; y < endRow && differentPixels.get() <= maxDifferentPixels; y++) {
+                expectedRows.read(y, expectedRow);
+                actualRows.read(y, actualRow);
+
+                int rowDifferentPixels = 0;
+                for (int x = 0; x < width; x++) {
+                    if (expectedRow[x] != actualRow[x]) {
+                        int difference = getDifference(expectedRow[x], actualRow[x]);
+                        bandMaxDifference = Math.max(bandMaxDifference, difference);
+                        if (difference > tolerance) {
+                            rowDifferentPixels++;
+                        }
+                    }
+                }
+                if (rowDifferentPixels > 0) {
+                    differentPixels.addAndGet(rowDifferentPixels);
+                }
+            }
+
+            maxDifference.accumulateAndGet(bandMaxDifference, Math::max);
+        });
+
+        long different = differentPixels.get();
+        return new Result(this, expected, actual, true, different, maxDifference.get(), different > maxDifferentPixels);
+    }
+
+    /**
+     * @return the largest difference of the channels of two ARGB pixels
+     */
+    static int getDifference(int expected, int actual) {
+        int a = Math.abs((expected >>> 24) - (actual >>> 24));
+        int r = Math.abs((expected >>> 16 & 0xFF) - (actual >>> 16 & 0xFF));
+        int g = Math.abs((expected >>> 8 & 0xFF) - (actual >>> 8 & 0xFF));
+        int b = Math.abs((expected & 0xFF) - (actual & 0xFF));
+        return Math.max(Math.max(a, r), Math.max(g, b));
+    }
+
+    private static Pixels read(Path path) throws IOException {
+        BufferedImage image = ImageIO.read(path.toFile());
+        if (image == null) {
+            throw new IOException("Unable to read image " + path);
+        }
+        return new BufferedImagePixels(image);
+    }
+
+    /**
+     * The result of a comparison. When the comparison stopped early, the number of different pixels is a lower
+     * bound.
+     */
+    public static class Result {
+
+        private final Pixels expected;
+        private final Pixels actual;
+        private final int tolerance;
+        private final Executor executor;
+        /**
+         * True when both images have the same size. Images with a different size don't match.
+         */
+        @Getter
+        private final boolean sameSize;
+        @Getter
+        private final long differentPixels;
+        /**
+         * The largest difference of a channel of the compared pixels. When the maximum number of different pixels is
+         * {@link #isExceeded() exceeded}, the comparison stops early and this is only a lower bound of the largest
+         * difference of the images.
+         */
+        @Getter
+        private final int maxDifference;
+        /**
+         * True when the maximum number of different pixels is exceeded.
+         */
+        @Getter
+        private final boolean exceeded;
+
+        private Result(ImageDiff diff, Pixels expected, Pixels actual, boolean sameSize, long differentPixels, int maxDifference, boolean exceeded) {
+            this.expected = expected;
+            this.actual = actual;
+            this.tolerance = diff.tolerance;
+            this.executor = diff.executor;
+            this.sameSize = sameSize;
+            this.differentPixels = differentPixels;
+            this.maxDifference = maxDifference;
+            this.exceeded = exceeded;
+        }
+
+        public boolean isMatch() {
+            return sameSize && !exceeded;
+        }
+
+        /**
+         * Creates a heat map of the differences. Equal pixels are shown as a dark grayscale version of the expected
+         * image, different pixels range from yellow for small differences to red for large differences.
+         *
+         * @return an RGBA8 image
+         * @throws IllegalStateException when the images have a different size
+         */
+        public Image createHeatMap() {
+            if (!sameSize) {
+                throw new IllegalStateException("Unable to create a heat map of images with a different size.");
+            }
+
+            int width = expected.getWidth();
+            int height = expected.getHeight();
+            Image heatMap = ImageUtils.createImage(Image.Format.RGBA8, width, height);
+            RowBands.forEachBand(height, (long) width * height, executor, (startRow, endRow) -> {
+                RowReader expectedRows = expected.createReader();
+                RowReader actualRows = actual.createReader();
+                int[] expectedRow = new int[width];
+                int[] actualRow = new int[width];
+                byte[] row = new byte[width * 4];
+                ByteBuffer data = heatMap.getData(0).duplicate();
+
+                for (int y = startRow; y < endRow; y++) {
+                    expectedRows.read(y, expectedRow);
+                    actualRows.read(y, actualRow);
+                    for (int x = 0, i = 0; x < width; x++, i += 4) {
+                        int difference = getDifference(expectedRow[x], actualRow[x]);
+                        if (difference > tolerance) {
+                            row[i] = (byte) 255;
+                            row[i + 1] = (byte) (255 - difference);
+                            row[i + 2] = 0;
+                        } else {
+                            int pixel = expectedRow[x];
+                            int gray = ((pixel >>> 16 & 0xFF) * 77 + (pixel >>> 8 & 0xFF) * 150 + (pixel & 0xFF) * 29) >>> 10;
+                            row[i] = (byte) gray;
+                            row[i + 1] = (byte) gray;
+                            row[i + 2] = (byte) gray;
+                        }
+                        row[i + 3] = (byte) 255;
+                    }
+                    // jME images are stored bottom-up
+                    Buffers.position(data, (height - 1 - y) * row.length);
+                    data.put(row);
+                }
+            });
+            return heatMap;
+        }
+
+        /**
+         * Writes a heat map of the differences as PNG, see {@link #createHeatMap()}.
+         *
+         * @param path the file to write to
+         * @throws IOException when writing the file fails
+         */
+        public void writeHeatMap(Path path) throws IOException {
+            ImageUtils.writeImage(createHeatMap(), path);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ImageDiff.Result[match=%b, sameSize=%b, differentPixels=%d%s, maxDifference=%d]",
+                    isMatch(), sameSize, differentPixels, exceeded ? "+" : "", maxDifference);
+        }
+
+    }
+
+    /**
+     * The pixels of an image, read as rows of packed ARGB integers with row 0 at the top.
+     */
+    private interface Pixels {
+
+        int getWidth();
+
+        int getHeight();
+
+        /**
+         * @return a reader with its own scratch space, that isn't shared between threads
+         */
+        RowReader createReader();
+
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+
+        void read(int y, int[] argb);
+
+    }
+
+    private static class ImagePixels implements Pixels {
+
+        private final Image image;
+
+        ImagePixels(Image image) {
+            this.image = image;
+        }
+
+        @Override
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        @Override
+        public RowReader createReader() {
+            RowSource source = RowSource.of(image);
+            boolean alpha = source.getChannels() == 4;
+            byte[] row = new byte[source.getWidth() * source.getChannels()];
+            return (y, argb) -> {
+                source.readRow(y, row);
+                for (int x = 0, i = 0; x < argb.length; x++) {
+                    int r = row[i++] & 0xFF;
+                    int g = row[i++] & 0xFF;
+                    int b = row[i++] & 0xFF;
+                    int a = alpha ? row[i++] & 0xFF : 0xFF;
+                    argb[x] = a << 24 | r << 16 | g << 8 | b;
+                }
+            };
+        }
+
+    }
+
+    /**
+     * Reads the rows straight from the data buffer for the common image types, and with {@link BufferedImage#getRGB}
+     * otherwise.
+     */
+    private static class BufferedImagePixels implements Pixels {
+
+        private final BufferedImage image;
+
+        BufferedImagePixels(BufferedImage image) {
+            this.image = image;
+        }
+
+        @Override
+        public int getWidth() {
+            return image.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return image.getHeight();
+        }
+
+        @Override
+        public RowReader createReader() {
+            int width = image.getWidth();
+            // a sub image shares the data buffer of its parent, with an offset
+            boolean direct = image.getRaster().getParent() == null;
+            switch (direct ? image.getType() : BufferedImage.TYPE_CUSTOM) {
+                case BufferedImage.TYPE_INT_ARGB:
+                case BufferedImage.TYPE_INT_RGB: {
+                    int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+                    int alpha = image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+                    return (y, argb) -> {
+                        for (int x = 0, i = y * width; x < width; x++, i++) {
+                            argb[x] = data[i] | alpha;
+                        }
+                    };
+                }
+                case BufferedImage.TYPE_4BYTE_ABGR: {
+                    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                    return (y, argb) -> {
+                        for (int x = 0, i = y * width * 4; x < width; x++, i += 4) {
+                            argb[x] = (data[i] & 0xFF) << 24 | (data[i + 3] & 0xFF) << 16 | (data[i + 2] & 0xFF) << 8 | data[i + 1] & 0xFF;
+                        }
+                    };
+                }
+                case BufferedImage.TYPE_3BYTE_BGR: {
+                    byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                    return (y, argb) -> {
+                        for (int x = 0, i = y * width * 3; x < width; x++, i += 3) {
+                            argb[x] = 0xFF000000 | (data[i + 2] & 0xFF) << 16 | (data[i + 1] & 0xFF) << 8 | data[i] & 0xFF;
+                        }
+                    };
+                }
+                default:
+                    return (y, argb) -> image.getRGB(0, y, width, 1, argb, 0, width);
+            }
+        }
+
+    }
+
+}
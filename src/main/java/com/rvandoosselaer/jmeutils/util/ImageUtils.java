@@ -5,26 +5,56 @@ import com.jme3.texture.Image;
 import com.jme3.texture.image.ColorSpace;
 import com.jme3.texture.image.ImageRaster;
 import com.jme3.util.BufferUtils;
+import com.rvandoosselaer.jmeutils.image.ChannelOrder;
+import com.rvandoosselaer.jmeutils.image.ImageDecoders;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.image.RowSource;
+import com.rvandoosselaer.jmeutils.image.StreamingImageEncoder;
+import com.rvandoosselaer.jmeutils.image.SwizzlePlan;
+import com.rvandoosselaer.jmeutils.image.ToneMapping;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.Buffer;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Utility class for image manipulations.
+ * <p>
+ * Large images are converted, flipped and recolored in bands of rows on an executor, by default the common
+ * {@link ForkJoinPool}. Images with less pixels than the parallel threshold are always processed on the calling
+ * thread, so small images don't pay the overhead of scheduling the tasks. The output doesn't depend on the executor.
  *
  * @author: rvandoosselaer
  */
 @Slf4j
 public class ImageUtils {
 
+    /**
+     * The minimum number of pixels of an image before it's processed in parallel.
+     */
+    @Getter
+    @Setter
+    private static long parallelThreshold = 1920 * 1080;
+
     private ImageUtils() {
     }
 
@@ -33,21 +63,194 @@ public class ImageUtils {
     }
 
     public static Image createImage(Image.Format format, int width, int height) {
-        int bufferSize = width * height * (int) Math.ceil(format.getBitsPerPixel() / 8.0);
-        return new Image(format, width, height, BufferUtils.createByteBuffer(bufferSize), ColorSpace.Linear);
+        return new Image(format, width, height, BufferUtils.createByteBuffer(getImageSize(format, width, height)), ColorSpace.Linear);
+    }
+
+    /**
+     * Creates an image with a buffer from the buffer pool. The buffer is filled with zeros, its limit is the size of
+     * the image but the capacity can be larger. Return the buffer to the pool when the image isn't used anymore, with
+     * {@link #releaseImage(Image)} for the default pool.
+     *
+     * @param format     the format of the image
+     * @param width      the width of the image
+     * @param height     the height of the image
+     * @param bufferPool the buffer pool
+     * @return the image
+     */
+    public static Image createImage(Image.Format format, int width, int height, DirectBufferPool bufferPool) {
+        return new Image(format, width, height, bufferPool.acquireZeroed(getImageSize(format, width, height)), ColorSpace.Linear);
+    }
+
+    /**
+     * Returns the buffer of the image to the {@link DirectBufferPool#getDefault() default buffer pool}, when the buffer
+     * is acquired from it. E.g. the images that are read with {@link #readImage(Path)} or converted with
+     * {@link #convert(Image, Image.Format)}. Other buffers are left to the garbage collector. The image can't be used
+     * anymore.
+     *
+     * @param image the image
+     */
+    public static void releaseImage(Image image) {
+        ByteBuffer buffer = image.getData(0);
+        if (DirectBufferPool.getDefault().isAcquired(buffer)) {
+            DirectBufferPool.getDefault().release(buffer);
+        }
+        image.setData(0, null);
+    }
+
+    /**
+     * @return the number of bytes of the buffer of an image, with each pixel rounded up to whole bytes
+     */
+    public static int getImageSize(Image.Format format, int width, int height) {
+        return width * height * (int) Math.ceil(format.getBitsPerPixel() / 8.0);
     }
 
     public static void writeImage(Image image, Path path) throws IOException {
-        writeImage(image, Files.newOutputStream(path));
+        writeImage(image, path, new PngEncoder());
+    }
+
+    /**
+     * Writes the image to the file with the given encoder.
+     *
+     * @param image   the image to write
+     * @param path    the file to write to
+     * @param encoder the encoder
+     * @throws IOException when writing the file fails
+     */
+    public static void writeImage(Image image, Path path, ImageEncoder encoder) throws IOException {
+        encoder.write(image, path);
     }
 
     public static void writeImage(Image image, OutputStream out) throws IOException {
-        ImageIO.write(imageToBufferedImage(image), "png", out);
+        writeImage(image, out, new PngEncoder());
+    }
+
+    /**
+     * Writes the image to the output stream with the given encoder. The stream is not closed.
+     *
+     * @param image   the image to write
+     * @param out     the output stream
+     * @param encoder the encoder
+     * @throws IOException when writing to the stream fails
+     */
+    public static void writeImage(Image image, OutputStream out, ImageEncoder encoder) throws IOException {
+        encoder.encode(image, out);
+    }
+
+    /**
+     * Streams the image as PNG to the output stream. The rows are read bottom-up from the buffer of the image,
+     * swizzled into a reusable row and compressed on the calling thread, so only a few rows are kept in memory. Use
+     * this for very large images, where the parallel encoder would keep the compressed chunks in memory.
+     *
+     * @param image the image to write
+     * @param out   the output stream
+     * @throws IOException when writing to the stream fails
+     */
+    public static void writeImageStreaming(Image image, OutputStream out) throws IOException {
+        writeImage(RowSource.of(image), out, new PngEncoder());
+    }
+
+    /**
+     * Writes the rows of the source to the file with the given encoder, one row at a time.
+     *
+     * @param source  the rows to write
+     * @param path    the file to write to
+     * @param encoder the encoder
+     * @throws IOException when writing the file fails
+     */
+    public static void writeImage(RowSource source, Path path, StreamingImageEncoder encoder) throws IOException {
+        encoder.write(source, path);
+    }
+
+    /**
+     * Writes the rows of the source to the output stream with the given encoder, one row at a time. The stream is
+     * not closed.
+     *
+     * @param source  the rows to write
+     * @param out     the output stream
+     * @param encoder the encoder
+     * @throws IOException when writing to the stream fails
+     */
+    public static void writeImage(RowSource source, OutputStream out, StreamingImageEncoder encoder) throws IOException {
+        encoder.encode(source, out);
+    }
+
+    /**
+     * Reads a PNG, QOI or raw image into a buffer of the default buffer pool. The format of the file is detected from
+     * its first bytes. The rows are stored bottom-up, as expected by jME.
+     *
+     * @param path the file to read
+     * @return the image, the buffer can be returned with {@link #releaseImage(Image)}
+     * @throws IOException when the file can't be read or the format isn't supported
+     */
+    public static Image readImage(Path path) throws IOException {
+        return readImage(path, null);
+    }
+
+    /**
+     * Reads an image in the given format, see {@link #readImage(Path)}.
+     *
+     * @param path   the file to read
+     * @param format one of the formats supported by {@link ChannelOrder}, or null to use the format of the file
+     * @return the image
+     * @throws IOException when the file can't be read or the format isn't supported
+     */
+    public static Image readImage(Path path, Image.Format format) throws IOException {
+        return ImageDecoders.read(path, format);
+    }
+
+    public static List<Image> readImages(List<Path> paths, Image.Format format) throws IOException {
+        return readImages(paths, format, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads a batch of images, one file per task on the executor, see {@link #readImage(Path, Image.Format)}. When a
+     * file can't be read, the images that are read are released and the first error is thrown.
+     *
+     * @param paths    the files to read
+     * @param format   the format of the images, or null to use the format of each file
+     * @param executor the executor to use, or null to read the files on the calling thread
+     * @return the images, in the order of the paths
+     * @throws IOException when a file can't be read
+     */
+    public static List<Image> readImages(List<Path> paths, Image.Format format, Executor executor) throws IOException {
+        Executor taskExecutor = executor != null ? executor : Runnable::run;
+        List<CompletableFuture<Image>> futures = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readImage(path, format);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, taskExecutor));
+        }
+
+        List<Image> images = new ArrayList<>(paths.size());
+        Throwable failure = null;
+        for (CompletableFuture<Image> future : futures) {
+            try {
+                images.add(future.join());
+            } catch (CompletionException e) {
+                failure = failure != null ? failure : e.getCause();
+            }
+        }
+
+        if (failure != null) {
+            images.forEach(ImageUtils::releaseImage);
+            if (failure instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) failure).getCause();
+            }
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IOException(failure);
+        }
+        return images;
     }
 
     public static void writeImageSilently(Image image, Path path) {
         try {
-            writeImage(image, Files.newOutputStream(path));
+            writeImage(image, path);
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
@@ -55,134 +258,711 @@ public class ImageUtils {
 
     public static void writeImageSilently(Image image, OutputStream out) {
         try {
-            ImageIO.write(imageToBufferedImage(image), "png", out);
+            writeImage(image, out);
         } catch (IOException e) {
             log.error(e.getMessage(), e);
         }
     }
 
+    /**
+     * Converts the image to a {@link BufferedImage}. The pixels are written straight into the data buffer of the
+     * BufferedImage, one scanline at a time. jME images are stored bottom-up, the rows are copied in reverse order so
+     * the resulting image doesn't need to be flipped.
+     * Images with an alpha channel are converted to {@link BufferedImage#TYPE_INT_ARGB}, the others to
+     * {@link BufferedImage#TYPE_INT_RGB}.
+     * Floating point, luminance and depth images are converted with the {@link ToneMapping#getDefault() default tone
+     * mapping}, see {@link RowSource#isSupported(Image.Format)} for the supported formats.
+     *
+     * @param image the image to convert
+     * @return the converted image
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
     public static BufferedImage imageToBufferedImage(Image image) {
-        boolean alpha;
-        int A = 0;
-        int R = 0;
-        int G = 0;
-        int B = 0;
-        switch (image.getFormat()) {
-            case RGBA8:
-                R = 0;
-                G = 1;
-                B = 2;
-                A = 3;
-                alpha = true;
-                break;
-            case ABGR8:
-                A = 0;
-                B = 1;
-                G = 2;
-                R = 3;
-                alpha = true;
-                break;
-            case ARGB8:
-                A = 0;
-                R = 1;
-                G = 2;
-                B = 3;
-                alpha = true;
-                break;
-            case BGRA8:
-                B = 0;
-                G = 1;
-                R = 2;
-                A = 3;
-                alpha = true;
-                break;
-            case RGB8:
-                R = 0;
-                G = 1;
-                B = 2;
-                alpha = false;
-                break;
-            case BGR8:
-                B = 0;
-                G = 1;
-                R = 2;
-                alpha = false;
-                break;
-            default:
-                throw new IllegalArgumentException(image.getFormat() + " not yet supported.");
+        return imageToBufferedImage(image, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the image to a {@link BufferedImage}, see {@link #imageToBufferedImage(Image)}. Floating point,
+     * luminance and depth images are converted with the given tone mapping, the tone mapping is ignored for 8 bit
+     * color images.
+     *
+     * @param image       the image to convert
+     * @param toneMapping the tone mapping
+     * @param executor    the executor to use, or null to convert the image on the calling thread
+     * @return the converted image
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    public static BufferedImage imageToBufferedImage(Image image, ToneMapping toneMapping, Executor executor) {
+        if (ChannelOrder.isSupported(image.getFormat())) {
+            return imageToBufferedImage(image, executor);
         }
 
         log.debug("Converting {} image to {}", image.getFormat(), Image.Format.ARGB8);
 
-        ByteBuffer bb = image.getData(0);
-        clearBuffer(bb);
-
-        int bufferedImageFormat = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
-        BufferedImage bufferedImage = new BufferedImage(image.getWidth(), image.getHeight(), bufferedImageFormat);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = RowSource.of(image, toneMapping).getChannels() == 4;
+        BufferedImage bufferedImage = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+        RowBands.forEachBand(height, (long) width * height, executor, (startRow, endRow) ->
+                convertRows(RowSource.of(image, toneMapping), pixels, startRow, endRow));
 
-        int channels = alpha ? 4 : 3;
-        int steps = bb.limit() / channels;
-        int[] raw = new int[bb.limit()];
+        return bufferedImage;
+    }
 
-        for (int i = 0; i < steps; i++) {
-            if (alpha) {
-                raw[i] = ((bb.get(channels * i + B) & 0xFF)) |
-                        ((bb.get(channels * i + A) & 0xFF) << 24) |
-                        ((bb.get(channels * i + R) & 0xFF) << 16) |
-                        ((bb.get(channels * i + G) & 0xFF) << 8);
-            } else {
-                raw[i] = ((bb.get(3 * i + R) & 0xFF) << 16) |
-                        ((bb.get(3 * i + G) & 0xFF) << 8) |
-                        ((bb.get(3 * i + B) & 0xFF));
-            }
+    /**
+     * Converts the image to a {@link BufferedImage}, see {@link #imageToBufferedImage(Image)}. When the image is
+     * larger than the parallel threshold, bands of rows are converted on the given executor.
+     *
+     * @param image    the image to convert
+     * @param executor the executor to use, or null to convert the image on the calling thread
+     * @return the converted image
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    public static BufferedImage imageToBufferedImage(Image image, Executor executor) {
+        if (!ChannelOrder.isSupported(image.getFormat())) {
+            return imageToBufferedImage(image, ToneMapping.getDefault(), executor);
         }
 
-        bufferedImage.setRGB(0, 0, image.getWidth(), image.getHeight(), raw, 0, image.getWidth());
-        flipVertical(bufferedImage);
+        int[] channelOrder = ChannelOrder.of(image.getFormat());
+        boolean alpha = channelOrder.length == 4;
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer bb = image.getData(0);
+        long pixelCount = (long) width * height;
+
+        log.debug("Converting {} image to {}", image.getFormat(), Image.Format.ARGB8);
+
+        BufferedImage bufferedImage = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+        int channels = channelOrder.length;
+        int r = channelOrder[0];
+        int g = channelOrder[1];
+        int b = channelOrder[2];
+        int a = alpha ? channelOrder[3] : -1;
+        RowBands.forEachBand(height, pixelCount, executor, (startRow, endRow) ->
+                convertRowsFlipped(bb, pixels, width, height, startRow, endRow, channels, r, g, b, a));
 
         return bufferedImage;
     }
 
+    /**
+     * Flips the image vertically, by swapping the rows of the image.
+     *
+     * @param image the image to flip
+     * @return the flipped image
+     */
     public static BufferedImage flipVertical(BufferedImage image) {
+        return flipVertical(image, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Flips the image vertically, by swapping the rows of the image. When the image is larger than the parallel
+     * threshold, bands of rows are swapped on the given executor.
+     *
+     * @param image    the image to flip
+     * @param executor the executor to use, or null to flip the image on the calling thread
+     * @return the flipped image
+     */
+    public static BufferedImage flipVertical(BufferedImage image, Executor executor) {
         int width = image.getWidth();
         int height = image.getHeight();
+        WritableRaster raster = image.getRaster();
 
-        // we only need to loop through half of the image. otherwise we would be putting the swapped pixels back.
-        for (int w = 0; w < width; w++) {
-            for (int h = 0; h < height * 0.5; h++) {
-                // swap the opposite y pixels
-                int pixel = image.getRGB(w, h);
-                int oppositePixel = image.getRGB(w, (height - 1) - h);
+        // we only need to loop through half of the image. otherwise we would be putting the swapped rows back.
+        RowBands.forEachBand(height / 2, (long) width * height, executor, (startRow, endRow) -> {
+            Object row = null;
+            Object oppositeRow = null;
+            for (int h = startRow; h < endRow; h++) {
+                row = raster.getDataElements(0, h, width, 1, row);
+                oppositeRow = raster.getDataElements(0, (height - 1) - h, width, 1, oppositeRow);
 
-                image.setRGB(w, h, oppositePixel);
-                image.setRGB(w, (height - 1) - h, pixel);
+                raster.setDataElements(0, h, width, 1, oppositeRow);
+                raster.setDataElements(0, (height - 1) - h, width, 1, row);
             }
-        }
+        });
+
+        return image;
+    }
+
+    /**
+     * Flips the image vertically in place, see {@link #flipVertical(Image, Executor)}.
+     *
+     * @param image the image to flip
+     * @return the flipped image
+     */
+    public static Image flipVertical(Image image) {
+        return flipVertical(image, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Flips the image vertically in place, by swapping the rows in the buffer of the image. A pair of rows is swapped
+     * with bulk copies through a single scratch row. When the image is larger than the parallel threshold, bands of
+     * rows are swapped on the given executor.
+     *
+     * @param image    the image to flip
+     * @param executor the executor to use, or null to flip the image on the calling thread
+     * @return the flipped image
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    public static Image flipVertical(Image image, Executor executor) {
+        int rowStride = image.getWidth() * getPixelSize(image);
+        int height = image.getHeight();
+        ByteBuffer buffer = image.getData(0);
+
+        // we only need to loop through half of the image. otherwise we would be putting the swapped rows back.
+        RowBands.forEachBand(height / 2, (long) image.getWidth() * height, executor, (startRow, endRow) -> {
+            ByteBuffer row = createView(buffer);
+            ByteBuffer oppositeRow = createView(buffer);
+            byte[] scratch = new byte[rowStride];
+            for (int y = startRow; y < endRow; y++) {
+                int offset = y * rowStride;
+                int oppositeOffset = ((height - 1) - y) * rowStride;
 
+                Buffers.position(row, offset);
+                row.get(scratch);
+
+                Buffers.limit(oppositeRow, oppositeOffset + rowStride);
+                Buffers.position(oppositeRow, oppositeOffset);
+                Buffers.position(row, offset);
+                row.put(oppositeRow);
+
+                Buffers.position(oppositeRow, oppositeOffset);
+                oppositeRow.put(scratch);
+            }
+        });
+
+        image.setUpdateNeeded();
         return image;
     }
 
+    /**
+     * Converts the image to another format. The image is converted with a cached {@link SwizzlePlan} for the pair of
+     * formats, that moves the channels of a row in one pass. A missing alpha channel is written as opaque. Floating
+     * point, luminance and depth images are first mapped to 8 bit with the {@link ToneMapping#getDefault() default tone
+     * mapping}. The converted image has the orientation and the color space of the source image, and a buffer from the
+     * {@link DirectBufferPool#getDefault() default buffer pool} that can be returned with {@link #releaseImage(Image)}.
+     *
+     * @param image  the image to convert
+     * @param format the format of the converted image, one of the formats supported by {@link ChannelOrder}
+     * @return the converted image
+     * @throws IllegalArgumentException when one of the formats isn't supported
+     */
+    public static Image convert(Image image, Image.Format format) {
+        return convert(image, format, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Converts the image to another format, see {@link #convert(Image, Image.Format)}. When the image is larger than
+     * the parallel threshold, bands of rows are converted on the given executor.
+     *
+     * @param image    the image to convert
+     * @param format   the format of the converted image, one of the formats supported by {@link ChannelOrder}
+     * @param executor the executor to use, or null to convert the image on the calling thread
+     * @return the converted image
+     * @throws IllegalArgumentException when one of the formats isn't supported
+     */
+    public static Image convert(Image image, Image.Format format, Executor executor) {
+        boolean toneMapped = !ChannelOrder.isSupported(image.getFormat());
+        if (toneMapped && !RowSource.isSupported(image.getFormat())) {
+            throw new IllegalArgumentException(image.getFormat() + " not yet supported.");
+        }
+        Image.Format sourceFormat = image.getFormat();
+        if (toneMapped) {
+            // the tone mapped rows are RGB or RGBA
+            sourceFormat = RowSource.of(image).getChannels() == 4 ? Image.Format.RGBA8 : Image.Format.RGB8;
+        }
+        SwizzlePlan plan = SwizzlePlan.of(sourceFormat, format);
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer target = DirectBufferPool.getDefault().acquire(width * height * plan.getTargetChannels());
+        log.debug("Converting {} image to {}", image.getFormat(), format);
+
+        long pixelCount = (long) width * height;
+        if (toneMapped) {
+            RowBands.forEachBand(height, pixelCount, executor, (startRow, endRow) ->
+                    convertRows(RowSource.of(image), plan, target, startRow, endRow));
+        } else if (plan.isIdentity()) {
+            int rowStride = width * plan.getSourceChannels();
+            RowBands.forEachBand(height, pixelCount, executor, (startRow, endRow) ->
+                    copyRows(image.getData(0), target, rowStride, startRow, endRow));
+        } else if (plan.isPacked()) {
+            RowBands.forEachBand(height, pixelCount, executor, (startRow, endRow) ->
+                    convertPackedRows(image.getData(0), plan, target, width, startRow, endRow));
+        } else {
+            RowBands.forEachBand(height, pixelCount, executor, (startRow, endRow) ->
+                    convertRows(image.getData(0), plan, target, width, startRow, endRow));
+        }
+
+        return new Image(format, width, height, target, image.getColorSpace());
+    }
+
+    /**
+     * Crops the image in place to the given rectangle. The rows of the rectangle are moved to the start of the buffer
+     * of the image, no new buffer is created. The coordinates are in the buffer of the image, with the origin in the
+     * lower left corner of the image.
+     *
+     * @param image  the image to crop
+     * @param x      the left column of the rectangle
+     * @param y      the bottom row of the rectangle
+     * @param width  the width of the rectangle
+     * @param height the height of the rectangle
+     * @return the cropped image
+     * @throws IllegalArgumentException when the rectangle is outside the image or the format isn't supported
+     */
+    public static Image crop(Image image, int x, int y, int width, int height) {
+        if (x < 0 || y < 0 || width < 1 || height < 1 || x + width > image.getWidth() || y + height > image.getHeight()) {
+            throw new IllegalArgumentException("Invalid crop rectangle " + x + ", " + y + ", " + width + "x" + height +
+                    " for an image of " + image.getWidth() + "x" + image.getHeight());
+        }
+
+        int pixelSize = getPixelSize(image);
+        int rowStride = image.getWidth() * pixelSize;
+        int croppedRowStride = width * pixelSize;
+        ByteBuffer source = createView(image.getData(0));
+        ByteBuffer destination = createView(image.getData(0));
+        byte[] scratch = new byte[croppedRowStride];
+        // the destination of a row is never after its source, so the rows can be moved in order
+        for (int row = 0; row < height; row++) {
+            int sourceOffset = (y + row) * rowStride + x * pixelSize;
+            int destinationOffset = row * croppedRowStride;
+            if (sourceOffset != destinationOffset) {
+                Buffers.position(source, sourceOffset);
+                source.get(scratch);
+                Buffers.position(destination, destinationOffset);
+                destination.put(scratch);
+            }
+        }
+
+        return resize(image, width, height, pixelSize);
+    }
+
+    /**
+     * Downscales the image in place with a box filter. Each pixel of the result is the average of a square of
+     * factor x factor pixels, e.g. 2 or 4. The rows and columns that don't fill a complete square are dropped. The
+     * result is written to the start of the buffer of the image, no new buffer is created.
+     * <p>
+     * The supported formats are the formats with 8 bits per channel.
+     *
+     * @param image  the image to downscale
+     * @param factor the downscale factor
+     * @return the downscaled image
+     * @throws IllegalArgumentException when the factor is too large or the format isn't supported
+     */
+    public static Image downscale(Image image, int factor) {
+        int channels = getDownscalePixelSize(image, factor);
+        if (factor == 1) {
+            return image;
+        }
+
+        int width = image.getWidth() / factor;
+        int height = image.getHeight() / factor;
+        // the source rows of a scaled row are read before the scaled row is written, and the scaled row never
+        // overlaps the source rows of the next scaled rows
+        downscaleRows(createView(image.getData(0)), image.getWidth(), createView(image.getData(0)), width, height, channels, factor);
+
+        return resize(image, width, height, channels);
+    }
+
+    /**
+     * Creates a downscaled copy of the image with a box filter, see {@link #downscale(Image, int)}. The image itself is
+     * left untouched.
+     *
+     * @param image  the image to downscale
+     * @param factor the downscale factor
+     * @return a new downscaled image
+     * @throws IllegalArgumentException when the factor is too large or the format isn't supported
+     */
+    public static Image createDownscaledImage(Image image, int factor) {
+        return createDownscaledImage(image, factor, null);
+    }
+
+    /**
+     * Creates a downscaled copy of the image, see {@link #createDownscaledImage(Image, int)}. The buffer of the copy
+     * is taken from the buffer pool, see {@link #createImage(Image.Format, int, int, DirectBufferPool)}.
+     *
+     * @param image      the image to downscale
+     * @param factor     the downscale factor
+     * @param bufferPool the buffer pool, or null to allocate a buffer of the size of the copy
+     * @return a new downscaled image
+     * @throws IllegalArgumentException when the factor is too large or the format isn't supported
+     */
+    public static Image createDownscaledImage(Image image, int factor, DirectBufferPool bufferPool) {
+        int channels = getDownscalePixelSize(image, factor);
+        int width = image.getWidth() / factor;
+        int height = image.getHeight() / factor;
+
+        Image scaled = bufferPool != null ? createImage(image.getFormat(), width, height, bufferPool) : createImage(image.getFormat(), width, height);
+        scaled.setColorSpace(image.getColorSpace());
+        downscaleRows(createView(image.getData(0)), image.getWidth(), createView(scaled.getData(0)), width, height, channels, factor);
+        return scaled;
+    }
+
     public static void replaceColors(Image image, ColorRGBA oldColor, ColorRGBA newColor) {
+        replaceColors(image, oldColor, newColor, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Replaces all pixels of the old color with the new color. A pixel is replaced when its color is exactly equal to
+     * the old color, use a {@link ColorMap} with a tolerance to replace similar colors. When the image is larger than
+     * the parallel threshold, bands of rows are processed on the given executor.
+     *
+     * @param image    the image
+     * @param oldColor the color to replace
+     * @param newColor the replacement color
+     * @param executor the executor to use, or null to process the image on the calling thread
+     */
+    public static void replaceColors(Image image, ColorRGBA oldColor, ColorRGBA newColor, Executor executor) {
+        if (ChannelOrder.isSupported(image.getFormat())) {
+            // the color map rounds the colors to 8 bits, a color that isn't exactly an 8 bit color matches no pixel
+            if (isByteColor(oldColor)) {
+                replaceColors(image, new ColorMap().put(oldColor, newColor), executor);
+            }
+            return;
+        }
+
         int width = image.getWidth();
         int height = image.getHeight();
 
-        ImageRaster imageRaster = ImageRaster.create(image);
+        RowBands.forEachBand(height, (long) width * height, executor, (startRow, endRow) -> {
+            // the image raster moves the position of the buffer, each band reads from its own view of the buffer
+            Image band = new Image(image.getFormat(), width, height, image.getData(0).duplicate(), image.getColorSpace());
+            ImageRaster imageRaster = ImageRaster.create(band);
 
-        for (int w = 0; w < width; w++) {
-            for (int h = 0; h < height; h++) {
-                ColorRGBA pixel = imageRaster.getPixel(w, h);
-                if (Objects.equals(pixel, oldColor)) {
-                    imageRaster.setPixel(w, h, newColor);
+            for (int h = startRow; h < endRow; h++) {
+                for (int w = 0; w < width; w++) {
+                    ColorRGBA pixel = imageRaster.getPixel(w, h);
+                    if (Objects.equals(pixel, oldColor)) {
+                        imageRaster.setPixel(w, h, newColor);
+                    }
                 }
             }
+        });
+    }
+
+    public static void replaceColors(Image image, ColorMap colorMap) {
+        replaceColors(image, colorMap, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Replaces the colors of the image with their replacement in the color map, in a single pass over the image. The
+     * rows are read and written with bulk copies and the pixels are looked up as packed integers, no objects are
+     * created per pixel. When the image is larger than the parallel threshold, bands of rows are processed on the
+     * given executor. The color map shouldn't be modified while the image is processed.
+     *
+     * @param image    the image
+     * @param colorMap the colors to replace
+     * @param executor the executor to use, or null to process the image on the calling thread
+     * @throws IllegalArgumentException when the format of the image isn't supported
+     */
+    public static void replaceColors(Image image, ColorMap colorMap, Executor executor) {
+        int[] channelOrder = ChannelOrder.of(image.getFormat());
+        if (colorMap.isEmpty()) {
+            return;
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer buffer = image.getData(0);
+        RowBands.forEachBand(height, (long) width * height, executor, (startRow, endRow) ->
+                replaceColors(buffer, width, startRow, endRow, channelOrder, image.getFormat().getBitsPerPixel() / 8, colorMap));
+    }
+
+    /**
+     * Returns true when each channel of the color is exactly equal to the value of an 8 bit channel, like the pixels of
+     * an 8 bit image.
+     */
+    private static boolean isByteColor(ColorRGBA color) {
+        return isByteValue(color.r) && isByteValue(color.g) && isByteValue(color.b) && isByteValue(color.a);
+    }
+
+    private static boolean isByteValue(float value) {
+        return value >= 0 && value <= 1 && Math.round(value * 255) / 255f == value;
+    }
+
+    /**
+     * Replaces the colors of a range of rows. Each row is read in a scratch array, and only written back when a pixel
+     * of the row is replaced. Neighbouring pixels often have the same color, so the last lookup is reused.
+     */
+    private static void replaceColors(ByteBuffer buffer, int width, int startRow, int endRow, int[] channelOrder,
+                                      int channels, ColorMap colorMap) {
+        ByteBuffer view = createView(buffer);
+        int R = channelOrder[0];
+        int G = channelOrder[1];
+        int B = channelOrder[2];
+        int A = channelOrder.length == 4 ? channelOrder[3] : -1;
+        int rowStride = width * channels;
+        byte[] row = new byte[rowStride];
+
+        int lastColor = 0;
+        int lastReplacement = colorMap.map(lastColor);
+        for (int y = startRow; y < endRow; y++) {
+            Buffers.position(view, y * rowStride);
+            view.get(row, 0, rowStride);
+
+            boolean modified = false;
+            for (int i = 0; i < rowStride; i += channels) {
+                int color = (row[i + R] & 0xFF) << 24 |
+                        (row[i + G] & 0xFF) << 16 |
+                        (row[i + B] & 0xFF) << 8 |
+                        (A >= 0 ? row[i + A] & 0xFF : 0xFF);
+
+                if (color != lastColor) {
+                    lastColor = color;
+                    lastReplacement = colorMap.map(color);
+                }
+                if (lastReplacement != color) {
+                    row[i + R] = (byte) (lastReplacement >>> 24);
+                    row[i + G] = (byte) (lastReplacement >>> 16);
+                    row[i + B] = (byte) (lastReplacement >>> 8);
+                    if (A >= 0) {
+                        row[i + A] = (byte) lastReplacement;
+                    }
+                    modified = true;
+                }
+            }
+
+            if (modified) {
+                Buffers.position(view, y * rowStride);
+                view.put(row, 0, rowStride);
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of the buffer in reverse order and packs the channels of each pixel as an ARGB integer in the
+     * destination array. Each row is read with one bulk copy in a scratch array. When there is no alpha channel, the
+     * alpha offset should be negative.
+     */
+    private static void convertRowsFlipped(ByteBuffer buffer, int[] destination, int width, int height, int startRow,
+                                           int endRow, int channels, int R, int G, int B, int A) {
+        ByteBuffer source = createView(buffer);
+        int rowStride = width * channels;
+        byte[] row = new byte[rowStride];
+        for (int y = startRow; y < endRow; y++) {
+            Buffers.position(source, ((height - 1) - y) * rowStride);
+            source.get(row, 0, rowStride);
+
+            int offset = y * width;
+            if (A >= 0) {
+                for (int x = 0, i = 0; x < width; x++, i += channels) {
+                    destination[offset + x] = ((row[i + A] & 0xFF) << 24) |
+                            ((row[i + R] & 0xFF) << 16) |
+                            ((row[i + G] & 0xFF) << 8) |
+                            ((row[i + B] & 0xFF));
+                }
+            } else {
+                for (int x = 0, i = 0; x < width; x++, i += channels) {
+                    destination[offset + x] = ((row[i + R] & 0xFF) << 16) |
+                            ((row[i + G] & 0xFF) << 8) |
+                            ((row[i + B] & 0xFF));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of the source and packs the channels of each pixel as an ARGB integer in the destination array.
+     */
+    private static void convertRows(RowSource source, int[] destination, int startRow, int endRow) {
+        int width = source.getWidth();
+        int channels = source.getChannels();
+        byte[] row = new byte[width * channels];
+        for (int y = startRow; y < endRow; y++) {
+            source.readRow(y, row);
+
+            int offset = y * width;
+            if (channels == 4) {
+                for (int x = 0, i = 0; x < width; x++, i += 4) {
+                    destination[offset + x] = ((row[i + 3] & 0xFF) << 24) |
+                            ((row[i] & 0xFF) << 16) |
+                            ((row[i + 1] & 0xFF) << 8) |
+                            ((row[i + 2] & 0xFF));
+                }
+            } else {
+                for (int x = 0, i = 0; x < width; x++, i += 3) {
+                    destination[offset + x] = ((row[i] & 0xFF) << 16) |
+                            ((row[i + 1] & 0xFF) << 8) |
+                            ((row[i + 2] & 0xFF));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the rows of the source buffer to the same rows of the target buffer.
+     */
+    private static void copyRows(ByteBuffer buffer, ByteBuffer target, int rowStride, int startRow, int endRow) {
+        ByteBuffer source = createView(buffer);
+        Buffers.limit(source, endRow * rowStride);
+        Buffers.position(source, startRow * rowStride);
+        ByteBuffer destination = createView(target);
+        Buffers.position(destination, startRow * rowStride);
+        destination.put(source);
+    }
+
+    /**
+     * Converts the rows of the source buffer with the plan to the same rows of the target buffer. Each row is read and
+     * written with one bulk copy.
+     */
+    private static void convertRows(ByteBuffer buffer, SwizzlePlan plan, ByteBuffer target, int width, int startRow,
+                                    int endRow) {
+        ByteBuffer source = createView(buffer);
+        ByteBuffer destination = createView(target);
+        int sourceStride = width * plan.getSourceChannels();
+        int targetStride = width * plan.getTargetChannels();
+        byte[] sourceRow = new byte[sourceStride];
+        byte[] targetRow = new byte[targetStride];
+        for (int y = startRow; y < endRow; y++) {
+            Buffers.position(source, y * sourceStride);
+            source.get(sourceRow, 0, sourceStride);
+            plan.convertRow(sourceRow, 0, targetRow, 0, width);
+            Buffers.position(destination, y * targetStride);
+            destination.put(targetRow, 0, targetStride);
+        }
+    }
+
+    /**
+     * Converts the rows of 4 byte pixels of the source buffer with the plan to the same rows of the target buffer. The
+     * rows are read and written as little endian ints, so the first byte of a pixel is in the lowest 8 bits.
+     */
+    private static void convertPackedRows(ByteBuffer buffer, SwizzlePlan plan, ByteBuffer target, int width,
+                                          int startRow, int endRow) {
+        IntBuffer source = createView(buffer).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        IntBuffer destination = createView(target).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int[] sourceRow = new int[width];
+        int[] targetRow = new int[width];
+        for (int y = startRow; y < endRow; y++) {
+            Buffers.position(source, y * width);
+            source.get(sourceRow, 0, width);
+            plan.convertRow(sourceRow, 0, targetRow, 0, width);
+            Buffers.position(destination, y * width);
+            destination.put(targetRow, 0, width);
+        }
+    }
+
+    /**
+     * Converts the top-down rows of the row source with the plan, and writes them bottom-up to the target buffer.
+     */
+    private static void convertRows(RowSource source, SwizzlePlan plan, ByteBuffer target, int startRow, int endRow) {
+        ByteBuffer destination = createView(target);
+        int width = source.getWidth();
+        int targetStride = width * plan.getTargetChannels();
+        byte[] sourceRow = new byte[width * plan.getSourceChannels()];
+        byte[] targetRow = new byte[targetStride];
+        for (int y = startRow; y < endRow; y++) {
+            source.readRow(y, sourceRow);
+            plan.convertRow(sourceRow, 0, targetRow, 0, width);
+            Buffers.position(destination, (source.getHeight() - 1 - y) * targetStride);
+            destination.put(targetRow, 0, targetStride);
+        }
+    }
+
+    /**
+     * Writes the average of each square of factor x factor pixels of the source to the destination. The rows of the
+     * source are read in a scratch array, so the destination can be the same buffer as the source.
+     */
+    private static void downscaleRows(ByteBuffer source, int sourceWidth, ByteBuffer destination, int width,
+                                      int height, int channels, int factor) {
+        int rowStride = sourceWidth * channels;
+        int scaledRowStride = width * channels;
+        int area = factor * factor;
+        byte[] rows = new byte[factor * rowStride];
+        int[] sums = new int[scaledRowStride];
+        byte[] scaledRow = new byte[scaledRowStride];
+        for (int y = 0; y < height; y++) {
+            Buffers.position(source, y * factor * rowStride);
+            source.get(rows);
+
+            Arrays.fill(sums, 0);
+            for (int row = 0; row < factor; row++) {
+                for (int x = 0, i = row * rowStride; x < scaledRowStride; x += channels) {
+                    for (int k = 0; k < factor; k++) {
+                        for (int c = 0; c < channels; c++, i++) {
+                            sums[x + c] += rows[i] & 0xFF;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < scaledRowStride; i++) {
+                scaledRow[i] = (byte) ((sums[i] + area / 2) / area);
+            }
+
+            Buffers.position(destination, y * scaledRowStride);
+            destination.put(scaledRow);
+        }
+    }
+
+    /**
+     * Returns the size in bytes of a pixel of an image that is downscaled with the given factor.
+     */
+    private static int getDownscalePixelSize(Image image, int factor) {
+        if (!hasByteChannels(image.getFormat())) {
+            throw new IllegalArgumentException(image.getFormat() + " not yet supported.");
+        }
+        if (factor < 1 || image.getWidth() / factor < 1 || image.getHeight() / factor < 1) {
+            throw new IllegalArgumentException("Invalid downscale factor " + factor + " for an image of " +
+                    image.getWidth() + "x" + image.getHeight());
+        }
+        return getPixelSize(image);
+    }
+
+    /**
+     * Sets the new size of an image that is cropped or scaled in place, and limits the buffer to the new size.
+     */
+    private static Image resize(Image image, int width, int height, int pixelSize) {
+        ByteBuffer buffer = image.getData(0);
+        Buffers.clear(buffer);
+        Buffers.limit(buffer, width * height * pixelSize);
+        image.setWidth(width);
+        image.setHeight(height);
+        image.setUpdateNeeded();
+        return image;
+    }
+
+    /**
+     * Returns the size in bytes of a pixel of the image.
+     */
+    private static int getPixelSize(Image image) {
+        Image.Format format = image.getFormat();
+        if (format.isCompressed() || format.getBitsPerPixel() % 8 != 0 || format.getBitsPerPixel() == 0) {
+            throw new IllegalArgumentException(format + " not yet supported.");
+        }
+        if (image.hasMipmaps() || image.getData().size() > 1) {
+            throw new IllegalArgumentException("Images with mipmaps or multiple layers are not yet supported.");
+        }
+        return format.getBitsPerPixel() / 8;
+    }
+
+    private static boolean hasByteChannels(Image.Format format) {
+        switch (format) {
+            case Alpha8:
+            case Luminance8:
+            case Luminance8Alpha8:
+            case R8:
+            case RG8:
+            case RGB8:
+            case BGR8:
+            case RGBA8:
+            case ABGR8:
+            case ARGB8:
+            case BGRA8:
+                return true;
+            default:
+                return false;
         }
     }
 
-    private static void clearBuffer(Buffer buffer) {
-        // Since JDK 9, ByteBuffer class overrides some methods and their return type in the Buffer class. To
-        // ensure compatibility with JDK 8, calling the 'clear' method forces using the
-        // JDK 8 Buffer's methods signature, and avoids explicit casts.
-        buffer.clear();
+    /**
+     * Returns a view on the buffer with its own position and limit, so the buffer of the image is left untouched and
+     * multiple threads can read from the same buffer.
+     */
+    private static ByteBuffer createView(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        Buffers.clear(view);
+        return view;
     }
 
 }
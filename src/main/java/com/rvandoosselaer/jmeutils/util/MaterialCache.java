@@ -0,0 +1,128 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of materials, keyed by the color, whether the material is lit and the blend mode. Geometries that
+ * share a material can be batched and the material parameters are only uploaded once. The cache can be used from
+ * multiple threads.
+ * <p>
+ * The cached materials are shared between all callers: don't modify them, create a material of your own when it
+ * needs to change. When the cache is full, new materials are still created but not cached. Clear the cache when the
+ * materials can't be used anymore, e.g. when the application is restarted with a new asset manager.
+ *
+ * @author rvandoosselaer
+ */
+public class MaterialCache {
+
+    private final BoundedCache<Key, Material> materials;
+
+    public MaterialCache(int maxSize) {
+        this.materials = new BoundedCache<>(maxSize);
+    }
+
+    /**
+     * Returns the cached material of the key, or creates the material with the factory and caches it.
+     *
+     * @param color     the color of the material, it's copied in the key
+     * @param lit       if the material requires a light source
+     * @param blendMode the blend mode of the material
+     * @param factory   creates the material when it isn't cached
+     * @return the shared material
+     */
+    public Material get(ColorRGBA color, boolean lit, RenderState.BlendMode blendMode, Supplier<Material> factory) {
+        return materials.get(new Key(color, lit, blendMode), factory);
+    }
+
+    /**
+     * Removes the material of the key from the cache. Geometries that use the material keep it.
+     *
+     * @param color     the color of the material
+     * @param lit       if the material requires a light source
+     * @param blendMode the blend mode of the material
+     * @return true when a material was removed
+     */
+    public boolean invalidate(ColorRGBA color, boolean lit, RenderState.BlendMode blendMode) {
+        return materials.invalidate(new Key(color, lit, blendMode));
+    }
+
+    /**
+     * @return the maximum number of cached materials
+     */
+    public int getMaxSize() {
+        return materials.getMaxSize();
+    }
+
+    /**
+     * @return the number of cached materials
+     */
+    public int getSize() {
+        return materials.getSize();
+    }
+
+    /**
+     * @return the number of requests that were served with a cached material
+     */
+    public long getHits() {
+        return materials.getHits();
+    }
+
+    /**
+     * @return the number of requests that created a material
+     */
+    public long getMisses() {
+        return materials.getMisses();
+    }
+
+    /**
+     * Removes all materials from the cache.
+     */
+    public void clear() {
+        materials.clear();
+    }
+
+    private static final class Key {
+
+        private final float r;
+        private final float g;
+        private final float b;
+        private final float a;
+        private final boolean lit;
+        private final RenderState.BlendMode blendMode;
+
+        Key(ColorRGBA color, boolean lit, RenderState.BlendMode blendMode) {
+            // adding 0 turns -0 into 0, so both zeros are equal keys
+            this.r = color.r + 0.0f;
+            this.g = color.g + 0.0f;
+            this.b = color.b + 0.0f;
+            this.a = color.a + 0.0f;
+            this.lit = lit;
+            this.blendMode = blendMode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Float.compare(key.r, r) == 0 && Float.compare(key.g, g) == 0 && Float.compare(key.b, b) == 0 &&
+                    Float.compare(key.a, a) == 0 && lit == key.lit && blendMode == key.blendMode;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(r, g, b, a, lit, blendMode);
+        }
+
+    }
+
+}
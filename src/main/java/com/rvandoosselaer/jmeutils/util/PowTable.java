@@ -0,0 +1,62 @@
+package com.rvandoosselaer.jmeutils.util;
+
+/**
+ * A fast approximation of {@link Math#pow(double, double)} with a fixed exponent, for values between 0 and 1. The
+ * table holds the power of 128 values per power of two, indexed by the exponent and the upper 7 bits of the mantissa
+ * of a float. The values in between are linearly interpolated with the remaining bits of the mantissa. Because the
+ * table has the same number of entries in each power of two, the relative error is the same for small and large
+ * values, also for exponents below 1 where the curve is steep near 0.
+ *
+ * @author rvandoosselaer
+ */
+final class PowTable {
+
+    private static final int SHIFT = 16;
+    private static final float FRACTION = 1f / (1 << SHIFT);
+
+    private final double exponent;
+    private final float[] table;
+
+    PowTable(double exponent) {
+        this.exponent = exponent;
+        // one entry past 1.0, so the last entry can be interpolated
+        this.table = new float[(Float.floatToIntBits(1f) >>> SHIFT) + 2];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (float) Math.pow(Float.intBitsToFloat(i << SHIFT), exponent);
+        }
+    }
+
+    /**
+     * Returns the value raised to the power of the exponent. Values above 1 are calculated with
+     * {@link Math#pow(double, double)}, values below 0 and NaN return 0.
+     *
+     * @param value the value
+     * @return the power of the value
+     */
+    float apply(float value) {
+        if (!(value > 0)) {
+            return 0;
+        }
+        if (value >= 1) {
+            return value == 1 ? 1 : (float) Math.pow(value, exponent);
+        }
+        int bits = Float.floatToRawIntBits(value);
+        int index = bits >>> SHIFT;
+        float low = table[index];
+        return low + (table[index + 1] - low) * ((bits & ((1 << SHIFT) - 1)) * FRACTION);
+    }
+
+    /**
+     * Applies the power to the color channels of the values between the start and end index. When a color has 4
+     * components, the fourth component is alpha and isn't changed.
+     */
+    void apply(float[] values, int start, int end, int components) {
+        int channels = Math.min(components, 3);
+        for (int i = start; i < end; i += components) {
+            for (int c = 0; c < channels; c++) {
+                values[i + c] = apply(values[i + c]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last samples of a measurement, e.g. a duration, and calculates the minimum, average, maximum and
+ * percentiles of these samples. Recording a sample doesn't create any objects. This class is thread safe.
+ *
+ * @author rvandoosselaer
+ */
+public class RollingStatistics {
+
+    private final long[] samples;
+    @Getter
+    private long count;
+
+    /**
+     * @param windowSize the number of samples that are kept
+     */
+    public RollingStatistics(int windowSize) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Invalid window size " + windowSize + " specified!");
+        }
+        this.samples = new long[windowSize];
+    }
+
+    public synchronized void record(long value) {
+        samples[(int) (count % samples.length)] = value;
+        count++;
+    }
+
+    public synchronized void reset() {
+        count = 0;
+    }
+
+    /**
+     * @return the number of samples in the window
+     */
+    public synchronized int getSize() {
+        return (int) Math.min(count, samples.length);
+    }
+
+    /**
+     * @return the smallest sample in the window, or 0 when there are no samples
+     */
+    public synchronized long getMin() {
+        int size = getSize();
+        if (size == 0) {
+            return 0;
+        }
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, samples[i]);
+        }
+        return min;
+    }
+
+    /**
+     * @return the largest sample in the window, or 0 when there are no samples
+     */
+    public synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < getSize(); i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    /**
+     * @return the average of the samples in the window, or 0 when there are no samples
+     */
+    public synchronized double getAverage() {
+        int size = getSize();
+        if (size == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += samples[i];
+        }
+        return sum / size;
+    }
+
+    /**
+     * Returns the percentile of the samples in the window, using the nearest rank method.
+     *
+     * @param percentile the percentile, between 0 and 100, e.g. 99
+     * @return the sample at the percentile, or 0 when there are no samples
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid percentile " + percentile + " specified!");
+        }
+        int size = getSize();
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(rank - 1, 0)];
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RollingStatistics[samples=%d, min=%d, avg=%.1f, p99=%d, max=%d]", getSize(), getMin(),
+                getAverage(), getPercentile(99), getMax());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Helper class that splits the rows of an image in bands and processes the bands on an executor. Each band is a
+ * contiguous range of rows, so the output doesn't depend on the number of bands or the order in which they are
+ * processed.
+ *
+ * @author rvandoosselaer
+ */
+final class RowBands {
+
+    /**
+     * Number of bands per available thread, to even out bands that take longer than others.
+     */
+    private static final int BANDS_PER_THREAD = 4;
+
+    private RowBands() {
+    }
+
+    /**
+     * Processes the rows in bands on the executor. When the executor is null or the number of pixels is below the
+     * parallel threshold, all rows are processed on the calling thread.
+     *
+     * @param rows     the number of rows to process
+     * @param pixels   the number of pixels of the image, used to decide if processing in parallel is worth it
+     * @param executor the executor to use, can be null
+     * @param task     the task processing a range of rows
+     */
+    static void forEachBand(int rows, long pixels, Executor executor, RowTask task) {
+        if (executor == null || rows < 2 || pixels < ImageUtils.getParallelThreshold()) {
+            task.process(0, rows);
+            return;
+        }
+
+        int bands = Math.min(rows, getParallelism(executor) * BANDS_PER_THREAD);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[bands];
+        for (int i = 0; i < bands; i++) {
+            int startRow = (int) ((long) rows * i / bands);
+            int endRow = (int) ((long) rows * (i + 1) / bands);
+            futures[i] = CompletableFuture.runAsync(() -> task.process(startRow, endRow), executor);
+        }
+
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static int getParallelism(Executor executor) {
+        if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * A task that processes a range of rows.
+     */
+    @FunctionalInterface
+    interface RowTask {
+
+        /**
+         * @param startRow the first row, inclusive
+         * @param endRow   the last row, exclusive
+         */
+        void process(int startRow, int endRow);
+
+    }
+
+}
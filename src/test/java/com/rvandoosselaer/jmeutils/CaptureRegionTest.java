@@ -0,0 +1,60 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.simsilica.lemur.Panel;
+import com.simsilica.lemur.style.ElementId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class CaptureRegionTest {
+
+    @Test
+    public void regionFromCameraViewPort() {
+        Camera camera = new Camera(1920, 1080);
+        camera.setViewPort(0.75f, 1f, 0f, 0.25f);
+
+        CaptureRegion region = CaptureRegion.fromCamera(camera);
+
+        assertRegion(1440, 0, 480, 270, region);
+    }
+
+    @Test
+    public void regionFromPanelBounds() {
+        // the default constructor applies the styles of the GuiGlobals, which are only available in a running app
+        Panel panel = new Panel(false, new ElementId("panel"), null) {
+        };
+        panel.setLocalTranslation(100.5f, 700f, 0);
+        panel.setSize(new Vector3f(200, 150.5f, 0));
+
+        CaptureRegion region = CaptureRegion.fromPanel(panel);
+
+        // the location of a panel is its upper left corner, the region is rounded outwards to whole pixels
+        assertRegion(100, 549, 201, 151, region);
+    }
+
+    @Test
+    public void regionIsClippedToFramebuffer() {
+        CaptureRegion region = new CaptureRegion(-10, 20, 100, 100);
+
+        assertRegion(0, 20, 90, 80, region.clip(800, 100));
+        assertNull(region.clip(800, 20));
+
+        CaptureRegion inside = new CaptureRegion(5, 5, 10, 10);
+        assertSame(inside, inside.clip(800, 600));
+    }
+
+    private static void assertRegion(int x, int y, int width, int height, CaptureRegion region) {
+        assertEquals(x, region.getX());
+        assertEquals(y, region.getY());
+        assertEquals(width, region.getWidth());
+        assertEquals(height, region.getHeight());
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.image.QoiEncoder;
+import com.rvandoosselaer.jmeutils.image.RawImageEncoder;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class CaptureStageTimerTest {
+
+    @Test
+    public void testListener() {
+        CaptureStageTimer timer = new CaptureStageTimer();
+        Map<CaptureStage, Long> durations = new EnumMap<>(CaptureStage.class);
+        CaptureStageListener listener = durations::put;
+        timer.addListener(listener);
+
+        timer.record(CaptureStage.READBACK, 1000);
+        timer.record(CaptureStage.READBACK, 3000);
+        timer.removeListener(listener);
+        timer.record(CaptureStage.PROCESS, 5000);
+
+        assertEquals(3000, (long) durations.get(CaptureStage.READBACK));
+        assertEquals(1, durations.size());
+        assertEquals(2, timer.getStatistics(CaptureStage.READBACK).getCount());
+        assertEquals(1000, timer.getStatistics(CaptureStage.READBACK).getMin());
+        assertEquals(1, timer.getStatistics(CaptureStage.PROCESS).getCount());
+    }
+
+    @Test
+    public void testWrite() throws IOException {
+        CaptureStageTimer timer = new CaptureStageTimer();
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 16, 16);
+        Path path = Files.createTempFile("capture-stage", ".qoi");
+        try {
+            timer.write(image, path, new QoiEncoder());
+
+            assertTrue(Files.size(path) > 0);
+            assertEquals(1, timer.getStatistics(CaptureStage.ENCODE).getCount());
+            assertEquals(1, timer.getStatistics(CaptureStage.WRITE).getCount());
+            assertTrue(timer.getStatistics(CaptureStage.WRITE).getMax() > 0);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void pngScreenshotRecordsEncodeAndWrite() throws IOException {
+        CaptureStageTimer timer = new CaptureStageTimer();
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 64, 64);
+        Path path = Files.createTempFile("capture-stage", ".png");
+        try {
+            timer.write(image, path, new PngEncoder());
+
+            assertTrue(Files.size(path) > 0);
+            assertEquals(1, timer.getStatistics(CaptureStage.ENCODE).getCount());
+            assertEquals(1, timer.getStatistics(CaptureStage.WRITE).getCount());
+            assertTrue(timer.getStatistics(CaptureStage.ENCODE).getMax() > 0);
+            assertTrue(timer.getStatistics(CaptureStage.WRITE).getMax() > 0);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void rawScreenshotIsWrittenByTheEncoder() throws IOException {
+        CaptureStageTimer timer = new CaptureStageTimer();
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 16, 16);
+        Path path = Files.createTempFile("capture-stage", ".raw");
+        try {
+            timer.write(image, path, new RawImageEncoder());
+
+            assertTrue(Files.size(path) > 16 * 16 * 4);
+            assertEquals(0, timer.getStatistics(CaptureStage.ENCODE).getCount());
+            assertEquals(1, timer.getStatistics(CaptureStage.WRITE).getCount());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+}
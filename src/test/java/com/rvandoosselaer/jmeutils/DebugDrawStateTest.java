@@ -0,0 +1,95 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import org.junit.jupiter.api.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class DebugDrawStateTest {
+
+    @Test
+    public void shapesAreCollectedPerFrame() {
+        DebugDrawState state = new DebugDrawState();
+        state.drawLine(new Vector3f(), Vector3f.UNIT_X, ColorRGBA.White);
+        state.drawArrow(new Vector3f(), Vector3f.UNIT_Y, ColorRGBA.White);
+        state.drawBox(new Vector3f(), new Vector3f(1, 1, 1), ColorRGBA.White);
+        state.drawCross(new Vector3f(), 1, ColorRGBA.White);
+        state.drawAxes(new Vector3f(), 1);
+        state.drawSolidBox(new Vector3f(), new Vector3f(1, 1, 1), ColorRGBA.White);
+        state.drawTriangle(new Vector3f(), Vector3f.UNIT_X, Vector3f.UNIT_Y, ColorRGBA.White);
+
+        // line: 1, arrow: 5, box: 12, cross: 3, axes: 3 arrows
+        assertEquals((1 + 5 + 12 + 3 + 15) * 2, state.getLineVertexCount());
+        // solid box: 12 triangles, triangle: 1
+        assertEquals(13 * 3, state.getTriangleVertexCount());
+
+        state.render(null);
+        assertEquals(0, state.getLineVertexCount());
+        assertEquals(0, state.getTriangleVertexCount());
+    }
+
+    @Test
+    public void shapesAreNotCulledWhenTheOriginIsOffScreen() {
+        DebugDrawState state = new DebugDrawState();
+        Camera camera = new Camera(640, 480);
+        camera.setFrustumPerspective(45, 640 / 480f, 1, 100);
+        camera.setLocation(new Vector3f(0, 0, 10));
+        // looking away from the origin, at the line
+        camera.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+        state.drawLine(new Vector3f(0, 0, 20), new Vector3f(1, 0, 20), ColorRGBA.White);
+
+        state.render(null);
+        state.getNode().updateGeometricState();
+
+        assertTrue(state.getNode().checkCulling(camera));
+    }
+
+    @Test
+    public void shapesAreIgnoredWhenDisabled() {
+        DebugDrawState state = new DebugDrawState(new Node("parent"));
+        state.setEnabled(false);
+
+        state.drawLine(new Vector3f(), Vector3f.UNIT_X, ColorRGBA.White);
+        state.drawTriangle(new Vector3f(), Vector3f.UNIT_X, Vector3f.UNIT_Y, ColorRGBA.White);
+        assertEquals(0, state.getLineVertexCount());
+        assertEquals(0, state.getTriangleVertexCount());
+    }
+
+    @Test
+    public void buffersAreReused() {
+        DebugDrawState.Batch batch = new DebugDrawState.Batch("test", Mesh.Mode.Lines);
+        batch.add(0, 0, 0, ColorRGBA.White);
+        batch.add(1, 2, 3, ColorRGBA.White);
+        batch.flush();
+        FloatBuffer buffer = batch.getPositionBuffer();
+        assertEquals(6, buffer.limit());
+        assertEquals(3f, buffer.get(5));
+
+        batch.add(4, 5, 6, ColorRGBA.White);
+        batch.flush();
+        assertSame(buffer, batch.getPositionBuffer());
+        assertEquals(3, buffer.limit());
+        assertEquals(4f, buffer.get(0));
+
+        // the buffer grows when the vertices don't fit
+        for (int i = 0; i < 1000; i++) {
+            batch.add(i, i, i, ColorRGBA.White);
+        }
+        batch.flush();
+        assertNotSame(buffer, batch.getPositionBuffer());
+        assertEquals(3000, batch.getPositionBuffer().limit());
+    }
+
+}
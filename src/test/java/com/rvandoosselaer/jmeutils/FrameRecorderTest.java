@@ -0,0 +1,122 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.ImageEncoder;
+import com.rvandoosselaer.jmeutils.image.QoiEncoder;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class FrameRecorderTest {
+
+    private static final int FRAME_SIZE = 8 * 8 * 4;
+
+    @Test
+    public void failedRecorderReleasesFramesAndStopsBlocking() throws IOException {
+        DirectBufferPool bufferPool = new DirectBufferPool(1024 * 1024);
+        Path directory = Files.createTempDirectory("frame-recorder");
+        try {
+            FrameRecorder recorder = new FrameRecorder(directory, ScreenshotState.RecordingFormat.IMAGE_SEQUENCE, 30, 0.9f,
+                    new FailingEncoder(), bufferPool, 2, FRAME_SIZE, ScreenshotState.QueueFullPolicy.BLOCK, new CaptureStageTimer());
+            FrameRecorder.Frame failing = recorder.acquire(FRAME_SIZE);
+            FrameRecorder.Frame pending = recorder.acquire(FRAME_SIZE);
+            assertNotNull(failing);
+            assertNotNull(pending);
+
+            assertTrue(recorder.submit(failing, Image.Format.RGBA8, 8, 8, 1));
+            assertTrue(isFailed(recorder.stop()));
+
+            assertTrue(recorder.isFailed());
+            // the render thread doesn't wait for the frames that are released
+            assertNull(recorder.acquire(FRAME_SIZE));
+            assertFalse(recorder.submit(pending, Image.Format.RGBA8, 8, 8, 1));
+            assertEquals(bufferPool.getReservedBytes(), bufferPool.getPooledBytes());
+        } finally {
+            Files.list(directory).forEach(FrameRecorderTest::delete);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void frameSubmittedAfterStopIsReleased() throws IOException {
+        DirectBufferPool bufferPool = new DirectBufferPool(1024 * 1024);
+        Path directory = Files.createTempDirectory("frame-recorder");
+        try {
+            FrameRecorder recorder = createRecorder(directory, bufferPool);
+            FrameRecorder.Frame written = recorder.acquire(FRAME_SIZE);
+            assertTrue(recorder.submit(written, Image.Format.RGBA8, 8, 8, 1));
+            FrameRecorder.Frame late = recorder.acquire(FRAME_SIZE);
+            CompletableFuture<Path> result = recorder.stop();
+
+            assertFalse(recorder.submit(late, Image.Format.RGBA8, 8, 8, 1));
+            assertEquals(directory, result.join());
+            assertEquals(1, recorder.getWrittenFrames());
+            assertEquals(bufferPool.getReservedBytes(), bufferPool.getPooledBytes());
+        } finally {
+            Files.list(directory).forEach(FrameRecorderTest::delete);
+            Files.delete(directory);
+        }
+    }
+
+    private static FrameRecorder createRecorder(Path path, DirectBufferPool bufferPool) {
+        return new FrameRecorder(path, ScreenshotState.RecordingFormat.IMAGE_SEQUENCE, 30, 0.9f, new QoiEncoder(),
+                bufferPool, 2, FRAME_SIZE, ScreenshotState.QueueFullPolicy.BLOCK, new CaptureStageTimer());
+    }
+
+    private static boolean isFailed(CompletableFuture<Path> result) {
+        try {
+            result.join();
+            return false;
+        } catch (CompletionException e) {
+            return true;
+        }
+    }
+
+    private static class FailingEncoder implements ImageEncoder {
+
+        @Override
+        public String getName() {
+            return "failing";
+        }
+
+        @Override
+        public String getExtension() {
+            return ".fail";
+        }
+
+        @Override
+        public void encode(Image image, OutputStream out) throws IOException {
+            throw new IOException("Disk full");
+        }
+
+        @Override
+        public void write(Image image, Path path) throws IOException {
+            throw new IOException("Disk full");
+        }
+
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.delete(path);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.util.DirectBufferPool;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ScreenshotPipelineTest {
+
+    @Test
+    public void submitAfterShutdownReleasesTheBuffer() {
+        DirectBufferPool bufferPool = new DirectBufferPool(1024 * 1024);
+        ScreenshotPipeline pipeline = new ScreenshotPipeline(2, 1, ScreenshotState.QueueFullPolicy.DROP, bufferPool);
+        ByteBuffer buffer = pipeline.acquire(4 * 4 * 4);
+        pipeline.shutdown();
+
+        CompletableFuture<?> result = pipeline.submit(buffer, Image.Format.RGBA8, 4, 4, null, new PngEncoder(),
+                Collections.emptyList(), Paths.get("screenshot.png"), new CaptureStageTimer());
+
+        assertTrue(result.isCompletedExceptionally());
+        try {
+            result.join();
+        } catch (Exception e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(bufferPool.getReservedBytes(), bufferPool.getPooledBytes());
+    }
+
+}
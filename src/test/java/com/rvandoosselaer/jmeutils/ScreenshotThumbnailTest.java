@@ -0,0 +1,59 @@
+package com.rvandoosselaer.jmeutils;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.QoiEncoder;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ScreenshotThumbnailTest {
+
+    @Test
+    public void imageIsHalvedUntilItFits() {
+        assertEquals(0, new ScreenshotThumbnail(1920, 1080).getLevel(1920, 1080));
+        assertEquals(1, new ScreenshotThumbnail(960, 1000).getLevel(1920, 1080));
+        assertEquals(3, new ScreenshotThumbnail(256, 256).getLevel(1920, 1080));
+        assertEquals(2, new ScreenshotThumbnail(1000, 300).getLevel(1920, 1080));
+        // an image is never halved to nothing
+        assertEquals(1, new ScreenshotThumbnail(1, 1).getLevel(4, 2));
+    }
+
+    @Test
+    public void writeThumbnailsNextToScreenshot() throws IOException {
+        Path directory = Files.createTempDirectory("thumbnails");
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 64, 32);
+        ByteBuffer data = image.getData(0);
+        while (data.hasRemaining()) {
+            data.put((byte) 0x40);
+        }
+        data.rewind();
+
+        ScreenshotThumbnail small = new ScreenshotThumbnail(16, 16);
+        ScreenshotThumbnail large = new ScreenshotThumbnail(40, 40, new QoiEncoder());
+        large.setSuffix("-preview");
+        ScreenshotThumbnail.writeThumbnails(image, directory.resolve("Screenshot.png"), ".png", Arrays.asList(small, large));
+
+        BufferedImage thumbnail = ImageIO.read(directory.resolve("Screenshot_16x16.png").toFile());
+        assertEquals(16, thumbnail.getWidth());
+        assertEquals(8, thumbnail.getHeight());
+        assertEquals(0x40404040, thumbnail.getRGB(3, 3));
+        assertTrue(Files.exists(directory.resolve("Screenshot-preview.qoi")));
+        // the captured image is left untouched
+        assertEquals(64, image.getWidth());
+        assertEquals(0x40, image.getData(0).get(64 * 32 * 4 - 1));
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.rvandoosselaer.jmeutils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class TiledScreenshotTest {
+
+    @Test
+    public void tileFrustumDividesTheCameraFrustum() {
+        float[] frustum = {-4, 4, 3, -3};
+
+        assertArrayEquals(new float[]{-4, -2, 3, 0}, TiledScreenshot.getTileFrustum(frustum, 4, 2, 0, 0), 0.0001f);
+        assertArrayEquals(new float[]{2, 4, 0, -3}, TiledScreenshot.getTileFrustum(frustum, 4, 2, 3, 1), 0.0001f);
+        assertArrayEquals(frustum, TiledScreenshot.getTileFrustum(frustum, 1, 1, 0, 0), 0.0001f);
+    }
+
+    @Test
+    public void invalidTileCount() {
+        assertThrows(IllegalArgumentException.class, () -> new TiledScreenshot(0, 2));
+    }
+
+}
@@ -0,0 +1,167 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ImageEncodersTest {
+
+    @Test
+    public void findEncoderByName() {
+        assertTrue(ImageEncoders.forName("png") instanceof PngEncoder);
+        assertTrue(ImageEncoders.forName("QOI") instanceof QoiEncoder);
+        assertTrue(ImageEncoders.forName("raw") instanceof RawImageEncoder);
+        assertTrue(ImageEncoders.forName("png8") instanceof PalettePngEncoder);
+        assertTrue(ImageEncoders.getNames().contains("qoi"));
+        assertThrows(IllegalArgumentException.class, () -> ImageEncoders.forName("tga"));
+    }
+
+    @Test
+    public void qoiRoundTrip() throws IOException {
+        for (Image.Format format : new Image.Format[]{Image.Format.RGBA8, Image.Format.ABGR8, Image.Format.ARGB8,
+                Image.Format.BGRA8, Image.Format.RGB8, Image.Format.BGR8}) {
+            Image image = PngEncoderTest.createGradientImage(format, 67, 45);
+
+            Image decoded = new QoiDecoder().decode(new ByteArrayInputStream(encode(image, new QoiEncoder())));
+
+            assertImageEquals(ImageUtils.imageToBufferedImage(image), ImageUtils.imageToBufferedImage(decoded));
+        }
+    }
+
+    @Test
+    public void qoiRoundTripWithRunsAndRepeatedColors() throws IOException {
+        // long runs of the same color and a small palette exercise the run and index chunks
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 300, 20);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 300 * 20; i++) {
+            int color = (i / 97) % 5;
+            data.put((byte) (color * 60)).put((byte) (color * 20)).put((byte) 200).put((byte) (color == 3 ? 128 : 255));
+        }
+        data.rewind();
+
+        Image decoded = new QoiDecoder().decode(new ByteArrayInputStream(encode(image, new QoiEncoder())));
+
+        assertImageEquals(ImageUtils.imageToBufferedImage(image), ImageUtils.imageToBufferedImage(decoded));
+    }
+
+    @Test
+    public void qoiRoundTripFromRowSource() throws IOException {
+        Image image = PngEncoderTest.createNoiseImage(Image.Format.BGR8, 129, 50);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageUtils.writeImage(RowSource.of(image), out, new QoiEncoder());
+
+        Image decoded = new QoiDecoder().decode(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(Image.Format.RGB8, decoded.getFormat());
+        assertImageEquals(ImageUtils.imageToBufferedImage(image), ImageUtils.imageToBufferedImage(decoded));
+    }
+
+    @Test
+    public void rawRoundTrip() throws IOException {
+        Path directory = Files.createTempDirectory("raw");
+        Image image = PngEncoderTest.createGradientImage(Image.Format.BGRA8, 33, 21);
+
+        for (boolean memoryMapped : new boolean[]{false, true}) {
+            RawImageEncoder encoder = new RawImageEncoder();
+            encoder.setMemoryMapped(memoryMapped);
+            Path file = directory.resolve("capture-" + memoryMapped + encoder.getExtension());
+            encoder.write(image, file);
+
+            Image decoded = CaptureConverter.read(file);
+
+            assertEquals(Image.Format.BGRA8, decoded.getFormat());
+            assertEquals(image.getColorSpace(), decoded.getColorSpace());
+            assertEquals(33, decoded.getWidth());
+            assertEquals(21, decoded.getHeight());
+            assertEquals(image.getData(0), decoded.getData(0));
+
+            // the file is unmapped, so it can be overwritten and deleted
+            encoder.write(image, file);
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void truncatedQoiStreamFails() throws IOException {
+        // a 1x1 image with an RGBA chunk that misses its alpha byte
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(QoiEncoder.MAGIC);
+        data.writeInt(1);
+        data.writeInt(1);
+        data.writeByte(4);
+        data.writeByte(0);
+        data.write(new byte[]{(byte) QoiEncoder.OP_RGBA, 10, 20, 30});
+
+        IOException e = assertThrows(IOException.class,
+                () -> new QoiDecoder().decode(new ByteArrayInputStream(out.toByteArray())));
+        assertEquals("Unexpected end of QOI stream", e.getMessage());
+    }
+
+    @Test
+    public void rawHeaderWithInvalidSizeFails() throws IOException {
+        for (int[] size : new int[][]{{0, 10}, {10, -1}, {65536, 65536}}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(out);
+            data.write(RawImageEncoder.MAGIC);
+            data.writeByte(RawImageEncoder.VERSION);
+            data.writeByte(0);
+            data.writeInt(size[0]);
+            data.writeInt(size[1]);
+            data.writeUTF(Image.Format.RGBA8.name());
+
+            assertThrows(IOException.class,
+                    () -> new RawImageDecoder().decode(new ByteArrayInputStream(out.toByteArray())));
+        }
+    }
+
+    @Test
+    public void convertCapturesToPng() throws IOException {
+        Path input = Files.createTempDirectory("captures");
+        Path output = input.resolve("png");
+        Image image = PngEncoderTest.createGradientImage(Image.Format.RGB8, 40, 30);
+        new QoiEncoder().write(image, input.resolve("first.qoi"));
+        new RawImageEncoder().write(image, input.resolve("second.raw"));
+
+        assertEquals(2, new CaptureConverter().convert(input, output));
+
+        BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+        assertImageEquals(expected, ImageIO.read(output.resolve("first.png").toFile()));
+        assertImageEquals(expected, ImageIO.read(output.resolve("second.png").toFile()));
+    }
+
+    private static byte[] encode(Image image, ImageEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, out);
+        return out.toByteArray();
+    }
+
+    private static void assertImageEquals(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+}
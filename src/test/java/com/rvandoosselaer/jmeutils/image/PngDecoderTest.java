@@ -0,0 +1,153 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.util.ImageDiff;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class PngDecoderTest {
+
+    private static final Image.Format[] FORMATS = {Image.Format.RGBA8, Image.Format.ABGR8, Image.Format.ARGB8,
+            Image.Format.BGRA8, Image.Format.RGB8, Image.Format.BGR8};
+
+    @Test
+    public void decodeEncodedImagesInAllFormats() throws IOException {
+        for (Image.Format format : FORMATS) {
+            Image image = PngEncoderTest.createGradientImage(format, 67, 45);
+            byte[] png = encode(image);
+
+            Image decoded = new PngDecoder().decode(new ByteArrayInputStream(png));
+            assertEquals(format.getBitsPerPixel() == 32 ? Image.Format.RGBA8 : Image.Format.RGB8, decoded.getFormat());
+            assertTrue(new ImageDiff().compare(image, decoded).isMatch(), format.toString());
+
+            for (Image.Format target : FORMATS) {
+                PngDecoder decoder = new PngDecoder();
+                decoder.setFormat(target);
+                Image converted = decoder.decode(new ByteArrayInputStream(png));
+
+                assertEquals(target, converted.getFormat());
+                if (format.getBitsPerPixel() == target.getBitsPerPixel()) {
+                    assertTrue(new ImageDiff().compare(image, converted).isMatch(), format + " to " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void alphaIsDroppedOrAdded() throws IOException {
+        Image image = PngEncoderTest.createGradientImage(Image.Format.RGB8, 20, 10);
+        PngDecoder decoder = new PngDecoder();
+        decoder.setFormat(Image.Format.ARGB8);
+
+        Image decoded = decoder.decode(new ByteArrayInputStream(encode(image)));
+
+        BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+        BufferedImage actual = ImageUtils.imageToBufferedImage(decoded);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(expected.getRGB(x, y) | 0xFF000000, actual.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void decodeImageIoImages() throws IOException {
+        Random random = new Random(17);
+        int width = 35;
+        int height = 23;
+        BufferedImage[] images = {
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB),
+                new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR),
+                new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, createPalette(random, 8, 200, false)),
+                new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, createPalette(random, 8, 16, true)),
+                new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, createPalette(random, 2, 4, false)),
+                new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, createPalette(random, 1, 2, false)),
+        };
+        for (BufferedImage image : images) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    image.setRGB(x, y, random.nextInt());
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            BufferedImage expected = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+            Image decoded = new PngDecoder().decode(new ByteArrayInputStream(out.toByteArray()));
+
+            ImageDiff.Result result = new ImageDiff().compare(expected, ImageUtils.imageToBufferedImage(decoded));
+            assertTrue(result.isMatch(), "type " + image.getType() + ": " + result);
+        }
+    }
+
+    @Test
+    public void decodeGrayImages() throws IOException {
+        int width = 19;
+        int height = 7;
+        for (int type : new int[]{BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY}) {
+            BufferedImage image = new BufferedImage(width, height, type);
+            int max = type == BufferedImage.TYPE_BYTE_GRAY ? 0xFF : 0xFFFF;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    image.getRaster().setSample(x, y, 0, (x * 31 + y * 17) * max / (18 * 31 + 6 * 17));
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+
+            Image decoded = new PngDecoder().decode(new ByteArrayInputStream(out.toByteArray()));
+
+            assertEquals(Image.Format.RGB8, decoded.getFormat());
+            BufferedImage actual = ImageUtils.imageToBufferedImage(decoded);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int gray = image.getRaster().getSample(x, y, 0) >>> (type == BufferedImage.TYPE_USHORT_GRAY ? 8 : 0);
+                    assertEquals(0xFF000000 | gray << 16 | gray << 8 | gray, actual.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void invalidImagesAreRejected() {
+        assertThrows(IOException.class, () -> new PngDecoder().decode(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+
+        byte[] png = encode(PngEncoderTest.createGradientImage(Image.Format.RGBA8, 30, 30));
+        byte[] truncated = Arrays.copyOf(png, png.length / 2);
+        assertThrows(IOException.class, () -> new PngDecoder().decode(new ByteArrayInputStream(truncated)));
+    }
+
+    private static byte[] encode(Image image) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageUtils.writeImageSilently(image, out);
+        return out.toByteArray();
+    }
+
+    private static IndexColorModel createPalette(Random random, int bits, int size, boolean alpha) {
+        byte[][] channels = new byte[4][size];
+        for (byte[] channel : channels) {
+            random.nextBytes(channel);
+        }
+        if (!alpha) {
+            return new IndexColorModel(bits, size, channels[0], channels[1], channels[2]);
+        }
+        return new IndexColorModel(bits, size, channels[0], channels[1], channels[2], channels[3]);
+    }
+
+}
@@ -0,0 +1,191 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class PngEncoderTest {
+
+    @Test
+    public void encodedImageMatchesConvertedImage() throws IOException {
+        for (Image.Format format : new Image.Format[]{Image.Format.RGBA8, Image.Format.ABGR8, Image.Format.ARGB8,
+                Image.Format.BGRA8, Image.Format.RGB8, Image.Format.BGR8}) {
+            Image image = createGradientImage(format, 67, 45);
+
+            assertImageEquals(ImageUtils.imageToBufferedImage(image), encodeAndDecode(image, new PngEncoder()));
+        }
+    }
+
+    @Test
+    public void allFiltersAndLevelsProduceTheSameImage() throws IOException {
+        Image image = createGradientImage(Image.Format.RGBA8, 50, 31);
+        BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+
+        for (PngEncoder.Filter filter : PngEncoder.Filter.values()) {
+            for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION, Deflater.BEST_COMPRESSION}) {
+                PngEncoder encoder = new PngEncoder();
+                encoder.setFilter(filter);
+                encoder.setCompressionLevel(level);
+
+                assertImageEquals(expected, encodeAndDecode(image, encoder));
+            }
+        }
+    }
+
+    @Test
+    public void parallelChunksProduceTheSameImage() throws IOException {
+        Image image = createGradientImage(Image.Format.BGRA8, 101, 77);
+        BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+
+        PngEncoder encoder = new PngEncoder();
+        // a few rows per chunk
+        encoder.setChunkSize(1000);
+        assertImageEquals(expected, encodeAndDecode(image, encoder));
+
+        encoder.setExecutor(null);
+        assertImageEquals(expected, encodeAndDecode(image, encoder));
+    }
+
+    @Test
+    public void streamedRowsProduceTheSameImage() throws IOException {
+        // random noise doesn't compress, so the data is split over multiple IDAT chunks
+        Image image = createNoiseImage(Image.Format.ARGB8, 211, 173);
+        RowSource rows = RowSource.of(image);
+        int[] nextRow = {0};
+        RowSource source = new RowSource() {
+            @Override
+            public int getWidth() {
+                return rows.getWidth();
+            }
+
+            @Override
+            public int getHeight() {
+                return rows.getHeight();
+            }
+
+            @Override
+            public int getChannels() {
+                return rows.getChannels();
+            }
+
+            @Override
+            public ColorSpace getColorSpace() {
+                return rows.getColorSpace();
+            }
+
+            @Override
+            public void readRow(int y, byte[] row) {
+                assertEquals(nextRow[0]++, y);
+                rows.readRow(y, row);
+            }
+        };
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PngEncoder().encode(source, out);
+
+        assertEquals(173, nextRow[0]);
+        assertImageEquals(ImageUtils.imageToBufferedImage(image), ImageIO.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    public void paletteImageIsWrittenWithoutLosingColors() throws IOException {
+        for (Image.Format format : new Image.Format[]{Image.Format.RGBA8, Image.Format.BGR8}) {
+            // a few flat colors, one of them translucent
+            Image image = ImageUtils.createImage(format, 150, 90);
+            ByteBuffer data = image.getData(0);
+            int channels = format.getBitsPerPixel() / 8;
+            for (int i = 0; i < 150 * 90; i++) {
+                int color = (i / 37) % 6;
+                data.put((byte) (color * 40)).put((byte) 200).put((byte) (255 - color * 20));
+                if (channels == 4) {
+                    data.put((byte) (color == 2 ? 100 : 255));
+                }
+            }
+            data.rewind();
+            BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+
+            PngEncoder encoder = new PalettePngEncoder();
+            assertImageEquals(expected, encodeAndDecode(image, encoder));
+            encoder.setChunkSize(1000);
+            assertImageEquals(expected, encodeAndDecode(image, encoder));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.encode(image, out);
+            Image decoded = new PngDecoder().decode(new ByteArrayInputStream(out.toByteArray()));
+            assertImageEquals(expected, ImageUtils.imageToBufferedImage(decoded));
+        }
+    }
+
+    @Test
+    public void combineAdler32() {
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+
+        Adler32 first = new Adler32();
+        first.update(data, 0, 40_000);
+        Adler32 second = new Adler32();
+        second.update(data, 40_000, 60_000);
+        Adler32 all = new Adler32();
+        all.update(data);
+
+        assertEquals(all.getValue(), PngEncoder.combineAdler32(first.getValue(), second.getValue(), 60_000));
+    }
+
+    static Image createGradientImage(Image.Format format, int width, int height) {
+        Image image = ImageUtils.createImage(format, width, height);
+        ByteBuffer data = image.getData(0);
+        Random random = new Random(3);
+        int channels = format.getBitsPerPixel() / 8;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // a smooth gradient with some noise, to exercise all filters
+                for (int c = 0; c < channels; c++) {
+                    data.put((byte) (x * 3 + y * 5 + c * 40 + random.nextInt(4)));
+                }
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+    static Image createNoiseImage(Image.Format format, int width, int height) {
+        Image image = ImageUtils.createImage(format, width, height);
+        byte[] data = new byte[image.getData(0).remaining()];
+        new Random(5).nextBytes(data);
+        image.getData(0).put(data).rewind();
+        return image;
+    }
+
+    private static BufferedImage encodeAndDecode(Image image, PngEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, out);
+        return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertImageEquals(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+}
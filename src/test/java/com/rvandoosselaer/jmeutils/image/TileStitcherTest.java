@@ -0,0 +1,181 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class TileStitcherTest {
+
+    private static final int COLUMNS = 3;
+    private static final int ROWS = 4;
+    private static final int TILE_WIDTH = 17;
+    private static final int TILE_HEIGHT = 11;
+
+    @Test
+    public void stitchedRowsMatchTiles() {
+        List<Image> released = new CopyOnWriteArrayList<>();
+        TileStitcher stitcher = new TileStitcher(COLUMNS, ROWS, TILE_WIDTH, TILE_HEIGHT, Image.Format.BGRA8,
+                ColorSpace.Linear, released::add);
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                stitcher.addTile(column, row, createTile(column, row));
+            }
+        }
+
+        assertEquals(COLUMNS * TILE_WIDTH, stitcher.getWidth());
+        assertEquals(ROWS * TILE_HEIGHT, stitcher.getHeight());
+        byte[] row = new byte[stitcher.getWidth() * stitcher.getChannels()];
+        for (int y = 0; y < stitcher.getHeight(); y++) {
+            stitcher.readRow(y, row);
+            for (int x = 0; x < stitcher.getWidth(); x++) {
+                int expected = getColor(x / TILE_WIDTH, y / TILE_HEIGHT, x % TILE_WIDTH, y % TILE_HEIGHT);
+                int actual = (row[x * 4] & 0xFF) << 24 | (row[x * 4 + 1] & 0xFF) << 16 | (row[x * 4 + 2] & 0xFF) << 8 | row[x * 4 + 3] & 0xFF;
+                assertEquals(expected, actual, "pixel " + x + ", " + y);
+            }
+        }
+
+        assertEquals(COLUMNS * ROWS, released.size());
+        assertEquals(0, stitcher.getPendingTiles());
+    }
+
+    @Test
+    public void tilesAreStreamedToTheEncoder() throws IOException {
+        AtomicInteger maxPendingTiles = new AtomicInteger();
+        TileStitcher stitcher = new TileStitcher(COLUMNS, ROWS, TILE_WIDTH, TILE_HEIGHT, Image.Format.BGRA8,
+                ColorSpace.Linear, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> encoding = CompletableFuture.runAsync(() -> {
+            try {
+                new PngEncoder().encode(stitcher, out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        // add the tiles of each row of tiles in random order, at most two rows of tiles ahead of the encoder
+        Random random = new Random(11);
+        for (int row = 0; row < ROWS; row++) {
+            List<Integer> columns = new ArrayList<>();
+            for (int column = 0; column < COLUMNS; column++) {
+                columns.add(column);
+            }
+            Collections.shuffle(columns, random);
+            for (int column : columns) {
+                while (stitcher.getPendingTiles() >= 2 * COLUMNS) {
+                    Thread.yield();
+                }
+                stitcher.addTile(column, row, createTile(column, row));
+                maxPendingTiles.accumulateAndGet(stitcher.getPendingTiles(), Math::max);
+            }
+        }
+        encoding.join();
+
+        assertTrue(maxPendingTiles.get() <= 2 * COLUMNS);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(COLUMNS * TILE_WIDTH, image.getWidth());
+        assertEquals(ROWS * TILE_HEIGHT, image.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int color = getColor(x / TILE_WIDTH, y / TILE_HEIGHT, x % TILE_WIDTH, y % TILE_HEIGHT);
+                assertEquals(color >>> 8 | color << 24, image.getRGB(x, y), "pixel " + x + ", " + y);
+            }
+        }
+    }
+
+    @Test
+    public void cancelReleasesTilesAndStopsTheReader() {
+        List<Image> released = new CopyOnWriteArrayList<>();
+        TileStitcher stitcher = new TileStitcher(2, 2, TILE_WIDTH, TILE_HEIGHT, Image.Format.RGBA8,
+                ColorSpace.Linear, released::add);
+        stitcher.addTile(0, 0, createTile(Image.Format.RGBA8, 0, 0));
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> stitcher.readRow(0, new byte[2 * TILE_WIDTH * 4]));
+
+        stitcher.cancel();
+        stitcher.addTile(1, 0, createTile(Image.Format.RGBA8, 1, 0));
+
+        Throwable cause = assertThrows(RuntimeException.class, reader::join).getCause();
+        assertTrue(cause instanceof CancellationException);
+        assertEquals(2, released.size());
+        assertEquals(0, stitcher.getPendingTiles());
+    }
+
+    @Test
+    public void cancelKeepsTheTilesThatAreRead() {
+        List<Image> released = new CopyOnWriteArrayList<>();
+        TileStitcher stitcher = new TileStitcher(2, 2, TILE_WIDTH, TILE_HEIGHT, Image.Format.RGBA8,
+                ColorSpace.Linear, released::add);
+        Image tile = createTile(Image.Format.RGBA8, 0, 1);
+        stitcher.addTile(0, 0, createTile(Image.Format.RGBA8, 0, 0));
+        stitcher.addTile(1, 0, createTile(Image.Format.RGBA8, 1, 0));
+        stitcher.addTile(0, 1, tile);
+        byte[] row = new byte[2 * TILE_WIDTH * 4];
+        stitcher.readRow(0, row);
+
+        // the tiles of the first row are still read by this thread
+        CompletableFuture.runAsync(stitcher::cancel).join();
+        assertEquals(Collections.singletonList(tile), released);
+
+        assertThrows(CancellationException.class, () -> stitcher.readRow(1, row));
+        assertEquals(3, released.size());
+        assertEquals(0, stitcher.getPendingTiles());
+    }
+
+    @Test
+    public void tilesMustMatchTheTileSize() {
+        TileStitcher stitcher = new TileStitcher(2, 2, TILE_WIDTH, TILE_HEIGHT, Image.Format.RGBA8, ColorSpace.Linear, null);
+
+        assertThrows(IllegalArgumentException.class, () -> stitcher.addTile(0, 0, ImageUtils.createImage(Image.Format.RGBA8, 5, 5)));
+        assertThrows(IllegalArgumentException.class, () -> stitcher.addTile(0, 0, createTile(Image.Format.BGRA8, 0, 0)));
+    }
+
+    private static Image createTile(int column, int row) {
+        return createTile(Image.Format.BGRA8, column, row);
+    }
+
+    /**
+     * Creates a tile with a unique RGBA color per pixel, stored bottom-up like a captured framebuffer.
+     */
+    private static Image createTile(Image.Format format, int column, int row) {
+        Image tile = ImageUtils.createImage(format, TILE_WIDTH, TILE_HEIGHT);
+        int[] channelOrder = ChannelOrder.of(format);
+        ByteBuffer data = tile.getData(0);
+        for (int y = 0; y < TILE_HEIGHT; y++) {
+            for (int x = 0; x < TILE_WIDTH; x++) {
+                int color = getColor(column, row, x, TILE_HEIGHT - 1 - y);
+                int offset = (y * TILE_WIDTH + x) * 4;
+                for (int c = 0; c < 4; c++) {
+                    data.put(offset + channelOrder[c], (byte) (color >>> (24 - c * 8)));
+                }
+            }
+        }
+        return tile;
+    }
+
+    private static int getColor(int column, int row, int x, int y) {
+        return (column * 70 + x) << 24 | (row * 50 + y) << 16 | (x * y) << 8 | 0xFF;
+    }
+
+}
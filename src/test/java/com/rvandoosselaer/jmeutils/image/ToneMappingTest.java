@@ -0,0 +1,212 @@
+package com.rvandoosselaer.jmeutils.image;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.util.HalfFloats;
+import com.rvandoosselaer.jmeutils.util.ImageUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ToneMappingTest {
+
+    private static final int WIDTH = 13;
+    private static final int HEIGHT = 7;
+
+    @Test
+    public void operators() {
+        ToneMapping toneMapping = new ToneMapping();
+        assertEquals(0, toneMapping.mapColor(-1));
+        assertEquals(0, toneMapping.mapColor(Float.NaN));
+        assertEquals(128, toneMapping.mapColor(0.5f));
+        assertEquals(255, toneMapping.mapColor(3));
+
+        toneMapping.setExposure(0.25f);
+        assertEquals(191, toneMapping.mapColor(3));
+
+        toneMapping.setExposure(1);
+        toneMapping.setOperator(ToneMapping.Operator.REINHARD);
+        assertEquals(128, toneMapping.mapColor(1));
+        assertEquals(255, toneMapping.mapColor(Float.POSITIVE_INFINITY));
+
+        toneMapping.setOperator(ToneMapping.Operator.ACES);
+        toneMapping.setSrgbEncoding(true);
+        assertEquals(0, toneMapping.mapColor(0));
+        assertEquals(255, toneMapping.mapColor(100));
+
+        toneMapping.setDepthRange(0.9f, 1);
+        assertEquals(0, toneMapping.mapDepth(0.5f));
+        assertEquals(128, toneMapping.mapDepth(0.95f));
+
+        assertThrows(IllegalArgumentException.class, () -> toneMapping.setExposure(0));
+        assertThrows(IllegalArgumentException.class, () -> toneMapping.setDepthRange(1, 1));
+    }
+
+    @Test
+    public void tablesFollowSettings() {
+        ToneMapping toneMapping = new ToneMapping();
+        assertEquals((byte) 255, toneMapping.getHalfColorTable()[HalfFloats.toHalf(2)]);
+
+        toneMapping.setOperator(ToneMapping.Operator.REINHARD);
+        assertEquals((byte) toneMapping.mapColor(2), toneMapping.getHalfColorTable()[HalfFloats.toHalf(2)]);
+    }
+
+    @Test
+    public void floatTableWithinOneStep() {
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setOperator(ToneMapping.Operator.ACES);
+        toneMapping.setSrgbEncoding(true);
+        byte[] table = toneMapping.getFloatColorTable();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            float value = random.nextFloat() * 8;
+            int expected = toneMapping.mapColor(value);
+            int actual = table[Float.floatToIntBits(value) >>> 15] & 0xFF;
+            assertTrue(Math.abs(expected - actual) <= 1, value + ": " + expected + " != " + actual);
+        }
+        assertEquals(0, table[Float.floatToIntBits(-5) >>> 15]);
+        assertEquals((byte) 255, table[Float.floatToIntBits(Float.POSITIVE_INFINITY) >>> 15]);
+    }
+
+    @Test
+    public void halfFloatImages() {
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setOperator(ToneMapping.Operator.REINHARD);
+        Random random = new Random(42);
+        float[] values = new float[WIDTH * HEIGHT * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat() * 4;
+        }
+
+        Image rgba = createHalfImage(Image.Format.RGBA16F, values, 4);
+        Image rgb = createHalfImage(Image.Format.RGB16F, values, 3);
+        RowSource rgbaSource = RowSource.of(rgba, toneMapping);
+        RowSource rgbSource = RowSource.of(rgb, toneMapping);
+        assertEquals(4, rgbaSource.getChannels());
+        assertEquals(3, rgbSource.getChannels());
+
+        byte[] rgbaRow = new byte[WIDTH * 4];
+        byte[] rgbRow = new byte[WIDTH * 3];
+        for (int y = 0; y < HEIGHT; y++) {
+            rgbaSource.readRow(y, rgbaRow);
+            rgbSource.readRow(y, rgbRow);
+            for (int x = 0; x < WIDTH; x++) {
+                for (int c = 0; c < 4; c++) {
+                    float value = HalfFloats.toFloat(HalfFloats.toHalf(values[getIndex(x, y, 4) + c]));
+                    int expected = c == 3 ? Math.min(255, Math.round(value * 255)) : toneMapping.mapColor(value);
+                    assertEquals(expected, rgbaRow[x * 4 + c] & 0xFF);
+                }
+                for (int c = 0; c < 3; c++) {
+                    float value = HalfFloats.toFloat(HalfFloats.toHalf(values[getIndex(x, y, 3) + c]));
+                    assertEquals(toneMapping.mapColor(value), rgbRow[x * 3 + c] & 0xFF);
+                }
+            }
+        }
+
+        ImageUtils.releaseImage(rgba);
+        ImageUtils.releaseImage(rgb);
+    }
+
+    @Test
+    public void packedFloatImages() {
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setExposure(0.5f);
+        Image image = ImageUtils.createImage(Image.Format.RGB111110F, WIDTH, HEIGHT);
+        ByteBuffer data = image.getData(0);
+        Random random = new Random(42);
+        int[] packed = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = random.nextInt();
+            data.putInt(packed[i]);
+        }
+        data.rewind();
+
+        RowSource source = RowSource.of(image, toneMapping);
+        byte[] row = new byte[WIDTH * 3];
+        float[] rgb = new float[3];
+        for (int y = 0; y < HEIGHT; y++) {
+            source.readRow(y, row);
+            for (int x = 0; x < WIDTH; x++) {
+                HalfFloats.unpackRGB111110F(packed[(HEIGHT - 1 - y) * WIDTH + x], rgb, 0);
+                for (int c = 0; c < 3; c++) {
+                    assertEquals(toneMapping.mapColor(rgb[c]), row[x * 3 + c] & 0xFF);
+                }
+            }
+        }
+
+        ImageUtils.releaseImage(image);
+    }
+
+    @Test
+    public void depthImages() {
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setDepthRange(0.5f, 1);
+        Image depth16 = ImageUtils.createImage(Image.Format.Depth16, WIDTH, HEIGHT);
+        Image depth32F = ImageUtils.createImage(Image.Format.Depth32F, WIDTH, HEIGHT);
+        Image depth24Stencil8 = ImageUtils.createImage(Image.Format.Depth24Stencil8, WIDTH, HEIGHT);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) {
+            float value = i / (float) (WIDTH * HEIGHT - 1);
+            int normalized = Math.round(value * 65535);
+            depth16.getData(0).putShort((short) normalized);
+            depth32F.getData(0).putFloat(value);
+            depth24Stencil8.getData(0).putInt((normalized << 16) | 0x55);
+        }
+
+        for (Image image : new Image[]{depth16, depth32F, depth24Stencil8}) {
+            image.getData(0).rewind();
+            RowSource source = RowSource.of(image, toneMapping);
+            byte[] row = new byte[WIDTH * 3];
+            for (int y = 0; y < HEIGHT; y++) {
+                source.readRow(y, row);
+                for (int x = 0; x < WIDTH; x++) {
+                    float value = ((HEIGHT - 1 - y) * WIDTH + x) / (float) (WIDTH * HEIGHT - 1);
+                    int expected = toneMapping.mapDepth(value);
+                    int actual = row[x * 3] & 0xFF;
+                    assertTrue(Math.abs(expected - actual) <= 1, image.getFormat() + " " + value + ": " + expected + " != " + actual);
+                    assertEquals(row[x * 3], row[x * 3 + 1]);
+                    assertEquals(row[x * 3], row[x * 3 + 2]);
+                }
+            }
+            ImageUtils.releaseImage(image);
+        }
+    }
+
+    @Test
+    public void supportedFormats() {
+        assertTrue(RowSource.isSupported(Image.Format.BGRA8));
+        assertTrue(RowSource.isSupported(Image.Format.RGBA16F));
+        assertTrue(RowSource.isSupported(Image.Format.Luminance8Alpha8));
+        assertTrue(RowSource.isSupported(Image.Format.Depth32F));
+        assertFalse(RowSource.isSupported(Image.Format.DXT1));
+        assertFalse(RowSource.isSupported(Image.Format.RGB565));
+    }
+
+    private static Image createHalfImage(Image.Format format, float[] values, int channels) {
+        Image image = ImageUtils.createImage(format, WIDTH, HEIGHT);
+        ByteBuffer data = image.getData(0);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                // jME images are stored bottom-up
+                int index = getIndex(x, HEIGHT - 1 - y, channels);
+                for (int c = 0; c < channels; c++) {
+                    data.putShort((short) HalfFloats.toHalf(values[index + c]));
+                }
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+    private static int getIndex(int x, int y, int channels) {
+        return (y * WIDTH + x) * channels;
+    }
+
+}
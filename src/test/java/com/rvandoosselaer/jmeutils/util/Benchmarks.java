@@ -0,0 +1,58 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Helpers for the benchmarks: a warmup followed by timed iterations, and a sink for results so the work isn't
+ * optimized away.
+ *
+ * @author rvandoosselaer
+ */
+final class Benchmarks {
+
+    private static volatile double sink;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Runs the task a number of times to warm up, then returns the average time of the timed iterations.
+     *
+     * @param warmupIterations the number of untimed runs
+     * @param iterations       the number of timed runs
+     * @param task             the task
+     * @return the average time of a timed run in milliseconds
+     * @throws UncheckedIOException when the task fails
+     */
+    static double measure(int warmupIterations, int iterations, Task task) {
+        try {
+            for (int i = 0; i < warmupIterations; i++) {
+                task.run();
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                task.run();
+            }
+            return (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Uses the result of a task, so the work isn't optimized away.
+     *
+     * @param result the result
+     */
+    static void consume(double result) {
+        sink += result;
+    }
+
+    interface Task {
+
+        void run() throws IOException;
+
+    }
+
+}
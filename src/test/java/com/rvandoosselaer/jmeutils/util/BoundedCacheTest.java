@@ -0,0 +1,41 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class BoundedCacheTest {
+
+    @Test
+    public void valuesAreCachedUpToTheMaximumSize() {
+        BoundedCache<String, Object> cache = new BoundedCache<>(2);
+
+        Object a = cache.get("a", Object::new);
+        assertSame(a, cache.get("a", Object::new));
+        cache.get("b", Object::new);
+
+        // the cache is full, the value is created but not cached
+        Object c = cache.get("c", Object::new);
+        assertNotSame(c, cache.get("c", Object::new));
+        assertEquals(2, cache.getSize());
+        assertEquals(1, cache.getHits());
+        assertEquals(4, cache.getMisses());
+
+        assertTrue(cache.invalidate("a"));
+        assertFalse(cache.invalidate("a"));
+        assertNotSame(a, cache.get("a", Object::new));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<String, Object>(0));
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.PaletteImage;
+import com.rvandoosselaer.jmeutils.image.RowSource;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ColorQuantizerTest {
+
+    @Test
+    public void fewColorsAreKept() {
+        Image image = ImageUtils.createImage(Image.Format.BGRA8, 64, 32);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 64 * 32; i++) {
+            // 10 colors, including transparent black
+            int color = i % 10;
+            data.put((byte) (color * 20)).put((byte) (color * 3)).put((byte) color).put((byte) (color == 0 ? 0 : 255));
+        }
+        data.rewind();
+
+        PaletteImage paletteImage = new ColorQuantizer().quantize(image, null);
+
+        assertTrue(paletteImage.isExact());
+        assertTrue(paletteImage.isTranslucent());
+        assertEquals(10, paletteImage.getColorCount());
+        assertRowsEqual(RowSource.of(image), paletteImage, 0);
+    }
+
+    @Test
+    public void gradientIsReducedToPalette() {
+        Image image = createGradientImage(300, 200);
+        ColorQuantizer quantizer = new ColorQuantizer();
+        quantizer.setMaxColors(64);
+
+        PaletteImage paletteImage = quantizer.quantize(image, null);
+
+        assertFalse(paletteImage.isExact());
+        assertFalse(paletteImage.isTranslucent());
+        assertTrue(paletteImage.getColorCount() <= 64);
+        assertRowsEqual(RowSource.of(image), paletteImage, 24);
+
+        quantizer.setDithering(true);
+        PaletteImage dithered = quantizer.quantize(image, null);
+        assertArrayEquals(paletteImage.getPalette(), dithered.getPalette());
+        assertRowsEqual(RowSource.of(image), dithered, 48);
+        assertThrows(IllegalArgumentException.class, () -> quantizer.setMaxColors(257));
+    }
+
+    @Test
+    public void parallelQuantizationMatchesSequential() {
+        long threshold = ImageUtils.getParallelThreshold();
+        ImageUtils.setParallelThreshold(0);
+        try {
+            Image image = createGradientImage(257, 131);
+            ColorQuantizer quantizer = new ColorQuantizer();
+
+            PaletteImage sequential = quantizer.quantize(image, null);
+            PaletteImage parallel = quantizer.quantize(image, ForkJoinPool.commonPool());
+
+            assertArrayEquals(sequential.getPalette(), parallel.getPalette());
+            assertArrayEquals(sequential.getIndices(), parallel.getIndices());
+        } finally {
+            ImageUtils.setParallelThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void histogramsAreResetForEachImage() {
+        ColorQuantizer quantizer = new ColorQuantizer();
+        quantizer.setMaxColors(16);
+        Image image = createGradientImage(64, 32);
+
+        PaletteImage first = quantizer.quantize(image, null);
+        quantizer.quantize(createGradientImage(100, 20), null);
+        PaletteImage second = quantizer.quantize(image, null);
+
+        assertArrayEquals(first.getPalette(), second.getPalette());
+        assertArrayEquals(first.getIndices(), second.getIndices());
+        // the palette image returns copies of its arrays
+        first.getPalette()[0] = 0x12345678;
+        assertArrayEquals(second.getPalette(), first.getPalette());
+    }
+
+    private static Image createGradientImage(int width, int height) {
+        Image image = ImageUtils.createImage(Image.Format.RGB8, width, height);
+        ByteBuffer data = image.getData(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data.put((byte) (x * 255 / width)).put((byte) (y * 255 / height)).put((byte) ((x + y) / 4));
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+    /**
+     * Asserts that the channels of each pixel differ at most the tolerance.
+     */
+    private static void assertRowsEqual(RowSource expected, RowSource actual, int tolerance) {
+        assertEquals(expected.getChannels(), actual.getChannels());
+        byte[] expectedRow = new byte[expected.getWidth() * expected.getChannels()];
+        byte[] actualRow = new byte[expectedRow.length];
+        for (int y = 0; y < expected.getHeight(); y++) {
+            expected.readRow(y, expectedRow);
+            actual.readRow(y, actualRow);
+            for (int i = 0; i < expectedRow.length; i++) {
+                int difference = Math.abs((expectedRow[i] & 0xFF) - (actualRow[i] & 0xFF));
+                assertTrue(difference <= tolerance, "row " + y + ", byte " + i + " differs " + difference);
+            }
+        }
+    }
+
+}
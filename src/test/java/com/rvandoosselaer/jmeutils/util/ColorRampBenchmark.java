@@ -0,0 +1,60 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.util.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+/**
+ * A benchmark that colors the vertices of a large heat map mesh. The colors are interpolated per vertex between the
+ * stops with {@link ColorRGBA#interpolateLocal(ColorRGBA, ColorRGBA, float)}, or looked up in a {@link ColorRamp}
+ * and written to a float or byte color buffer.
+ *
+ * @author rvandoosselaer
+ */
+public class ColorRampBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int VERTICES = 2_000_000;
+
+    public static void main(String[] args) {
+        String[] hexStops = {"#000080", "#0080FF", "#00FF80", "#FFFF00", "#FF0000"};
+        ColorRamp ramp = ColorUtils.createColorRamp(1024, ColorRamp.Interpolation.SRGB, hexStops);
+        ColorRGBA[] stops = new ColorRGBA[hexStops.length];
+        for (int i = 0; i < stops.length; i++) {
+            stops[i] = ColorUtils.fromHex(hexStops[i]);
+        }
+
+        FloatBuffer values = BufferUtils.createFloatBuffer(VERTICES);
+        Random random = new Random(42);
+        for (int i = 0; i < VERTICES; i++) {
+            values.put(random.nextFloat() * 100);
+        }
+        values.flip();
+        FloatBuffer colors = BufferUtils.createFloatBuffer(VERTICES * 4);
+        ByteBuffer bytes = BufferUtils.createByteBuffer(VERTICES * 4);
+
+        report("interpolateLocal", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            colors.clear();
+            for (int i = 0; i < VERTICES; i++) {
+                float t = values.get(i) / 100 * (stops.length - 1);
+                int stop = Math.min((int) t, stops.length - 2);
+                ColorRGBA color = new ColorRGBA().interpolateLocal(stops[stop], stops[stop + 1], t - stop);
+                colors.put(color.r).put(color.g).put(color.b).put(color.a);
+            }
+        }));
+        report("ramp float", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            colors.clear();
+            ramp.map(values, 0, 100, colors);
+        }));
+        report("ramp byte", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> ramp.map(values, 0, 100, bytes)));
+    }
+
+    private static void report(String name, double time) {
+        System.out.printf("%-18s %8.2f ms, %7.1f Mvertices/s%n", name, time, VERTICES / time / 1000);
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ColorRampTest {
+
+    @Test
+    public void rampInterpolatesBetweenStops() {
+        ColorRamp srgb = ColorUtils.createColorRamp(101, ColorRamp.Interpolation.SRGB, "#000000", "#FF0000", "#FFFFFF80");
+        ColorRamp linear = ColorUtils.createColorRamp(101, ColorRamp.Interpolation.LINEAR, "#000000", "#FF0000", "#FFFFFF80");
+
+        assertColorEquals(ColorUtils.fromHex("#000000"), srgb.getColor(0, null));
+        assertColorEquals(ColorUtils.fromHex("#FF0000"), srgb.getColor(0.5f, null));
+        assertColorEquals(ColorUtils.fromHex("#FFFFFF80"), linear.getColor(2, null));
+        // halfway between black and red
+        assertEquals(Math.pow(0.5, 2.2), srgb.getColor(0.25f, null).r, 1e-5);
+        assertEquals(0.5f, linear.getColor(0.25f, null).r, 1e-5);
+        assertEquals((1 + 128 / 255f) / 2, linear.getColor(0.75f, null).a, 1e-5);
+    }
+
+    @Test
+    public void stopsAtPositions() {
+        ColorRamp ramp = ColorUtils.createColorRamp(11, ColorRamp.Interpolation.LINEAR, new float[]{0.2f, 0.6f}, "#000000", "#FFFFFF");
+
+        assertEquals(0f, ramp.getColor(0.1f, null).r);
+        assertEquals(0.5f, ramp.getColor(0.4f, null).g, 1e-5);
+        assertEquals(1f, ramp.getColor(0.8f, null).b);
+
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.createColorRamp(11, ColorRamp.Interpolation.LINEAR, "#000000"));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.createColorRamp(11, ColorRamp.Interpolation.LINEAR, new float[]{0.6f, 0.2f}, "#000000", "#FFFFFF"));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.createColorRamp(11, ColorRamp.Interpolation.LINEAR, "#000000", "invalid"));
+    }
+
+    @Test
+    public void mapValuesToColorBuffers() {
+        ColorRamp ramp = ColorUtils.createColorRamp(256, ColorRamp.Interpolation.SRGB, "#0000FF", "#00FF00", "#FF0000");
+        FloatBuffer values = FloatBuffer.allocate(10_001);
+        for (int i = 0; i < values.capacity(); i++) {
+            values.put(i * 0.01f - 10);
+        }
+        values.flip();
+
+        FloatBuffer colors = FloatBuffer.allocate(values.capacity() * 4);
+        ramp.map(values, -10, 90, colors);
+        ByteBuffer bytes = ByteBuffer.allocateDirect(values.capacity() * 4);
+        ramp.map(values, -10, 90, bytes);
+
+        assertEquals(0, values.position());
+        assertEquals(0, colors.position());
+        ColorRGBA expected = new ColorRGBA();
+        for (int i = 0; i < values.capacity(); i++) {
+            ramp.getColor((values.get(i) + 10) / 100, expected);
+            assertEquals(expected.r, colors.get(i * 4));
+            assertEquals(expected.g, colors.get(i * 4 + 1));
+            assertEquals(expected.b, colors.get(i * 4 + 2));
+            assertEquals(expected.a, colors.get(i * 4 + 3));
+            assertEquals(Math.round(expected.g * 255), bytes.get(i * 4 + 1) & 0xFF);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ramp.map(values, 0, 1, FloatBuffer.allocate(10)));
+    }
+
+    @Test
+    public void mapToMeshColorBuffer() {
+        ColorRamp ramp = ColorUtils.createColorRamp(2, ColorRamp.Interpolation.LINEAR, "#000000", "#FFFFFF");
+        Mesh mesh = new Mesh();
+        ByteBuffer bytes = BufferUtils.createByteBuffer(3 * 4);
+        mesh.setBuffer(VertexBuffer.Type.Color, 4, bytes);
+        mesh.getBuffer(VertexBuffer.Type.Color).setNormalized(true);
+
+        // the byte buffer is reused
+        ramp.map(FloatBuffer.wrap(new float[]{0, 1, 1}), 0, 1, mesh);
+        assertSame(bytes, mesh.getBuffer(VertexBuffer.Type.Color).getData());
+        assertEquals(0, bytes.get(0));
+        assertEquals(0xFF, bytes.get(4) & 0xFF);
+
+        // a buffer that is too small is replaced by a float buffer
+        ramp.map(FloatBuffer.wrap(new float[]{0, 1, 1, 0}), 0, 1, mesh);
+        VertexBuffer colors = mesh.getBuffer(VertexBuffer.Type.Color);
+        assertEquals(VertexBuffer.Format.Float, colors.getFormat());
+        assertEquals(1f, ((FloatBuffer) colors.getData()).get(4));
+        assertEquals(0f, ((FloatBuffer) colors.getData()).get(12));
+    }
+
+    @Test
+    public void incompatibleMeshColorBuffersAreReplaced() {
+        ColorRamp ramp = ColorUtils.createColorRamp(2, ColorRamp.Interpolation.LINEAR, "#000000", "#FFFFFF");
+        FloatBuffer values = FloatBuffer.wrap(new float[]{0, 1});
+
+        // an RGB float buffer that would fit the RGBA colors
+        Mesh rgbMesh = new Mesh();
+        FloatBuffer rgb = BufferUtils.createFloatBuffer(3 * 4);
+        rgbMesh.setBuffer(VertexBuffer.Type.Color, 3, rgb);
+        ramp.map(values, 0, 1, rgbMesh);
+        assertNotSame(rgb, rgbMesh.getBuffer(VertexBuffer.Type.Color).getData());
+        assertEquals(4, rgbMesh.getBuffer(VertexBuffer.Type.Color).getNumComponents());
+
+        // a byte buffer that isn't normalized
+        Mesh byteMesh = new Mesh();
+        ByteBuffer bytes = BufferUtils.createByteBuffer(2 * 4);
+        byteMesh.setBuffer(VertexBuffer.Type.Color, 4, bytes);
+        ramp.map(values, 0, 1, byteMesh);
+        VertexBuffer colors = byteMesh.getBuffer(VertexBuffer.Type.Color);
+        assertEquals(VertexBuffer.Format.Float, colors.getFormat());
+        assertEquals(1f, ((FloatBuffer) colors.getData()).get(4));
+    }
+
+    @Test
+    public void tableArraysAreCopies() {
+        ColorRamp ramp = ColorUtils.createColorRamp(2, ColorRamp.Interpolation.LINEAR, "#000000", "#FFFFFF");
+        ramp.getColors()[4] = 0;
+        ramp.getBytes()[4] = 0;
+
+        assertEquals(1f, ramp.getColors()[4]);
+        assertEquals(-1, ramp.getBytes()[4]);
+    }
+
+    @Test
+    public void rampImageIsInSrgbSpace() {
+        ColorRamp ramp = ColorUtils.createColorRamp(16, ColorRamp.Interpolation.SRGB, "#000000", "#80FF40");
+        Image image = ramp.createImage();
+
+        assertEquals(16, image.getWidth());
+        assertEquals(1, image.getHeight());
+        assertEquals(ColorSpace.sRGB, image.getColorSpace());
+        ByteBuffer data = image.getData(0);
+        assertEquals(0x80, data.get(15 * 4) & 0xFF);
+        assertEquals(0x40, data.get(15 * 4 + 2) & 0xFF);
+        assertEquals(0xFF, data.get(3) & 0xFF);
+        assertEquals(ramp.getBytes()[15 * 4 + 1], ramp.toByteBuffer().get(15 * 4 + 1));
+        ImageUtils.releaseImage(image);
+    }
+
+    private static void assertColorEquals(ColorRGBA expected, ColorRGBA actual) {
+        assertEquals(expected.r, actual.r, 1e-5);
+        assertEquals(expected.g, actual.g, 1e-5);
+        assertEquals(expected.b, actual.b, 1e-5);
+        assertEquals(expected.a, actual.a, 1e-5);
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ColorUtilsTest {
+
+    @Test
+    public void parseHexToInt() {
+        assertEquals(0x11AAFFFF, ColorUtils.parseHexToInt("#11aaff"));
+        assertEquals(0x11AAFF80, ColorUtils.parseHexToInt("  11AAFF80\n"));
+        assertEquals(0xFFFFFFFF, ColorUtils.parseHexToInt("#FFFFFFFF"));
+        assertEquals(0x00000000, ColorUtils.parseHexToInt(new StringBuilder("00000000")));
+
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.parseHexToInt("#FFF"));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.parseHexToInt("#11AAFG"));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.parseHexToInt("##11AAFF"));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.parseHexToInt("11 AAFF"));
+    }
+
+    @Test
+    public void fromHexMatchesSetAsSrgb() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            int r = random.nextInt(256);
+            int g = random.nextInt(256);
+            int b = random.nextInt(256);
+            int a = random.nextInt(256);
+            String hex = String.format("#%02x%02X%02x%02X", r, g, b, a);
+
+            assertEquals(new ColorRGBA().setAsSrgb(r / 255f, g / 255f, b / 255f, a / 255f), ColorUtils.fromHex(hex));
+            assertEquals(new ColorRGBA(r / 255f, g / 255f, b / 255f, a / 255f), ColorUtils.fromHex(hex, true));
+            assertEquals(ColorUtils.fromHex(hex, true), ColorUtils.fromRGBA(r, g, b, a, true));
+        }
+        assertEquals(1f, ColorUtils.fromHex("000000").a);
+        assertNull(ColorUtils.fromHex("#12345"));
+        assertNull(ColorUtils.fromHex(null));
+    }
+
+    @Test
+    public void cacheReturnsCopiesOfColors() {
+        ColorCache cache = new ColorCache(2);
+
+        ColorRGBA red = cache.fromHex("#FF0000", false);
+        assertEquals(red, cache.fromHex("ff0000ff", false));
+        assertNotSame(red, cache.fromHex("ff0000ff", false));
+        assertEquals(ColorUtils.fromHex("#FF0000", true), cache.fromHex("#FF0000", true));
+        assertEquals(2, cache.getSize());
+
+        // modifying a returned color doesn't change the cached color
+        red.set(0, 0, 1, 1);
+        assertEquals(ColorUtils.fromHex("#FF0000", false), cache.fromHex("#FF0000", false));
+
+        // the cache is full, the color is created but not cached
+        ColorRGBA green = cache.fromIntRGBA(0x00FF00FF, false);
+        assertEquals(ColorUtils.fromHex("#00FF00"), green);
+        assertEquals(green, cache.fromIntRGBA(0x00FF00FF, false));
+        assertEquals(2, cache.getSize());
+        assertEquals(3, cache.getHits());
+        assertEquals(4, cache.getMisses());
+        assertNull(cache.fromHex("invalid", false));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void bulkFloatConversionIsAccurate() {
+        float[] values = new float[100_000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 100 == 0 ? i / (float) values.length * 2 : random.nextFloat();
+        }
+        float[] linear = values.clone();
+        ColorUtils.srgbToLinear(linear, 1, null);
+        float[] srgb = values.clone();
+        ColorUtils.linearToSrgb(srgb, 1, null);
+
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(Math.pow(values[i], 2.2), linear[i], 1e-5);
+            assertEquals(Math.pow(values[i], 1 / 2.2), srgb[i], 1e-5);
+        }
+        float[] edges = {0, -1, Float.NaN, 1, Float.MIN_VALUE};
+        ColorUtils.linearToSrgb(edges, 1, null);
+        assertArrayEquals(new float[]{0, 0, 0, 1, (float) Math.pow(Float.MIN_VALUE, 1 / 2.2)}, edges, 1e-5f);
+    }
+
+    @Test
+    public void bulkFloatConversionMatchesSetAsSrgb() {
+        FloatBuffer buffer = FloatBuffer.allocate(256 * 4 + 2);
+        buffer.put(-1);
+        for (int i = 0; i < 256; i++) {
+            buffer.put(i / 255f).put(1 - i / 255f).put(0.5f).put(i / 255f);
+        }
+        buffer.put(-1);
+        buffer.position(1).limit(buffer.capacity() - 1);
+
+        ColorUtils.srgbToLinear(buffer, 4);
+
+        assertEquals(1, buffer.position());
+        assertEquals(buffer.capacity() - 1, buffer.limit());
+        buffer.clear();
+        assertEquals(-1f, buffer.get(0));
+        assertEquals(-1f, buffer.get(buffer.capacity() - 1));
+        for (int i = 0; i < 256; i++) {
+            ColorRGBA expected = new ColorRGBA().setAsSrgb(i / 255f, 1 - i / 255f, 0.5f, i / 255f);
+            int index = 1 + i * 4;
+            assertEquals(expected.r, buffer.get(index), 1e-5);
+            assertEquals(expected.g, buffer.get(index + 1), 1e-5);
+            assertEquals(expected.b, buffer.get(index + 2), 1e-5);
+            // alpha is left as is
+            assertEquals(i / 255f, buffer.get(index + 3));
+        }
+    }
+
+    @Test
+    public void bulkByteConversionIsExact() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 3);
+        for (int i = 0; i < 256; i++) {
+            buffer.put((byte) i).put((byte) i).put((byte) (255 - i));
+        }
+        buffer.flip();
+        ByteBuffer linear = ByteBuffer.allocate(buffer.capacity()).put(buffer.duplicate());
+        linear.flip();
+
+        ColorUtils.srgbToLinear(linear, 3);
+        ColorUtils.linearToSrgb(buffer, 3);
+
+        for (int i = 0; i < 256; i++) {
+            assertEquals(Math.round(Math.pow(i / 255.0, 2.2) * 255), linear.get(i * 3) & 0xFF);
+            assertEquals(Math.round(Math.pow((255 - i) / 255.0, 2.2) * 255), linear.get(i * 3 + 2) & 0xFF);
+            assertEquals(Math.round(Math.pow(i / 255.0, 1 / 2.2) * 255), buffer.get(i * 3 + 1) & 0xFF);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.srgbToLinear(ByteBuffer.allocate(10), 4));
+        assertThrows(IllegalArgumentException.class, () -> ColorUtils.srgbToLinear(new float[4], 2));
+    }
+
+    @Test
+    public void parallelConversionMatchesSequential() {
+        long threshold = ImageUtils.getParallelThreshold();
+        ImageUtils.setParallelThreshold(0);
+        try {
+            Random random = new Random(42);
+            float[] values = new float[10_001 * 4];
+            byte[] bytes = new byte[10_001 * 4];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextFloat();
+            }
+            random.nextBytes(bytes);
+
+            float[] sequential = values.clone();
+            ColorUtils.linearToSrgb(sequential, 4, null);
+            FloatBuffer parallel = FloatBuffer.wrap(values.clone());
+            ColorUtils.linearToSrgb(parallel, 4, ForkJoinPool.commonPool());
+            assertArrayEquals(sequential, parallel.array());
+
+            ByteBuffer sequentialBytes = ByteBuffer.wrap(bytes.clone());
+            ColorUtils.srgbToLinear(sequentialBytes, 4, null);
+            ByteBuffer parallelBytes = ByteBuffer.wrap(bytes.clone());
+            ColorUtils.srgbToLinear(parallelBytes, 4, ForkJoinPool.commonPool());
+            assertArrayEquals(sequentialBytes.array(), parallelBytes.array());
+        } finally {
+            ImageUtils.setParallelThreshold(threshold);
+        }
+    }
+
+    @Test
+    public void toHexRoundTrips() {
+        assertEquals("#FF8000FF", ColorUtils.toHex(new ColorRGBA(1, 0.5f, 0, 1)));
+        assertEquals("#FF8000", ColorUtils.toHex(new ColorRGBA(2, 0.5f, -1, 1), false));
+        assertEquals("#0A0B0C0D", ColorUtils.toHex(0x0A0B0C0D, true));
+        assertEquals("#00FF80", ColorUtils.appendHex(new StringBuilder(), 0x00FF8011, false).toString());
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            int rgba = random.nextInt();
+            String hex = ColorUtils.toHex(rgba, true);
+
+            assertEquals(String.format("#%08X", rgba), hex);
+            assertEquals(rgba, ColorUtils.parseHexToInt(hex));
+            assertEquals(hex, ColorUtils.toHex(ColorUtils.fromHex(hex, true)));
+            assertEquals(rgba, ColorUtils.toIntRGBA(ColorUtils.fromIntRGBA(rgba, false), false));
+        }
+    }
+
+    @Test
+    public void toHexRoundTripsInSrgbSpace() {
+        // fromHex converts to linear space by default, toHex has to convert back to sRGB space
+        ColorRGBA color = ColorUtils.fromHex("#804020");
+        assertEquals("#804020FF", ColorUtils.toHex(color, true, false));
+        assertEquals("#804020", ColorUtils.appendHex(new StringBuilder(), color, false, false).toString());
+        assertEquals("#804020", ColorUtils.toHex(ColorUtils.fromHex("#804020", true), false, true));
+    }
+
+    @Test
+    public void appendHexInBulk() throws IOException {
+        int[] colors = new int[10_000];
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt();
+            if (i > 1) {
+                expected.append(", ");
+            }
+            if (i > 0) {
+                expected.append(ColorUtils.toHex(colors[i], false));
+            }
+        }
+
+        StringWriter writer = new StringWriter();
+        ColorUtils.appendHex(writer, colors, 1, colors.length - 1, false, ", ");
+        assertEquals(expected.toString(), writer.toString());
+        assertEquals(expected.toString(), ColorUtils.appendHex(new StringBuilder(), colors, 1, colors.length - 1, false, ", ").toString());
+
+        ColorRGBA[] array = {ColorRGBA.Red, ColorRGBA.Blue};
+        assertEquals("#FF0000FF\n#0000FFFF", ColorUtils.appendHex(new StringBuilder(), array, true, "\n").toString());
+        assertEquals("", ColorUtils.appendHex(new StringBuilder(), new ColorRGBA[0], true, "\n").toString());
+    }
+
+}
@@ -0,0 +1,129 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class DirectBufferPoolTest {
+
+    @Test
+    public void sizeClasses() {
+        assertEquals(4096, DirectBufferPool.getSizeClass(0));
+        assertEquals(4096, DirectBufferPool.getSizeClass(4096));
+        assertEquals(5120, DirectBufferPool.getSizeClass(4097));
+        assertEquals(8192, DirectBufferPool.getSizeClass(8000));
+        // a 1080p RGBA8 frame
+        assertEquals(8 * 1024 * 1024, DirectBufferPool.getSizeClass(1920 * 1080 * 4));
+        for (int size = 1; size < 1_000_000; size += 997) {
+            int sizeClass = DirectBufferPool.getSizeClass(size);
+            assertTrue(sizeClass >= size);
+            assertTrue(sizeClass <= Math.max(4096, size * 1.25));
+            assertEquals(sizeClass, DirectBufferPool.getSizeClass(sizeClass));
+        }
+    }
+
+    @Test
+    public void releasedBufferIsReused() {
+        DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+
+        ByteBuffer buffer = pool.acquire(10_000);
+        assertTrue(buffer.isDirect());
+        assertEquals(0, buffer.position());
+        assertEquals(10_000, buffer.limit());
+        pool.release(buffer);
+
+        assertSame(buffer, pool.acquire(9_000));
+        assertEquals(9_000, buffer.limit());
+        assertNotSame(buffer, pool.acquire(9_000));
+
+        assertEquals(1, pool.getHits());
+        assertEquals(2, pool.getMisses());
+        assertEquals(2 * DirectBufferPool.getSizeClass(10_000), pool.getReservedBytes());
+        assertEquals(0, pool.getPooledBytes());
+    }
+
+    @Test
+    public void leastRecentlyReleasedBuffersAreEvicted() {
+        DirectBufferPool pool = new DirectBufferPool(3 * 4096);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(4096);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+
+        assertEquals(1, pool.getEvictions());
+        assertEquals(3 * 4096, pool.getPooledBytes());
+        assertEquals(3 * 4096, pool.getReservedBytes());
+        // the most recently released buffer is reused first
+        assertSame(buffers[3], pool.acquire(4096));
+
+        pool.setMaxPooledBytes(4096);
+        assertEquals(2, pool.getEvictions());
+        assertSame(buffers[2], pool.acquire(100));
+
+        pool.clear();
+        assertEquals(0, pool.getPooledBytes());
+        assertEquals(2 * 4096, pool.getReservedBytes());
+    }
+
+    @Test
+    public void pooledImageIsZeroed() {
+        DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+        Image image = ImageUtils.createImage(Image.Format.RGB8, 30, 20, pool);
+        ByteBuffer data = image.getData(0);
+        while (data.hasRemaining()) {
+            data.put((byte) 7);
+        }
+        pool.release(data);
+
+        Image reused = ImageUtils.createImage(Image.Format.RGB8, 30, 20, pool);
+        assertSame(data, reused.getData(0));
+        assertEquals(30 * 20 * 3, data.remaining());
+        while (data.hasRemaining()) {
+            assertEquals(0, data.get());
+        }
+    }
+
+    @Test
+    public void createdImageHasExactSize() {
+        Image image = ImageUtils.createImage(Image.Format.RGB8, 30, 20);
+        ByteBuffer data = image.getData(0);
+        assertEquals(30 * 20 * 3, data.limit());
+        assertEquals(30 * 20 * 3, data.capacity());
+        assertFalse(DirectBufferPool.getDefault().isAcquired(data));
+
+        long reservedBytes = DirectBufferPool.getDefault().getReservedBytes();
+        ImageUtils.releaseImage(image);
+        assertEquals(reservedBytes, DirectBufferPool.getDefault().getReservedBytes());
+    }
+
+    @Test
+    public void onlyAcquiredBuffersAreReleased() {
+        DirectBufferPool pool = new DirectBufferPool(1024 * 1024);
+        ByteBuffer buffer = pool.acquire(4096);
+        assertTrue(pool.isAcquired(buffer));
+
+        pool.release(buffer);
+        assertFalse(pool.isAcquired(buffer));
+        pool.release(buffer);
+        pool.release(ByteBuffer.allocateDirect(4096));
+
+        assertEquals(4096, pool.getPooledBytes());
+        assertEquals(4096, pool.getReservedBytes());
+        assertSame(buffer, pool.acquire(4096));
+        assertNotSame(buffer, pool.acquire(4096));
+    }
+
+}
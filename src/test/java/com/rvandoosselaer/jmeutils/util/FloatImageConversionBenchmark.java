@@ -0,0 +1,129 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.RowSource;
+import com.rvandoosselaer.jmeutils.image.ToneMapping;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A benchmark of the table driven conversion of floating point, luminance and depth images. For each format a 1080p
+ * and a 4K frame are converted with
+ * {@link ImageUtils#imageToBufferedImage(Image, ToneMapping, java.util.concurrent.Executor)} on the calling thread
+ * and in parallel, and read row by row as a {@link RowSource} like the encoders do. The half float formats are
+ * compared with a conversion that evaluates the tone mapping for each channel.
+ *
+ * @author rvandoosselaer
+ */
+public class FloatImageConversionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int[][] RESOLUTIONS = {{1920, 1080}, {3840, 2160}};
+    private static final Image.Format[] FORMATS = {Image.Format.RGBA16F, Image.Format.RGB16F, Image.Format.RGB111110F,
+            Image.Format.RGBA32F, Image.Format.RGB32F, Image.Format.Luminance16F, Image.Format.Luminance8Alpha8,
+            Image.Format.Depth16, Image.Format.Depth24Stencil8, Image.Format.Depth32F};
+
+    public static void main(String[] args) {
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setOperator(ToneMapping.Operator.ACES);
+        toneMapping.setSrgbEncoding(true);
+
+        for (int[] resolution : RESOLUTIONS) {
+            for (Image.Format format : FORMATS) {
+                Image image = createFloatImage(format, resolution[0], resolution[1]);
+
+                double sequential = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.imageToBufferedImage(image, toneMapping, null));
+                double parallel = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.imageToBufferedImage(image, toneMapping, ForkJoinPool.commonPool()));
+                double rows = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> readRows(RowSource.of(image, toneMapping)));
+                String computed = "";
+                if (format == Image.Format.RGBA16F || format == Image.Format.RGB16F) {
+                    double time = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                            () -> computedImageToBufferedImage(image, toneMapping));
+                    computed = String.format(" computed: %8.2f ms, speedup: %5.1fx", time, time / sequential);
+                }
+
+                System.out.printf("%dx%d %-16s sequential: %8.2f ms, parallel: %8.2f ms, rows: %8.2f ms%s%n",
+                        resolution[0], resolution[1], format, sequential, parallel, rows, computed);
+                ImageUtils.releaseImage(image);
+            }
+        }
+    }
+
+    /**
+     * Creates an image with random values: floats between 0 and 4, depth values between 0 and 1 and random bytes for
+     * the packed and 8 bit formats.
+     */
+    private static Image createFloatImage(Image.Format format, int width, int height) {
+        Image image = ImageUtils.createImage(format, width, height);
+        ByteBuffer data = image.getData(0);
+        Random random = new Random(42);
+        while (data.hasRemaining()) {
+            switch (format) {
+                case RGBA16F:
+                case RGB16F:
+                case Luminance16F:
+                    data.putShort((short) HalfFloats.toHalf(random.nextFloat() * 4));
+                    break;
+                case RGBA32F:
+                case RGB32F:
+                    data.putFloat(random.nextFloat() * 4);
+                    break;
+                case Depth32F:
+                    data.putFloat(random.nextFloat());
+                    break;
+                case Luminance8Alpha8:
+                case Depth16:
+                    data.put((byte) random.nextInt());
+                    break;
+                default:
+                    data.putInt(random.nextInt());
+                    break;
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+    private static void readRows(RowSource source) {
+        byte[] row = new byte[source.getWidth() * source.getChannels()];
+        for (int y = 0; y < source.getHeight(); y++) {
+            source.readRow(y, row);
+        }
+    }
+
+    /**
+     * Converts a half float image by converting and tone mapping every channel separately.
+     */
+    private static BufferedImage computedImageToBufferedImage(Image image, ToneMapping toneMapping) {
+        boolean alpha = image.getFormat() == Image.Format.RGBA16F;
+        int channels = alpha ? 4 : 3;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer data = image.getData(0);
+        BufferedImage bufferedImage = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = (((height - 1 - y) * width) + x) * channels * 2;
+                int r = toneMapping.mapColor(HalfFloats.toFloat(data.getShort(index)));
+                int g = toneMapping.mapColor(HalfFloats.toFloat(data.getShort(index + 2)));
+                int b = toneMapping.mapColor(HalfFloats.toFloat(data.getShort(index + 4)));
+                int a = alpha
+                        ? Math.round(Math.min(1, Math.max(0, HalfFloats.toFloat(data.getShort(index + 6)))) * 255)
+                        : 255;
+                pixels[x] = (a << 24) | (r << 16) | (g << 8) | b;
+            }
+            bufferedImage.setRGB(0, y, width, 1, pixels, 0, width);
+        }
+        return bufferedImage;
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.ChannelOrder;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A benchmark that compares {@link ImageUtils#convert(Image, Image.Format, java.util.concurrent.Executor)} with a
+ * conversion that reads and writes every channel with an absolute get and put call, for common pairs of formats on
+ * 1080p and 4K frames. The throughput is the number of bytes read and written per second.
+ *
+ * @author rvandoosselaer
+ */
+public class FormatConversionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 10;
+    private static final int[][] RESOLUTIONS = {{1920, 1080}, {3840, 2160}};
+    private static final Image.Format[][] PAIRS = {
+            {Image.Format.RGBA8, Image.Format.RGBA8},
+            {Image.Format.RGBA8, Image.Format.BGRA8},
+            {Image.Format.BGRA8, Image.Format.RGBA8},
+            {Image.Format.RGBA8, Image.Format.ARGB8},
+            {Image.Format.ABGR8, Image.Format.RGBA8},
+            {Image.Format.RGBA8, Image.Format.RGB8},
+            {Image.Format.RGB8, Image.Format.BGRA8},
+            {Image.Format.BGR8, Image.Format.RGB8}};
+
+    public static void main(String[] args) {
+        for (int[] resolution : RESOLUTIONS) {
+            for (Image.Format[] pair : PAIRS) {
+                Image image = TestImages.createRandomImage(pair[0], resolution[0], resolution[1]);
+
+                // the converted images are released, so the pooled buffers are reused
+                double legacy = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.releaseImage(legacyConvert(image, pair[1])));
+                double sequential = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.releaseImage(ImageUtils.convert(image, pair[1], null)));
+                double parallel = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.releaseImage(ImageUtils.convert(image, pair[1])));
+
+                long bytes = (long) resolution[0] * resolution[1]
+                        * (ChannelOrder.of(pair[0]).length + ChannelOrder.of(pair[1]).length);
+                System.out.printf("%dx%d %-5s -> %-5s legacy: %7.2f ms, sequential: %6.2f ms (%5.2f GB/s), "
+                                + "parallel: %6.2f ms, speedup: %5.1fx%n",
+                        resolution[0], resolution[1], pair[0], pair[1], legacy, sequential, bytes / sequential / 1e6,
+                        parallel, legacy / sequential);
+                ImageUtils.releaseImage(image);
+            }
+        }
+    }
+
+    /**
+     * Converts every channel with an absolute get and put call, resolving the channel order per pixel.
+     */
+    private static Image legacyConvert(Image image, Image.Format format) {
+        int[] sourceOrder = ChannelOrder.of(image.getFormat());
+        int[] targetOrder = ChannelOrder.of(format);
+        Image converted = ImageUtils.createImage(format, image.getWidth(), image.getHeight());
+        ByteBuffer source = image.getData(0);
+        ByteBuffer target = converted.getData(0);
+        int pixels = image.getWidth() * image.getHeight();
+        for (int i = 0; i < pixels; i++) {
+            for (int c = 0; c < targetOrder.length; c++) {
+                byte value = c < sourceOrder.length ? source.get(i * sourceOrder.length + sourceOrder[c]) : (byte) 0xFF;
+                target.put(i * targetOrder.length + targetOrder[c], value);
+            }
+        }
+        return converted;
+    }
+
+}
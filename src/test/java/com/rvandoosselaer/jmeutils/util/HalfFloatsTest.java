@@ -0,0 +1,62 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class HalfFloatsTest {
+
+    @Test
+    public void knownValues() {
+        assertEquals(0f, HalfFloats.toFloat(0x0000));
+        assertEquals(-0f, HalfFloats.toFloat(0x8000));
+        assertEquals(1f, HalfFloats.toFloat(0x3C00));
+        assertEquals(-2f, HalfFloats.toFloat(0xC000));
+        assertEquals(65504f, HalfFloats.toFloat(0x7BFF));
+        assertEquals(0x1p-24f, HalfFloats.toFloat(0x0001));
+        assertEquals(0x1p-14f, HalfFloats.toFloat(0x0400));
+        assertEquals(Float.POSITIVE_INFINITY, HalfFloats.toFloat(0x7C00));
+        assertTrue(Float.isNaN(HalfFloats.toFloat(0x7E00)));
+    }
+
+    @Test
+    public void roundTrip() {
+        for (int half = 0; half < 65536; half++) {
+            float value = HalfFloats.toFloat(half);
+            if (!Float.isNaN(value)) {
+                assertEquals(half, HalfFloats.toHalf(value), "half " + Integer.toHexString(half));
+            }
+        }
+    }
+
+    @Test
+    public void toHalfRoundsToNearestEven() {
+        // 1 + 2^-11 is halfway between 1 and the next half float, the even mantissa wins
+        assertEquals(0x3C00, HalfFloats.toHalf(1 + 0x1p-11f));
+        assertEquals(0x3C02, HalfFloats.toHalf(1 + 3 * 0x1p-11f));
+        assertEquals(0x3C01, HalfFloats.toHalf(1 + 0x1p-10f + 0x1p-12f));
+        assertEquals(0x7BFF, HalfFloats.toHalf(65519f));
+        assertEquals(0x7C00, HalfFloats.toHalf(65520f));
+        assertEquals(0x0000, HalfFloats.toHalf(0x1p-26f));
+        assertEquals(0x0001, HalfFloats.toHalf(0x1p-24f + 0x1p-26f));
+    }
+
+    @Test
+    public void unpackRGB111110F() {
+        // red 1.0 (exponent 15), green 0.5 (exponent 14), blue 2.0 (exponent 16)
+        int packed = (15 << 6) | ((14 << 6) << 11) | ((16 << 5) << 22);
+        float[] rgb = new float[4];
+        HalfFloats.unpackRGB111110F(packed, rgb, 1);
+
+        assertEquals(1f, rgb[1]);
+        assertEquals(0.5f, rgb[2]);
+        assertEquals(2f, rgb[3]);
+        assertEquals(65024f, HalfFloats.float11ToFloat(0x7BF));
+        assertEquals(64512f, HalfFloats.float10ToFloat(0x3DF));
+    }
+
+}
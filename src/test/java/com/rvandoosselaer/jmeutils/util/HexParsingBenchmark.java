@@ -0,0 +1,92 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+
+import java.util.Random;
+
+/**
+ * A benchmark that compares {@link ColorUtils#fromHex(String, boolean)}, {@link ColorUtils#parseHexToInt(CharSequence)}
+ * and a {@link ColorCache} with the previous implementation that used substrings, {@link Integer#valueOf(String, int)}
+ * and {@link ColorRGBA#setAsSrgb(float, float, float, float)}. The hex strings are taken from a palette of 256 colors,
+ * like the colors of a theme or level file.
+ *
+ * @author rvandoosselaer
+ */
+public class HexParsingBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 20;
+    private static final int COLORS = 50_000;
+    private static final int PALETTE_SIZE = 256;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        int[] palette = new int[PALETTE_SIZE];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = random.nextInt();
+        }
+        String[] hexes = new String[COLORS];
+        for (int i = 0; i < hexes.length; i++) {
+            int rgba = palette[random.nextInt(palette.length)];
+            hexes[i] = i % 2 == 0 ? String.format("#%08X", rgba) : String.format("%06x", rgba >>> 8);
+        }
+
+        for (boolean linearSpace : new boolean[]{false, true}) {
+            double legacy = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+                float sum = 0;
+                for (String hex : hexes) {
+                    sum += legacyFromHex(hex, linearSpace).r;
+                }
+                Benchmarks.consume(sum);
+            });
+            double current = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+                float sum = 0;
+                for (String hex : hexes) {
+                    sum += ColorUtils.fromHex(hex, linearSpace).r;
+                }
+                Benchmarks.consume(sum);
+            });
+            ColorCache cache = new ColorCache(1024);
+            double cached = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+                float sum = 0;
+                for (String hex : hexes) {
+                    sum += cache.fromHex(hex, linearSpace).r;
+                }
+                Benchmarks.consume(sum);
+            });
+
+            System.out.printf("%d colors, %-6s legacy: %6.2f ms, fromHex: %6.2f ms (%4.1fx), "
+                            + "cached: %6.2f ms (%4.1fx)%n", COLORS, linearSpace ? "linear" : "sRGB", legacy, current,
+                    legacy / current, cached, legacy / cached);
+        }
+
+        double packed = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            float sum = 0;
+            for (String hex : hexes) {
+                sum += ColorUtils.parseHexToInt(hex);
+            }
+            Benchmarks.consume(sum);
+        });
+        System.out.printf("%d colors, parseHexToInt: %6.2f ms%n", COLORS, packed);
+    }
+
+    /**
+     * The previous implementation.
+     */
+    private static ColorRGBA legacyFromHex(String hex, boolean linearSpace) {
+        String cleaned = hex.trim();
+        cleaned = cleaned.startsWith("#") ? cleaned.substring(1) : cleaned;
+        if (cleaned.length() == 6) {
+            cleaned += "FF";
+        }
+        if (cleaned.length() != 8) {
+            return null;
+        }
+        float r = Integer.valueOf(cleaned.substring(0, 2), 16) / 255.0f;
+        float g = Integer.valueOf(cleaned.substring(2, 4), 16) / 255.0f;
+        float b = Integer.valueOf(cleaned.substring(4, 6), 16) / 255.0f;
+        float a = Integer.valueOf(cleaned.substring(6), 16) / 255.0f;
+        return linearSpace ? new ColorRGBA(r, g, b, a) : new ColorRGBA().setAsSrgb(r, g, b, a);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * A benchmark that serializes a table of colors to hex strings with {@link ColorUtils#toHex(ColorRGBA)},
+ * {@link ColorUtils#appendHex(StringBuilder, ColorRGBA, boolean)} and the bulk
+ * {@link ColorUtils#appendHex(Appendable, ColorRGBA[], boolean, CharSequence)}, compared with the string
+ * concatenation that toHex used before.
+ *
+ * @author rvandoosselaer
+ */
+public class HexSerializationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+    private static final int ITERATIONS = 20;
+    private static final int COLORS = 1_000_000;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        ColorRGBA[] colors = new ColorRGBA[COLORS];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = ColorUtils.fromIntRGBA(random.nextInt(), true);
+        }
+
+        report("concatenation", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            StringBuilder builder = new StringBuilder(COLORS * 10);
+            for (ColorRGBA color : colors) {
+                builder.append(legacyToHex(color)).append('\n');
+            }
+            Benchmarks.consume(builder.length());
+        }));
+        report("toHex", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            StringBuilder builder = new StringBuilder(COLORS * 10);
+            for (ColorRGBA color : colors) {
+                builder.append(ColorUtils.toHex(color)).append('\n');
+            }
+            Benchmarks.consume(builder.length());
+        }));
+        report("appendHex", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            StringBuilder builder = new StringBuilder(COLORS * 10);
+            for (ColorRGBA color : colors) {
+                ColorUtils.appendHex(builder, color, true).append('\n');
+            }
+            Benchmarks.consume(builder.length());
+        }));
+        report("appendHex bulk Writer", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            StringWriter writer = new StringWriter(COLORS * 10);
+            ColorUtils.appendHex(writer, colors, true, "\n");
+            Benchmarks.consume(writer.getBuffer().length());
+        }));
+    }
+
+    private static void report(String name, double time) {
+        System.out.printf("%-22s %8.2f ms, %6.1f Mcolors/s%n", name, time, COLORS / time / 1000);
+    }
+
+    private static String legacyToHex(ColorRGBA color) {
+        return "#" + leftPad(Integer.toHexString((int) (color.r * 255))).toUpperCase()
+                + leftPad(Integer.toHexString((int) (color.g * 255))).toUpperCase()
+                + leftPad(Integer.toHexString((int) (color.b * 255))).toUpperCase()
+                + leftPad(Integer.toHexString((int) (color.a * 255))).toUpperCase();
+    }
+
+    private static String leftPad(String s) {
+        return s.length() == 1 ? "0" + s : s;
+    }
+
+}
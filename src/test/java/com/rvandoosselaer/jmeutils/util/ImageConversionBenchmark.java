@@ -0,0 +1,36 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+
+/**
+ * A benchmark that compares {@link ImageUtils#imageToBufferedImage(Image)} with the previous per-channel
+ * implementation, for all supported formats on 1080p, 4K and 8K frames.
+ * The 8K frames need a large heap, run the benchmark with at least -Xmx4g.
+ *
+ * @author rvandoosselaer
+ */
+public class ImageConversionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int[][] RESOLUTIONS = {{1920, 1080}, {3840, 2160}, {7680, 4320}};
+    private static final Image.Format[] FORMATS = {Image.Format.RGBA8, Image.Format.ABGR8, Image.Format.ARGB8,
+            Image.Format.BGRA8, Image.Format.RGB8, Image.Format.BGR8};
+
+    public static void main(String[] args) {
+        for (int[] resolution : RESOLUTIONS) {
+            for (Image.Format format : FORMATS) {
+                Image image = TestImages.createRandomImage(format, resolution[0], resolution[1]);
+
+                double legacy = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> TestImages.legacyImageToBufferedImage(image));
+                double current = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                        () -> ImageUtils.imageToBufferedImage(image));
+
+                System.out.printf("%dx%d %-6s legacy: %8.2f ms, current: %8.2f ms, speedup: %5.1fx%n",
+                        resolution[0], resolution[1], format, legacy, current, legacy / current);
+            }
+        }
+    }
+
+}
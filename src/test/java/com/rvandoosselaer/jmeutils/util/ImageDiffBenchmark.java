@@ -0,0 +1,66 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * A benchmark that compares the {@link ImageDiff} with a naive comparison that calls {@link BufferedImage#getRGB(int,
+ * int)} for each pixel, on two equal images, the worst case for the early exit of the diff.
+ *
+ * @author rvandoosselaer
+ */
+public class ImageDiffBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int[][] SIZES = {{640, 480}, {1920, 1080}, {3840, 2160}};
+
+    public static void main(String[] args) {
+        for (int[] size : SIZES) {
+            BufferedImage expected = createNoiseImage(size[0], size[1]);
+            BufferedImage actual = createNoiseImage(size[0], size[1]);
+
+            ImageDiff sequential = new ImageDiff();
+            sequential.setTolerance(2);
+            sequential.setExecutor(null);
+            ImageDiff parallel = new ImageDiff();
+            parallel.setTolerance(2);
+
+            double naive = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> naiveCompare(expected, actual, 2));
+            double current = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                    () -> sequential.compare(expected, actual));
+            double currentParallel = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS,
+                    () -> parallel.compare(expected, actual));
+
+            System.out.printf("%4dx%-4d naive: %8.2f ms, diff: %8.2f ms, parallel diff: %8.2f ms, speedup: %5.1fx%n",
+                    size[0], size[1], naive, current, currentParallel, naive / currentParallel);
+        }
+    }
+
+    private static BufferedImage createNoiseImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * The comparison the regression tests used before.
+     */
+    private static long naiveCompare(BufferedImage expected, BufferedImage actual, int tolerance) {
+        long different = 0;
+        for (int x = 0; x < expected.getWidth(); x++) {
+            for (int y = 0; y < expected.getHeight(); y++) {
+                if (ImageDiff.getDifference(expected.getRGB(x, y), actual.getRGB(x, y)) > tolerance) {
+                    different++;
+                }
+            }
+        }
+        return different;
+    }
+
+}
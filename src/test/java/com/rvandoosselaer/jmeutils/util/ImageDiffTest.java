@@ -0,0 +1,149 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ImageDiffTest {
+
+    @Test
+    public void identicalImagesMatch() {
+        Image image = createNoiseImage(Image.Format.RGBA8, 64, 48);
+
+        ImageDiff.Result result = new ImageDiff().compare(image, copy(image));
+
+        assertTrue(result.isMatch());
+        assertEquals(0, result.getDifferentPixels());
+        assertEquals(0, result.getMaxDifference());
+    }
+
+    @Test
+    public void differencesWithinToleranceMatch() {
+        Image expected = createNoiseImage(Image.Format.BGRA8, 64, 48);
+        Image actual = copy(expected);
+        ByteBuffer data = actual.getData(0);
+        // change the blue channel of 5 pixels by 3
+        for (int i = 0; i < 5; i++) {
+            int blue = data.get(i * 40) & 0xFF;
+            data.put(i * 40, (byte) (blue > 252 ? blue - 3 : blue + 3));
+        }
+
+        ImageDiff diff = new ImageDiff();
+        ImageDiff.Result result = diff.compare(expected, actual);
+        assertFalse(result.isMatch());
+        assertEquals(5, result.getDifferentPixels());
+        assertEquals(3, result.getMaxDifference());
+
+        diff.setTolerance(3);
+        assertTrue(diff.compare(expected, actual).isMatch());
+
+        diff.setTolerance(0);
+        diff.setMaxDifferentPixels(5);
+        assertTrue(diff.compare(expected, actual).isMatch());
+        assertThrows(IllegalArgumentException.class, () -> diff.setTolerance(256));
+    }
+
+    @Test
+    public void comparisonStopsWhenTheBudgetIsExceeded() {
+        Image expected = createNoiseImage(Image.Format.RGB8, 100, 100);
+        Image actual = createNoiseImage(Image.Format.RGB8, 100, 100, 8);
+
+        ImageDiff diff = new ImageDiff();
+        diff.setExecutor(null);
+        diff.setMaxDifferentPixels(150);
+        ImageDiff.Result result = diff.compare(expected, actual);
+
+        assertFalse(result.isMatch());
+        assertTrue(result.isExceeded());
+        // the comparison stops after the row where the budget is exceeded
+        assertTrue(result.getDifferentPixels() > 150);
+        assertTrue(result.getDifferentPixels() <= 300);
+    }
+
+    @Test
+    public void imagesWithADifferentSizeDontMatch() {
+        ImageDiff.Result result = new ImageDiff().compare(createNoiseImage(Image.Format.RGBA8, 10, 10), createNoiseImage(Image.Format.RGBA8, 10, 11));
+
+        assertFalse(result.isMatch());
+        assertFalse(result.isSameSize());
+        assertThrows(IllegalStateException.class, result::createHeatMap);
+    }
+
+    @Test
+    public void compareBufferedImagesAndFiles() throws IOException {
+        Image image = createNoiseImage(Image.Format.RGBA8, 37, 29);
+        BufferedImage expected = ImageUtils.imageToBufferedImage(image);
+        ImageDiff diff = new ImageDiff();
+
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR}) {
+            assertTrue(diff.compare(expected, convert(expected, type)).isMatch(), "type " + type);
+        }
+        // a sub image is read with getRGB
+        assertTrue(diff.compare(expected, convert(expected, BufferedImage.TYPE_4BYTE_ABGR).getSubimage(0, 0, 37, 29)).isMatch());
+        // the alpha channel is lost
+        assertFalse(diff.compare(expected, convert(expected, BufferedImage.TYPE_3BYTE_BGR)).isMatch());
+
+        Path directory = Files.createTempDirectory("diff");
+        Path expectedFile = directory.resolve("expected.png");
+        Path actualFile = directory.resolve("actual.png");
+        ImageUtils.writeImage(image, expectedFile);
+        ImageUtils.writeImage(image, actualFile);
+        assertTrue(diff.compare(expectedFile, actualFile).isMatch());
+    }
+
+    @Test
+    public void heatMapShowsTheDifferences() {
+        Image expected = ImageUtils.createImage(Image.Format.RGBA8, 4, 4);
+        Image actual = copy(expected);
+        // the last pixel in the buffer is the top right pixel
+        actual.getData(0).put(15 * 4, (byte) 200);
+
+        ImageDiff.Result result = new ImageDiff().compare(expected, actual);
+        BufferedImage heatMap = ImageUtils.imageToBufferedImage(result.createHeatMap());
+
+        assertEquals(1, result.getDifferentPixels());
+        assertEquals(0xFFFF3700, heatMap.getRGB(3, 0));
+        assertEquals(0xFF000000, heatMap.getRGB(0, 0));
+    }
+
+    private static Image createNoiseImage(Image.Format format, int width, int height) {
+        return createNoiseImage(format, width, height, 3);
+    }
+
+    private static Image createNoiseImage(Image.Format format, int width, int height, long seed) {
+        Image image = ImageUtils.createImage(format, width, height);
+        byte[] data = new byte[image.getData(0).remaining()];
+        new Random(seed).nextBytes(data);
+        image.getData(0).put(data).rewind();
+        return image;
+    }
+
+    private static Image copy(Image image) {
+        Image copy = ImageUtils.createImage(image.getFormat(), image.getWidth(), image.getHeight());
+        copy.getData(0).put(image.getData(0).duplicate()).rewind();
+        return copy;
+    }
+
+    private static BufferedImage convert(BufferedImage image, int type) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage converted = new BufferedImage(width, height, type);
+        converted.setRGB(0, 0, width, height, image.getRGB(0, 0, width, height, null, 0, width), 0, width);
+        return converted;
+    }
+
+}
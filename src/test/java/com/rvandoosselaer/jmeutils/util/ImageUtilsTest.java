@@ -0,0 +1,491 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.ChannelOrder;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+import com.rvandoosselaer.jmeutils.image.QoiEncoder;
+import com.rvandoosselaer.jmeutils.image.RawImageEncoder;
+import com.rvandoosselaer.jmeutils.image.SwizzlePlan;
+import com.rvandoosselaer.jmeutils.image.ToneMapping;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class ImageUtilsTest {
+
+    private static final Image.Format[] FORMATS = {Image.Format.RGBA8, Image.Format.ABGR8, Image.Format.ARGB8,
+            Image.Format.BGRA8, Image.Format.RGB8, Image.Format.BGR8};
+
+    private long parallelThreshold;
+
+    @BeforeEach
+    public void lowerParallelThreshold() {
+        parallelThreshold = ImageUtils.getParallelThreshold();
+        // make sure the small test images are processed in parallel
+        ImageUtils.setParallelThreshold(0);
+    }
+
+    @AfterEach
+    public void restoreParallelThreshold() {
+        ImageUtils.setParallelThreshold(parallelThreshold);
+    }
+
+    @Test
+    public void parallelConversionIsIdenticalToSequentialConversion() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (Image.Format format : FORMATS) {
+                Image image = TestImages.createRandomImage(format, 173, 97);
+
+                BufferedImage sequential = ImageUtils.imageToBufferedImage(image, null);
+                assertDataEquals(sequential, ImageUtils.imageToBufferedImage(image, ForkJoinPool.commonPool()));
+                assertDataEquals(sequential, ImageUtils.imageToBufferedImage(image, executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void conversionMatchesPreviousConversion() {
+        for (Image.Format format : FORMATS) {
+            Image image = TestImages.createRandomImage(format, 173, 97);
+
+            BufferedImage expected = TestImages.legacyImageToBufferedImage(image);
+            BufferedImage actual = ImageUtils.imageToBufferedImage(image);
+            assertEquals(expected.getType(), actual.getType(), format.toString());
+            for (int y = 0; y < 97; y++) {
+                for (int x = 0; x < 173; x++) {
+                    assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), format + " at " + x + ", " + y);
+                }
+            }
+
+            ImageUtils.releaseImage(image);
+        }
+    }
+
+    @Test
+    public void convertFloatingPointImage() {
+        Image image = ImageUtils.createImage(Image.Format.RGBA32F, 61, 37);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 61 * 37; i++) {
+            data.putFloat(i % 3).putFloat(0.5f).putFloat(-1).putFloat(i % 2);
+        }
+        data.rewind();
+
+        BufferedImage sequential = ImageUtils.imageToBufferedImage(image, null);
+        assertEquals(BufferedImage.TYPE_INT_ARGB, sequential.getType());
+        // the last pixel of the buffer is the top right pixel of the image
+        assertEquals(0x00008000, sequential.getRGB(60, 0));
+        assertEquals(0xFFFF8000, sequential.getRGB(59, 0));
+        assertDataEquals(sequential, ImageUtils.imageToBufferedImage(image, ForkJoinPool.commonPool()));
+
+        ToneMapping toneMapping = new ToneMapping();
+        toneMapping.setExposure(0.5f);
+        assertEquals(0xFFFF4000, ImageUtils.imageToBufferedImage(image, toneMapping, null).getRGB(59, 0));
+
+        ImageUtils.releaseImage(image);
+    }
+
+    @Test
+    public void convertBetweenAllFormats() {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (Image.Format sourceFormat : FORMATS) {
+                Image image = TestImages.createRandomImage(sourceFormat, 173, 97);
+                BufferedImage expected = ImageUtils.imageToBufferedImage(image, null);
+                for (Image.Format format : FORMATS) {
+                    Image sequential = ImageUtils.convert(image, format, null);
+                    Image parallel = ImageUtils.convert(image, format, executor);
+
+                    assertEquals(format, sequential.getFormat());
+                    assertArrayEquals(toArray(sequential.getData(0)), toArray(parallel.getData(0)));
+                    BufferedImage actual = ImageUtils.imageToBufferedImage(sequential, null);
+                    boolean alpha = ChannelOrder.of(sourceFormat).length == 4 && ChannelOrder.of(format).length == 4;
+                    for (int y = 0; y < 97; y++) {
+                        for (int x = 0; x < 173; x++) {
+                            int mask = alpha ? 0xFFFFFFFF : 0xFFFFFF;
+                            assertEquals(expected.getRGB(x, y) & mask, actual.getRGB(x, y) & mask, sourceFormat + " -> " + format);
+                        }
+                    }
+
+                    ImageUtils.releaseImage(sequential);
+                    ImageUtils.releaseImage(parallel);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void convertAddsOpaqueAlpha() {
+        Image image = ImageUtils.createImage(Image.Format.BGR8, 1, 1);
+        image.getData(0).put(new byte[]{1, 2, 3});
+
+        Image converted = ImageUtils.convert(image, Image.Format.ARGB8);
+
+        assertArrayEquals(new byte[]{(byte) 0xFF, 3, 2, 1}, toArray(converted.getData(0)));
+        assertSame(SwizzlePlan.of(Image.Format.BGR8, Image.Format.ARGB8), SwizzlePlan.of(Image.Format.BGR8, Image.Format.ARGB8));
+        assertThrows(IllegalArgumentException.class, () -> ImageUtils.convert(image, Image.Format.RGB565));
+    }
+
+    @Test
+    public void convertFloatingPointImageToBytes() {
+        Image image = ImageUtils.createImage(Image.Format.RGB16F, 3, 2);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 6; i++) {
+            data.putShort((short) HalfFloats.toHalf(i / 5f)).putShort((short) HalfFloats.toHalf(2)).putShort((short) 0);
+        }
+        data.rewind();
+
+        Image converted = ImageUtils.convert(image, Image.Format.BGRA8);
+
+        byte[] pixels = toArray(converted.getData(0));
+        assertEquals(24, pixels.length);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(0, pixels[i * 4]);
+            assertEquals((byte) 255, pixels[i * 4 + 1]);
+            assertEquals((byte) Math.round(i / 5f * 255), pixels[i * 4 + 2]);
+            assertEquals((byte) 255, pixels[i * 4 + 3]);
+        }
+    }
+
+    @Test
+    public void conversionFlipsImage() {
+        Image image = ImageUtils.createImage(Image.Format.RGB8, 2, 3);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 6; i++) {
+            // each pixel gets a unique red component
+            data.put((byte) i).put((byte) 0).put((byte) 0);
+        }
+
+        BufferedImage bufferedImage = ImageUtils.imageToBufferedImage(image);
+
+        // the first row of the jME image is the bottom row of the buffered image
+        assertEquals(0, bufferedImage.getRGB(0, 2) >> 16 & 0xFF);
+        assertEquals(1, bufferedImage.getRGB(1, 2) >> 16 & 0xFF);
+        assertEquals(4, bufferedImage.getRGB(0, 0) >> 16 & 0xFF);
+        assertEquals(5, bufferedImage.getRGB(1, 0) >> 16 & 0xFF);
+    }
+
+    @Test
+    public void parallelFlipIsIdenticalToSequentialFlip() {
+        for (int height : new int[]{1, 2, 97, 98}) {
+            Image image = TestImages.createRandomImage(Image.Format.RGBA8, 61, height);
+
+            BufferedImage sequential = ImageUtils.flipVertical(ImageUtils.imageToBufferedImage(image, null), null);
+            BufferedImage parallel = ImageUtils.flipVertical(ImageUtils.imageToBufferedImage(image, null),
+                    ForkJoinPool.commonPool());
+
+            assertDataEquals(sequential, parallel);
+        }
+    }
+
+    @Test
+    public void parallelReplaceColorsIsIdenticalToSequentialReplaceColors() {
+        Image sequential = createStripedImage(64, 99);
+        Image parallel = createStripedImage(64, 99);
+
+        ImageUtils.replaceColors(sequential, ColorRGBA.Red, ColorRGBA.Blue, null);
+        ImageUtils.replaceColors(parallel, ColorRGBA.Red, ColorRGBA.Blue, ForkJoinPool.commonPool());
+
+        assertArrayEquals(toArray(sequential.getData(0)), toArray(parallel.getData(0)));
+    }
+
+    @Test
+    public void replaceMultipleColorsInOnePass() {
+        Image image = createStripedImage(64, 99);
+
+        ImageUtils.replaceColors(image, new ColorMap().put(ColorRGBA.Red, ColorRGBA.Blue).put(ColorRGBA.Green, ColorRGBA.White));
+
+        ByteBuffer data = image.getData(0).duplicate().order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < 64 * 99; i++) {
+            int expected = i % 2 == 0 ? 0x0000FFFF : 0xFFFFFFFF;
+            assertEquals(expected, data.getInt(i * 4), "pixel " + i);
+        }
+    }
+
+    @Test
+    public void replaceColorsOfFormatWithoutAlpha() {
+        Image image = ImageUtils.createImage(Image.Format.BGR8, 3, 2);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < 6; i++) {
+            // blue, green, red
+            data.put((byte) 0).put((byte) (i % 3 == 0 ? 0 : 0x80)).put((byte) 0xFF);
+        }
+        data.rewind();
+
+        ImageUtils.replaceColors(image, new ColorMap().put(0xFF0000FF, 0x102030FF), null);
+
+        for (int i = 0; i < 6; i++) {
+            int pixel = i * 3;
+            assertEquals(i % 3 == 0 ? 0x30 : 0, data.get(pixel) & 0xFF);
+            assertEquals(i % 3 == 0 ? 0x20 : 0x80, data.get(pixel + 1) & 0xFF);
+            assertEquals(i % 3 == 0 ? 0x10 : 0xFF, data.get(pixel + 2) & 0xFF);
+        }
+    }
+
+    @Test
+    public void colorMapMatchesClosestColorWithinTolerance() {
+        ColorMap colorMap = new ColorMap(5)
+                .put(0xFF0000FF, 0x0000FFFF)
+                .put(0xF00000FF, 0x00FF00FF);
+
+        assertEquals(0x0000FFFF, colorMap.map(0xFA0505FF));
+        assertEquals(0x00FF00FF, colorMap.map(0xF20000FF));
+        assertEquals(0xE00000FF, colorMap.map(0xE00000FF));
+
+        colorMap.setTolerance(0);
+        assertEquals(0xFA0505FF, colorMap.map(0xFA0505FF));
+    }
+
+    @Test
+    public void replaceColorsMatchesExactColorsOnly() {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, 4, 1);
+        ByteBuffer data = image.getData(0).duplicate().order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < 4; i++) {
+            data.putInt(i * 4, 0x808080FF);
+        }
+
+        // 0.5 rounds to the 8 bit value of the pixels, but isn't equal to it
+        ImageUtils.replaceColors(image, new ColorRGBA(0.5f, 0.5f, 0.5f, 1), ColorRGBA.Blue, null);
+        assertEquals(0x808080FF, data.getInt(0));
+
+        ImageUtils.replaceColors(image, new ColorRGBA(128 / 255f, 128 / 255f, 128 / 255f, 1), ColorRGBA.Blue, null);
+        assertEquals(0x0000FFFF, data.getInt(0));
+    }
+
+    @Test
+    public void colorMapLookupWithToleranceMatchesFullScan() {
+        Random random = new Random(42);
+        for (int tolerance : new int[]{1, 7, 64, 255}) {
+            ColorMap colorMap = new ColorMap(tolerance);
+            int[] keys = new int[200];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextInt();
+                colorMap.put(keys[i], i);
+            }
+
+            for (int i = 0; i < 10_000; i++) {
+                int color = random.nextInt();
+                int closest = tolerance + 1;
+                for (int key : keys) {
+                    closest = Math.min(closest, getDistance(color, key));
+                }
+                int result = colorMap.map(color);
+                if (closest > tolerance) {
+                    assertEquals(color, result);
+                } else {
+                    // ties can be won by any of the closest colors
+                    assertEquals(closest, getDistance(color, keys[result]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void colorMapGrows() {
+        ColorMap colorMap = new ColorMap();
+        for (int i = 0; i < 1000; i++) {
+            colorMap.put(i << 8 | 0xFF, i);
+        }
+
+        assertEquals(1000, colorMap.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, colorMap.map(i << 8 | 0xFF));
+        }
+        assertEquals(0x12345678, colorMap.map(0x12345678));
+    }
+
+    @Test
+    public void flipImageInPlace() {
+        for (int height : new int[]{1, 2, 7, 64}) {
+            Image image = TestImages.createRandomImage(Image.Format.RGB8, 13, height);
+            byte[] original = toArray(image.getData(0));
+
+            ImageUtils.flipVertical(image, null);
+
+            byte[] flipped = toArray(image.getData(0));
+            int rowStride = 13 * 3;
+            for (int y = 0; y < height; y++) {
+                for (int i = 0; i < rowStride; i++) {
+                    assertEquals(original[y * rowStride + i], flipped[(height - 1 - y) * rowStride + i]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parallelFlipInPlaceIsIdenticalToSequentialFlip() {
+        Image sequential = TestImages.createRandomImage(Image.Format.RGBA8, 57, 101);
+        Image parallel = TestImages.createRandomImage(Image.Format.RGBA8, 57, 101);
+
+        ImageUtils.flipVertical(sequential, null);
+        ImageUtils.flipVertical(parallel, ForkJoinPool.commonPool());
+
+        assertArrayEquals(toArray(sequential.getData(0)), toArray(parallel.getData(0)));
+    }
+
+    @Test
+    public void cropImageInPlace() {
+        Image image = createCoordinateImage(10, 8);
+
+        ImageUtils.crop(image, 3, 2, 4, 5);
+
+        assertEquals(4, image.getWidth());
+        assertEquals(5, image.getHeight());
+        ByteBuffer data = image.getData(0);
+        assertEquals(4 * 5 * 2, data.remaining());
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(x + 3, data.get());
+                assertEquals(y + 2, data.get());
+            }
+        }
+    }
+
+    @Test
+    public void cropOutsideImageFails() {
+        Image image = createCoordinateImage(10, 8);
+
+        assertThrows(IllegalArgumentException.class, () -> ImageUtils.crop(image, 8, 0, 4, 4));
+        assertThrows(IllegalArgumentException.class, () -> ImageUtils.crop(image, 0, -1, 4, 4));
+    }
+
+    @Test
+    public void downscaleImageInPlace() {
+        Image image = createCoordinateImage(9, 8);
+
+        ImageUtils.downscale(image, 2);
+
+        assertEquals(4, image.getWidth());
+        assertEquals(4, image.getHeight());
+        ByteBuffer data = image.getData(0);
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                // the average of x * 2 and x * 2 + 1, rounded up
+                assertEquals(x * 2 + 1, data.get());
+                assertEquals(y * 2 + 1, data.get());
+            }
+        }
+
+        image = createCoordinateImage(16, 8);
+        ImageUtils.downscale(image, 4);
+
+        assertEquals(4, image.getWidth());
+        assertEquals(2, image.getHeight());
+        // the average of 4, 5, 6 and 7
+        assertEquals(6, image.getData(0).get(2));
+    }
+
+    @Test
+    public void readBatchOfImagesInAnotherFormat() throws IOException {
+        Path directory = Files.createTempDirectory("read");
+        Image image = TestImages.createRandomImage(Image.Format.RGBA8, 41, 27);
+        List<Path> files = Arrays.asList(directory.resolve("image.png"), directory.resolve("image.qoi"), directory.resolve("image.raw"));
+        Path invalid = directory.resolve("invalid.png");
+        try {
+            ImageUtils.writeImage(image, files.get(0), new PngEncoder());
+            ImageUtils.writeImage(image, files.get(1), new QoiEncoder());
+            ImageUtils.writeImage(image, files.get(2), new RawImageEncoder());
+
+            List<Image> images = ImageUtils.readImages(files, Image.Format.BGRA8);
+
+            assertEquals(3, images.size());
+            for (Image decoded : images) {
+                assertEquals(Image.Format.BGRA8, decoded.getFormat());
+                assertDataEquals(ImageUtils.imageToBufferedImage(image), ImageUtils.imageToBufferedImage(decoded));
+                ImageUtils.releaseImage(decoded);
+            }
+
+            Files.write(invalid, new byte[]{1, 2, 3});
+            assertThrows(IOException.class, () -> ImageUtils.readImages(Arrays.asList(files.get(0), invalid), null, null));
+        } finally {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(invalid);
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Creates a Luminance8Alpha8 image with the column in the first and the row in the second channel of each pixel.
+     */
+    private static Image createCoordinateImage(int width, int height) {
+        Image image = ImageUtils.createImage(Image.Format.Luminance8Alpha8, width, height);
+        ByteBuffer data = image.getData(0);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                data.put((byte) x).put((byte) y);
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+    private static Image createStripedImage(int width, int height) {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, width, height);
+        ByteBuffer data = image.getData(0);
+        for (int i = 0; i < width * height; i++) {
+            // alternate red and green pixels
+            data.put((byte) (i % 2 == 0 ? 0xFF : 0)).put((byte) (i % 2 == 0 ? 0 : 0xFF)).put((byte) 0).put((byte) 0xFF);
+        }
+        data.rewind();
+        return image;
+    }
+
+    private static int getDistance(int first, int second) {
+        int distance = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            distance = Math.max(distance, Math.abs((first >>> shift & 0xFF) - (second >>> shift & 0xFF)));
+        }
+        return distance;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        ByteBuffer view = buffer.duplicate();
+        view.rewind();
+        byte[] bytes = new byte[view.remaining()];
+        view.get(bytes);
+        return bytes;
+    }
+
+    private static void assertDataEquals(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getType(), actual.getType());
+        DataBuffer expectedData = expected.getRaster().getDataBuffer();
+        DataBuffer actualData = actual.getRaster().getDataBuffer();
+        if (expectedData instanceof DataBufferInt) {
+            assertArrayEquals(((DataBufferInt) expectedData).getData(), ((DataBufferInt) actualData).getData());
+        } else {
+            assertArrayEquals(((DataBufferByte) expectedData).getData(), ((DataBufferByte) actualData).getData());
+        }
+    }
+
+}
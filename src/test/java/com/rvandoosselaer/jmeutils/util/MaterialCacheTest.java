@@ -0,0 +1,76 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class MaterialCacheTest {
+
+    private static final AssetManager ASSET_MANAGER = new DesktopAssetManager(true);
+
+    @Test
+    public void cacheSharesMaterials() {
+        MaterialCache cache = new MaterialCache(3);
+        ColorRGBA color = new ColorRGBA(1, 0.5f, 0, 1);
+
+        Material material = cache.get(color, false, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial);
+        assertSame(material, cache.get(new ColorRGBA(1, 0.5f, 0, 1), false, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial));
+        assertNotSame(material, cache.get(color, true, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial));
+        assertNotSame(material, cache.get(color, false, RenderState.BlendMode.Alpha, MaterialCacheTest::createMaterial));
+
+        // the key holds a copy of the color
+        color.set(0, 0, 0, 1);
+        assertSame(material, cache.get(new ColorRGBA(1, 0.5f, 0, 1), false, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial));
+        assertEquals(3, cache.getSize());
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+
+        // the cache is full, the material is created but not cached
+        Material black = cache.get(color, false, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial);
+        assertNotSame(black, cache.get(color, false, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial));
+        assertEquals(3, cache.getSize());
+    }
+
+    @Test
+    public void invalidateMaterials() {
+        MaterialCache cache = new MaterialCache(10);
+        Material material = cache.get(ColorRGBA.Red, true, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial);
+
+        assertTrue(cache.invalidate(ColorRGBA.Red, true, RenderState.BlendMode.Off));
+        assertFalse(cache.invalidate(ColorRGBA.Red, true, RenderState.BlendMode.Off));
+        assertNotSame(material, cache.get(ColorRGBA.Red, true, RenderState.BlendMode.Off, MaterialCacheTest::createMaterial));
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertThrows(IllegalArgumentException.class, () -> new MaterialCache(0));
+    }
+
+    @Test
+    public void negativeZeroSharesMaterial() {
+        MaterialCache cache = new MaterialCache(10);
+        Material material = cache.get(new ColorRGBA(0, 0, 0, 1), false, RenderState.BlendMode.Off,
+                MaterialCacheTest::createMaterial);
+
+        assertSame(material, cache.get(new ColorRGBA(-0f, -0f, -0f, 1), false, RenderState.BlendMode.Off,
+                MaterialCacheTest::createMaterial));
+        assertEquals(1, cache.getSize());
+    }
+
+    private static Material createMaterial() {
+        return new Material(ASSET_MANAGER, "Common/MatDefs/Misc/Unshaded.j3md");
+    }
+
+}
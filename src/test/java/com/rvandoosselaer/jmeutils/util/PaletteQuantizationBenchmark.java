@@ -0,0 +1,103 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+import com.rvandoosselaer.jmeutils.image.PalettePngEncoder;
+import com.rvandoosselaer.jmeutils.image.PngEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A benchmark that writes 1080p frames as true color PNG and as palette PNG with the {@link PalettePngEncoder}, and
+ * reports the time and the size of the file. The frames are a flat user interface with a few hundred colors, and a
+ * shaded scene with smooth gradients.
+ *
+ * @author rvandoosselaer
+ */
+public class PaletteQuantizationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    public static void main(String[] args) {
+        Image[] frames = {createInterfaceFrame(), createShadedFrame()};
+        String[] names = {"interface", "shaded"};
+
+        for (int i = 0; i < frames.length; i++) {
+            PngEncoder png = new PngEncoder();
+            PngEncoder png8 = new PalettePngEncoder();
+            PngEncoder dithered = new PalettePngEncoder();
+            dithered.getQuantizer().setDithering(true);
+
+            report(names[i], "png", frames[i], png);
+            report(names[i], "png8", frames[i], png8);
+            report(names[i], "png8 dithered", frames[i], dithered);
+            ImageUtils.releaseImage(frames[i]);
+        }
+    }
+
+    private static void report(String frame, String name, Image image, PngEncoder encoder) {
+        int[] size = new int[1];
+        double time = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> size[0] = encode(image, encoder));
+        System.out.printf("%-10s %-14s %8.2f ms, %8d KB%n", frame, name, time, size[0] / 1024);
+    }
+
+    private static int encode(Image image, PngEncoder encoder) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoder.encode(image, out);
+        return out.size();
+    }
+
+    /**
+     * Creates a frame with flat panels and buttons in a few colors, with blended borders.
+     */
+    private static Image createInterfaceFrame() {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, WIDTH, HEIGHT);
+        ByteBuffer data = image.getData(0);
+        Random random = new Random(42);
+        int[] background = new int[WIDTH * HEIGHT];
+        java.util.Arrays.fill(background, 0x202830FF);
+        for (int panel = 0; panel < 200; panel++) {
+            int color = random.nextInt() | 0xFF;
+            int x0 = random.nextInt(WIDTH - 200);
+            int y0 = random.nextInt(HEIGHT - 100);
+            int width = 20 + random.nextInt(180);
+            int height = 10 + random.nextInt(90);
+            for (int y = y0; y < y0 + height; y++) {
+                for (int x = x0; x < x0 + width; x++) {
+                    boolean border = x == x0 || y == y0 || x == x0 + width - 1 || y == y0 + height - 1;
+                    background[y * WIDTH + x] = border ? (color & 0xFEFEFEFF) >>> 1 | 0xFF : color;
+                }
+            }
+        }
+        for (int pixel : background) {
+            data.putInt(pixel);
+        }
+        data.rewind();
+        return image;
+    }
+
+    /**
+     * Creates a frame with smooth lighting gradients, like a shaded scene.
+     */
+    private static Image createShadedFrame() {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, WIDTH, HEIGHT);
+        ByteBuffer data = image.getData(0);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                double light = 0.5 + 0.5 * Math.sin(x / 300.0) * Math.cos(y / 200.0);
+                data.put((byte) (40 + 180 * light))
+                        .put((byte) (60 + 150 * light))
+                        .put((byte) (90 + 100 * light * light))
+                        .put((byte) 255);
+            }
+        }
+        data.rewind();
+        return image;
+    }
+
+}
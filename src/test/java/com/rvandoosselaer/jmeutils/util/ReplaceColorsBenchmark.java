@@ -0,0 +1,95 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.texture.Image;
+import com.jme3.texture.image.ImageRaster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * A benchmark that compares recoloring a texture with a {@link ColorMap} in a single pass, with the previous
+ * implementation that does a column-major pass through an {@link ImageRaster} for each replaced color.
+ * The textures use a small palette, like team colored textures.
+ *
+ * @author rvandoosselaer
+ */
+public class ReplaceColorsBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 5;
+    private static final int[] SIZES = {256, 512, 1024};
+    private static final int[] COLOR_COUNTS = {1, 4, 16};
+
+    public static void main(String[] args) {
+        for (int size : SIZES) {
+            for (int colors : COLOR_COUNTS) {
+                Image image = createPaletteImage(size, size, colors * 2);
+                ColorRGBA[] oldColors = new ColorRGBA[colors];
+                ColorRGBA[] newColors = new ColorRGBA[colors];
+                ColorMap colorMap = new ColorMap();
+                for (int i = 0; i < colors; i++) {
+                    oldColors[i] = getPaletteColor(i);
+                    newColors[i] = getPaletteColor(i + colors);
+                    colorMap.put(oldColors[i], newColors[i]);
+                }
+
+                // replace the colors back and forth, so each iteration does the same amount of work
+                ColorMap reverseColorMap = new ColorMap();
+                for (int i = 0; i < colors; i++) {
+                    reverseColorMap.put(newColors[i], oldColors[i]);
+                }
+
+                double legacy = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+                    for (int i = 0; i < colors; i++) {
+                        legacyReplaceColors(image, oldColors[i], newColors[i]);
+                    }
+                    for (int i = 0; i < colors; i++) {
+                        legacyReplaceColors(image, newColors[i], oldColors[i]);
+                    }
+                });
+                double current = Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+                    ImageUtils.replaceColors(image, colorMap, null);
+                    ImageUtils.replaceColors(image, reverseColorMap, null);
+                });
+
+                System.out.printf("%4dx%-4d %2d colors legacy: %8.2f ms, current: %8.2f ms, speedup: %5.1fx%n",
+                        size, size, colors, legacy, current, legacy / current);
+            }
+        }
+    }
+
+    private static ColorRGBA getPaletteColor(int index) {
+        return new ColorRGBA().fromIntRGBA((index * 0x2F3B47 + 0x10203000) | 0xFF);
+    }
+
+    private static Image createPaletteImage(int width, int height, int colors) {
+        Image image = ImageUtils.createImage(Image.Format.RGBA8, width, height);
+        // the colors are packed as RGBA, in big endian order
+        ByteBuffer data = image.getData(0).duplicate().order(ByteOrder.BIG_ENDIAN);
+        Random random = new Random(42);
+        for (int i = 0; i < width * height; i++) {
+            ColorRGBA color = getPaletteColor(random.nextInt(colors));
+            data.putInt(ColorMap.toRGBA(color));
+        }
+        return image;
+    }
+
+    /**
+     * The previous implementation: a column-major pass that creates a color for each pixel.
+     */
+    private static void legacyReplaceColors(Image image, ColorRGBA oldColor, ColorRGBA newColor) {
+        ImageRaster imageRaster = ImageRaster.create(image);
+        for (int w = 0; w < image.getWidth(); w++) {
+            for (int h = 0; h < image.getHeight(); h++) {
+                ColorRGBA pixel = imageRaster.getPixel(w, h);
+                if (Objects.equals(pixel, oldColor)) {
+                    imageRaster.setPixel(w, h, newColor);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author: rvandoosselaer
+ */
+public class RollingStatisticsTest {
+
+    @Test
+    public void testEmpty() {
+        RollingStatistics statistics = new RollingStatistics(10);
+
+        assertEquals(0, statistics.getSize());
+        assertEquals(0, statistics.getMin());
+        assertEquals(0, statistics.getMax());
+        assertEquals(0.0, statistics.getAverage());
+        assertEquals(0, statistics.getPercentile(99));
+    }
+
+    @Test
+    public void testStatistics() {
+        RollingStatistics statistics = new RollingStatistics(100);
+        for (int i = 100; i >= 1; i--) {
+            statistics.record(i);
+        }
+
+        assertEquals(100, statistics.getSize());
+        assertEquals(1, statistics.getMin());
+        assertEquals(100, statistics.getMax());
+        assertEquals(50.5, statistics.getAverage(), 0.0001);
+        assertEquals(50, statistics.getPercentile(50));
+        assertEquals(99, statistics.getPercentile(99));
+        assertEquals(100, statistics.getPercentile(100));
+        assertThrows(IllegalArgumentException.class, () -> statistics.getPercentile(101));
+    }
+
+    @Test
+    public void testWindow() {
+        RollingStatistics statistics = new RollingStatistics(4);
+        for (int i = 1; i <= 10; i++) {
+            statistics.record(i);
+        }
+
+        assertEquals(10, statistics.getCount());
+        assertEquals(4, statistics.getSize());
+        assertEquals(7, statistics.getMin());
+        assertEquals(10, statistics.getMax());
+        assertEquals(8.5, statistics.getAverage(), 0.0001);
+
+        statistics.reset();
+        assertEquals(0, statistics.getSize());
+    }
+
+}
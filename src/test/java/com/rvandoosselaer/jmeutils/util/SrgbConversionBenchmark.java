@@ -0,0 +1,80 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.math.ColorRGBA;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A benchmark of the bulk sRGB to linear conversions of {@link ColorUtils}, compared with converting every color with
+ * {@link ColorRGBA#setAsSrgb(float, float, float, float)} and every byte with {@link Math#pow(double, double)}. The
+ * colors are converted in an array, a float buffer like the color buffer of a mesh and a byte buffer like the pixels
+ * of a RGBA8 image.
+ *
+ * @author rvandoosselaer
+ */
+public class SrgbConversionBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 10;
+    private static final int COLORS = 1920 * 1080;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        float[] values = new float[COLORS * 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        byte[] bytes = new byte[COLORS * 4];
+        random.nextBytes(bytes);
+
+        float[] array = new float[values.length];
+        FloatBuffer floatBuffer = ByteBuffer.allocateDirect(values.length * 4).asFloatBuffer();
+        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(bytes.length);
+        ColorRGBA color = new ColorRGBA();
+
+        report("float[] setAsSrgb", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            System.arraycopy(values, 0, array, 0, values.length);
+            for (int i = 0; i < array.length; i += 4) {
+                color.setAsSrgb(array[i], array[i + 1], array[i + 2], array[i + 3]);
+                array[i] = color.r;
+                array[i + 1] = color.g;
+                array[i + 2] = color.b;
+            }
+        }));
+        report("float[] sequential", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            System.arraycopy(values, 0, array, 0, values.length);
+            ColorUtils.srgbToLinear(array, 4, null);
+        }));
+        report("float[] parallel", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            System.arraycopy(values, 0, array, 0, values.length);
+            ColorUtils.srgbToLinear(array, 4, ForkJoinPool.commonPool());
+        }));
+        report("FloatBuffer sequential", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            floatBuffer.clear();
+            floatBuffer.put(values).flip();
+            ColorUtils.srgbToLinear(floatBuffer, 4, null);
+        }));
+        report("ByteBuffer Math.pow", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            byteBuffer.clear();
+            byteBuffer.put(bytes).flip();
+            for (int i = 0; i < bytes.length; i++) {
+                if ((i & 3) != 3) {
+                    byteBuffer.put(i, (byte) Math.round(Math.pow((byteBuffer.get(i) & 0xFF) / 255.0, 2.2) * 255));
+                }
+            }
+        }));
+        report("ByteBuffer sequential", Benchmarks.measure(WARMUP_ITERATIONS, ITERATIONS, () -> {
+            byteBuffer.clear();
+            byteBuffer.put(bytes).flip();
+            ColorUtils.srgbToLinear(byteBuffer, 4, null);
+        }));
+    }
+
+    private static void report(String name, double time) {
+        System.out.printf("%-24s %8.2f ms, %7.1f Mcolors/s%n", name, time, COLORS / time / 1000);
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.rvandoosselaer.jmeutils.util;
+
+import com.jme3.texture.Image;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Images for the tests and benchmarks of the image utilities.
+ *
+ * @author: rvandoosselaer
+ */
+class TestImages {
+
+    private TestImages() {
+    }
+
+    /**
+     * Creates an image of the given format filled with random bytes. The same seed is used for every image.
+     */
+    static Image createRandomImage(Image.Format format, int width, int height) {
+        Image image = ImageUtils.createImage(format, width, height);
+        ByteBuffer data = image.getData(0);
+        byte[] bytes = new byte[data.remaining()];
+        new Random(42).nextBytes(bytes);
+        data.put(bytes);
+        data.rewind();
+        return image;
+    }
+
+    /**
+     * The previous implementation of {@link ImageUtils#imageToBufferedImage(Image)}: absolute get calls per channel,
+     * setRGB and a separate vertical flip.
+     */
+    static BufferedImage legacyImageToBufferedImage(Image image) {
+        boolean alpha = image.getFormat() != Image.Format.RGB8 && image.getFormat() != Image.Format.BGR8;
+        int A = 0;
+        int R = 0;
+        int G = 1;
+        int B = 2;
+        switch (image.getFormat()) {
+            case RGBA8:
+                A = 3;
+                break;
+            case ABGR8:
+                B = 1;
+                G = 2;
+                R = 3;
+                break;
+            case ARGB8:
+                R = 1;
+                G = 2;
+                B = 3;
+                break;
+            case BGRA8:
+            case BGR8:
+                B = 0;
+                R = 2;
+                A = 3;
+                break;
+            default:
+                break;
+        }
+
+        ByteBuffer bb = image.getData(0);
+        bb.rewind();
+
+        BufferedImage bufferedImage = new BufferedImage(image.getWidth(), image.getHeight(), alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+
+        int channels = alpha ? 4 : 3;
+        int steps = bb.limit() / channels;
+        int[] raw = new int[bb.limit()];
+        for (int i = 0; i < steps; i++) {
+            if (alpha) {
+                raw[i] = ((bb.get(channels * i + B) & 0xFF)) |
+                        ((bb.get(channels * i + A) & 0xFF) << 24) |
+                        ((bb.get(channels * i + R) & 0xFF) << 16) |
+                        ((bb.get(channels * i + G) & 0xFF) << 8);
+            } else {
+                raw[i] = ((bb.get(3 * i + R) & 0xFF) << 16) |
+                        ((bb.get(3 * i + G) & 0xFF) << 8) |
+                        ((bb.get(3 * i + B) & 0xFF));
+            }
+        }
+        bufferedImage.setRGB(0, 0, image.getWidth(), image.getHeight(), raw, 0, image.getWidth());
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        for (int w = 0; w < width; w++) {
+            for (int h = 0; h < height * 0.5; h++) {
+                int pixel = bufferedImage.getRGB(w, h);
+                int oppositePixel = bufferedImage.getRGB(w, (height - 1) - h);
+                bufferedImage.setRGB(w, h, oppositePixel);
+                bufferedImage.setRGB(w, (height - 1) - h, pixel);
+            }
+        }
+
+        return bufferedImage;
+    }
+
+}